@@ -50,7 +50,7 @@ import org.goko.core.controller.ICoordinateSystemAdapter;
 import org.goko.core.controller.IStepJogService;
 import org.goko.core.controller.action.IGkControllerAction;
 import org.goko.core.controller.bean.EnumControllerAxis;
-import org.goko.core.controller.event.MachineValueUpdateEvent;
+import org.goko.core.controller.event.MachineValueBatchUpdateEvent;
 import org.goko.core.gcode.bean.commands.EnumCoordinateSystem;
 import org.goko.core.log.GkLog;
 import org.osgi.service.prefs.BackingStoreException;
@@ -118,8 +118,8 @@ public class CommandPanelController  extends AbstractController<CommandPanelMode
 		}
 	}
 
-	@EventListener(MachineValueUpdateEvent.class)
-	public void onMachineStateUpdate(final MachineValueUpdateEvent event) throws GkException{
+	@EventListener(MachineValueBatchUpdateEvent.class)
+	public void onMachineStateUpdate(final MachineValueBatchUpdateEvent event) throws GkException{
 		Display.getDefault().asyncExec(new Runnable() {
 
 			@Override
@@ -19,6 +19,8 @@
  */
 package org.goko.base.dro.controller;
 
+import java.util.List;
+
 import javax.inject.Inject;
 
 import org.eclipse.core.databinding.UpdateValueStrategy;
@@ -35,7 +37,7 @@ import org.goko.core.common.exception.GkException;
 import org.goko.core.controller.IControllerService;
 import org.goko.core.controller.bean.MachineValue;
 import org.goko.core.controller.bean.MachineValueDefinition;
-import org.goko.core.controller.event.MachineValueUpdateEvent;
+import org.goko.core.controller.event.MachineValueBatchUpdateEvent;
 import org.goko.core.log.GkLog;
 
 /**
@@ -77,14 +79,15 @@ public class DisplayReadOutController extends AbstractController<DisplayReadOutM
 		}
 	}
 
-	@EventListener(MachineValueUpdateEvent.class)
-	public void onMachineStateUpdate(MachineValueUpdateEvent updateEvent){
-		final MachineValue value= updateEvent.getTarget();
+	@EventListener(MachineValueBatchUpdateEvent.class)
+	public void onMachineStateUpdate(MachineValueBatchUpdateEvent updateEvent){
+		final List<MachineValue<?>> values = updateEvent.getTarget();
 		Display.getDefault().asyncExec(new Runnable() {
 			@Override
 			public void run() {
-				//MachineValueDefinition definition = controllerService.getMachineValueDefinition(value.getIdDescriptor());
-				getDataModel().addObservedValue(value.getIdDescriptor(), value);
+				for(MachineValue<?> value : values){
+					getDataModel().addObservedValue(value.getIdDescriptor(), value);
+				}
 			}
 		});
 	}
@@ -0,0 +1,71 @@
+package org.goko.base.execution.time.service;
+
+import java.math.BigDecimal;
+
+import junit.framework.TestCase;
+
+import org.goko.core.gcode.bean.GCodeContext;
+import org.goko.core.gcode.bean.Tuple6b;
+import org.goko.core.gcode.bean.commands.EnumGCodeCommandMotionMode;
+import org.goko.core.gcode.bean.commands.EnumGCodeCommandUnit;
+import org.goko.core.gcode.bean.commands.LinearMotionCommand;
+
+public class GCodeExecutionTimeCalculatorTestCase extends TestCase {
+	private static final double EPSILON = 1e-9;
+	private GCodeExecutionTimeCalculator calculator;
+
+	/** {@inheritDoc}
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		// No controller : default planner settings
+		calculator = new GCodeExecutionTimeCalculator();
+	}
+
+	private LinearMotionCommand createMotion(EnumGCodeCommandMotionMode motionMode, EnumGCodeCommandUnit unit, double x, String feedrate){
+		LinearMotionCommand command = new LinearMotionCommand();
+		command.setMotionMode(motionMode);
+		command.setUnit(unit);
+		if(feedrate != null){
+			command.setFeedrate(new BigDecimal(feedrate));
+		}
+		command.setAbsoluteStartCoordinate(new Tuple6b(0, 0, 0, unit.getUnit()));
+		command.setAbsoluteEndCoordinate(new Tuple6b(x, 0, 0, unit.getUnit()));
+		return command;
+	}
+
+	/**
+	 * Feedrate in mm/min : F600 is 10 mm/s
+	 * @throws Exception Exception
+	 */
+	public void testMillimeterFeedrate() throws Exception{
+		LinearMotionCommand command = createMotion(EnumGCodeCommandMotionMode.FEEDRATE, EnumGCodeCommandUnit.MILLIMETERS, 100, "600");
+
+		assertEquals(11.0, calculator.evaluateExecutionTime(command, new GCodeContext()), EPSILON);
+	}
+
+	/**
+	 * Feedrate in inch/min : F25 is 635 mm/min
+	 * @throws Exception Exception
+	 */
+	public void testInchFeedrate() throws Exception{
+		LinearMotionCommand command = createMotion(EnumGCodeCommandMotionMode.FEEDRATE, EnumGCodeCommandUnit.INCHES, 10, "25");
+
+		double speed = 25 * 25.4 / 60;
+		// 254mm, acceleration of 10 mm/s^2
+		assertEquals(254 / speed + speed / 10, calculator.evaluateExecutionTime(command, new GCodeContext()), 1e-6);
+	}
+
+	/**
+	 * Rapid motions use the default maximum velocity of 500 mm/min
+	 * @throws Exception Exception
+	 */
+	public void testRapid() throws Exception{
+		LinearMotionCommand command = createMotion(EnumGCodeCommandMotionMode.RAPID, EnumGCodeCommandUnit.MILLIMETERS, 100, null);
+
+		double speed = 500.0 / 60;
+		assertEquals(100 / speed + speed / 10, calculator.evaluateExecutionTime(command, new GCodeContext()), EPSILON);
+	}
+}
@@ -0,0 +1,205 @@
+package org.goko.base.execution.time.service.planner;
+
+import junit.framework.TestCase;
+
+import org.goko.core.controller.bean.MotionPlannerSettings;
+import org.goko.core.math.Tuple6d;
+
+public class MotionPlannerTestCase extends TestCase {
+	private static final double EPSILON = 1e-9;
+	private MotionPlannerSettings settings;
+
+	/** {@inheritDoc}
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		// Acceleration of 10 mm/s^2 and junction deviation of 0.05 mm on all axis
+		settings = new MotionPlannerSettings();
+	}
+
+	private static Tuple6d point(double x, double y, double z){
+		return new Tuple6d(x, y, z, 0, 0, 0);
+	}
+
+	/**
+	 * Duration of a motion reaching its nominal speed
+	 */
+	private static double trapezoid(double length, double nominalSpeed, double acceleration, double entrySpeed, double exitSpeed){
+		double accelerationLength = (nominalSpeed * nominalSpeed - entrySpeed * entrySpeed) / (2 * acceleration);
+		double decelerationLength = (nominalSpeed * nominalSpeed - exitSpeed * exitSpeed) / (2 * acceleration);
+		return (nominalSpeed - entrySpeed) / acceleration
+				+ (length - accelerationLength - decelerationLength) / nominalSpeed
+				+ (nominalSpeed - exitSpeed) / acceleration;
+	}
+
+	/**
+	 * 100mm at 10mm/s : 1s to accelerate over 5mm, 9s at nominal speed, 1s to decelerate over 5mm
+	 */
+	public void testTrapezoidDuration(){
+		MotionPlanner planner = new MotionPlanner(settings, null);
+		planner.addLinearMotion(0, point(0, 0, 0), point(100, 0, 0), false, 10);
+		planner.flush();
+
+		assertEquals(11.0, planner.getTotalTime(), EPSILON);
+	}
+
+	/**
+	 * 1mm at 10mm/s : the nominal speed is never reached, the peak speed is sqrt(10) mm/s in the middle of the motion
+	 */
+	public void testTriangleDuration(){
+		MotionPlanner planner = new MotionPlanner(settings, null);
+		planner.addLinearMotion(0, point(0, 0, 0), point(1, 0, 0), false, 10);
+		planner.flush();
+
+		assertEquals(2 * Math.sqrt(10) / 10, planner.getTotalTime(), EPSILON);
+	}
+
+	/**
+	 * Collinear motions are joined at full speed
+	 */
+	public void testStraightJunction(){
+		MotionPlanner planner = new MotionPlanner(settings, null);
+		planner.addLinearMotion(0, point(0, 0, 0), point(10, 0, 0), false, 10);
+		planner.addLinearMotion(1, point(10, 0, 0), point(20, 0, 0), false, 10);
+		planner.flush();
+
+		assertEquals(3.0, planner.getTotalTime(), EPSILON);
+	}
+
+	/**
+	 * A right angle is taken at the speed given by the junction deviation
+	 */
+	public void testRightAngleJunction(){
+		double[] durations = new double[2];
+		MotionPlanner planner = new MotionPlanner(settings, durations);
+		planner.addLinearMotion(0, point(0, 0, 0), point(10, 0, 0), false, 10);
+		planner.addLinearMotion(1, point(10, 0, 0), point(10, 10, 0), false, 10);
+		planner.flush();
+
+		double sinHalfTheta = Math.sqrt(0.5);
+		double junctionSpeed = Math.sqrt(10 * 0.05 * sinHalfTheta / (1 - sinHalfTheta));
+		assertEquals(trapezoid(10, 10, 10, 0, junctionSpeed), durations[0], EPSILON);
+		assertEquals(trapezoid(10, 10, 10, junctionSpeed, 0), durations[1], EPSILON);
+		assertEquals(durations[0] + durations[1], planner.getTotalTime(), EPSILON);
+	}
+
+	/**
+	 * The junction acceleration of the settings replaces the acceleration of the motions
+	 */
+	public void testJunctionAcceleration(){
+		settings.setJunctionAcceleration(1);
+		double[] durations = new double[2];
+		MotionPlanner planner = new MotionPlanner(settings, durations);
+		planner.addLinearMotion(0, point(0, 0, 0), point(10, 0, 0), false, 10);
+		planner.addLinearMotion(1, point(10, 0, 0), point(10, 10, 0), false, 10);
+		planner.flush();
+
+		double sinHalfTheta = Math.sqrt(0.5);
+		double junctionSpeed = Math.sqrt(1 * 0.05 * sinHalfTheta / (1 - sinHalfTheta));
+		assertEquals(trapezoid(10, 10, 10, 0, junctionSpeed), durations[0], EPSILON);
+	}
+
+	/**
+	 * The machine stops before going backward
+	 */
+	public void testReversalJunction(){
+		MotionPlanner planner = new MotionPlanner(settings, null);
+		planner.addLinearMotion(0, point(0, 0, 0), point(20, 0, 0), false, 10);
+		planner.addLinearMotion(1, point(20, 0, 0), point(0, 0, 0), false, 10);
+		planner.flush();
+
+		assertEquals(2 * trapezoid(20, 10, 10, 0, 0), planner.getTotalTime(), EPSILON);
+		assertEquals(6.0, planner.getTotalTime(), EPSILON);
+	}
+
+	/**
+	 * Rapid motions run at the maximum velocity of the axis, whatever the feedrate
+	 */
+	public void testRapidCappedByAxisVelocity(){
+		settings.setMaximumVelocity(0, 20);
+		MotionPlanner planner = new MotionPlanner(settings, null);
+		planner.addLinearMotion(0, point(0, 0, 0), point(100, 0, 0), true, 1);
+		planner.flush();
+
+		assertEquals(trapezoid(100, 20, 10, 0, 0), planner.getTotalTime(), EPSILON);
+		assertEquals(7.0, planner.getTotalTime(), EPSILON);
+	}
+
+	/**
+	 * A diagonal rapid motion is limited by its slowest axis
+	 */
+	public void testRapidCappedBySlowestAxis(){
+		settings.setMaximumVelocity(0, 20);
+		settings.setMaximumVelocity(1, 10);
+		MotionPlanner planner = new MotionPlanner(settings, null);
+		planner.addLinearMotion(0, point(0, 0, 0), point(100, 100, 0), true, 1);
+		planner.flush();
+
+		// Same as a 100mm motion of the Y axis alone at 10mm/s
+		assertEquals(11.0, planner.getTotalTime(), EPSILON);
+	}
+
+	/**
+	 * Short collinear motions : the reverse pass raises the entry speed of all the previous motions
+	 */
+	public void testReversePassPropagation(){
+		MotionPlanner planner = new MotionPlanner(settings, null);
+		for (int i = 0; i < 10; i++) {
+			planner.addLinearMotion(i, point(i * 0.1, 0, 0), point((i + 1) * 0.1, 0, 0), false, 10);
+		}
+		planner.flush();
+
+		// Same as a single 1mm motion
+		assertEquals(2 * Math.sqrt(10) / 10, planner.getTotalTime(), EPSILON);
+	}
+
+	/**
+	 * Long program of collinear motions : once the motions are at full speed, the reverse pass stops at the first unchanged motion
+	 * without degrading the plan
+	 */
+	public void testReversePassEarlyExit(){
+		double[] durations = new double[1000];
+		MotionPlanner planner = new MotionPlanner(settings, durations);
+		for (int i = 0; i < 1000; i++) {
+			planner.addLinearMotion(i, point(i, 0, 0), point(i + 1, 0, 0), false, 10);
+		}
+		planner.flush();
+
+		// Same as a single 1000mm motion
+		assertEquals(101.0, planner.getTotalTime(), 1e-6);
+		// Motions in the middle are performed at nominal speed
+		assertEquals(0.1, durations[500], EPSILON);
+	}
+
+	/**
+	 * The buffer of the planner is limited : too short motions cannot reach the nominal speed
+	 */
+	public void testLimitedBuffer(){
+		settings.setBlockCount(2);
+		MotionPlanner planner = new MotionPlanner(settings, null);
+		for (int i = 0; i < 100; i++) {
+			planner.addLinearMotion(i, point(i * 0.1, 0, 0), point((i + 1) * 0.1, 0, 0), false, 10);
+		}
+		planner.flush();
+
+		// Slower than a single 10mm motion
+		assertTrue(planner.getTotalTime() > trapezoid(10, 10, 10, 0, 0) + 0.1);
+	}
+
+	/**
+	 * Null motions and motions without feedrate are ignored
+	 */
+	public void testIgnoredMotions(){
+		double[] durations = new double[]{-1, -1};
+		MotionPlanner planner = new MotionPlanner(settings, durations);
+		planner.addLinearMotion(0, point(1, 1, 1), point(1, 1, 1), false, 10);
+		planner.addLinearMotion(1, point(0, 0, 0), point(10, 0, 0), false, 0);
+		planner.flush();
+
+		assertEquals(0.0, planner.getTotalTime(), EPSILON);
+		assertEquals(-1.0, durations[0], EPSILON);
+		assertEquals(-1.0, durations[1], EPSILON);
+	}
+}
@@ -19,27 +19,45 @@
  */
 package org.goko.base.execution.time.service;
 
-import org.apache.commons.collections.CollectionUtils;
+import java.util.Iterator;
+
+import org.goko.base.execution.time.service.planner.MotionPlanner;
 import org.goko.core.common.exception.GkException;
-import org.goko.core.execution.IGCodeCommandExecutionTimeCalculator;
+import org.goko.core.common.exception.GkTechnicalException;
+import org.goko.core.common.measure.SI;
+import org.goko.core.common.measure.converter.UnitConverter;
+import org.goko.core.controller.IMotionPlannerAdapter;
+import org.goko.core.controller.bean.MotionPlannerSettings;
+import org.goko.core.execution.GCodeExecutionTimeline;
 import org.goko.core.execution.IGCodeExecutionTimeService;
 import org.goko.core.gcode.bean.GCodeCommand;
 import org.goko.core.gcode.bean.GCodeContext;
 import org.goko.core.gcode.bean.IGCodeProvider;
+import org.goko.core.gcode.bean.commands.ArcMotionCommand;
+import org.goko.core.gcode.bean.commands.EnumGCodeCommandMotionMode;
+import org.goko.core.gcode.bean.commands.EnumGCodeCommandUnit;
+import org.goko.core.gcode.bean.commands.LinearMotionCommand;
+import org.goko.core.gcode.bean.commands.MotionCommand;
 import org.goko.core.gcode.service.IGCodeService;
+import org.goko.core.log.GkLog;
+import org.goko.core.math.Tuple6d;
 
 /**
  * Implementation of the time calculator
+ * The execution is simulated with a look ahead motion planner using the acceleration and junction settings of the controller, when
+ * the controller provides them (see {@link IMotionPlannerAdapter}).
  *
  * @author PsyKo
  *
  */
 public class GCodeExecutionTimeCalculator implements IGCodeExecutionTimeService {
+	/** LOG */
+	private static final GkLog LOG = GkLog.getLogger(GCodeExecutionTimeCalculator.class);
 	public static final String SERVICE_ID = "org.goko.base.execution.time.service.GCodeEecutionTimeCalculator";
-	private TimeCalculatorFactory factory;
 
 	private IGCodeService gcodeService;
-
+	/** The adapter giving the settings of the motion planner of the controller, if any */
+	private volatile IMotionPlannerAdapter motionPlannerAdapter;
 
 	/** (inheritDoc)
 	 * @see org.goko.core.common.service.IGokoService#getServiceId()
@@ -72,21 +90,56 @@ public class GCodeExecutionTimeCalculator implements IGCodeExecutionTimeService
 	 */
 	@Override
 	public double evaluateExecutionTime(IGCodeProvider provider) throws GkException {
-		double result = 0;
-		if(factory == null){
-			factory = new TimeCalculatorFactory();
+		return evaluateExecutionTime(provider, 0, 1, null);
+	}
+
+	/** (inheritDoc)
+	 * @see org.goko.core.execution.IGCodeExecutionTimeService#evaluateExecutionTimeline(org.goko.core.gcode.bean.IGCodeProvider)
+	 */
+	@Override
+	public GCodeExecutionTimeline evaluateExecutionTimeline(IGCodeProvider provider) throws GkException {
+		GCodeExecutionTimeline timeline = new GCodeExecutionTimeline(provider);
+		double[] durations = new double[timeline.getCommandCount()];
+		evaluateExecutionTime(provider, 0, 1, durations);
+		timeline.update(0, durations);
+		return timeline;
+	}
+
+	/** (inheritDoc)
+	 * @see org.goko.core.execution.IGCodeExecutionTimeService#updateExecutionTimeline(org.goko.core.gcode.bean.IGCodeProvider, org.goko.core.execution.GCodeExecutionTimeline, java.lang.Integer, double)
+	 */
+	@Override
+	public void updateExecutionTimeline(IGCodeProvider provider, GCodeExecutionTimeline timeline, Integer idCommand, double feedrateOverride) throws GkException {
+		int fromIndex = timeline.getIndex(idCommand);
+		if(fromIndex < 0){
+			throw new GkTechnicalException("Command ["+idCommand+"] is not in the timeline");
 		}
-		if(CollectionUtils.isNotEmpty(provider.getGCodeCommands())){
-			GCodeContext context = new GCodeContext();
-			for (GCodeCommand command : provider.getGCodeCommands()) {
-				//GCodeContext postContext = new GCodeContext(context);
-				//gcodeService.update(postContext, command);
-
-				result += evaluateExecutionTime(command, context);
-				//context = postContext;
-			}
+		double[] durations = new double[timeline.getCommandCount()];
+		evaluateExecutionTime(provider, fromIndex, feedrateOverride, durations);
+		timeline.update(fromIndex, durations);
+	}
+
+	/**
+	 * Evaluate the execution time of the given provider from the given command, and the duration of each of its commands
+	 * @param provider the provider
+	 * @param fromIndex the index of the first evaluated command, the machine being at rest before this command
+	 * @param feedrateOverride the ratio applied to the feedrate of the commands
+	 * @param durations the target array for the duration of each command, by index in the provider. Can be <code>null</code>
+	 * @return the seconds required to execute the code from the given command
+	 * @throws GkException GkException
+	 */
+	protected double evaluateExecutionTime(IGCodeProvider provider, int fromIndex, double feedrateOverride, double[] durations) throws GkException {
+		MotionPlanner planner = new MotionPlanner(getMotionPlannerSettings(), durations);
+		FeedrateConverter converter = new FeedrateConverter(feedrateOverride);
+		Tuple6d start = new Tuple6d();
+		Tuple6d end   = new Tuple6d();
+		Iterator<GCodeCommand> iterator = provider.getGCodeCommands().listIterator(fromIndex);
+		int index = fromIndex;
+		while(iterator.hasNext()){
+			addCommand(planner, converter, index++, iterator.next(), start, end);
 		}
-		return result;
+		planner.flush();
+		return planner.getTotalTime();
 	}
 
 	/** (inheritDoc)
@@ -94,15 +147,96 @@ public class GCodeExecutionTimeCalculator implements IGCodeExecutionTimeService
 	 */
 	@Override
 	public double evaluateExecutionTime(GCodeCommand command, GCodeContext context) throws GkException {
+		// A single command starts and ends at zero speed
+		MotionPlanner planner = new MotionPlanner(getMotionPlannerSettings(), null);
+		addCommand(planner, new FeedrateConverter(1), 0, command, new Tuple6d(), new Tuple6d());
+		planner.flush();
+		return planner.getTotalTime();
+	}
+
+	/**
+	 * Add the given command to the planner, if it is a motion
+	 * @param planner the planner
+	 * @param converter the feedrate converter
+	 * @param index the index of the command
+	 * @param command the command
+	 * @param start reused start tuple
+	 * @param end reused end tuple
+	 */
+	private void addCommand(MotionPlanner planner, FeedrateConverter converter, int index, GCodeCommand command, Tuple6d start, Tuple6d end){
+		if(!(command instanceof MotionCommand)){
+			return;
+		}
+		MotionCommand motionCommand = (MotionCommand) command;
+		if(motionCommand.getAbsoluteStartCoordinate(start) == null || motionCommand.getAbsoluteEndCoordinate(end) == null){
+			return;
+		}
+		double feedrate = converter.getFeedrate(motionCommand);
+		if(command instanceof ArcMotionCommand){
+			planner.addArcMotion(index, (ArcMotionCommand) command, start, end, feedrate);
+		}else if(command instanceof LinearMotionCommand){
+			boolean rapid = motionCommand.getMotionMode() == EnumGCodeCommandMotionMode.RAPID;
+			planner.addLinearMotion(index, start, end, rapid, feedrate);
+		}
+	}
 
+	/**
+	 * Returns the settings of the planner of the controller, or the default settings
+	 * @return the {@link MotionPlannerSettings}
+	 */
+	protected MotionPlannerSettings getMotionPlannerSettings(){
+		IMotionPlannerAdapter adapter = motionPlannerAdapter;
+		if(adapter != null){
+			try {
+				MotionPlannerSettings settings = adapter.getMotionPlannerSettings();
+				if(settings != null){
+					return settings;
+				}
+			} catch (GkException e) {
+				LOG.error(e);
+			}
+		}
+		return new MotionPlannerSettings();
+	}
 
-		IGCodeCommandExecutionTimeCalculator<GCodeCommand> calculator = factory.getCalculator(context, command);
+	/**
+	 * Converts the feedrate of the commands in millimeters per second, reusing the converter of the last unit
+	 */
+	private static class FeedrateConverter{
+		/** The ratio applied to the feedrate */
+		private final double override;
+		/** The last unit */
+		private EnumGCodeCommandUnit unit;
+		/** The converter of the last unit */
+		private UnitConverter converter;
 
+		/**
+		 * Constructor
+		 * @param override the ratio applied to the feedrate
+		 */
+		FeedrateConverter(double override){
+			this.override = override;
+		}
 
-		if(calculator != null){
-			return calculator.evaluateExecutionTime(command, context);
+		/**
+		 * @param command the command
+		 * @return the overridden feedrate of the command in millimeters per second, 0 if not set
+		 */
+		double getFeedrate(MotionCommand command){
+			if(command.getFeedrate() == null){
+				return 0;
+			}
+			double feedrate = command.getFeedrate().doubleValue();
+			if(command.getUnit() != null){
+				if(command.getUnit() != unit){
+					unit = command.getUnit();
+					converter = unit.getUnit().getConverterTo(SI.MILLIMETRE);
+				}
+				// Coordinates are in millimeters
+				feedrate = converter.convert(feedrate);
+			}
+			return feedrate * override / 60;
 		}
-		return 0;
 	}
 
 	/**
@@ -119,4 +253,20 @@ public class GCodeExecutionTimeCalculator implements IGCodeExecutionTimeService
 		this.gcodeService = gcodeService;
 	}
 
+	/**
+	 * @param motionPlannerAdapter the motionPlannerAdapter to set
+	 */
+	protected void setMotionPlannerAdapter(IMotionPlannerAdapter motionPlannerAdapter) {
+		this.motionPlannerAdapter = motionPlannerAdapter;
+	}
+
+	/**
+	 * @param motionPlannerAdapter the motionPlannerAdapter to unset
+	 */
+	protected void unsetMotionPlannerAdapter(IMotionPlannerAdapter motionPlannerAdapter) {
+		if(this.motionPlannerAdapter == motionPlannerAdapter){
+			this.motionPlannerAdapter = null;
+		}
+	}
+
 }
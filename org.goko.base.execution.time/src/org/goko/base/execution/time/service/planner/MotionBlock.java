@@ -0,0 +1,43 @@
+/*
+ *
+ *   Goko
+ *   Copyright (C) 2013  PsyKo
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.goko.base.execution.time.service.planner;
+
+/**
+ * A motion in the planner buffer. Speeds are in millimeters per second, lengths in millimeters
+ *
+ * @author PsyKo
+ *
+ */
+class MotionBlock {
+	/** Index of the command in the provider */
+	int index;
+	/** Length of the motion */
+	double length;
+	/** Speed reached if the motion is long enough */
+	double nominalSpeed;
+	/** Acceleration along the path */
+	double acceleration;
+	/** Maximum speed at the beginning of the motion, given by the junction with the previous motion */
+	double maximumEntrySpeed;
+	/** Planned speed at the beginning of the motion */
+	double entrySpeed;
+	/** <code>true</code> once the previous motion is executed : the entry speed can no longer change */
+	boolean entryFixed;
+}
@@ -0,0 +1,332 @@
+/*
+ *
+ *   Goko
+ *   Copyright (C) 2013  PsyKo
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.goko.base.execution.time.service.planner;
+
+import java.util.Arrays;
+
+import org.goko.core.controller.bean.MotionPlannerSettings;
+import org.goko.core.gcode.bean.commands.ArcMotionCommand;
+import org.goko.core.gcode.bean.provider.ArcTessellator;
+import org.goko.core.math.Tuple6d;
+
+/**
+ * Simulation of the look ahead motion planner of a controller
+ * Motions are added in execution order. Like in the controller, the planner keeps a limited number of motions in its buffer and plans their
+ * entry speeds using the junction deviation between consecutive motions. When the buffer is full, the oldest motion is executed with a
+ * trapezoidal speed profile and its duration is reported. Adding a motion only replans the motions whose entry speed can change,
+ * so a whole program is planned in a single pass.
+ *
+ * @author PsyKo
+ *
+ */
+public class MotionPlanner {
+	/** Length under which a motion is ignored */
+	private static final double MINIMUM_LENGTH = 1E-6;
+	/** Cosine of the angle between two motions under which the junction is considered as a full reversal (see Grbl planner) */
+	private static final double REVERSAL_COSINE = 0.95;
+	/** Cosine of the angle between two motions over which the junction is considered as straight (see Grbl planner) */
+	private static final double STRAIGHT_COSINE = -0.95;
+	/** The settings */
+	private final MotionPlannerSettings settings;
+	/** Duration of each command, by index. Can be <code>null</code> */
+	private final double[] durations;
+	/** The buffer of planned motions */
+	private final MotionBlock[] blocks;
+	/** Position of the oldest motion in the buffer */
+	private int first;
+	/** Number of motions in the buffer */
+	private int count;
+	/** Total duration of the executed motions */
+	private double totalTime;
+	/** Exit direction of the last added motion */
+	private final double[] previousDirection;
+	/** Nominal speed of the last added motion, 0 after a stop */
+	private double previousNominalSpeed;
+	/** Reused direction at the start of the added motion */
+	private final double[] startDirection;
+	/** Reused direction at the end of the added motion */
+	private final double[] endDirection;
+
+	/**
+	 * Constructor
+	 * @param settings the settings of the planner
+	 * @param durations the target array for the duration of each command, by index. Can be <code>null</code>
+	 */
+	public MotionPlanner(MotionPlannerSettings settings, double[] durations) {
+		this.settings = settings;
+		this.durations = durations;
+		this.blocks = new MotionBlock[Math.max(1, settings.getBlockCount())];
+		for (int i = 0; i < blocks.length; i++) {
+			blocks[i] = new MotionBlock();
+		}
+		this.previousDirection = new double[MotionPlannerSettings.AXIS_COUNT];
+		this.startDirection    = new double[MotionPlannerSettings.AXIS_COUNT];
+		this.endDirection      = new double[MotionPlannerSettings.AXIS_COUNT];
+	}
+
+	/**
+	 * Add a linear motion
+	 * @param index the index of the command
+	 * @param start the absolute start coordinate, in millimeters and degrees
+	 * @param end the absolute end coordinate, in millimeters and degrees
+	 * @param rapid <code>true</code> for a rapid motion, performed at the maximum velocity of the axis
+	 * @param feedrate the feedrate in millimeters per second, ignored for rapid motions
+	 */
+	public void addLinearMotion(int index, Tuple6d start, Tuple6d end, boolean rapid, double feedrate){
+		double dx = end.x - start.x;
+		double dy = end.y - start.y;
+		double dz = end.z - start.z;
+		double da = end.a - start.a;
+		double db = end.b - start.b;
+		double dc = end.c - start.c;
+		// Rotary only motions are measured in degrees
+		double length = Math.sqrt(dx*dx + dy*dy + dz*dz);
+		if(length < MINIMUM_LENGTH){
+			length = Math.sqrt(da*da + db*db + dc*dc);
+		}
+		if(length < MINIMUM_LENGTH || (!rapid && feedrate <= 0)){
+			return;
+		}
+		startDirection[0] = dx / length;
+		startDirection[1] = dy / length;
+		startDirection[2] = dz / length;
+		startDirection[3] = da / length;
+		startDirection[4] = db / length;
+		startDirection[5] = dc / length;
+
+		double nominalSpeed = rapid ? Double.POSITIVE_INFINITY : feedrate;
+		double acceleration = Double.POSITIVE_INFINITY;
+		for (int axis = 0; axis < MotionPlannerSettings.AXIS_COUNT; axis++) {
+			double ratio = Math.abs(startDirection[axis]);
+			if(ratio > MINIMUM_LENGTH){
+				nominalSpeed = Math.min(nominalSpeed, getAxisSpeed(axis, rapid) / ratio);
+				acceleration = Math.min(acceleration, getAxisAcceleration(axis) / ratio);
+			}
+		}
+		add(index, length, nominalSpeed, acceleration, startDirection, startDirection);
+	}
+
+	/**
+	 * Add an arc motion
+	 * @param index the index of the command
+	 * @param command the arc command
+	 * @param start the absolute start coordinate, in millimeters and degrees
+	 * @param end the absolute end coordinate, in millimeters and degrees
+	 * @param feedrate the feedrate in millimeters per second
+	 */
+	public void addArcMotion(int index, ArcMotionCommand command, Tuple6d start, Tuple6d end, double feedrate){
+		double length = ArcTessellator.getLength(command, start, end);
+		if(length < MINIMUM_LENGTH || feedrate <= 0){
+			return;
+		}
+		// Rotary axis are not interpolated in arcs
+		Arrays.fill(startDirection, 0);
+		Arrays.fill(endDirection, 0);
+		double radius = ArcTessellator.getTangents(command, start, end, startDirection, endDirection);
+		int[] axes = ArcTessellator.getPlaneAxes(command.getPlane());
+		// Both axes of the plane run at full speed at some point of the arc
+		double nominalSpeed = Math.min(feedrate, Math.min(getAxisSpeed(axes[0], false), getAxisSpeed(axes[1], false)));
+		double acceleration = Math.min(getAxisAcceleration(axes[0]), getAxisAcceleration(axes[1]));
+		double linearRatio = Math.abs(startDirection[axes[2]]);
+		if(linearRatio > MINIMUM_LENGTH){
+			nominalSpeed = Math.min(nominalSpeed, getAxisSpeed(axes[2], false) / linearRatio);
+			acceleration = Math.min(acceleration, getAxisAcceleration(axes[2]) / linearRatio);
+		}
+		// Centripetal acceleration limit
+		nominalSpeed = Math.min(nominalSpeed, Math.sqrt(acceleration * radius));
+		add(index, length, nominalSpeed, acceleration, startDirection, endDirection);
+	}
+
+	/**
+	 * Execute all the planned motions until the machine stops
+	 */
+	public void flush(){
+		while(count > 0){
+			executeFirst();
+		}
+		previousNominalSpeed = 0;
+	}
+
+	/**
+	 * @return the total duration of the executed motions, in seconds
+	 */
+	public double getTotalTime(){
+		return totalTime;
+	}
+
+	/**
+	 * Add a motion to the buffer and replan the entry speeds
+	 * @param index the index of the command
+	 * @param length the length of the motion
+	 * @param nominalSpeed the nominal speed
+	 * @param acceleration the acceleration along the path
+	 * @param start the direction at the start of the motion
+	 * @param end the direction at the end of the motion
+	 */
+	private void add(int index, double length, double nominalSpeed, double acceleration, double[] start, double[] end){
+		if(count == blocks.length){
+			executeFirst();
+		}
+		if(Double.isInfinite(nominalSpeed)){
+			nominalSpeed = MotionPlannerSettings.DEFAULT_MAXIMUM_VELOCITY;
+		}
+		MotionBlock block = blocks[(first + count) % blocks.length];
+		block.index  		= index;
+		block.length 		= length;
+		block.nominalSpeed 	= nominalSpeed;
+		block.acceleration 	= acceleration;
+		block.maximumEntrySpeed = getJunctionSpeed(start, nominalSpeed, acceleration);
+		if(count == 0){
+			// The previous motion is already executed and ended at zero speed
+			block.entrySpeed = 0;
+			block.entryFixed = true;
+		}else{
+			block.entrySpeed = Math.min(block.maximumEntrySpeed, getReachableSpeed(0, block));
+			block.entryFixed = false;
+		}
+		count++;
+
+		System.arraycopy(end, 0, previousDirection, 0, previousDirection.length);
+		previousNominalSpeed = nominalSpeed;
+
+		// Reverse pass : the new motion may allow the previous ones to exit faster
+		double exitSpeed = block.entrySpeed;
+		for (int i = count - 2; i >= 0; i--) {
+			MotionBlock previous = blocks[(first + i) % blocks.length];
+			if(previous.entryFixed){
+				break;
+			}
+			double entrySpeed = Math.min(previous.maximumEntrySpeed, getReachableSpeed(exitSpeed, previous));
+			if(entrySpeed == previous.entrySpeed){
+				// Entry speeds only increase, the motions before are already optimal
+				break;
+			}
+			previous.entrySpeed = entrySpeed;
+			exitSpeed = entrySpeed;
+		}
+	}
+
+	/**
+	 * Returns the maximum speed of the junction between the last motion and a new motion, using the junction deviation
+	 * @param direction the direction at the start of the new motion
+	 * @param nominalSpeed the nominal speed of the new motion
+	 * @param acceleration the acceleration of the new motion
+	 * @return the maximum junction speed
+	 */
+	private double getJunctionSpeed(double[] direction, double nominalSpeed, double acceleration){
+		if(previousNominalSpeed == 0){
+			return 0;
+		}
+		double cosTheta = 0;
+		for (int axis = 0; axis < MotionPlannerSettings.AXIS_COUNT; axis++) {
+			cosTheta -= previousDirection[axis] * direction[axis];
+		}
+		if(cosTheta >= REVERSAL_COSINE){
+			return 0;
+		}
+		double junctionSpeed = Math.min(previousNominalSpeed, nominalSpeed);
+		if(cosTheta > STRAIGHT_COSINE){
+			double junctionAcceleration = settings.getJunctionAcceleration() > 0 ? settings.getJunctionAcceleration() : acceleration;
+			double sinHalfTheta = Math.sqrt(0.5 * (1 - cosTheta));
+			double deviationSpeed = Math.sqrt(junctionAcceleration * settings.getJunctionDeviation() * sinHalfTheta / (1 - sinHalfTheta));
+			if(!Double.isNaN(deviationSpeed)){
+				junctionSpeed = Math.min(junctionSpeed, deviationSpeed);
+			}
+		}
+		return junctionSpeed;
+	}
+
+	/**
+	 * Execute the oldest motion of the buffer. Its exit speed becomes the entry speed of the next motion
+	 */
+	private void executeFirst(){
+		MotionBlock block = blocks[first];
+		double exitSpeed = 0;
+		if(count > 1){
+			MotionBlock next = blocks[(first + 1) % blocks.length];
+			exitSpeed = Math.min(next.entrySpeed, getReachableSpeed(block.entrySpeed, block));
+			next.entrySpeed = exitSpeed;
+			next.entryFixed = true;
+		}
+		double duration = getDuration(block, block.entrySpeed, exitSpeed);
+		if(durations != null){
+			durations[block.index] = duration;
+		}
+		totalTime += duration;
+		first = (first + 1) % blocks.length;
+		count--;
+	}
+
+	/**
+	 * Returns the speed reached at the other end of the given motion when accelerating from the given speed
+	 * @param speed the initial speed
+	 * @param block the motion
+	 * @return the reachable speed
+	 */
+	private double getReachableSpeed(double speed, MotionBlock block){
+		return Math.sqrt(speed * speed + 2 * block.acceleration * block.length);
+	}
+
+	/**
+	 * Returns the duration of a motion with a trapezoidal speed profile
+	 * @param block the motion
+	 * @param entrySpeed the speed at the beginning of the motion
+	 * @param exitSpeed the speed at the end of the motion
+	 * @return the duration in seconds
+	 */
+	static double getDuration(MotionBlock block, double entrySpeed, double exitSpeed){
+		double nominalSpeed = block.nominalSpeed;
+		double acceleration = block.acceleration;
+		if(Double.isInfinite(acceleration)){
+			return block.length / nominalSpeed;
+		}
+		double accelerationLength = (nominalSpeed * nominalSpeed - entrySpeed * entrySpeed) / (2 * acceleration);
+		double decelerationLength = (nominalSpeed * nominalSpeed - exitSpeed * exitSpeed) / (2 * acceleration);
+		if(accelerationLength + decelerationLength <= block.length){
+			return (nominalSpeed - entrySpeed) / acceleration
+					+ (block.length - accelerationLength - decelerationLength) / nominalSpeed
+					+ (nominalSpeed - exitSpeed) / acceleration;
+		}
+		// The nominal speed is not reached
+		double peakSpeed = Math.sqrt((2 * acceleration * block.length + entrySpeed * entrySpeed + exitSpeed * exitSpeed) / 2);
+		return Math.max(0, peakSpeed - entrySpeed) / acceleration + Math.max(0, peakSpeed - exitSpeed) / acceleration;
+	}
+
+	/**
+	 * Returns the maximum speed of an axis
+	 * @param axis the axis
+	 * @param rapid <code>true</code> for a rapid motion
+	 * @return the speed, infinite if the axis is not limited
+	 */
+	private double getAxisSpeed(int axis, boolean rapid){
+		double speed = rapid ? settings.getMaximumVelocity(axis) : settings.getMaximumFeedrate(axis);
+		return speed > 0 ? speed : Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Returns the acceleration of an axis
+	 * @param axis the axis
+	 * @return the acceleration, infinite if the axis is not limited
+	 */
+	private double getAxisAcceleration(int axis){
+		double acceleration = settings.getAcceleration(axis);
+		return acceleration > 0 ? acceleration : Double.POSITIVE_INFINITY;
+	}
+}
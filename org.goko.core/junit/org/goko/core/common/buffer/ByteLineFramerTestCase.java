@@ -0,0 +1,98 @@
+package org.goko.core.common.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.goko.core.common.GkUtils;
+
+public class ByteLineFramerTestCase extends TestCase {
+
+	public void testLinesAcrossWrites() throws Exception {
+		ByteLineFramer framer = new ByteLineFramer(64, (byte)'\n');
+		framer.write(buffer("ok\r\n<Idle,MPos"));
+		assertTrue(framer.hasNextLine());
+		assertEquals("ok\r", framer.nextLineAsCharSequence().toString());
+		assertFalse(framer.hasNextLine());
+		assertNull(framer.nextLine());
+
+		framer.write(buffer(":0.000>\nerror:1\n"));
+		assertEquals("<Idle,MPos:0.000>", framer.nextLineAsCharSequence().toString());
+		assertEquals("error:1", GkUtils.toString(framer.nextLine()));
+		assertFalse(framer.hasNextLine());
+		assertEquals(0, framer.size());
+	}
+
+	public void testWrapAround() throws Exception {
+		ByteLineFramer framer = new ByteLineFramer(10, (byte)'\n');
+		assertEquals(16, framer.capacity());
+		for (int i = 0; i < 100; i++) {
+			String line = "line"+i;
+			ByteBuffer data = buffer(line+"\n");
+			assertEquals(data.remaining(), framer.write(data));
+			CharSequence result = framer.nextLineAsCharSequence();
+			assertEquals(line, result.toString());
+			assertEquals(line.length(), result.length());
+			assertEquals(line.charAt(1), result.charAt(1));
+			assertEquals(line.substring(1, 3), result.subSequence(1, 3).toString());
+		}
+	}
+
+	public void testFullWithoutDelimiter() throws Exception {
+		ByteLineFramer framer = new ByteLineFramer(8, (byte)'\n');
+		ByteBuffer data = buffer("0123456789\n");
+		assertEquals(8, framer.write(data));
+		assertEquals(0, framer.write(data));
+		assertEquals("01234567", framer.nextLineAsCharSequence().toString());
+		assertEquals(3, framer.write(data));
+		assertEquals("89", framer.nextLineAsCharSequence().toString());
+		assertFalse(framer.hasNextLine());
+	}
+
+	public void testClear() throws Exception {
+		ByteLineFramer framer = new ByteLineFramer(32, (byte)'\n');
+		framer.write(buffer("ok\npartial"));
+		framer.clear();
+		assertFalse(framer.hasNextLine());
+		assertEquals(0, framer.size());
+		framer.write(buffer("ok\n"));
+		assertEquals("ok", framer.nextLineAsCharSequence().toString());
+	}
+
+	public void testProducerConsumer() throws Exception {
+		final int lineCount = 20000;
+		final ByteLineFramer framer = new ByteLineFramer(64, (byte)'\n');
+		Thread producer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				for (int i = 0; i < lineCount; i++) {
+					ByteBuffer data = buffer("<Run,MPos:"+i+">\n");
+					while(data.hasRemaining()){
+						if(framer.write(data) == 0){
+							Thread.yield();
+						}
+					}
+				}
+			}
+		});
+		producer.start();
+		List<String> lines = new ArrayList<String>();
+		while(lines.size() < lineCount){
+			if(framer.hasNextLine()){
+				lines.add(framer.nextLineAsCharSequence().toString());
+			}else{
+				Thread.yield();
+			}
+		}
+		producer.join();
+		for (int i = 0; i < lineCount; i++) {
+			assertEquals("<Run,MPos:"+i+">", lines.get(i));
+		}
+	}
+
+	private static ByteBuffer buffer(String str){
+		return ByteBuffer.wrap(GkUtils.toBytes(str));
+	}
+}
@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * 	This file is part of Goko.
+ *
+ *   Goko is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Goko is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Goko.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package org.goko.core.common.buffer.benchmark;
+
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+import org.goko.core.common.GkUtils;
+import org.goko.core.common.buffer.ByteCommandBuffer;
+import org.goko.core.common.buffer.ByteLineFramer;
+
+/**
+ * Compares the framing throughput of the {@link ByteLineFramer} against the {@link ByteCommandBuffer} on a stream
+ * of Grbl and TinyG status reports delivered in serial sized chunks. The result is also expressed as a multiple of
+ * the bandwidth of a 250 kbaud link.
+ * Run as a Java application, optional arguments are the size of the stream in MB and the number of measured iterations.
+ *
+ * @author PsyKo
+ *
+ */
+public class ByteLineFramerBenchmark {
+	/** Default size of the stream in MB */
+	private static final int DEFAULT_STREAM_SIZE = 8;
+	/** Default number of measured iterations */
+	private static final int DEFAULT_ITERATION_COUNT = 5;
+	/** Number of warm up iterations */
+	private static final int WARMUP_ITERATION_COUNT = 3;
+	/** Size of the chunks delivered by the serial port */
+	private static final int CHUNK_SIZE = 32;
+	/** Bytes per second of a 250 kbaud link (10 bits per byte) */
+	private static final double LINK_BYTES_PER_SECOND = 250000 / 10;
+	/** Sample status reports */
+	private static final String[] REPORTS = new String[]{
+		"<Run,MPos:12.500,-3.250,1.000,WPos:2.500,-3.250,0.000>\r\n",
+		"ok\r\n",
+		"{\"sr\":{\"posx\":12.500,\"posy\":-3.250,\"posz\":1.000,\"vel\":1200.00,\"stat\":5}}\n",
+		"{\"r\":{},\"f\":[1,0,12,1234]}\n"
+	};
+
+	public static void main(String[] args) {
+		int streamSize = DEFAULT_STREAM_SIZE;
+		int iterationCount = DEFAULT_ITERATION_COUNT;
+		if(args.length > 0){
+			streamSize = Integer.valueOf(args[0]);
+		}
+		if(args.length > 1){
+			iterationCount = Integer.valueOf(args[1]);
+		}
+		byte[] stream = generateStream(streamSize * 1024 * 1024);
+
+		run("ByteCommandBuffer", stream, iterationCount, new Framer() {
+			@Override
+			public int frame(byte[] stream) {
+				ByteCommandBuffer buffer = new ByteCommandBuffer((byte)'\n');
+				int lineCount = 0;
+				for (int offset = 0; offset < stream.length; offset += CHUNK_SIZE) {
+					buffer.addAll(ByteBuffer.wrap(stream, offset, Math.min(CHUNK_SIZE, stream.length - offset)));
+					while(buffer.hasNext()){
+						lineCount += GkUtils.toString(buffer.unstackNextCommand()).length() > 0 ? 1 : 0;
+					}
+				}
+				return lineCount;
+			}
+		});
+
+		run("ByteLineFramer", stream, iterationCount, new Framer() {
+			@Override
+			public int frame(byte[] stream) {
+				ByteLineFramer framer = new ByteLineFramer(1024, (byte)'\n');
+				ByteBuffer chunk = ByteBuffer.wrap(stream);
+				int lineCount = 0;
+				for (int offset = 0; offset < stream.length; offset += CHUNK_SIZE) {
+					chunk.limit(Math.min(offset + CHUNK_SIZE, stream.length));
+					chunk.position(offset);
+					while(chunk.hasRemaining()){
+						framer.write(chunk);
+						while(framer.hasNextLine()){
+							lineCount += framer.nextLineAsCharSequence().length() > 0 ? 1 : 0;
+						}
+					}
+				}
+				return lineCount;
+			}
+		});
+	}
+
+	/**
+	 * Run the benchmark for the given framer and print the result
+	 * @param name the name of the framer
+	 * @param stream the stream to frame
+	 * @param iterationCount the number of measured iterations
+	 * @param framer the framer
+	 */
+	private static void run(String name, byte[] stream, int iterationCount, Framer framer){
+		for (int i = 0; i < WARMUP_ITERATION_COUNT; i++) {
+			framer.frame(stream);
+		}
+		long lineCount = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < iterationCount; i++) {
+			lineCount += framer.frame(stream);
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		double bytesPerSecond = (double) stream.length * iterationCount / seconds;
+		System.out.println(String.format(Locale.US, "%-20s %10.1f MB/s %12.0f lines/s %10.0fx 250 kbaud",
+				name,
+				bytesPerSecond / (1024 * 1024),
+				lineCount / seconds,
+				bytesPerSecond / LINK_BYTES_PER_SECOND));
+	}
+
+	/**
+	 * Generates a stream of status reports
+	 * @param size the minimum size of the stream in bytes
+	 * @return the stream
+	 */
+	private static byte[] generateStream(int size){
+		StringBuilder builder = new StringBuilder(size + 128);
+		int i = 0;
+		while(builder.length() < size){
+			builder.append(REPORTS[i % REPORTS.length]);
+			i++;
+		}
+		return GkUtils.toBytes(builder.toString());
+	}
+
+	/**
+	 * Framing of a complete stream
+	 */
+	private interface Framer{
+		/**
+		 * Split the given stream into lines
+		 * @param stream the stream
+		 * @return the number of non empty lines
+		 */
+		int frame(byte[] stream);
+	}
+}
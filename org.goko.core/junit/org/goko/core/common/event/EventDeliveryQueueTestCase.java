@@ -0,0 +1,90 @@
+package org.goko.core.common.event;
+
+import junit.framework.TestCase;
+
+public class EventDeliveryQueueTestCase extends TestCase {
+
+	static class Selection implements CoalescableEvent{
+		int index;
+
+		Selection(int index) {
+			this.index = index;
+		}
+	}
+
+	public void testFifoOrder() throws Exception {
+		EventDeliveryQueue queue = new EventDeliveryQueue(4);
+		assertTrue(queue.offer("a"));
+		assertTrue(queue.offer("b"));
+		assertTrue(queue.offer("c"));
+		assertEquals(3, queue.getDepth());
+
+		assertEquals("a", queue.take());
+		assertEquals("b", queue.take());
+		assertEquals("c", queue.take());
+		assertEquals(0, queue.getDepth());
+		assertEquals(3, queue.getMaximumDepth());
+	}
+
+	public void testCoalescing() throws Exception {
+		EventDeliveryQueue queue = new EventDeliveryQueue(4);
+		queue.offer("a");
+		queue.offer(new Selection(1));
+		queue.offer("b");
+		queue.offer(new Selection(2));
+		queue.offer(new Selection(3));
+		assertEquals(3, queue.getDepth());
+		assertEquals(2, queue.getCoalescedEventCount());
+
+		// The latest selection is delivered after the events offered before it
+		assertEquals("a", queue.take());
+		assertEquals("b", queue.take());
+		assertEquals(3, ((Selection) queue.take()).index);
+
+		// Once delivered, a selection is queued again
+		queue.offer(new Selection(4));
+		assertEquals(1, queue.getDepth());
+		assertEquals(4, ((Selection) queue.take()).index);
+	}
+
+	public void testCoalescingKeepsOrder() throws Exception {
+		EventDeliveryQueue queue = new EventDeliveryQueue(4);
+		queue.offer(new Selection(1));
+		queue.offer("a");
+		queue.offer(new Selection(2));
+
+		// The selection is never delivered before an event offered after it
+		assertEquals("a", queue.take());
+		assertEquals(2, ((Selection) queue.take()).index);
+		assertEquals(0, queue.getDepth());
+	}
+
+	public void testDropWhenFull() throws Exception {
+		EventDeliveryQueue queue = new EventDeliveryQueue(2);
+		assertTrue(queue.offer("a"));
+		assertTrue(queue.offer(new Selection(1)));
+		assertFalse(queue.offer("b"));
+		// Coalescing still works when the queue is full
+		assertTrue(queue.offer(new Selection(2)));
+		assertEquals(1, queue.getDroppedEventCount());
+		assertEquals(2, queue.getDepth());
+	}
+
+	public void testTakeWaitsForEvent() throws Exception {
+		final EventDeliveryQueue queue = new EventDeliveryQueue(2);
+		Thread producer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(50);
+				} catch (InterruptedException e) {
+					return;
+				}
+				queue.offer("a");
+			}
+		});
+		producer.start();
+		assertEquals("a", queue.take());
+		producer.join();
+	}
+}
@@ -0,0 +1,106 @@
+package org.goko.core.common.event;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class EventDispatcherTestCase extends TestCase {
+
+	static class FirstEvent implements Event{}
+	static class SecondEvent implements Event{}
+	static class SubFirstEvent extends FirstEvent{}
+
+	public static class RecordingListener{
+		List<Event> received = new ArrayList<Event>();
+
+		@EventListener(FirstEvent.class)
+		public void onFirst(FirstEvent event){
+			received.add(event);
+		}
+
+		@EventListener(SecondEvent.class)
+		public void onSecond(SecondEvent event){
+			received.add(event);
+		}
+	}
+
+	/** Not public, like most of the listeners of the application */
+	static class FailingListener{
+		int calls;
+
+		@EventListener(FirstEvent.class)
+		public void onFirst(FirstEvent event){
+			calls++;
+			throw new IllegalStateException("Expected failure");
+		}
+	}
+
+	public void testDispatchByEventClass() throws Exception {
+		EventDispatcher dispatcher = new EventDispatcher();
+		RecordingListener listener = new RecordingListener();
+		dispatcher.addListener(listener);
+
+		FirstEvent first = new FirstEvent();
+		SecondEvent second = new SecondEvent();
+		dispatcher.notifyListeners(first);
+		dispatcher.notifyListeners(second);
+		// Only the exact event class is dispatched
+		dispatcher.notifyListeners(new SubFirstEvent());
+
+		assertEquals(2, listener.received.size());
+		assertSame(first, listener.received.get(0));
+		assertSame(second, listener.received.get(1));
+	}
+
+	public void testFailingListenerDoesNotStopDispatch() throws Exception {
+		EventDispatcher dispatcher = new EventDispatcher();
+		FailingListener failing = new FailingListener();
+		RecordingListener listener = new RecordingListener();
+		dispatcher.addListener(failing);
+		dispatcher.addListener(listener);
+
+		dispatcher.notifyListeners(new FirstEvent());
+
+		assertEquals(1, failing.calls);
+		assertEquals(1, listener.received.size());
+	}
+
+	public void testRemoveListener() throws Exception {
+		EventDispatcher dispatcher = new EventDispatcher();
+		RecordingListener listener = new RecordingListener();
+		dispatcher.addListener(dispatcher);
+		dispatcher.addListener(listener);
+		dispatcher.addListener(listener);
+
+		dispatcher.notifyListeners(new FirstEvent());
+		assertEquals(2, listener.received.size());
+
+		dispatcher.removeListener(listener);
+		dispatcher.notifyListeners(new FirstEvent());
+		assertEquals(3, listener.received.size());
+
+		dispatcher.removeListener(listener);
+		dispatcher.notifyListeners(new FirstEvent());
+		assertEquals(3, listener.received.size());
+	}
+
+	public void testListenerRemovedDuringDispatch() throws Exception {
+		final EventDispatcher dispatcher = new EventDispatcher();
+		final RecordingListener listener = new RecordingListener();
+		Object remover = new Object(){
+			@EventListener(FirstEvent.class)
+			public void onFirst(FirstEvent event){
+				dispatcher.removeListener(listener);
+			}
+		};
+		dispatcher.addListener(remover);
+		dispatcher.addListener(listener);
+
+		// The dispatch works on the listeners registered when it started
+		dispatcher.notifyListeners(new FirstEvent());
+		assertEquals(1, listener.received.size());
+		dispatcher.notifyListeners(new FirstEvent());
+		assertEquals(1, listener.received.size());
+	}
+}
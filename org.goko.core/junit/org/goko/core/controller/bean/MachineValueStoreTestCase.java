@@ -0,0 +1,154 @@
+package org.goko.core.controller.bean;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.goko.core.common.event.EventListener;
+import org.goko.core.common.exception.GkException;
+import org.goko.core.controller.event.MachineValueBatchUpdateEvent;
+import org.goko.core.controller.event.MachineValueUpdateEvent;
+
+public class MachineValueStoreTestCase extends TestCase {
+
+	public static class RecordingListener{
+		List<MachineValue<?>> updates = new ArrayList<MachineValue<?>>();
+		List<List<MachineValue<?>>> batches = new ArrayList<List<MachineValue<?>>>();
+
+		@EventListener(MachineValueUpdateEvent.class)
+		public synchronized void onUpdate(MachineValueUpdateEvent event){
+			updates.add(event.getTarget());
+		}
+
+		@EventListener(MachineValueBatchUpdateEvent.class)
+		public synchronized void onBatchUpdate(MachineValueBatchUpdateEvent event){
+			batches.add(event.getTarget());
+			notifyAll();
+		}
+
+		synchronized void waitBatch(long timeout) throws InterruptedException{
+			if(batches.isEmpty()){
+				wait(timeout);
+			}
+		}
+	}
+
+	private MachineValueStore createStore() throws GkException{
+		MachineValueStore store = new MachineValueStore();
+		store.setNotificationInterval(0);
+		store.storeValue("x", "X", "The X position", new BigDecimal("0.000"));
+		store.storeValue("state", "State", "The state", "Idle");
+		return store;
+	}
+
+	public void testVersionedValues() throws Exception {
+		MachineValueStore store = createStore();
+		assertEquals(0, store.getVersion("x"));
+
+		store.updateValue("x", new BigDecimal("1.000"));
+		store.updateValue("x", new BigDecimal("1.000"));
+		assertEquals(1, store.getVersion("x"));
+		assertEquals(new BigDecimal("1.000"), store.getBigDecimalValue("x").getValue());
+		assertEquals(0, store.getVersion("state"));
+
+		assertEquals("X", store.getMachineValueDefinition("x").getName());
+		assertNull(store.findMachineValueDefinition("y"));
+		try{
+			store.updateValue("x", "1.000");
+			fail("Type mismatch expected");
+		}catch(GkException e){
+			// Expected
+		}
+		try{
+			store.getValue("y", String.class);
+			fail("Unknown value expected");
+		}catch(GkException e){
+			// Expected
+		}
+	}
+
+	public void testReturnedValuesAreCopies() throws Exception {
+		MachineValueStore store = createStore();
+		store.getValue("state", String.class).setValue("Run");
+		assertEquals("Idle", store.getValue("state", String.class).getValue());
+	}
+
+	public void testSnapshot() throws Exception {
+		MachineValueStore store = createStore();
+		MachineValueSnapshot snapshot = store.getSnapshot();
+		assertSame(snapshot, store.getSnapshot());
+
+		store.updateValue("state", "Run");
+		assertEquals("Idle", snapshot.findValue("state").getValue());
+
+		MachineValueSnapshot newSnapshot = store.getSnapshot();
+		assertNotSame(snapshot, newSnapshot);
+		assertTrue(newSnapshot.getVersion() > snapshot.getVersion());
+		assertEquals("Run", newSnapshot.findValue("state").getValue());
+		assertEquals(2, newSnapshot.getIds().size());
+	}
+
+	public void testImmediateNotification() throws Exception {
+		MachineValueStore store = createStore();
+		RecordingListener listener = new RecordingListener();
+		store.addListener(listener);
+
+		store.updateValue("x", new BigDecimal("1.000"));
+		store.updateValue("x", new BigDecimal("1.000"));
+		store.updateValue("x", new BigDecimal("2.000"));
+
+		assertEquals(2, listener.updates.size());
+		assertEquals(2, listener.batches.size());
+	}
+
+	public void testCoalescedNotification() throws Exception {
+		MachineValueStore store = createStore();
+		store.setNotificationInterval(50);
+		RecordingListener listener = new RecordingListener();
+		store.addListener(listener);
+
+		store.updateValue("x", new BigDecimal("1.000"));
+		store.updateValue("state", "Run");
+		store.updateValue("x", new BigDecimal("2.000"));
+		store.updateValue("x", new BigDecimal("3.000"));
+		assertTrue(listener.batches.isEmpty());
+
+		listener.waitBatch(2000);
+		synchronized (listener) {
+			assertEquals(1, listener.batches.size());
+			List<MachineValue<?>> batch = listener.batches.get(0);
+			assertEquals(2, batch.size());
+			assertEquals("x", batch.get(0).getIdDescriptor());
+			assertEquals(new BigDecimal("3.000"), batch.get(0).getValue());
+			assertEquals("Run", batch.get(1).getValue());
+			assertEquals(2, listener.updates.size());
+		}
+	}
+
+	public void testDispose() throws Exception {
+		MachineValueStore store = createStore();
+		store.setNotificationInterval(60000);
+		RecordingListener listener = new RecordingListener();
+		store.addListener(listener);
+
+		store.updateValue("x", new BigDecimal("1.000"));
+		assertTrue(listener.batches.isEmpty());
+		// Pending updates are sent when the timer is stopped
+		store.dispose();
+		assertEquals(1, listener.batches.size());
+
+		// The store remains usable
+		store.setNotificationInterval(50);
+		store.updateValue("x", new BigDecimal("2.000"));
+		listener.waitBatch(2000);
+		synchronized (listener) {
+			if(listener.batches.size() < 2){
+				listener.wait(2000);
+			}
+			assertEquals(2, listener.batches.size());
+		}
+		store.dispose();
+	}
+}
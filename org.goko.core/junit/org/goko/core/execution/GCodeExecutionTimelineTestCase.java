@@ -0,0 +1,72 @@
+package org.goko.core.execution;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.goko.core.gcode.bean.GCodeCommand;
+import org.goko.core.gcode.bean.GCodeFile;
+import org.goko.core.gcode.bean.IGCodeProvider;
+import org.goko.core.gcode.bean.commands.LinearMotionCommand;
+
+public class GCodeExecutionTimelineTestCase extends TestCase {
+
+	private GCodeFile createProvider(int... ids){
+		List<GCodeCommand> commands = new ArrayList<GCodeCommand>();
+		for (int id : ids) {
+			GCodeCommand command = new LinearMotionCommand();
+			command.setId(id);
+			commands.add(command);
+		}
+		return new GCodeFile(commands);
+	}
+
+	public void testConsecutiveIds() throws Exception {
+		IGCodeProvider provider = createProvider(5, 6, 7, 8);
+		GCodeExecutionTimeline timeline = new GCodeExecutionTimeline(provider);
+		timeline.update(0, new double[]{1, 2, 0, 4});
+
+		assertSame(provider, timeline.getProvider());
+		assertEquals(4, timeline.getCommandCount());
+		assertEquals(2, timeline.getIndex(7));
+		assertEquals(-1, timeline.getIndex(4));
+		assertEquals(-1, timeline.getIndex(9));
+		assertEquals(7.0, timeline.getTotalTime(), 1e-9);
+		assertEquals(3.0, timeline.getElapsedTime(6), 1e-9);
+		assertEquals(4.0, timeline.getRemainingTime(6), 1e-9);
+		assertEquals(0.0, timeline.getRemainingTime(8), 1e-9);
+		assertEquals(7.0, timeline.getRemainingTime(42), 1e-9);
+	}
+
+	public void testUnorderedIds() throws Exception {
+		GCodeExecutionTimeline timeline = new GCodeExecutionTimeline(createProvider(3, 1, 10, 2));
+		timeline.update(0, new double[]{1, 1, 1, 1});
+
+		assertEquals(0, timeline.getIndex(3));
+		assertEquals(2, timeline.getIndex(10));
+		assertEquals(-1, timeline.getIndex(4));
+		assertEquals(2.0, timeline.getRemainingTime(1), 1e-9);
+	}
+
+	public void testIncrementalUpdate() throws Exception {
+		GCodeExecutionTimeline timeline = new GCodeExecutionTimeline(createProvider(0, 1, 2, 3));
+		timeline.update(0, new double[]{1, 2, 3, 4});
+		// Only the durations from the updated index are read
+		timeline.update(2, new double[]{-1, -1, 5, 5});
+
+		assertEquals(3.0, timeline.getElapsedTime(1), 1e-9);
+		assertEquals(8.0, timeline.getElapsedTime(2), 1e-9);
+		assertEquals(13.0, timeline.getTotalTime(), 1e-9);
+		assertEquals(10.0, timeline.getRemainingTime(1), 1e-9);
+	}
+
+	public void testEmptyProvider() throws Exception {
+		GCodeExecutionTimeline timeline = new GCodeExecutionTimeline(createProvider());
+		timeline.update(0, new double[0]);
+
+		assertEquals(0, timeline.getCommandCount());
+		assertEquals(-1, timeline.getIndex(0));
+		assertEquals(0.0, timeline.getTotalTime(), 1e-9);
+	}
+}
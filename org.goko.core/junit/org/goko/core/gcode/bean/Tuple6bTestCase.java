@@ -0,0 +1,52 @@
+package org.goko.core.gcode.bean;
+
+import java.math.BigDecimal;
+
+import junit.framework.TestCase;
+
+import org.goko.core.common.measure.SI;
+import org.goko.core.common.measure.US;
+import org.goko.core.common.measure.quantity.type.NumberQuantity;
+import org.goko.core.math.Tuple6d;
+
+public class Tuple6bTestCase extends TestCase {
+
+	public void testToTuple6dMillimetre() throws Exception {
+		Tuple6b tuple = new Tuple6b(new BigDecimal("12.345"), new BigDecimal("-0.001"), BigDecimal.ZERO, SI.MILLIMETRE);
+		Tuple6d target = tuple.toTuple6d(new Tuple6d());
+		assertEquals(12.345, target.x, 0);
+		assertEquals(-0.001, target.y, 0);
+		assertEquals(0.0, target.z, 0);
+	}
+
+	public void testToTuple6dMetre() throws Exception {
+		// Unit of a zeroed tuple
+		Tuple6b tuple = new Tuple6b().setZero();
+		tuple.setX(NumberQuantity.of(new BigDecimal("0.119"), SI.METRE));
+		tuple.setY(NumberQuantity.of(new BigDecimal("-1.0371"), SI.METRE));
+		tuple.setZ(NumberQuantity.of(new BigDecimal("0.0003"), SI.METRE));
+		Tuple6d target = tuple.toTuple6d(new Tuple6d());
+		assertEquals(119.0, target.x, 0);
+		assertEquals(-1037.1, target.y, 0);
+		assertEquals(0.3, target.z, 0);
+	}
+
+	public void testToTuple6dAfterRelativeUpdate() throws Exception {
+		// The millimetre values are added in metre, the unit of the zeroed tuple
+		Tuple6b tuple = new Tuple6b().setZero();
+		tuple.updateRelative(new Tuple6b(new BigDecimal("119"), new BigDecimal("0.7"), new BigDecimal("-12.3"), SI.MILLIMETRE));
+		tuple.updateRelative(new Tuple6b(new BigDecimal("0.1"), new BigDecimal("0.2"), new BigDecimal("12.3"), SI.MILLIMETRE));
+		Tuple6d target = tuple.toTuple6d(new Tuple6d());
+		assertEquals(119.1, target.x, 0);
+		assertEquals(0.9, target.y, 0);
+		assertEquals(0.0, target.z, 1e-15);
+	}
+
+	public void testToTuple6dInch() throws Exception {
+		Tuple6b tuple = new Tuple6b(new BigDecimal("1.5"), new BigDecimal("0.1"), new BigDecimal("-3"), US.INCH);
+		Tuple6d target = tuple.toTuple6d(new Tuple6d());
+		assertEquals(38.1, target.x, 0);
+		assertEquals(2.54, target.y, 0);
+		assertEquals(-76.2, target.z, 0);
+	}
+}
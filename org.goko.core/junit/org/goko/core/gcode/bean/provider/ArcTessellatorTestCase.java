@@ -0,0 +1,181 @@
+package org.goko.core.gcode.bean.provider;
+
+import java.math.BigDecimal;
+import java.nio.FloatBuffer;
+
+import junit.framework.TestCase;
+
+import org.goko.core.common.measure.SI;
+import org.goko.core.common.measure.SIPrefix;
+import org.goko.core.gcode.bean.Tuple6b;
+import org.goko.core.gcode.bean.commands.ArcMotionCommand;
+import org.goko.core.gcode.bean.commands.EnumGCodeCommandPlane;
+import org.goko.core.math.Tuple6d;
+
+public class ArcTessellatorTestCase extends TestCase {
+	private static final double EPSILON = 1E-4;
+
+	private static Tuple6b tuple(double x, double y, double z){
+		return new Tuple6b(new BigDecimal(x), new BigDecimal(y), new BigDecimal(z), BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, SIPrefix.MILLI(SI.METRE), SI.DEGREE_ANGLE);
+	}
+
+	private static ArcMotionCommand arc(Integer id, boolean clockwise, Tuple6b center){
+		ArcMotionCommand command = new ArcMotionCommand();
+		command.setId(id);
+		command.setClockwise(clockwise);
+		command.setPlane(EnumGCodeCommandPlane.XY_PLANE);
+		command.setAbsoluteCenterCoordinate(center);
+		return command;
+	}
+
+	/**
+	 * Make sure every segment stays within the maximum deviation and the vertices are on the circle
+	 */
+	public void testDeviation(){
+		double[] deviations = new double[]{0.1, 0.01, 0.001};
+		for (double deviation : deviations) {
+			ArcTessellator tessellator = new ArcTessellator(deviation);
+			ArcTessellation tessellation = tessellator.tessellate(false, EnumGCodeCommandPlane.XY_PLANE, new Tuple6d(10,0,0,0,0,0), new Tuple6d(), new Tuple6d(-10,0,0,0,0,0));
+			int count = tessellation.getVerticesCount();
+			double segmentAngle = Math.PI / (count - 1);
+			assertTrue(10 * (1 - Math.cos(segmentAngle / 2)) <= deviation + EPSILON);
+			for (int i = 0; i < count; i++) {
+				double radius = Math.hypot(tessellation.getCoordinate(i, 0), tessellation.getCoordinate(i, 1));
+				assertEquals(10, radius, EPSILON);
+				// Counter clockwise from (10,0) to (-10,0) goes through positive Y
+				assertTrue(tessellation.getCoordinate(i, 1) >= -EPSILON);
+			}
+		}
+	}
+
+	/**
+	 * Make sure the first and last vertices are exactly the start and end coordinates
+	 */
+	public void testExactEndpoints(){
+		ArcTessellator tessellator = new ArcTessellator();
+		Tuple6d start = new Tuple6d(1.23456, 2.5, -3.25, 0, 0, 0);
+		Tuple6d end   = new Tuple6d(3.5, 0.23456, -1.5, 0, 0, 0);
+		ArcTessellation tessellation = tessellator.tessellate(true, EnumGCodeCommandPlane.XY_PLANE, start, new Tuple6d(1.23456, 0.23456, 0, 0, 0, 0), end);
+		int last = tessellation.getVerticesCount() - 1;
+		assertEquals((float) start.x, tessellation.getCoordinate(0, 0));
+		assertEquals((float) start.y, tessellation.getCoordinate(0, 1));
+		assertEquals((float) start.z, tessellation.getCoordinate(0, 2));
+		assertEquals((float) end.x, tessellation.getCoordinate(last, 0));
+		assertEquals((float) end.y, tessellation.getCoordinate(last, 1));
+		assertEquals((float) end.z, tessellation.getCoordinate(last, 2));
+	}
+
+	/**
+	 * Make sure G18 and G19 arcs are built in their own plane
+	 */
+	public void testPlanes(){
+		ArcTessellator tessellator = new ArcTessellator();
+		ArcTessellation xz = tessellator.tessellate(false, EnumGCodeCommandPlane.XZ_PLANE, new Tuple6d(5,2,0,0,0,0), new Tuple6d(0,2,0,0,0,0), new Tuple6d(-5,2,0,0,0,0));
+		for (int i = 0; i < xz.getVerticesCount(); i++) {
+			assertEquals(2, xz.getCoordinate(i, 1), EPSILON);
+			assertEquals(5, Math.hypot(xz.getCoordinate(i, 0), xz.getCoordinate(i, 2)), EPSILON);
+		}
+		ArcTessellation yz = tessellator.tessellate(false, EnumGCodeCommandPlane.YZ_PLANE, new Tuple6d(3,5,0,0,0,0), new Tuple6d(3,0,0,0,0,0), new Tuple6d(3,-5,0,0,0,0));
+		for (int i = 0; i < yz.getVerticesCount(); i++) {
+			assertEquals(3, yz.getCoordinate(i, 0), EPSILON);
+			assertEquals(5, Math.hypot(yz.getCoordinate(i, 1), yz.getCoordinate(i, 2)), EPSILON);
+		}
+		// Counter clockwise in the ZX plane goes from +Z to +X
+		ArcTessellation quarter = tessellator.tessellate(false, EnumGCodeCommandPlane.XZ_PLANE, new Tuple6d(0,0,5,0,0,0), new Tuple6d(), new Tuple6d(5,0,0,0,0,0));
+		assertEquals(Math.PI / 2, quarter.getAngle(), EPSILON);
+	}
+
+	/**
+	 * Make sure an arc ending on its start point is a full circle, in both directions
+	 */
+	public void testFullCircle(){
+		ArcTessellator tessellator = new ArcTessellator();
+		Tuple6d start = new Tuple6d(10,0,0,0,0,0);
+		ArcTessellation ccw = tessellator.tessellate(false, EnumGCodeCommandPlane.XY_PLANE, start, new Tuple6d(), start);
+		ArcTessellation cw  = tessellator.tessellate(true, EnumGCodeCommandPlane.XY_PLANE, start, new Tuple6d(), start);
+		assertEquals(2 * Math.PI, ccw.getAngle(), EPSILON);
+		assertEquals(-2 * Math.PI, cw.getAngle(), EPSILON);
+		assertEquals(20 * Math.PI, ccw.getLength(), EPSILON);
+		assertTrue(ccw.getCoordinate(1, 1) > 0);
+		assertTrue(cw.getCoordinate(1, 1) < 0);
+	}
+
+	/**
+	 * Make sure the length of an helix includes its linear motion
+	 */
+	public void testHelixLength(){
+		ArcTessellator tessellator = new ArcTessellator();
+		Tuple6d start = new Tuple6d(10,0,0,0,0,0);
+		ArcTessellation helix = tessellator.tessellate(false, EnumGCodeCommandPlane.XY_PLANE, start, new Tuple6d(), new Tuple6d(10,0,-5,0,0,0));
+		assertEquals(Math.hypot(20 * Math.PI, 5), helix.getLength(), EPSILON);
+		int last = helix.getVerticesCount() - 1;
+		assertEquals(-2.5, helix.getCoordinate(last / 2, 2), 0.1);
+	}
+
+	/**
+	 * Make sure the vertices are written in the buffer, optionally skipping the first one
+	 */
+	public void testWrite(){
+		ArcTessellation tessellation = new ArcTessellator().tessellate(false, EnumGCodeCommandPlane.XY_PLANE, new Tuple6d(10,0,0,0,0,0), new Tuple6d(), new Tuple6d(0,10,0,0,0,0));
+		int count = tessellation.getVerticesCount();
+		FloatBuffer buffer = FloatBuffer.allocate(4 * (count + 1));
+		assertEquals(count - 1, tessellation.write(buffer, 1, 1));
+		assertEquals(tessellation.getCoordinate(1, 0), buffer.get(4));
+		assertEquals(1f, buffer.get(7));
+		assertEquals(10f, buffer.get(4 * (count - 1) + 1));
+	}
+
+	/**
+	 * Make sure tessellations are reused by id, and rebuilt when the deviation changes
+	 */
+	public void testCache(){
+		ArcTessellationCache cache = new ArcTessellationCache();
+		ArcMotionCommand command = arc(4, false, tuple(0, 0, 0));
+		Tuple6d start = new Tuple6d(10,0,0,0,0,0);
+		Tuple6d end   = new Tuple6d(-10,0,0,0,0,0);
+		ArcTessellator coarse = new ArcTessellator(0.1);
+		ArcTessellation first = cache.getTessellation(coarse, command, start, end);
+		assertSame(first, cache.getTessellation(coarse, command, start, end));
+		assertSame(first, cache.findTessellation(4));
+		assertEquals(1, cache.size());
+
+		ArcTessellation fine = cache.getTessellation(new ArcTessellator(0.001), command, start, end);
+		assertNotSame(first, fine);
+		assertTrue(fine.getVerticesCount() > first.getVerticesCount());
+		assertSame(fine, cache.findTessellation(4));
+
+		cache.invalidate(4);
+		assertNull(cache.findTessellation(4));
+		// Commands without id are not cached
+		cache.getTessellation(coarse, arc(null, false, tuple(0, 0, 0)), start, end);
+		assertEquals(0, cache.size());
+	}
+
+	/**
+	 * Make sure the vertices count computed without tessellating matches the tessellation
+	 */
+	public void testVerticesCount(){
+		ArcTessellator tessellator = new ArcTessellator(0.005);
+		Tuple6d[][] arcs = new Tuple6d[][]{
+				// Half circle, quarter circle, full circle, helix and tiny arc
+				{new Tuple6d(10,0,0,0,0,0), new Tuple6d(-10,0,0,0,0,0)},
+				{new Tuple6d(10,0,0,0,0,0), new Tuple6d(0,10,0,0,0,0)},
+				{new Tuple6d(10,0,0,0,0,0), new Tuple6d(10,0,0,0,0,0)},
+				{new Tuple6d(10,0,0,0,0,0), new Tuple6d(0,-10,5,0,0,0)},
+				{new Tuple6d(0.001,0,0,0,0,0), new Tuple6d(0,0.001,0,0,0,0)}};
+		for (boolean clockwise : new boolean[]{true, false}) {
+			ArcMotionCommand command = arc(1, clockwise, tuple(0, 0, 0));
+			for (Tuple6d[] arc : arcs) {
+				assertEquals(tessellator.tessellate(command, arc[0], arc[1]).getVerticesCount(), tessellator.getVerticesCount(command, arc[0], arc[1]));
+			}
+		}
+
+		ArcTessellationCache cache = new ArcTessellationCache();
+		ArcMotionCommand command = arc(4, false, tuple(0, 0, 0));
+		int count = cache.getVerticesCount(tessellator, command, arcs[0][0], arcs[0][1]);
+		// Counting does not tessellate
+		assertEquals(0, cache.size());
+		assertEquals(count, cache.getTessellation(tessellator, command, arcs[0][0], arcs[0][1]).getVerticesCount());
+		assertEquals(count, cache.getVerticesCount(tessellator, command, arcs[0][0], arcs[0][1]));
+	}
+}
@@ -17,6 +17,7 @@
 package org.goko.core.common;
 
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.text.ParseException;
@@ -53,6 +54,52 @@ public class GkUtils {
 		return lst;
 	}
 
+	/**
+	 * Returns the bytes between the position and the limit of the given buffer as a list. The buffer is left untouched
+	 * @param data the buffer
+	 * @return a list of {@link Byte}
+	 */
+	public static List<Byte> toBytesList(ByteBuffer data){
+		List<Byte> lst = new ArrayList<Byte>(data.remaining());
+		for(int i = data.position(); i < data.limit(); i++) {
+			lst.add(data.get(i));
+		}
+		return lst;
+	}
+
+	/**
+	 * Returns the bytes of the given strings
+	 * @param strings the strings
+	 * @return an array of byte
+	 */
+	public static byte[] toBytes(String... strings){
+		if(strings == null){
+			return new byte[0];
+		}
+		if(strings.length == 1){
+			return strings[0].getBytes();
+		}
+		StringBuilder builder = new StringBuilder();
+		for (String str : strings) {
+			builder.append(str);
+		}
+		return builder.toString().getBytes();
+	}
+
+	/**
+	 * Returns the content of the given list as an array of byte
+	 * @param data the list
+	 * @return an array of byte
+	 */
+	public static byte[] toBytes(List<Byte> data){
+		byte[] result = new byte[data.size()];
+		int index = 0;
+		for (Byte b : data) {
+			result[index++] = b;
+		}
+		return result;
+	}
+
 	public static List<Byte> addBytesArray(List<Byte> lst, byte[] arr){
 		if(arr != null){
 			for(int i = 0; i < arr.length; i++) {
@@ -89,6 +136,19 @@ public class GkUtils {
 		return buffer.toString();
 	}
 
+	/**
+	 * Returns the bytes between the position and the limit of the given buffer as a String. The buffer is left untouched
+	 * @param data the buffer
+	 * @return a String
+	 */
+	public static String toString(ByteBuffer data){
+		StringBuilder builder = new StringBuilder(data.remaining());
+		for(int i = data.position(); i < data.limit(); i++) {
+			builder.append((char)data.get(i));
+		}
+		return builder.toString();
+	}
+
 	public static String toStringReplaceCRLF(List<Byte> data){
 		String str = GkUtils.toString(data);
 		str = StringUtils.replace(str, ""+'\n', "\\n");
@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * 	This file is part of Goko.
+ *
+ *   Goko is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Goko is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Goko.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package org.goko.core.common.buffer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Read only {@link CharSequence} view on the bytes between the position and the limit of a {@link ByteBuffer}.
+ * Each byte is mapped to one char (ISO-8859-1), which is what the controllers send.
+ * The view reflects the current content of the buffer, it does not copy it.
+ *
+ * @author PsyKo
+ *
+ */
+public class ByteCharSequence implements CharSequence {
+	/** The underlying buffer */
+	private final ByteBuffer buffer;
+
+	/**
+	 * Constructor
+	 * @param buffer the underlying buffer
+	 */
+	public ByteCharSequence(ByteBuffer buffer) {
+		this.buffer = buffer;
+	}
+
+	/** (inheritDoc)
+	 * @see java.lang.CharSequence#length()
+	 */
+	@Override
+	public int length() {
+		return buffer.remaining();
+	}
+
+	/** (inheritDoc)
+	 * @see java.lang.CharSequence#charAt(int)
+	 */
+	@Override
+	public char charAt(int index) {
+		if(index < 0 || index >= buffer.remaining()){
+			throw new IndexOutOfBoundsException(String.valueOf(index));
+		}
+		return (char)(buffer.get(buffer.position() + index) & 0xFF);
+	}
+
+	/** (inheritDoc)
+	 * @see java.lang.CharSequence#subSequence(int, int)
+	 */
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		if(start < 0 || end > buffer.remaining() || start > end){
+			throw new IndexOutOfBoundsException(start+", "+end);
+		}
+		ByteBuffer slice = buffer.duplicate();
+		slice.position(buffer.position() + start);
+		slice.limit(buffer.position() + end);
+		return new ByteCharSequence(slice);
+	}
+
+	/** (inheritDoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		char[] chars = new char[buffer.remaining()];
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = (char)(buffer.get(buffer.position() + i) & 0xFF);
+		}
+		return new String(chars);
+	}
+}
@@ -16,6 +16,7 @@
  *******************************************************************************/
 package org.goko.core.common.buffer;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -47,6 +48,22 @@ public class ByteCommandBuffer {
 		}
 	}
 
+	/**
+	 * Add the bytes between the position and the limit of the given buffer. The buffer is left untouched
+	 * @param data the buffer
+	 */
+	public void addAll(ByteBuffer data){
+		synchronized (currentCommand) {
+			for (int i = data.position(); i < data.limit(); i++) {
+				byte b = data.get(i);
+				this.currentCommand.add(b);
+				if(b == commandDelimiter){
+					this.stackCurrentCommand();
+				}
+			}
+		}
+	}
+
 	public boolean hasNext(){
 		synchronized (stackedCommands) {
 			return !stackedCommands.isEmpty();
@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * 	This file is part of Goko.
+ *
+ *   Goko is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Goko is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Goko.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package org.goko.core.common.buffer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Single producer / single consumer byte ring buffer splitting the incoming data into lines.
+ * <p>
+ * The producer thread pushes raw data with {@link #write(ByteBuffer)}, the consumer thread reads complete lines
+ * with {@link #hasNextLine()} and {@link #nextLine()}. No lock is taken and no object is allocated once the buffer is created :
+ * the returned lines are views on a buffer owned by the framer, only valid until the next call to {@link #nextLine()}.
+ * </p>
+ * <p>
+ * A line longer than the capacity of the framer is returned in pieces of the size of the capacity.
+ * </p>
+ * @author PsyKo
+ *
+ */
+public class ByteLineFramer {
+	/** The ring storage, its length is a power of two */
+	private final byte[] ring;
+	/** Mask used to wrap an absolute position into the ring */
+	private final int mask;
+	/** The line delimiter */
+	private final byte delimiter;
+	/** Absolute position of the next byte to read. Written by the consumer only */
+	private volatile long head;
+	/** Absolute position of the next byte to write. Written by the producer only */
+	private volatile long tail;
+	/** Position up to which the consumer already looked for a delimiter */
+	private long scanPosition;
+	/** End of the next available line (exclusive), or -1 if not yet known */
+	private long lineEnd;
+	/** Position of the head once the next available line is consumed */
+	private long nextHead;
+	/** Reused buffer holding the last returned line */
+	private final ByteBuffer line;
+	/** Reused char sequence view on the last returned line */
+	private final ByteCharSequence lineSequence;
+
+	/**
+	 * Constructor
+	 * @param capacity the minimum capacity in bytes, rounded up to the next power of two
+	 * @param delimiter the line delimiter
+	 */
+	public ByteLineFramer(int capacity, byte delimiter) {
+		if(capacity <= 0){
+			throw new IllegalArgumentException("Capacity must be strictly positive");
+		}
+		int size = Integer.highestOneBit(capacity);
+		if(size < capacity){
+			size = size << 1;
+		}
+		this.ring 		  = new byte[size];
+		this.mask 		  = size - 1;
+		this.delimiter 	  = delimiter;
+		this.lineEnd 	  = -1;
+		this.line 		  = ByteBuffer.allocate(size);
+		this.lineSequence = new ByteCharSequence(line);
+	}
+
+	/**
+	 * Copy as many bytes as possible from the given buffer into the framer. The position of the given buffer
+	 * is moved by the number of copied bytes. To be called by the producer thread only.
+	 * @param src the source buffer
+	 * @return the number of copied bytes, 0 if the framer is full
+	 */
+	public int write(ByteBuffer src){
+		long currentTail = tail;
+		int free  = ring.length - (int)(currentTail - head);
+		int count = Math.min(free, src.remaining());
+		if(count > 0){
+			int offset = (int)(currentTail & mask);
+			int firstPart = Math.min(count, ring.length - offset);
+			src.get(ring, offset, firstPart);
+			if(firstPart < count){
+				src.get(ring, 0, count - firstPart);
+			}
+			tail = currentTail + count;
+		}
+		return count;
+	}
+
+	/**
+	 * Indicates if a complete line is available. To be called by the consumer thread only.
+	 * @return <code>true</code> if a line is available, <code>false</code> otherwise
+	 */
+	public boolean hasNextLine(){
+		if(lineEnd >= 0){
+			return true;
+		}
+		long currentHead = head;
+		long currentTail = tail;
+		for(long position = Math.max(scanPosition, currentHead); position < currentTail; position++){
+			if(ring[(int)(position & mask)] == delimiter){
+				lineEnd  = position;
+				nextHead = position + 1;
+				scanPosition = nextHead;
+				return true;
+			}
+		}
+		scanPosition = currentTail;
+		if(currentTail - currentHead == ring.length){
+			// Full without delimiter : release the content as it is, otherwise nothing could ever be written again
+			lineEnd  = currentTail;
+			nextHead = currentTail;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the next line, without its delimiter. The returned buffer is owned by the framer and is only valid until
+	 * the next call to this method. To be called by the consumer thread only.
+	 * @return the bytes of the line between the position and the limit of the returned buffer, or <code>null</code> if no line is available
+	 */
+	public ByteBuffer nextLine(){
+		if(!hasNextLine()){
+			return null;
+		}
+		long currentHead = head;
+		int length = (int)(lineEnd - currentHead);
+		int offset = (int)(currentHead & mask);
+		int firstPart = Math.min(length, ring.length - offset);
+		line.clear();
+		line.put(ring, offset, firstPart);
+		if(firstPart < length){
+			line.put(ring, 0, length - firstPart);
+		}
+		line.flip();
+		head = nextHead;
+		lineEnd = -1;
+		return line;
+	}
+
+	/**
+	 * Returns the next line as a char sequence, without its delimiter. The returned sequence is owned by the framer
+	 * and is only valid until the next call to {@link #nextLine()} or {@link #nextLineAsCharSequence()}.
+	 * To be called by the consumer thread only.
+	 * @return the line or <code>null</code> if no line is available
+	 */
+	public CharSequence nextLineAsCharSequence(){
+		if(nextLine() == null){
+			return null;
+		}
+		return lineSequence;
+	}
+
+	/**
+	 * Drops all the pending data. To be called by the consumer thread while the producer is idle.
+	 */
+	public void clear(){
+		long currentTail = tail;
+		scanPosition = currentTail;
+		lineEnd = -1;
+		head = currentTail;
+	}
+
+	/**
+	 * @return the number of bytes waiting to be read
+	 */
+	public int size(){
+		return (int)(tail - head);
+	}
+
+	/**
+	 * @return the capacity in bytes
+	 */
+	public int capacity(){
+		return ring.length;
+	}
+}
@@ -0,0 +1,30 @@
+/*******************************************************************************
+ * 	This file is part of Goko.
+ *
+ *   Goko is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Goko is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Goko.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package org.goko.core.common.event;
+
+/**
+ * Marker for the events superseded by any later event of the same class.
+ * <p>
+ * While such an event is waiting for delivery in the {@link GokoEventBus}, posting a new event of the same class replaces it
+ * instead of queuing another one.
+ * </p>
+ * @author PsyKo
+ *
+ */
+public interface CoalescableEvent {
+
+}
@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * 	This file is part of Goko.
+ *
+ *   Goko is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Goko is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Goko.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package org.goko.core.common.event;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Bounded FIFO queue of events waiting for delivery.
+ * <p>
+ * The events implementing {@link CoalescableEvent} are coalesced : a pending event is replaced by the newer event of the
+ * same class, which moves to the tail of the queue : the events are always delivered in the order of their last offer. When the
+ * queue is full, the offered event is dropped.
+ * </p>
+ * @author PsyKo
+ *
+ */
+public class EventDeliveryQueue {
+	/** The maximum number of pending events */
+	private final int capacity;
+	/** The pending events */
+	private final ArrayDeque<PendingEvent> queue;
+	/** The pending coalescable events by class */
+	private final Map<Class<?>, PendingEvent> pendingCoalescableEvents;
+	/** The number of dropped events */
+	private long droppedEventCount;
+	/** The number of events replaced by a newer one */
+	private long coalescedEventCount;
+	/** The highest number of pending events */
+	private int maximumDepth;
+
+	/**
+	 * Constructor
+	 * @param capacity the maximum number of pending events
+	 */
+	public EventDeliveryQueue(int capacity) {
+		if(capacity <= 0){
+			throw new IllegalArgumentException("Capacity must be positive");
+		}
+		this.capacity = capacity;
+		this.queue = new ArrayDeque<PendingEvent>(Math.min(capacity, 256));
+		this.pendingCoalescableEvents = new HashMap<Class<?>, PendingEvent>();
+	}
+
+	/**
+	 * Offer an event for delivery
+	 * @param event the event
+	 * @return <code>true</code> if the event is queued or replaced a pending event, <code>false</code> if it was dropped
+	 */
+	public synchronized boolean offer(Object event){
+		PendingEvent pendingEvent = null;
+		if(event instanceof CoalescableEvent){
+			pendingEvent = pendingCoalescableEvents.get(event.getClass());
+			if(pendingEvent != null){
+				// The replaced event is usually among the last ones
+				queue.removeLastOccurrence(pendingEvent);
+				pendingEvent.event = event;
+				queue.offer(pendingEvent);
+				coalescedEventCount++;
+				return true;
+			}
+		}
+		if(queue.size() >= capacity){
+			droppedEventCount++;
+			return false;
+		}
+		pendingEvent = new PendingEvent(event);
+		queue.offer(pendingEvent);
+		if(event instanceof CoalescableEvent){
+			pendingCoalescableEvents.put(event.getClass(), pendingEvent);
+		}
+		maximumDepth = Math.max(maximumDepth, queue.size());
+		notifyAll();
+		return true;
+	}
+
+	/**
+	 * Wait for the next event and remove it from the queue
+	 * @return the next event
+	 * @throws InterruptedException InterruptedException
+	 */
+	public synchronized Object take() throws InterruptedException{
+		while(queue.isEmpty()){
+			wait();
+		}
+		PendingEvent pendingEvent = queue.poll();
+		if(pendingEvent.event instanceof CoalescableEvent){
+			pendingCoalescableEvents.remove(pendingEvent.event.getClass());
+		}
+		return pendingEvent.event;
+	}
+
+	/**
+	 * @return the number of pending events
+	 */
+	public synchronized int getDepth(){
+		return queue.size();
+	}
+
+	/**
+	 * @return the highest number of pending events
+	 */
+	public synchronized int getMaximumDepth(){
+		return maximumDepth;
+	}
+
+	/**
+	 * @return the capacity
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return the number of events dropped because the queue was full
+	 */
+	public synchronized long getDroppedEventCount(){
+		return droppedEventCount;
+	}
+
+	/**
+	 * @return the number of events replaced by a newer event of the same class
+	 */
+	public synchronized long getCoalescedEventCount(){
+		return coalescedEventCount;
+	}
+
+	/**
+	 * Holder of a pending event, found by identity when it is replaced
+	 */
+	private static class PendingEvent{
+		/** The event */
+		private Object event;
+
+		/**
+		 * Constructor
+		 * @param event the event
+		 */
+		PendingEvent(Object event) {
+			this.event = event;
+		}
+	}
+}
@@ -16,35 +16,56 @@
  *******************************************************************************/
 package org.goko.core.common.event;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
-import org.apache.commons.collections.CollectionUtils;
+import org.goko.core.common.exception.GkTechnicalException;
 import org.goko.core.log.GkLog;
 
 /**
  * An event dispatcher using annotation
- *
+ * <p>
+ * The annotated methods of a listener class are resolved once, into a dispatch table giving the method handles for
+ * each event class. The listeners are stored in a copy-on-write array, so notifying them requires no lock and is not
+ * disturbed by listeners added or removed in the meantime.
+ * </p>
  * @author PsyKo
  *
  */
 public class EventDispatcher {
 	private static final GkLog LOG = GkLog.getLogger(EventDispatcher.class);
-
+	/** Empty listener array */
+	private static final Object[] NO_LISTENER = new Object[0];
+	/** Empty handler array */
+	private static final MethodHandle[] NO_HANDLER = new MethodHandle[0];
+	/** Type of the handlers once adapted : (listener, event) without return */
+	private static final MethodType HANDLER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+	/** The dispatch table of each listener class */
+	private static final ClassValue<Map<Class<?>, MethodHandle[]>> DISPATCH_TABLES = new ClassValue<Map<Class<?>, MethodHandle[]>>() {
+		@Override
+		protected Map<Class<?>, MethodHandle[]> computeValue(Class<?> type) {
+			return createDispatchTable(type);
+		}
+	};
 
 	/**
-	 * The list of listener
+	 * The listeners, replaced on every modification
 	 */
-	private List<Object> listenerList;
+	private volatile Object[] listeners;
 
 	/**
 	 * Constructor
 	 */
 	public EventDispatcher() {
-		listenerList = Collections.synchronizedList(new ArrayList<Object>());
+		listeners = NO_LISTENER;
 	}
 	/**
 	 * Add a listener
@@ -55,7 +76,11 @@ public class EventDispatcher {
 			if(listener == this){
 				LOG.error("Cannot add myself as listener");
 			}else{
-				this.listenerList.add(listener);
+				synchronized (this) {
+					Object[] newListeners = Arrays.copyOf(listeners, listeners.length + 1);
+					newListeners[listeners.length] = listener;
+					listeners = newListeners;
+				}
 			}
 		}
 	}
@@ -66,7 +91,18 @@ public class EventDispatcher {
 	 */
 	public void removeListener(Object listener){
 		if(listener != null){
-			this.listenerList.remove(listener);
+			synchronized (this) {
+				Object[] currentListeners = listeners;
+				for (int i = 0; i < currentListeners.length; i++) {
+					if(listener.equals(currentListeners[i])){
+						Object[] newListeners = new Object[currentListeners.length - 1];
+						System.arraycopy(currentListeners, 0, newListeners, 0, i);
+						System.arraycopy(currentListeners, i + 1, newListeners, i, currentListeners.length - i - 1);
+						listeners = newListeners;
+						return;
+					}
+				}
+			}
 		}
 	}
 
@@ -75,58 +111,67 @@ public class EventDispatcher {
 	 * @param event
 	 */
 	public <T extends Event> void notifyListeners(T event){
-		for(Object obj : listenerList){
-			notifyListener(obj, event);
+		Class<?> eventClass = event.getClass();
+		for(Object obj : listeners){
+			notifyListener(obj, eventClass, event);
 		}
 	}
 
 	/**
 	 * Notify the given listener
 	 * @param obj the listener to notify
+	 * @param eventClass the class of the event
+	 * @param event the event
 	 */
-	private <T extends Event> void notifyListener(Object obj, T event) {
-		List<Method> methods = getListenerMethods(obj, event);
-
-		if(CollectionUtils.isNotEmpty(methods)){
-			for(Method method : methods){
+	private void notifyListener(Object obj, Class<?> eventClass, Event event) {
+		MethodHandle[] handlers = DISPATCH_TABLES.get(obj.getClass()).get(eventClass);
+		if(handlers != null){
+			for(MethodHandle handler : handlers){
 				try {
-					method.invoke(obj, event);
-				} catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
+					handler.invokeExact(obj, (Object) event);
+				} catch (Exception e) {
 					LOG.error(e);
+				} catch (Throwable t) {
+					LOG.error(new GkTechnicalException(t));
 				}
 			}
 		}
-
 	}
+
 	/**
-	 * Return the methods capable of handling the event
-	 * @param obj the target object
-	 * @param event the event
-	 * @return a list of Method
+	 * Resolve the methods of the given listener class annotated with {@link EventListener}, grouped by event class
+	 * @param type the listener class
+	 * @return the method handles for each event class
 	 */
-	private <T extends Event> List<Method> getListenerMethods(Object obj, T event) {
-		Method[] methodsArray = obj.getClass().getMethods();
-		List<Method> selected = new ArrayList<Method>();
-
-		for(Method method : methodsArray){
-			if(canHandleEvent(method, event)){
-				selected.add(method);
+	private static Map<Class<?>, MethodHandle[]> createDispatchTable(Class<?> type) {
+		Map<Class<?>, List<MethodHandle>> handlers = new HashMap<Class<?>, List<MethodHandle>>();
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
+		for(Method method : type.getMethods()){
+			EventListener listenerAnnotation = method.getAnnotation(EventListener.class);
+			if(listenerAnnotation == null || method.getParameterTypes().length != 1){
+				continue;
+			}
+			try {
+				// Listener classes are not always public
+				method.setAccessible(true);
+				MethodHandle handle = lookup.unreflect(method).asType(HANDLER_TYPE);
+				List<MethodHandle> eventHandlers = handlers.get(listenerAnnotation.value());
+				if(eventHandlers == null){
+					eventHandlers = new ArrayList<MethodHandle>();
+					handlers.put(listenerAnnotation.value(), eventHandlers);
+				}
+				eventHandlers.add(handle);
+			} catch (IllegalAccessException | SecurityException e) {
+				LOG.error(e);
 			}
 		}
-		return selected;
-	}
-
-	/**
-	 * Check if the given method is registered as a listener for this event
-	 * @param method the method
-	 * @param event the event
-	 * @return a boolean value
-	 */
-	private <T extends Event> boolean canHandleEvent(Method method, T event){
-		EventListener listenerAnnotation = method.getAnnotation(EventListener.class);
-		if(listenerAnnotation != null){
-			return event.getClass() == listenerAnnotation.value();
+		if(handlers.isEmpty()){
+			return Collections.emptyMap();
+		}
+		Map<Class<?>, MethodHandle[]> dispatchTable = new HashMap<Class<?>, MethodHandle[]>();
+		for(Map.Entry<Class<?>, List<MethodHandle>> entry : handlers.entrySet()){
+			dispatchTable.put(entry.getKey(), entry.getValue().toArray(NO_HANDLER));
 		}
-		return false;
+		return dispatchTable;
 	}
 }
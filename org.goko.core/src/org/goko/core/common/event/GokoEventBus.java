@@ -16,35 +16,108 @@
  *******************************************************************************/
 package org.goko.core.common.event;
 
-import java.util.concurrent.Executors;
+import org.goko.core.log.GkLog;
 
-import com.google.common.eventbus.AsyncEventBus;
+import com.google.common.eventbus.EventBus;
 
 /**
  * Event bus singleton
- *
+ * <p>
+ * Posted events are queued in a bounded {@link EventDeliveryQueue} and delivered by a single thread, so every subscriber
+ * receives them in the order they were posted. The {@link CoalescableEvent} waiting for delivery are replaced by the
+ * newer ones, and events posted while the queue is full are dropped.
+ * </p>
  * @author PsyKo
  *
  */
-public class GokoEventBus extends AsyncEventBus{
+public class GokoEventBus extends EventBus{
+	private static final GkLog LOG = GkLog.getLogger(GokoEventBus.class);
+	/** The maximum number of events waiting for delivery */
+	private static final int QUEUE_CAPACITY = 1024;
 	/** Instance of the eventbus */
 	private static GokoEventBus instance;
+	/** The events waiting for delivery */
+	private final EventDeliveryQueue deliveryQueue;
 
 	/**
 	 * Private contructor
 	 */
 	private GokoEventBus(){
-		super(Executors.newCachedThreadPool());
+		super("Goko");
+		deliveryQueue = new EventDeliveryQueue(QUEUE_CAPACITY);
+		Thread deliveryThread = new Thread(new EventDelivery(), "Goko event delivery");
+		deliveryThread.setDaemon(true);
+		deliveryThread.start();
 	}
 
 	/**
 	 * Singleton like access
 	 * @return {@link GokoEventBus}
 	 */
-	public static GokoEventBus getInstance(){
+	public static synchronized GokoEventBus getInstance(){
 		if(instance == null){
 			instance=  new GokoEventBus();
 		}
 		return instance;
 	}
+
+	/**
+	 * Queue the event for delivery to the registered subscribers
+	 * @see com.google.common.eventbus.EventBus#post(java.lang.Object)
+	 */
+	@Override
+	public void post(Object event) {
+		if(!deliveryQueue.offer(event)){
+			LOG.warn("Event queue is full, dropping event "+event.getClass().getSimpleName());
+		}
+	}
+
+	/**
+	 * @return the number of events waiting for delivery
+	 */
+	public int getQueueDepth(){
+		return deliveryQueue.getDepth();
+	}
+
+	/**
+	 * @return the highest number of events that were waiting for delivery
+	 */
+	public int getMaximumQueueDepth(){
+		return deliveryQueue.getMaximumDepth();
+	}
+
+	/**
+	 * @return the number of events dropped because the queue was full
+	 */
+	public long getDroppedEventCount(){
+		return deliveryQueue.getDroppedEventCount();
+	}
+
+	/**
+	 * @return the number of events superseded by a newer event before their delivery
+	 */
+	public long getCoalescedEventCount(){
+		return deliveryQueue.getCoalescedEventCount();
+	}
+
+	/**
+	 * Delivers the queued events, one at a time
+	 */
+	private class EventDelivery implements Runnable{
+		/** (inheritDoc)
+		 * @see java.lang.Runnable#run()
+		 */
+		@Override
+		public void run() {
+			while(true){
+				try {
+					GokoEventBus.super.post(deliveryQueue.take());
+				} catch (InterruptedException e) {
+					return;
+				} catch (RuntimeException e) {
+					LOG.error(e);
+				}
+			}
+		}
+	}
 }
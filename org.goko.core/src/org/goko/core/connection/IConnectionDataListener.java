@@ -16,12 +16,14 @@
  *******************************************************************************/
 package org.goko.core.connection;
 
-import java.util.List;
+import java.nio.ByteBuffer;
 
 import org.goko.core.common.exception.GkException;
 
 /**
  * Interface for connection data listeners
+ * The given buffers are only valid during the call : the data lies between their position and limit, and
+ * the same buffer can be reused by the connection service once the callback returns.
  * 
  * @author PsyKo
  *
@@ -33,12 +35,12 @@ public interface IConnectionDataListener {
 	 * @param data the received data
 	 * @throws GkException an exception
 	 */
-	void onDataReceived(List<Byte> data) throws GkException;
+	void onDataReceived(ByteBuffer data) throws GkException;
 	
 	/**
 	 * Callback method
 	 * @param data the sent data
 	 * @throws GkException an exception
 	 */
-	void onDataSent(List<Byte> data) throws GkException;
+	void onDataSent(ByteBuffer data) throws GkException;
 }
@@ -16,6 +16,7 @@
  *******************************************************************************/
 package org.goko.core.connection;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Map;
 
@@ -56,6 +57,24 @@ public interface IConnectionService extends IGokoService{
 	boolean isConnected() throws GkException;
 	/**
 	 * Sends the data using the given priority.
+	 * The bytes between the position and the limit of the buffer are copied before this method returns, the caller can reuse the buffer.
+	 * @param data the data to send
+	 * @param priority the priority level
+	 * @throws GkException an exception
+	 */
+	void send(ByteBuffer data, DataPriority priority) throws GkException;
+
+	/**
+	 * Sends the data using the Normal priority.
+	 * The bytes between the position and the limit of the buffer are copied before this method returns, the caller can reuse the buffer.
+	 * @param data the data to send
+	 * @throws GkException an exception
+	 */
+	void send(ByteBuffer data) throws GkException;
+
+	/**
+	 * Sends the data using the given priority.
+	 * Kept for existing callers, prefer {@link #send(ByteBuffer, DataPriority)}
 	 * @param data the data to send
 	 * @param priority the priority level
 	 * @throws GkException an exception
@@ -64,6 +83,7 @@ public interface IConnectionService extends IGokoService{
 
 	/**
 	 * Sends the data using the Normal priority.
+	 * Kept for existing callers, prefer {@link #send(ByteBuffer)}
 	 * @param data the data to send
 	 * @throws GkException an exception
 	 */
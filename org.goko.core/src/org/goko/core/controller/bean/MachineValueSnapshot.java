@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * 	This file is part of Goko.
+ *
+ *   Goko is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Goko is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Goko.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package org.goko.core.controller.bean;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable view of the values of a {@link MachineValueStore} at a given version
+ *
+ * @author PsyKo
+ *
+ */
+public class MachineValueSnapshot {
+	/** The version of the store when the snapshot was taken */
+	private final long version;
+	/** The values by id */
+	private final Map<String, MachineValue<?>> values;
+
+	/**
+	 * Constructor
+	 * @param version the version of the store
+	 * @param values the values by id. The map and the values are not modified afterwards
+	 */
+	MachineValueSnapshot(long version, Map<String, MachineValue<?>> values) {
+		this.version = version;
+		this.values = Collections.unmodifiableMap(values);
+	}
+
+	/**
+	 * @return the version of the store when the snapshot was taken
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return the ids of the values
+	 */
+	public Set<String> getIds(){
+		return values.keySet();
+	}
+
+	/**
+	 * Returns a copy of the value with the given id
+	 * @param id the id of the value
+	 * @return MachineValue or <code>null</code> if no value is stored for that id
+	 */
+	@SuppressWarnings("unchecked")
+	public MachineValue<?> findValue(String id){
+		MachineValue<Object> value = (MachineValue<Object>) values.get(id);
+		if(value == null){
+			return null;
+		}
+		return new MachineValue<Object>(value);
+	}
+}
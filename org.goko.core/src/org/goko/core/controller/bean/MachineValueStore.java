@@ -18,32 +18,62 @@ package org.goko.core.controller.bean;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
-import org.apache.commons.lang3.StringUtils;
 import org.goko.core.common.event.EventDispatcher;
 import org.goko.core.common.exception.GkException;
 import org.goko.core.common.exception.GkTechnicalException;
+import org.goko.core.controller.event.MachineValueBatchUpdateEvent;
 import org.goko.core.controller.event.MachineValueUpdateEvent;
 
 /**
  * A store used to store and manage controller values
- *
+ * <p>
+ * The values can be written and read concurrently without locking : each stored value is immutable, versioned, and
+ * replaced atomically. Consistent reads of several values are done through {@link #getSnapshot()}.
+ * </p>
+ * <p>
+ * The update notifications are coalesced : the values updated during the notification interval are notified once, with
+ * their latest value, followed by a single {@link MachineValueBatchUpdateEvent}.
+ * </p>
  * @author PsyKo
  *
  */
 public class MachineValueStore extends EventDispatcher{
+	/** Default interval between two notifications, in milliseconds */
+	public static final long DEFAULT_NOTIFICATION_INTERVAL = 40;
 	/** The actual values */
-	private Map<String, MachineValue<?>> valueStore;
+	private final ConcurrentMap<String, StoredValue> valueStore;
 	/** The list of supported values */
-	private List<MachineValueDefinition> lstMachineValueDefinition;
+	private final List<MachineValueDefinition> lstMachineValueDefinition;
+	/** The number of modifications of the store */
+	private final AtomicLong modificationCount;
+	/** The last snapshot taken */
+	private volatile MachineValueSnapshot snapshot;
+	/** Interval between two notifications in milliseconds. 0 to notify each update immediately */
+	private volatile long notificationInterval;
+	/** The updated values waiting for notification, by id */
+	private final Map<String, MachineValue<?>> pendingNotifications;
+	/** Timer used to send the pending notifications */
+	private Timer notificationTimer;
 
 	public MachineValueStore() {
 		super();
-		this.valueStore = new HashMap<String, MachineValue<?>>();
-		lstMachineValueDefinition = new ArrayList<MachineValueDefinition>();
+		this.valueStore = new ConcurrentHashMap<String, StoredValue>();
+		this.lstMachineValueDefinition = new CopyOnWriteArrayList<MachineValueDefinition>();
+		this.modificationCount = new AtomicLong();
+		this.pendingNotifications = new LinkedHashMap<String, MachineValue<?>>();
+		this.notificationInterval = DEFAULT_NOTIFICATION_INTERVAL;
 	}
 
 	public <T> void storeValue(MachineValueDefinition definition, MachineValue<T> value) throws GkException{
@@ -95,16 +125,9 @@ public class MachineValueStore extends EventDispatcher{
 	 * @throws GkException thrown only if the requested type does not match the stored type
 	 */
 	public <T> MachineValue<T> findValue(String id, Class<T> clazz) throws GkException{
-		MachineValue<?> machineValue = valueStore.get(id);
-		if(machineValue != null){
-			if(machineValue.getValue() == null){
-				return (MachineValue<T>)machineValue;
-			}else if(machineValue.getValue().getClass() == clazz){
-				MachineValue<T> typedValue = (MachineValue<T>) valueStore.get(id);
-				return new MachineValue<T>(typedValue);
-			}else{
-				throw new GkTechnicalException("ControllerValueStore : unable to get value '"+id+"' for the requested type '"+clazz+"'. Registered as '"+machineValue.getValue().getClass()+"'");
-			}
+		StoredValue storedValue = valueStore.get(id);
+		if(storedValue != null){
+			return storedValue.copy(clazz);
 		}
 		return null;
 	}
@@ -116,22 +139,60 @@ public class MachineValueStore extends EventDispatcher{
 	 * @throws GkException thrown if the value does not exist, or if the requested type does not match the stored type
 	 */
 	public <T> MachineValue<T> getValue(String id, Class<T> clazz) throws GkException{
-		if(!valueStore.containsKey(id)){
+		StoredValue storedValue = valueStore.get(id);
+		if(storedValue == null){
 			throw new GkTechnicalException("ControllerValueStore : value with id '"+id+"' does not exist.'");
 		}
+		return storedValue.copy(clazz);
+	}
 
-		MachineValue<T> machineValue = findValue(id, clazz);
+	/**
+	 * Returns the version of the given value, incremented each time the value changes
+	 * @param id the id of the value
+	 * @return the version of the value
+	 * @throws GkException thrown if the value does not exist
+	 */
+	public long getVersion(String id) throws GkException{
+		StoredValue storedValue = valueStore.get(id);
+		if(storedValue == null){
+			throw new GkTechnicalException("ControllerValueStore : value with id '"+id+"' does not exist.'");
+		}
+		return storedValue.version;
+	}
 
-		return machineValue;
+	/**
+	 * Returns an immutable view of all the values. Successive calls return the same snapshot as long as the store is
+	 * not modified
+	 * @return MachineValueSnapshot
+	 */
+	public MachineValueSnapshot getSnapshot(){
+		MachineValueSnapshot currentSnapshot = snapshot;
+		// Read the count first : a modification done while copying makes the snapshot outdated, not inconsistent
+		long currentModificationCount = modificationCount.get();
+		if(currentSnapshot == null || currentSnapshot.getVersion() != currentModificationCount){
+			Map<String, MachineValue<?>> values = new HashMap<String, MachineValue<?>>();
+			for(StoredValue storedValue : valueStore.values()){
+				values.put(storedValue.value.getIdDescriptor(), storedValue.value);
+			}
+			currentSnapshot = new MachineValueSnapshot(currentModificationCount, values);
+			snapshot = currentSnapshot;
+		}
+		return currentSnapshot;
 	}
+
 	/**
 	 * Initialize a value in the storage map
 	 * @param name the name of the * @param value the value itself */
 	protected <T> void initializeValue(MachineValueDefinition definition,MachineValue<T> value){
-		lstMachineValueDefinition.add(definition);
-		valueStore.put(value.getIdDescriptor(), value);
-
-		super.notifyListeners(new MachineValueUpdateEvent(value));
+		// Ids are interned so lookups with the declared constants succeed on reference equality
+		String id = value.getIdDescriptor().intern();
+		MachineValue<T> storedValue = new MachineValue<T>(id, value.getValue());
+		storedValue.setUnit(value.getUnit());
+		if(valueStore.putIfAbsent(id, new StoredValue(definition, storedValue, 0)) == null){
+			lstMachineValueDefinition.add(definition);
+			modificationCount.incrementAndGet();
+			notifyUpdate(storedValue);
+		}
 	}
 
 	/**
@@ -142,21 +203,27 @@ public class MachineValueStore extends EventDispatcher{
 	 * @throws GkTechnicalException
 	 */
 	public <T> void updateValue(String id, T value) throws GkException{
-		MachineValue<?> machineValue = valueStore.get(id);
-		if(machineValue == null){
-			throw new GkTechnicalException("ControllerValueStore : '"+id+"' not initialized.");
-		}else if(machineValue.getValue().getClass() == value.getClass()){
-			MachineValue<T> typedValue = (MachineValue<T>) valueStore.get(id);
-			T oldValue = typedValue.getValue();
-			typedValue.setValue(value);
+		while(true){
+			StoredValue storedValue = valueStore.get(id);
+			if(storedValue == null){
+				throw new GkTechnicalException("ControllerValueStore : '"+id+"' not initialized.");
+			}
+			Object oldValue = storedValue.value.getValue();
+			if(oldValue.getClass() != value.getClass()){
+				throw new GkTechnicalException("ControllerValueStore : unable to store '"+id+"''. Type mismatch. Got "+value.getClass()+"', expecting '"+oldValue.getClass()+"'");
+			}
 			// Notify only if the value changed
-			if(!value.equals(oldValue)){
-				super.notifyListeners(new MachineValueUpdateEvent(new MachineValue<T>(typedValue)));
+			if(value.equals(oldValue)){
+				return;
+			}
+			MachineValue<T> newValue = new MachineValue<T>(storedValue.value.getIdDescriptor(), value);
+			newValue.setUnit(storedValue.value.getUnit());
+			if(valueStore.replace(id, storedValue, new StoredValue(storedValue.definition, newValue, storedValue.version + 1))){
+				modificationCount.incrementAndGet();
+				notifyUpdate(newValue);
+				return;
 			}
-		}else{
-			throw new GkTechnicalException("ControllerValueStore : unable to store '"+id+"''. Type mismatch. Got "+value.getClass()+"', expecting '"+machineValue.getClass()+"'");
 		}
-
 	}
 
 	public List<MachineValueDefinition> getMachineValueDefinition(){
@@ -164,8 +231,9 @@ public class MachineValueStore extends EventDispatcher{
 	}
 
 	public Class<?> getControllerValueType(String name) {
-		if(valueStore.containsKey(name) && valueStore.get(name) != null){
-			return valueStore.get(name).getValue().getClass();
+		StoredValue storedValue = valueStore.get(name);
+		if(storedValue != null && storedValue.value.getValue() != null){
+			return storedValue.value.getValue().getClass();
 		}
 		return Object.class;
 	}
@@ -179,11 +247,140 @@ public class MachineValueStore extends EventDispatcher{
 	}
 
 	public MachineValueDefinition findMachineValueDefinition(String id) throws GkException {
-		for(MachineValueDefinition definition : lstMachineValueDefinition){
-			if(StringUtils.equals(definition.getId(), id)){
-				return definition;
-			}
+		StoredValue storedValue = valueStore.get(id);
+		if(storedValue != null){
+			return storedValue.definition;
 		}
 		return null;
 	}
+
+	/**
+	 * @return the interval between two notifications in milliseconds
+	 */
+	public long getNotificationInterval() {
+		return notificationInterval;
+	}
+
+	/**
+	 * Sets the interval between two notifications
+	 * @param notificationInterval the interval in milliseconds, 0 to notify each update immediately
+	 */
+	public void setNotificationInterval(long notificationInterval) {
+		this.notificationInterval = Math.max(0, notificationInterval);
+		if(this.notificationInterval == 0){
+			flushNotifications();
+		}
+	}
+
+	/**
+	 * Sends the pending notifications and stops the notification timer. The store remains usable : a new timer is created on the
+	 * next coalesced update
+	 */
+	public void dispose(){
+		synchronized (pendingNotifications) {
+			if(notificationTimer != null){
+				notificationTimer.cancel();
+				notificationTimer = null;
+			}
+		}
+		flushNotifications();
+	}
+
+	/**
+	 * Notify the update of the given value, or wait for the end of the notification interval
+	 * @param value the updated value
+	 */
+	private void notifyUpdate(MachineValue<?> value){
+		long interval = notificationInterval;
+		if(interval == 0){
+			List<MachineValue<?>> updatedValues = new ArrayList<MachineValue<?>>(1);
+			updatedValues.add(value);
+			notifyUpdates(updatedValues);
+			return;
+		}
+		synchronized (pendingNotifications) {
+			if(pendingNotifications.isEmpty()){
+				if(notificationTimer == null){
+					notificationTimer = new Timer("Machine values notification", true);
+				}
+				notificationTimer.schedule(new TimerTask() {
+					@Override
+					public void run() {
+						flushNotifications();
+					}
+				}, interval);
+			}
+			pendingNotifications.put(value.getIdDescriptor(), value);
+		}
+	}
+
+	/**
+	 * Notify the pending updates
+	 */
+	private void flushNotifications(){
+		List<MachineValue<?>> updatedValues;
+		synchronized (pendingNotifications) {
+			if(pendingNotifications.isEmpty()){
+				return;
+			}
+			updatedValues = new ArrayList<MachineValue<?>>(pendingNotifications.values());
+			pendingNotifications.clear();
+		}
+		notifyUpdates(updatedValues);
+	}
+
+	/**
+	 * Notify the listeners of each updated value, then of the whole batch
+	 * @param updatedValues the updated values
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private void notifyUpdates(List<MachineValue<?>> updatedValues){
+		List<MachineValue<?>> notifiedValues = new ArrayList<MachineValue<?>>(updatedValues.size());
+		for(MachineValue<?> value : updatedValues){
+			// Listeners receive copies, the stored values are never modified
+			MachineValue<?> notifiedValue = new MachineValue(value);
+			notifiedValues.add(notifiedValue);
+			notifyListeners(new MachineValueUpdateEvent(notifiedValue));
+		}
+		notifyListeners(new MachineValueBatchUpdateEvent(Collections.unmodifiableList(notifiedValues)));
+	}
+
+	/**
+	 * Immutable entry of the store
+	 */
+	private static class StoredValue{
+		/** The definition of the value */
+		private final MachineValueDefinition definition;
+		/** The value, never modified once stored */
+		private final MachineValue<?> value;
+		/** The version of the value */
+		private final long version;
+
+		/**
+		 * Constructor
+		 * @param definition the definition
+		 * @param value the value
+		 * @param version the version
+		 */
+		StoredValue(MachineValueDefinition definition, MachineValue<?> value, long version) {
+			this.definition = definition;
+			this.value = value;
+			this.version = version;
+		}
+
+		/**
+		 * Returns a copy of the value with the given type if possible
+		 * @param clazz the requested type
+		 * @return MachineValue
+		 * @throws GkException thrown if the requested type does not match the stored type
+		 */
+		@SuppressWarnings("unchecked")
+		<T> MachineValue<T> copy(Class<T> clazz) throws GkException{
+			Object rawValue = value.getValue();
+			if(rawValue != null && rawValue.getClass() != clazz){
+				throw new GkTechnicalException("ControllerValueStore : unable to get value '"+definition.getId()+"' for the requested type '"+clazz+"'. Registered as '"+rawValue.getClass()+"'");
+			}
+			return new MachineValue<T>((MachineValue<T>) value);
+		}
+	}
 }
@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * 	This file is part of Goko.
+ *
+ *   Goko is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Goko is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Goko.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package org.goko.core.controller.bean;
+
+/**
+ * Settings of the motion planner of a controller, used to simulate the execution of a program
+ * Lengths are in millimeters (degrees for rotary axis) and times in seconds. Axis are indexed as in a Tuple6d : X, Y, Z, A, B, C
+ *
+ * @author PsyKo
+ *
+ */
+public class MotionPlannerSettings {
+	/** Number of axis */
+	public static final int AXIS_COUNT = 6;
+	/** Default maximum velocity (Grbl 0.8 seek rate) */
+	public static final double DEFAULT_MAXIMUM_VELOCITY = 500.0 / 60;
+	/** Default acceleration (Grbl 0.8) */
+	public static final double DEFAULT_ACCELERATION = 10;
+	/** Default junction deviation (Grbl 0.8) */
+	public static final double DEFAULT_JUNCTION_DEVIATION = 0.05;
+	/** Default number of blocks in the planner buffer (Grbl 0.8) */
+	public static final int DEFAULT_BLOCK_COUNT = 18;
+	/** Maximum velocity of each axis, used for rapid motions */
+	private double[] maximumVelocity;
+	/** Maximum feedrate of each axis, <code>0</code> if the feedrate is not limited */
+	private double[] maximumFeedrate;
+	/** Acceleration of each axis */
+	private double[] acceleration;
+	/** Maximum distance between a junction and the path actually followed */
+	private double junctionDeviation;
+	/** Centripetal acceleration in junctions, <code>0</code> to use the acceleration of the motions */
+	private double junctionAcceleration;
+	/** Number of blocks the planner looks ahead */
+	private int blockCount;
+
+	/**
+	 * Constructor with default settings
+	 */
+	public MotionPlannerSettings() {
+		this.maximumVelocity = new double[AXIS_COUNT];
+		this.maximumFeedrate = new double[AXIS_COUNT];
+		this.acceleration 	 = new double[AXIS_COUNT];
+		for (int axis = 0; axis < AXIS_COUNT; axis++) {
+			maximumVelocity[axis] = DEFAULT_MAXIMUM_VELOCITY;
+			acceleration[axis] 	  = DEFAULT_ACCELERATION;
+		}
+		this.junctionDeviation = DEFAULT_JUNCTION_DEVIATION;
+		this.blockCount = DEFAULT_BLOCK_COUNT;
+	}
+
+	/**
+	 * @param axis the index of the axis
+	 * @return the maximum velocity of the axis
+	 */
+	public double getMaximumVelocity(int axis) {
+		return maximumVelocity[axis];
+	}
+
+	/**
+	 * @param axis the index of the axis
+	 * @param maximumVelocity the maximum velocity of the axis
+	 */
+	public void setMaximumVelocity(int axis, double maximumVelocity) {
+		this.maximumVelocity[axis] = maximumVelocity;
+	}
+
+	/**
+	 * @param axis the index of the axis
+	 * @return the maximum feedrate of the axis, <code>0</code> if not limited
+	 */
+	public double getMaximumFeedrate(int axis) {
+		return maximumFeedrate[axis];
+	}
+
+	/**
+	 * @param axis the index of the axis
+	 * @param maximumFeedrate the maximum feedrate of the axis, <code>0</code> if not limited
+	 */
+	public void setMaximumFeedrate(int axis, double maximumFeedrate) {
+		this.maximumFeedrate[axis] = maximumFeedrate;
+	}
+
+	/**
+	 * @param axis the index of the axis
+	 * @return the acceleration of the axis
+	 */
+	public double getAcceleration(int axis) {
+		return acceleration[axis];
+	}
+
+	/**
+	 * @param axis the index of the axis
+	 * @param acceleration the acceleration of the axis
+	 */
+	public void setAcceleration(int axis, double acceleration) {
+		this.acceleration[axis] = acceleration;
+	}
+
+	/**
+	 * @return the junctionDeviation
+	 */
+	public double getJunctionDeviation() {
+		return junctionDeviation;
+	}
+
+	/**
+	 * @param junctionDeviation the junctionDeviation to set
+	 */
+	public void setJunctionDeviation(double junctionDeviation) {
+		this.junctionDeviation = junctionDeviation;
+	}
+
+	/**
+	 * @return the junctionAcceleration
+	 */
+	public double getJunctionAcceleration() {
+		return junctionAcceleration;
+	}
+
+	/**
+	 * @param junctionAcceleration the junctionAcceleration to set
+	 */
+	public void setJunctionAcceleration(double junctionAcceleration) {
+		this.junctionAcceleration = junctionAcceleration;
+	}
+
+	/**
+	 * @return the blockCount
+	 */
+	public int getBlockCount() {
+		return blockCount;
+	}
+
+	/**
+	 * @param blockCount the blockCount to set
+	 */
+	public void setBlockCount(int blockCount) {
+		this.blockCount = blockCount;
+	}
+}
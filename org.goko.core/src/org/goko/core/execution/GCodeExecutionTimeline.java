@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * 	This file is part of Goko.
+ *
+ *   Goko is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Goko is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Goko.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package org.goko.core.execution;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.goko.core.gcode.bean.GCodeCommand;
+import org.goko.core.gcode.bean.IGCodeProvider;
+
+/**
+ * Execution timeline of a GCode provider
+ * Holds the cumulated execution time at the start of each command and the total time, so the elapsed and remaining
+ * times of a command are read in constant time while the provider is streamed.
+ * The elapsed time of a command is the start time of the next one.
+ *
+ * @author PsyKo
+ *
+ */
+public class GCodeExecutionTimeline {
+	/** The provider this timeline was evaluated for */
+	private final IGCodeProvider provider;
+	/** Id of the first command */
+	private final int firstId;
+	/** Index of the commands by id, <code>null</code> if the ids are consecutive */
+	private final Map<Integer, Integer> mapIndexById;
+	/** Cumulated time in seconds at the start of each command, the last value being the total time */
+	private final double[] cumulatedTimes;
+
+	/**
+	 * Constructor
+	 * @param provider the provider of the commands
+	 */
+	public GCodeExecutionTimeline(IGCodeProvider provider) {
+		this.provider = provider;
+		List<GCodeCommand> commands = provider.getGCodeCommands();
+		int count = commands.size();
+		int[] ids = new int[count];
+		boolean consecutive = true;
+		int index = 0;
+		for (GCodeCommand command : commands) {
+			ids[index] = command.getId() == null ? -1 : command.getId();
+			if(index > 0 && ids[index] != ids[0] + index){
+				consecutive = false;
+			}
+			index++;
+		}
+		this.firstId = count > 0 ? ids[0] : 0;
+		if(consecutive){
+			this.mapIndexById = null;
+		}else{
+			this.mapIndexById = new HashMap<Integer, Integer>(count * 2);
+			for (int i = 0; i < count; i++) {
+				mapIndexById.put(ids[i], i);
+			}
+		}
+		this.cumulatedTimes = new double[count + 1];
+	}
+
+	/**
+	 * @return the provider this timeline was evaluated for
+	 */
+	public IGCodeProvider getProvider(){
+		return provider;
+	}
+
+	/**
+	 * @return the number of commands of this timeline
+	 */
+	public int getCommandCount(){
+		return cumulatedTimes.length - 1;
+	}
+
+	/**
+	 * Returns the index of the given command
+	 * @param idCommand the id of the command
+	 * @return the index of the command, -1 if it's not in this timeline
+	 */
+	public int getIndex(Integer idCommand){
+		if(idCommand == null){
+			return -1;
+		}
+		if(mapIndexById == null){
+			int index = idCommand - firstId;
+			return index >= 0 && index < getCommandCount() ? index : -1;
+		}
+		Integer index = mapIndexById.get(idCommand);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * @return the total execution time in seconds
+	 */
+	public synchronized double getTotalTime(){
+		return cumulatedTimes[getCommandCount()];
+	}
+
+	/**
+	 * Returns the execution time from the start of the provider to the end of the given command
+	 * @param idCommand the id of the command
+	 * @return the elapsed time in seconds, 0 if the command is not in this timeline
+	 */
+	public synchronized double getElapsedTime(Integer idCommand){
+		int index = getIndex(idCommand);
+		if(index < 0){
+			return 0;
+		}
+		return cumulatedTimes[index + 1];
+	}
+
+	/**
+	 * Returns the execution time from the end of the given command to the end of the provider
+	 * @param idCommand the id of the command
+	 * @return the remaining time in seconds, the total time if the command is not in this timeline
+	 */
+	public synchronized double getRemainingTime(Integer idCommand){
+		return getTotalTime() - getElapsedTime(idCommand);
+	}
+
+	/**
+	 * Update the timeline from the given command
+	 * @param fromIndex the index of the first updated command
+	 * @param durations the duration in seconds of each command, by index. Only the values from <code>fromIndex</code> are used
+	 */
+	public synchronized void update(int fromIndex, double[] durations){
+		for (int i = Math.max(0, fromIndex); i < getCommandCount(); i++) {
+			cumulatedTimes[i + 1] = cumulatedTimes[i] + durations[i];
+		}
+	}
+}
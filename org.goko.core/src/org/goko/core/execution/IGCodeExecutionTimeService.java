@@ -45,4 +45,23 @@ public interface IGCodeExecutionTimeService extends IGokoService{
 	 * @throws GkException GkException
 	 */
 	double evaluateExecutionTime(GCodeCommand command, GCodeContext postContext) throws GkException;
+
+	/**
+	 * Evaluate the execution timeline of the given provider
+	 * @param provider the provider
+	 * @return the {@link GCodeExecutionTimeline} of the provider
+	 * @throws GkException GkException
+	 */
+	GCodeExecutionTimeline evaluateExecutionTimeline(IGCodeProvider provider) throws GkException;
+
+	/**
+	 * Evaluate again the timeline of the given provider from the given command, the machine being at rest before this command.
+	 * The timeline of the previous commands is kept
+	 * @param provider the provider
+	 * @param timeline the timeline of the provider to update
+	 * @param idCommand the id of the first command to evaluate
+	 * @param feedrateOverride the ratio applied to the feedrate of the commands, 1 for the programmed feedrate
+	 * @throws GkException GkException
+	 */
+	void updateExecutionTimeline(IGCodeProvider provider, GCodeExecutionTimeline timeline, Integer idCommand, double feedrateOverride) throws GkException;
 }
@@ -0,0 +1,54 @@
+/*******************************************************************************
+ * 	This file is part of Goko.
+ *
+ *   Goko is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Goko is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Goko.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package org.goko.core.gcode.bean;
+
+import org.goko.core.common.exception.GkException;
+
+/**
+ * Pull based access to a sequence of {@link GCodeCommand}. Commands are built one at a time when requested,
+ * so the whole program never needs to be held in memory.
+ *
+ * @author PsyKo
+ *
+ */
+public interface IGCodeCommandCursor {
+	/**
+	 * Determine if another command is available
+	 * @return <code>true</code> if a call to {@link #next()} will return a command, <code>false</code> otherwise
+	 * @throws GkException GkException
+	 */
+	boolean hasNext() throws GkException;
+
+	/**
+	 * Build and return the next command
+	 * @return the next {@link GCodeCommand}
+	 * @throws GkException GkException if there is no more command, or if the command cannot be parsed
+	 */
+	GCodeCommand next() throws GkException;
+
+	/**
+	 * Return a copy of the context resulting of the last returned command
+	 * @return a {@link GCodeContext}
+	 */
+	GCodeContext getCurrentContext();
+
+	/**
+	 * Release the underlying resources. Calling this method several times has no effect.
+	 * @throws GkException GkException
+	 */
+	void close() throws GkException;
+}
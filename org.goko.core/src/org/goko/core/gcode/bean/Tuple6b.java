@@ -17,11 +17,13 @@
 package org.goko.core.gcode.bean;
 
 import java.math.BigDecimal;
+import java.math.MathContext;
 
 import javax.vecmath.Point3d;
 
 import org.goko.core.common.measure.SI;
 import org.goko.core.common.measure.SIPrefix;
+import org.goko.core.common.measure.converter.UnitConverter;
 import org.goko.core.common.measure.quantity.Angle;
 import org.goko.core.common.measure.quantity.Length;
 import org.goko.core.common.measure.quantity.Quantity;
@@ -30,9 +32,12 @@ import org.goko.core.common.measure.quantity.type.BigDecimalQuantity;
 import org.goko.core.common.measure.quantity.type.NumberQuantity;
 import org.goko.core.common.measure.units.Unit;
 import org.goko.core.common.utils.BigDecimalUtils;
+import org.goko.core.math.Tuple6d;
 import org.goko.core.math.Tuple6f;
 
 public class Tuple6b {
+	/** Significant digits of the values converted to double : the decimal precision of a double */
+	private static final MathContext CONVERSION_PRECISION = new MathContext(15);
 	private BigDecimalQuantity<Length> x;
 	private BigDecimalQuantity<Length> y;
 	private BigDecimalQuantity<Length> z;
@@ -386,6 +391,43 @@ public class Tuple6b {
 		return true;
 	}
 
+	/**
+	 * Copy this tuple in the given primitive tuple, in millimeters and degrees. Undefined values are set to zero
+	 * @param target the target tuple
+	 * @return the target tuple
+	 */
+	public Tuple6d toTuple6d(Tuple6d target) {
+		target.set( toDouble(x, SI.MILLIMETRE),
+					toDouble(y, SI.MILLIMETRE),
+					toDouble(z, SI.MILLIMETRE),
+					toDouble(a, SI.DEGREE_ANGLE),
+					toDouble(b, SI.DEGREE_ANGLE),
+					toDouble(c, SI.DEGREE_ANGLE));
+		return target;
+	}
+
+	/**
+	 * Returns the value of the given quantity in the given unit. Quantities already in the given unit are not scaled
+	 * @param quantity the quantity, can be null
+	 * @param unit the target unit
+	 * @return the value, or zero if the quantity is null
+	 */
+	private static <Q extends Quantity<Q>> double toDouble(BigDecimalQuantity<Q> quantity, Unit<Q> unit){
+		if(quantity == null){
+			return 0;
+		}
+		if(quantity.getUnit() == unit){
+			return quantity.doubleValue();
+		}
+		UnitConverter converter = quantity.getUnit().getConverterTo(unit);
+		if(converter.isIdentity()){
+			return quantity.doubleValue();
+		}
+		// Length and angle converters are linear : scale the exact value, then drop the noise left by the double arithmetic of the
+		// quantities so 0.119m is 119mm, not 119.00000000000001mm
+		return quantity.getValue().multiply(BigDecimal.valueOf(converter.convert(1.0))).round(CONVERSION_PRECISION).doubleValue();
+	}
+
 	public Tuple6f toTuple6f() {
 		return new Tuple6f( x == null ? 0: 1/*getX().floatValue()*/,
 							y == null ? 0: 1/*getY().floatValue()*/,
@@ -23,6 +23,7 @@ import org.goko.core.common.measure.quantity.Length;
 import org.goko.core.common.measure.quantity.Quantity;
 import org.goko.core.gcode.bean.IGCodeCommandVisitor;
 import org.goko.core.gcode.bean.Tuple6b;
+import org.goko.core.math.Tuple6d;
 
 /**
  * Defines an arc motion command
@@ -64,6 +65,18 @@ public class ArcMotionCommand extends MotionCommand {
 		visitor.visit(this);
 	}
 
+	/** (inheritDoc)
+	 * @see org.goko.core.gcode.bean.commands.MotionCommand#setAbsoluteStartCoordinate(org.goko.core.gcode.bean.Tuple6b)
+	 */
+	@Override
+	public void setAbsoluteStartCoordinate(Tuple6b absoluteStartCoordinate) {
+		super.setAbsoluteStartCoordinate(absoluteStartCoordinate);
+		// The center is relative to the start coordinate
+		if(absoluteCenterCoordinate != null){
+			updateCenterCoordinate();
+		}
+	}
+
 	protected void updateCenterCoordinate(){
 		absoluteCenterCoordinate = new Tuple6b(getAbsoluteStartCoordinate());
 		absoluteCenterCoordinate.updateRelative(ijkValues);
@@ -75,6 +88,18 @@ public class ArcMotionCommand extends MotionCommand {
 		return new Tuple6b(absoluteCenterCoordinate);
 	}
 
+	/**
+	 * Copy the absoluteCenterCoordinate in the given primitive tuple, without defensive copy
+	 * @param target the target tuple, in millimeters and degrees
+	 * @return the target tuple
+	 */
+	public Tuple6d getAbsoluteCenterCoordinate(Tuple6d target) {
+		if(absoluteCenterCoordinate == null){
+			return null;
+		}
+		return absoluteCenterCoordinate.toTuple6d(target);
+	}
+
 	/**
 	 * @param absoluteCenterCoordinate the absoluteCenterCoordinate to set
 	 */
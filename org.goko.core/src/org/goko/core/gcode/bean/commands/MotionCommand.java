@@ -23,6 +23,7 @@ import org.goko.core.gcode.bean.BoundingTuple6b;
 import org.goko.core.gcode.bean.GCodeContext;
 import org.goko.core.gcode.bean.IGCodeCommandVisitor;
 import org.goko.core.gcode.bean.Tuple6b;
+import org.goko.core.math.Tuple6d;
 
 /**
  * Defines an abstract motion command
@@ -83,6 +84,18 @@ public abstract class MotionCommand extends SettingCommand {
 		return new Tuple6b(absoluteStartCoordinate);
 	}
 
+	/**
+	 * Copy the absoluteStartCoordinate in the given primitive tuple, without defensive copy
+	 * @param target the target tuple, in millimeters and degrees
+	 * @return the target tuple
+	 */
+	public Tuple6d getAbsoluteStartCoordinate(Tuple6d target) {
+		if(absoluteStartCoordinate == null){
+			return null;
+		}
+		return absoluteStartCoordinate.toTuple6d(target);
+	}
+
 	/**
 	 * @param absoluteStartCoordinate the absoluteStartCoordinate to set
 	 */
@@ -106,6 +119,18 @@ public abstract class MotionCommand extends SettingCommand {
 		return new Tuple6b(absoluteEndCoordinate);
 	}
 
+	/**
+	 * Copy the absoluteEndCoordinate in the given primitive tuple, without defensive copy
+	 * @param target the target tuple, in millimeters and degrees
+	 * @return the target tuple
+	 */
+	public Tuple6d getAbsoluteEndCoordinate(Tuple6d target) {
+		if(absoluteEndCoordinate == null){
+			return null;
+		}
+		return absoluteEndCoordinate.toTuple6d(target);
+	}
+
 	/**
 	 * @param absoluteEndCoordinate the absoluteEndCoordinate to set
 	 */
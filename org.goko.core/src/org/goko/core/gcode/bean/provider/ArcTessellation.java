@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * 	This file is part of Goko.
+ *
+ *   Goko is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Goko is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Goko.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package org.goko.core.gcode.bean.provider;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Polyline approximating an arc, with the exact length of the arc.
+ * The vertices are stored as floats (x, y, z for each vertex, in millimeters). The first and last vertices are the exact start and end of the arc.
+ *
+ * @author PsyKo
+ *
+ */
+public class ArcTessellation {
+	/** The vertices, 3 floats per vertex */
+	private final float[] vertices;
+	/** The length of the arc, including the helical motion */
+	private final double length;
+	/** The radius of the arc */
+	private final double radius;
+	/** The signed angle of the arc in radians, positive for counterclockwise arcs */
+	private final double angle;
+	/** The maximum deviation used to build the polyline */
+	private final double maximumDeviation;
+
+	/**
+	 * Constructor
+	 * @param vertices the vertices, 3 floats per vertex
+	 * @param length the length of the arc
+	 * @param radius the radius of the arc
+	 * @param angle the signed angle of the arc in radians
+	 * @param maximumDeviation the maximum deviation used to build the polyline
+	 */
+	ArcTessellation(float[] vertices, double length, double radius, double angle, double maximumDeviation) {
+		this.vertices = vertices;
+		this.length = length;
+		this.radius = radius;
+		this.angle = angle;
+		this.maximumDeviation = maximumDeviation;
+	}
+
+	/**
+	 * @return the number of vertices
+	 */
+	public int getVerticesCount(){
+		return vertices.length / 3;
+	}
+
+	/**
+	 * Returns the coordinate of a vertex
+	 * @param vertex the index of the vertex
+	 * @param axis the axis : 0 for x, 1 for y, 2 for z
+	 * @return the coordinate
+	 */
+	public float getCoordinate(int vertex, int axis){
+		return vertices[vertex * 3 + axis];
+	}
+
+	/**
+	 * Write the vertices in a buffer holding 4 floats (x, y, z, 1) per vertex.
+	 * The position of the buffer is left untouched, so distinct vertices of the same buffer can be written by several threads.
+	 * @param buffer the target buffer
+	 * @param firstVertex the index of the first vertex to write, used to skip the vertex shared with a previous motion
+	 * @param vertexIndex the index of the first vertex to write in the buffer
+	 * @return the number of written vertices
+	 */
+	public int write(FloatBuffer buffer, int firstVertex, int vertexIndex){
+		int count = getVerticesCount();
+		int offset = vertexIndex * 4;
+		for (int i = firstVertex; i < count; i++) {
+			buffer.put(offset, 	   vertices[i * 3]);
+			buffer.put(offset + 1, vertices[i * 3 + 1]);
+			buffer.put(offset + 2, vertices[i * 3 + 2]);
+			buffer.put(offset + 3, 1);
+			offset += 4;
+		}
+		return count - firstVertex;
+	}
+
+	/**
+	 * @return the length of the arc in millimeters, including the helical motion
+	 */
+	public double getLength() {
+		return length;
+	}
+
+	/**
+	 * @return the radius of the arc in millimeters
+	 */
+	public double getRadius() {
+		return radius;
+	}
+
+	/**
+	 * @return the signed angle of the arc in radians, positive for counterclockwise arcs
+	 */
+	public double getAngle() {
+		return angle;
+	}
+
+	/**
+	 * @return the maximum deviation used to build the polyline, in millimeters
+	 */
+	public double getMaximumDeviation() {
+		return maximumDeviation;
+	}
+}
@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * 	This file is part of Goko.
+ *
+ *   Goko is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Goko is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Goko.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package org.goko.core.gcode.bean.provider;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.goko.core.gcode.bean.IGCodeProvider;
+import org.goko.core.gcode.bean.commands.ArcMotionCommand;
+import org.goko.core.math.Tuple6d;
+
+/**
+ * Cache of the {@link ArcTessellation} of the arcs of a provider, by command id.
+ * There is one cache per provider, shared by the users of the provider (geometry rebuilds, time estimation...) and released with the provider.
+ * A tessellation built with another maximum deviation than the requested one is built again.
+ * The cache can be used from several threads.
+ *
+ * @author PsyKo
+ *
+ */
+public class ArcTessellationCache {
+	/** The caches by provider */
+	private static final Map<IGCodeProvider, ArcTessellationCache> CACHES = new WeakHashMap<IGCodeProvider, ArcTessellationCache>();
+	/** The tessellations by command id */
+	private final ConcurrentMap<Integer, ArcTessellation> tessellations;
+
+	/**
+	 * Constructor
+	 */
+	public ArcTessellationCache() {
+		this.tessellations = new ConcurrentHashMap<Integer, ArcTessellation>();
+	}
+
+	/**
+	 * Returns the cache of the given provider
+	 * @param provider the provider
+	 * @return the {@link ArcTessellationCache}
+	 */
+	public static ArcTessellationCache getCache(IGCodeProvider provider){
+		synchronized (CACHES) {
+			ArcTessellationCache cache = CACHES.get(provider);
+			if(cache == null){
+				cache = new ArcTessellationCache();
+				CACHES.put(provider, cache);
+			}
+			return cache;
+		}
+	}
+
+	/**
+	 * Returns the tessellation of the given arc, building it if it is not cached or if it was built with another maximum deviation
+	 * @param tessellator the tessellator
+	 * @param command the arc command
+	 * @param start the absolute start coordinate, in millimeters and degrees
+	 * @param end the absolute end coordinate, in millimeters and degrees
+	 * @return the {@link ArcTessellation}
+	 */
+	public ArcTessellation getTessellation(ArcTessellator tessellator, ArcMotionCommand command, Tuple6d start, Tuple6d end){
+		Integer idCommand = command.getId();
+		if(idCommand == null){
+			return tessellator.tessellate(command, start, end);
+		}
+		ArcTessellation tessellation = tessellations.get(idCommand);
+		if(tessellation == null || tessellation.getMaximumDeviation() != tessellator.getMaximumDeviation()){
+			tessellation = tessellator.tessellate(command, start, end);
+			tessellations.put(idCommand, tessellation);
+		}
+		return tessellation;
+	}
+
+	/**
+	 * Returns the number of vertices of the tessellation of the given arc. A valid cached tessellation gives the count, otherwise
+	 * it is computed without tessellating the arc
+	 * @param tessellator the tessellator
+	 * @param command the arc command
+	 * @param start the absolute start coordinate, in millimeters and degrees
+	 * @param end the absolute end coordinate, in millimeters and degrees
+	 * @return the number of vertices of the tessellation
+	 */
+	public int getVerticesCount(ArcTessellator tessellator, ArcMotionCommand command, Tuple6d start, Tuple6d end){
+		ArcTessellation tessellation = command.getId() == null ? null : tessellations.get(command.getId());
+		if(tessellation != null && tessellation.getMaximumDeviation() == tessellator.getMaximumDeviation()){
+			return tessellation.getVerticesCount();
+		}
+		return tessellator.getVerticesCount(command, start, end);
+	}
+
+	/**
+	 * Returns the cached tessellation of the given command
+	 * @param idCommand the id of the command
+	 * @return the {@link ArcTessellation} or <code>null</code> if not cached
+	 */
+	public ArcTessellation findTessellation(Integer idCommand){
+		return tessellations.get(idCommand);
+	}
+
+	/**
+	 * Remove the tessellation of the given command, for example when the command is modified
+	 * @param idCommand the id of the command
+	 */
+	public void invalidate(Integer idCommand){
+		tessellations.remove(idCommand);
+	}
+
+	/**
+	 * Remove all the tessellations
+	 */
+	public void clear(){
+		tessellations.clear();
+	}
+
+	/**
+	 * @return the number of cached tessellations
+	 */
+	public int size(){
+		return tessellations.size();
+	}
+}
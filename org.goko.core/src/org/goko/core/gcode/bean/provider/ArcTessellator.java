@@ -0,0 +1,291 @@
+/*******************************************************************************
+ * 	This file is part of Goko.
+ *
+ *   Goko is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Goko is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Goko.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package org.goko.core.gcode.bean.provider;
+
+import java.util.Arrays;
+
+import org.goko.core.gcode.bean.commands.ArcMotionCommand;
+import org.goko.core.gcode.bean.commands.EnumGCodeCommandPlane;
+import org.goko.core.math.Tuple6d;
+
+/**
+ * Builds the polyline approximating an arc motion.
+ * The number of segments is computed from the maximum distance allowed between a chord and the arc, so small arcs get a few segments
+ * and big arcs are not over tessellated. The arc is computed in the plane of the command (G17, G18 or G19), the third axis being
+ * linearly interpolated for helical motions. Every vertex is computed from its angle, so there is no accumulated error.
+ *
+ * @author PsyKo
+ *
+ */
+public class ArcTessellator {
+	/** Default maximum deviation between the polyline and the arc, in millimeters */
+	public static final double DEFAULT_MAXIMUM_DEVIATION = 0.01;
+	/** Tolerance on the angle used to detect full circles, in radians */
+	private static final double ANGLE_EPSILON = 5E-7;
+	/** Maximum angle of a segment, in radians */
+	private static final double MAXIMUM_SEGMENT_ANGLE = Math.PI / 4;
+	/** Maximum number of segments of an arc */
+	private static final int MAXIMUM_SEGMENTS = 1 << 16;
+	/** Axes of the XY plane (G17) : first axis, second axis, linear axis */
+	private static final int[] XY_AXES = new int[]{0, 1, 2};
+	/** Axes of the XZ plane (G18) */
+	private static final int[] XZ_AXES = new int[]{2, 0, 1};
+	/** Axes of the YZ plane (G19) */
+	private static final int[] YZ_AXES = new int[]{1, 2, 0};
+	/** The maximum deviation between the polyline and the arc, in millimeters */
+	private final double maximumDeviation;
+
+	/**
+	 * Constructor using the default maximum deviation
+	 */
+	public ArcTessellator() {
+		this(DEFAULT_MAXIMUM_DEVIATION);
+	}
+
+	/**
+	 * Constructor
+	 * @param maximumDeviation the maximum deviation between the polyline and the arc, in millimeters
+	 */
+	public ArcTessellator(double maximumDeviation) {
+		if(maximumDeviation <= 0){
+			throw new IllegalArgumentException("Maximum deviation must be positive : "+maximumDeviation);
+		}
+		this.maximumDeviation = maximumDeviation;
+	}
+
+	/**
+	 * Tessellate the given arc
+	 * @param command the arc command
+	 * @param start the absolute start coordinate, in millimeters and degrees
+	 * @param end the absolute end coordinate, in millimeters and degrees
+	 * @return the {@link ArcTessellation}
+	 */
+	public ArcTessellation tessellate(ArcMotionCommand command, Tuple6d start, Tuple6d end){
+		return tessellate(command.isClockwise(), command.getPlane(), start, command.getAbsoluteCenterCoordinate(new Tuple6d()), end);
+	}
+
+	/**
+	 * Tessellate the given arc
+	 * @param clockwise <code>true</code> for a clockwise arc
+	 * @param plane the plane of the arc
+	 * @param start the absolute start coordinate, in millimeters and degrees
+	 * @param center the absolute center coordinate, in millimeters and degrees
+	 * @param end the absolute end coordinate, in millimeters and degrees
+	 * @return the {@link ArcTessellation}
+	 */
+	public ArcTessellation tessellate(boolean clockwise, EnumGCodeCommandPlane plane, Tuple6d start, Tuple6d center, Tuple6d end){
+		int[] axes = getAxes(plane);
+		int first  = axes[0];
+		int second = axes[1];
+		int linear = axes[2];
+		double startFirst  = get(start, first)  - get(center, first);
+		double startSecond = get(start, second) - get(center, second);
+		double endFirst    = get(end, first)    - get(center, first);
+		double endSecond   = get(end, second)   - get(center, second);
+		double linearDelta = get(end, linear) - get(start, linear);
+
+		double radius = Math.hypot(startFirst, startSecond);
+		double angle  = getAngle(clockwise, startFirst, startSecond, endFirst, endSecond);
+		int segments  = getSegmentCount(radius, angle);
+
+		float[] vertices = new float[(segments + 1) * 3];
+		double startAngle = Math.atan2(startSecond, startFirst);
+		double[] point = new double[3];
+		for (int i = 0; i < segments; i++) {
+			double ratio = (double) i / segments;
+			double currentAngle = startAngle + angle * ratio;
+			point[first]  = get(center, first)  + radius * Math.cos(currentAngle);
+			point[second] = get(center, second) + radius * Math.sin(currentAngle);
+			point[linear] = get(start, linear)  + linearDelta * ratio;
+			vertices[i * 3]     = (float) point[0];
+			vertices[i * 3 + 1] = (float) point[1];
+			vertices[i * 3 + 2] = (float) point[2];
+		}
+		// Start and end are exact
+		vertices[0] = (float) start.x;
+		vertices[1] = (float) start.y;
+		vertices[2] = (float) start.z;
+		vertices[segments * 3]     = (float) end.x;
+		vertices[segments * 3 + 1] = (float) end.y;
+		vertices[segments * 3 + 2] = (float) end.z;
+
+		double length = Math.hypot(radius * angle, linearDelta);
+		return new ArcTessellation(vertices, length, radius, angle, maximumDeviation);
+	}
+
+	/**
+	 * Returns the number of vertices of the polyline of the given arc, without building it
+	 * @param command the arc command
+	 * @param start the absolute start coordinate, in millimeters and degrees
+	 * @param end the absolute end coordinate, in millimeters and degrees
+	 * @return the number of vertices {@link #tessellate(ArcMotionCommand, Tuple6d, Tuple6d)} builds for this arc
+	 */
+	public int getVerticesCount(ArcMotionCommand command, Tuple6d start, Tuple6d end){
+		Tuple6d center = command.getAbsoluteCenterCoordinate(new Tuple6d());
+		int[] axes = getAxes(command.getPlane());
+		double startFirst  = get(start, axes[0]) - get(center, axes[0]);
+		double startSecond = get(start, axes[1]) - get(center, axes[1]);
+		double endFirst    = get(end, axes[0])   - get(center, axes[0]);
+		double endSecond   = get(end, axes[1])   - get(center, axes[1]);
+		double radius = Math.hypot(startFirst, startSecond);
+		double angle  = getAngle(command.isClockwise(), startFirst, startSecond, endFirst, endSecond);
+		return getSegmentCount(radius, angle) + 1;
+	}
+
+	/**
+	 * Returns the length of the given arc, without building its polyline
+	 * @param command the arc command
+	 * @param start the absolute start coordinate, in millimeters and degrees
+	 * @param end the absolute end coordinate, in millimeters and degrees
+	 * @return the length of the arc, including the helical motion
+	 */
+	public static double getLength(ArcMotionCommand command, Tuple6d start, Tuple6d end){
+		Tuple6d center = command.getAbsoluteCenterCoordinate(new Tuple6d());
+		int[] axes = getAxes(command.getPlane());
+		double startFirst  = get(start, axes[0]) - get(center, axes[0]);
+		double startSecond = get(start, axes[1]) - get(center, axes[1]);
+		double endFirst    = get(end, axes[0])   - get(center, axes[0]);
+		double endSecond   = get(end, axes[1])   - get(center, axes[1]);
+		double radius = Math.hypot(startFirst, startSecond);
+		double angle  = getAngle(command.isClockwise(), startFirst, startSecond, endFirst, endSecond);
+		return Math.hypot(radius * angle, get(end, axes[2]) - get(start, axes[2]));
+	}
+
+	/**
+	 * Computes the unit tangents of the given arc at its start and end points, including the helical motion
+	 * @param command the arc command
+	 * @param start the absolute start coordinate, in millimeters and degrees
+	 * @param end the absolute end coordinate, in millimeters and degrees
+	 * @param startTangent the target for the tangent at the start point (x, y, z)
+	 * @param endTangent the target for the tangent at the end point (x, y, z)
+	 * @return the radius of the arc
+	 */
+	public static double getTangents(ArcMotionCommand command, Tuple6d start, Tuple6d end, double[] startTangent, double[] endTangent){
+		Tuple6d center = command.getAbsoluteCenterCoordinate(new Tuple6d());
+		int[] axes = getAxes(command.getPlane());
+		double startFirst  = get(start, axes[0]) - get(center, axes[0]);
+		double startSecond = get(start, axes[1]) - get(center, axes[1]);
+		double endFirst    = get(end, axes[0])   - get(center, axes[0]);
+		double endSecond   = get(end, axes[1])   - get(center, axes[1]);
+		double radius = Math.hypot(startFirst, startSecond);
+		double angle  = getAngle(command.isClockwise(), startFirst, startSecond, endFirst, endSecond);
+		double linearDelta = get(end, axes[2]) - get(start, axes[2]);
+		double length = Math.hypot(radius * angle, linearDelta);
+		if(length == 0){
+			Arrays.fill(startTangent, 0);
+			Arrays.fill(endTangent, 0);
+			return radius;
+		}
+		// Tangent is the radius rotated by 90 degrees in the direction of the arc, scaled to the planar part of the motion
+		double planar = angle / length;
+		double endRadius = Math.hypot(endFirst, endSecond);
+		startTangent[axes[0]] = -startSecond * planar;
+		startTangent[axes[1]] = startFirst * planar;
+		startTangent[axes[2]] = linearDelta / length;
+		if(endRadius > 0){
+			endFirst  = endFirst * radius / endRadius;
+			endSecond = endSecond * radius / endRadius;
+		}
+		endTangent[axes[0]] = -endSecond * planar;
+		endTangent[axes[1]] = endFirst * planar;
+		endTangent[axes[2]] = linearDelta / length;
+		return radius;
+	}
+
+	/**
+	 * Returns the axes of the given plane
+	 * @param plane the plane
+	 * @return the first axis, the second axis and the linear axis (0 for x, 1 for y, 2 for z)
+	 */
+	public static int[] getPlaneAxes(EnumGCodeCommandPlane plane){
+		return Arrays.copyOf(getAxes(plane), 3);
+	}
+
+	/**
+	 * Returns the signed angle of an arc, positive for counterclockwise arcs. An arc ending on its start point is a full circle.
+	 * @param clockwise <code>true</code> for a clockwise arc
+	 * @param startFirst the start coordinate on the first axis of the plane, relative to the center
+	 * @param startSecond the start coordinate on the second axis of the plane, relative to the center
+	 * @param endFirst the end coordinate on the first axis of the plane, relative to the center
+	 * @param endSecond the end coordinate on the second axis of the plane, relative to the center
+	 * @return the angle in radians
+	 */
+	private static double getAngle(boolean clockwise, double startFirst, double startSecond, double endFirst, double endSecond){
+		double angle = Math.atan2(startFirst * endSecond - startSecond * endFirst, startFirst * endFirst + startSecond * endSecond);
+		if(clockwise){
+			if(angle >= -ANGLE_EPSILON){
+				angle -= 2 * Math.PI;
+			}
+		}else{
+			if(angle <= ANGLE_EPSILON){
+				angle += 2 * Math.PI;
+			}
+		}
+		return angle;
+	}
+
+	/**
+	 * Returns the number of segments required to keep the chords within the maximum deviation
+	 * @param radius the radius of the arc
+	 * @param angle the angle of the arc
+	 * @return the number of segments
+	 */
+	private int getSegmentCount(double radius, double angle){
+		double segmentAngle = MAXIMUM_SEGMENT_ANGLE;
+		if(maximumDeviation < radius){
+			// The deviation of a chord is radius * (1 - cos(segmentAngle / 2))
+			segmentAngle = Math.min(segmentAngle, 2 * Math.acos(1 - maximumDeviation / radius));
+		}
+		double segments = Math.ceil(Math.abs(angle) / segmentAngle);
+		return (int) Math.max(1, Math.min(MAXIMUM_SEGMENTS, segments));
+	}
+
+	/**
+	 * Returns the axes of the given plane
+	 * @param plane the plane
+	 * @return the first axis, the second axis and the linear axis
+	 */
+	private static int[] getAxes(EnumGCodeCommandPlane plane){
+		if(plane == EnumGCodeCommandPlane.XZ_PLANE){
+			return XZ_AXES;
+		}else if(plane == EnumGCodeCommandPlane.YZ_PLANE){
+			return YZ_AXES;
+		}
+		return XY_AXES;
+	}
+
+	/**
+	 * Returns the coordinate of the given tuple on the given axis
+	 * @param tuple the tuple
+	 * @param axis the axis : 0 for x, 1 for y, 2 for z
+	 * @return the coordinate
+	 */
+	private static double get(Tuple6d tuple, int axis){
+		switch (axis) {
+		case 0: return tuple.x;
+		case 1: return tuple.y;
+		default: return tuple.z;
+		}
+	}
+
+	/**
+	 * @return the maximum deviation between the polyline and the arc, in millimeters
+	 */
+	public double getMaximumDeviation() {
+		return maximumDeviation;
+	}
+}
@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * 	This file is part of Goko.
+ *
+ *   Goko is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Goko is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Goko.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package org.goko.core.gcode.bean.provider;
+
+import java.util.List;
+
+import org.goko.core.common.exception.GkException;
+import org.goko.core.gcode.bean.GCodeCommand;
+import org.goko.core.gcode.bean.IGCodeProvider;
+import org.goko.core.gcode.bean.commands.MotionCommand;
+import org.goko.core.math.Tuple6d;
+
+/**
+ * Primitive copy of the absolute coordinates of the commands of a provider.
+ * The coordinates are stored as arrays of doubles (6 values per command, in millimeters and degrees) indexed by the position
+ * of the command in the provider. It avoids the allocation of {@link org.goko.core.gcode.bean.Tuple6b} when the exact decimal
+ * values are not required (rendering, time estimation...).
+ * Commands that are not motions keep the position reached by the previous command.
+ *
+ * @author PsyKo
+ *
+ */
+public class GCodeProviderCoordinates {
+	/** Number of values per command */
+	private static final int STRIDE = 6;
+	/** The ids of the commands */
+	private int[] commandIds;
+	/** Motion command flag */
+	private boolean[] motion;
+	/** Absolute start coordinates */
+	private double[] start;
+	/** Absolute end coordinates */
+	private double[] end;
+
+	/**
+	 * Constructor
+	 * @param commandIds the ids of the commands
+	 * @param motion the motion command flags
+	 * @param start the absolute start coordinates, 6 values per command
+	 * @param end the absolute end coordinates, 6 values per command
+	 */
+	public GCodeProviderCoordinates(int[] commandIds, boolean[] motion, double[] start, double[] end) {
+		this.commandIds = commandIds;
+		this.motion 	= motion;
+		this.start 		= start;
+		this.end 		= end;
+	}
+
+	/**
+	 * Returns the coordinates of the given provider. Providers already storing their coordinates as primitives
+	 * ({@link ICoordinatesGCodeProvider}) are used directly, other providers are read command by command.
+	 * @param provider the provider
+	 * @return the {@link GCodeProviderCoordinates}
+	 * @throws GkException GkException
+	 */
+	public static GCodeProviderCoordinates getCoordinates(IGCodeProvider provider) throws GkException{
+		if(provider instanceof ICoordinatesGCodeProvider){
+			return ((ICoordinatesGCodeProvider) provider).getCoordinates();
+		}
+		return new GCodeProviderCoordinates(provider);
+	}
+
+	/**
+	 * Constructor
+	 * @param provider the provider to read
+	 * @throws GkException GkException
+	 */
+	public GCodeProviderCoordinates(IGCodeProvider provider) throws GkException {
+		List<GCodeCommand> commands = provider.getGCodeCommands();
+		int size = commands.size();
+		this.commandIds = new int[size];
+		this.motion 	= new boolean[size];
+		this.start 		= new double[size * STRIDE];
+		this.end 		= new double[size * STRIDE];
+
+		Tuple6d tuple 	 = new Tuple6d();
+		Tuple6d position = new Tuple6d();
+		int index = 0;
+		for (GCodeCommand command : commands) {
+			commandIds[index] = command.getId() == null ? -1 : command.getId();
+			if(command instanceof MotionCommand){
+				MotionCommand motionCommand = (MotionCommand) command;
+				motion[index] = true;
+				store(start, index, motionCommand.getAbsoluteStartCoordinate(tuple));
+				motionCommand.getAbsoluteEndCoordinate(position);
+			}else{
+				store(start, index, position);
+			}
+			store(end, index, position);
+			index++;
+		}
+	}
+
+	/**
+	 * Store the given tuple at the given index
+	 * @param array the target array
+	 * @param index the index of the command
+	 * @param tuple the tuple to store
+	 */
+	private void store(double[] array, int index, Tuple6d tuple){
+		int offset = index * STRIDE;
+		array[offset]     = tuple.x;
+		array[offset + 1] = tuple.y;
+		array[offset + 2] = tuple.z;
+		array[offset + 3] = tuple.a;
+		array[offset + 4] = tuple.b;
+		array[offset + 5] = tuple.c;
+	}
+
+	/**
+	 * Load the values at the given index in the given tuple
+	 * @param array the source array
+	 * @param index the index of the command
+	 * @param target the target tuple
+	 * @return the target tuple
+	 */
+	private Tuple6d load(double[] array, int index, Tuple6d target){
+		int offset = index * STRIDE;
+		target.set(array[offset], array[offset + 1], array[offset + 2], array[offset + 3], array[offset + 4], array[offset + 5]);
+		return target;
+	}
+
+	/**
+	 * @return the number of commands
+	 */
+	public int size(){
+		return commandIds.length;
+	}
+
+	/**
+	 * Returns the index of the command with the given id. Commands are expected to be sorted by id, as they are in parsed files
+	 * @param idCommand the id of the command
+	 * @return the index of the command, or -1 if not found
+	 */
+	public int indexOf(int idCommand){
+		int low  = 0;
+		int high = commandIds.length - 1;
+		while(low <= high){
+			int middle = (low + high) >>> 1;
+			if(commandIds[middle] < idCommand){
+				low = middle + 1;
+			}else if(commandIds[middle] > idCommand){
+				high = middle - 1;
+			}else{
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param index the index of the command
+	 * @return the id of the command at the given index
+	 */
+	public int getCommandId(int index){
+		return commandIds[index];
+	}
+
+	/**
+	 * @param index the index of the command
+	 * @return <code>true</code> if the command at the given index is a motion command
+	 */
+	public boolean isMotion(int index){
+		return motion[index];
+	}
+
+	/**
+	 * Copy the absolute start coordinate of the command at the given index
+	 * @param index the index of the command
+	 * @param target the target tuple
+	 * @return the target tuple
+	 */
+	public Tuple6d getStart(int index, Tuple6d target){
+		return load(start, index, target);
+	}
+
+	/**
+	 * Copy the absolute end coordinate of the command at the given index
+	 * @param index the index of the command
+	 * @param target the target tuple
+	 * @return the target tuple
+	 */
+	public Tuple6d getEnd(int index, Tuple6d target){
+		return load(end, index, target);
+	}
+}
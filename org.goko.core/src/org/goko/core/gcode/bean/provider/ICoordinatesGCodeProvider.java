@@ -0,0 +1,37 @@
+/*******************************************************************************
+ * 	This file is part of Goko.
+ *
+ *   Goko is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Goko is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Goko.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package org.goko.core.gcode.bean.provider;
+
+import org.goko.core.common.exception.GkException;
+import org.goko.core.gcode.bean.IGCodeProvider;
+
+/**
+ * {@link IGCodeProvider} storing the absolute coordinates of its commands as primitives.
+ * Allows consumers to read the coordinates without building the commands.
+ *
+ * @author PsyKo
+ *
+ */
+public interface ICoordinatesGCodeProvider extends IGCodeProvider {
+
+	/**
+	 * Returns the coordinates of the commands of this provider
+	 * @return the {@link GCodeProviderCoordinates}
+	 * @throws GkException GkException
+	 */
+	GCodeProviderCoordinates getCoordinates() throws GkException;
+}
@@ -20,6 +20,7 @@ import org.goko.core.common.exception.GkException;
 import org.goko.core.common.service.IGokoService;
 import org.goko.core.gcode.bean.GCodeCommand;
 import org.goko.core.gcode.bean.GCodeContext;
+import org.goko.core.gcode.bean.IGCodeCommandCursor;
 import org.goko.core.gcode.bean.IGCodeProvider;
 
 public interface IGCodeService extends IGokoService{
@@ -32,6 +33,37 @@ public interface IGCodeService extends IGokoService{
 	 */
 	IGCodeProvider parseFile(String filepath, GCodeContext context) throws GkException;
 
+	/**
+	 * Open a file as a cursor over its commands. Commands are parsed on demand, allowing a consumer to start
+	 * working on the first commands while the rest of the file is not read yet. The returned cursor has to be closed.
+	 * @param filepath the path to file
+	 * @param context the base parsing context
+	 * @return {@link IGCodeCommandCursor}
+	 * @throws GkException GkException
+	 */
+	IGCodeCommandCursor openFile(String filepath, GCodeContext context) throws GkException;
+
+	/**
+	 * Index a file as a provider which decodes its commands on demand from a memory mapped view of the file.
+	 * Intended for files too large to be held in memory as a whole.
+	 * @param filepath the path to file
+	 * @param context the base parsing context
+	 * @return {@link IGCodeProvider}
+	 * @throws GkException GkException
+	 */
+	IGCodeProvider indexFile(String filepath, GCodeContext context) throws GkException;
+
+	/**
+	 * Parse a file as a compact provider storing its commands in primitive columns. Commands returned by the provider
+	 * are built on demand and modifications on them are not kept.
+	 * Intended for big files that are only displayed and sent.
+	 * @param filepath the path to file
+	 * @param context the base parsing context
+	 * @return {@link IGCodeProvider}
+	 * @throws GkException GkException
+	 */
+	IGCodeProvider parseCompactFile(String filepath, GCodeContext context) throws GkException;
+
 	/**
 	 * Parse a string ile as a GCodeFile
 	 * @param gcode the gcode to parse
@@ -0,0 +1,87 @@
+/*
+ *	This file is part of Goko.
+ *
+ *  Goko is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Goko is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Goko.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.goko.core.math;
+
+import javax.vecmath.Tuple3d;
+
+/**
+ * Primitive double precision 6 axis tuple.
+ * Lengths are expressed in millimeters and angles in degrees.
+ *
+ * @author PsyKo
+ *
+ */
+public class Tuple6d extends Tuple3d {
+	/**
+	 * Generated serialVersionUID
+	 */
+	private static final long serialVersionUID = -7982865046440409898L;
+	public double a;
+	public double b;
+	public double c;
+
+	public Tuple6d() {
+		super();
+		this.a = 0;
+		this.b = 0;
+		this.c = 0;
+	}
+
+	public Tuple6d(double x, double y, double z, double a, double b, double c) {
+		super(x,y,z);
+		this.a = a;
+		this.b = b;
+		this.c = c;
+	}
+
+	public Tuple6d(Tuple6d t) {
+		super(t);
+		this.a = t.a;
+		this.b = t.b;
+		this.c = t.c;
+	}
+
+	public void set(double x, double y, double z, double a, double b, double c){
+		super.set(x, y, z);
+		this.a = a;
+		this.b = b;
+		this.c = c;
+	}
+
+	public void set(Tuple6d t){
+		super.set(t);
+		this.a = t.a;
+		this.b = t.b;
+		this.c = t.c;
+	}
+
+	public void add(Tuple6d t){
+		super.add(t);
+		this.a += t.a;
+		this.b += t.b;
+		this.c += t.c;
+	}
+
+	public void sub(Tuple6d t){
+		super.sub(t);
+		this.a -= t.a;
+		this.b -= t.b;
+		this.c -= t.c;
+	}
+
+}
@@ -18,15 +18,18 @@ package org.goko.common.events;
 
 import java.lang.ref.WeakReference;
 
+import org.goko.core.common.event.CoalescableEvent;
 import org.goko.core.gcode.bean.GCodeCommand;
 
 /**
  * Event for GCodeCommand selection event
- *
+ * <p>
+ * Only the latest selection matters, so a pending selection event is replaced by the newer one.
+ * </p>
  * @author PsyKo
  *
  */
-public class GCodeCommandSelectionEvent {
+public class GCodeCommandSelectionEvent implements CoalescableEvent {
 	/** Weak reference to the command */
 	private WeakReference<GCodeCommand> command;
 
@@ -0,0 +1,181 @@
+package org.goko.gcode.filesender.controller;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.goko.core.common.GkUtils;
+import org.goko.core.common.exception.GkException;
+import org.goko.core.gcode.bean.GCodeCommand;
+import org.goko.core.gcode.bean.GCodeContext;
+import org.goko.core.gcode.bean.GCodeFile;
+import org.goko.core.gcode.bean.IGCodeCommandCursor;
+import org.goko.core.gcode.bean.IGCodeProvider;
+import org.goko.core.gcode.bean.commands.LinearMotionCommand;
+import org.goko.core.gcode.service.IGCodeService;
+
+public class GCodeLineIndexTestCase extends TestCase {
+
+	/**
+	 * Renders each command as the prefix, "G1 X" by default, followed by its id
+	 */
+	static class RenderingService implements IGCodeService{
+		int convertCount;
+		String prefix = "G1 X";
+
+		@Override
+		public byte[] convert(GCodeCommand command) throws GkException {
+			convertCount++;
+			return GkUtils.toBytes(prefix+command.getId());
+		}
+		@Override
+		public String getServiceId() throws GkException { return "test"; }
+		@Override
+		public void start() throws GkException {}
+		@Override
+		public void stop() throws GkException {}
+		@Override
+		public IGCodeProvider parseFile(String filepath, GCodeContext context) throws GkException { return null; }
+		@Override
+		public IGCodeCommandCursor openFile(String filepath, GCodeContext context) throws GkException { return null; }
+		@Override
+		public IGCodeProvider indexFile(String filepath, GCodeContext context) throws GkException { return null; }
+		@Override
+		public IGCodeProvider parseCompactFile(String filepath, GCodeContext context) throws GkException { return null; }
+		@Override
+		public IGCodeProvider parse(String gcode, GCodeContext context) throws GkException { return null; }
+		@Override
+		public GCodeCommand parseCommand(String command, GCodeContext context) throws GkException { return null; }
+		@Override
+		public void update(GCodeContext context, GCodeCommand command) throws GkException {}
+	}
+
+	private GCodeLineIndex createIndex(RenderingService service, int... ids) throws GkException{
+		List<GCodeCommand> commands = new ArrayList<GCodeCommand>();
+		for (int id : ids) {
+			GCodeCommand command = new LinearMotionCommand();
+			command.setId(id);
+			commands.add(command);
+		}
+		return new GCodeLineIndex(new GCodeFile(commands), service, "\n");
+	}
+
+	public void testLineOffsets() throws Exception {
+		// "G1 X1\nG1 X2\nG1 X10\n"
+		GCodeLineIndex index = createIndex(new RenderingService(), 1, 2, 10);
+		assertEquals(3, index.getLineCount());
+		assertEquals(19, index.getLength());
+		assertEquals(0, index.getLineOffset(0));
+		assertEquals(6, index.getLineOffset(1));
+		assertEquals(12, index.getLineOffset(2));
+		assertEquals(19, index.getLineOffset(3));
+		assertEquals(6, index.getLineLength(0));
+		assertEquals(7, index.getLineLength(2));
+	}
+
+	public void testLineOfOffset() throws Exception {
+		GCodeLineIndex index = createIndex(new RenderingService(), 1, 2, 10);
+		assertEquals(0, index.getLineOfOffset(0));
+		assertEquals(0, index.getLineOfOffset(5));
+		assertEquals(1, index.getLineOfOffset(6));
+		assertEquals(2, index.getLineOfOffset(18));
+		// The length of the document belongs to the line following the last command line
+		assertEquals(3, index.getLineOfOffset(19));
+	}
+
+	public void testText() throws Exception {
+		GCodeLineIndex index = createIndex(new RenderingService(), 1, 2, 10);
+		assertEquals("G1 X2", index.getLine(1));
+		assertEquals("G1 X1\nG1 X2\nG1 X10\n", index.get(0, index.getLength()));
+		assertEquals("X1\nG1", index.get(3, 5));
+		assertEquals("", index.get(19, 0));
+		assertEquals('G', index.getChar(0));
+		assertEquals('\n', index.getChar(5));
+		assertEquals('0', index.getChar(17));
+		assertEquals('\n', index.getChar(18));
+	}
+
+	public void testOutOfBounds() throws Exception {
+		GCodeLineIndex index = createIndex(new RenderingService(), 1, 2, 10);
+		try{
+			index.getChar(index.getLength());
+			fail("Offset out of bounds expected");
+		}catch(IndexOutOfBoundsException e){
+			// Expected
+		}
+		try{
+			index.getChar(-1);
+			fail("Offset out of bounds expected");
+		}catch(IndexOutOfBoundsException e){
+			// Expected
+		}
+		try{
+			index.get(15, 5);
+			fail("Range out of bounds expected");
+		}catch(IndexOutOfBoundsException e){
+			// Expected
+		}
+	}
+
+	public void testEmptyDocument() throws Exception {
+		GCodeLineIndex index = createIndex(new RenderingService());
+		assertEquals(0, index.getLineCount());
+		assertEquals(0, index.getLength());
+		assertEquals(0, index.getLineOfOffset(0));
+		assertEquals("", index.get(0, 0));
+	}
+
+	public void testLineForCommand() throws Exception {
+		GCodeLineIndex sorted = createIndex(new RenderingService(), 1, 2, 10);
+		assertEquals(0, sorted.getLineForCommand(1));
+		assertEquals(2, sorted.getLineForCommand(10));
+		assertEquals(-1, sorted.getLineForCommand(5));
+
+		GCodeLineIndex unsorted = createIndex(new RenderingService(), 10, 2, 1);
+		assertEquals(2, unsorted.getLineForCommand(1));
+		assertEquals(0, unsorted.getLineForCommand(10));
+		assertEquals(-1, unsorted.getLineForCommand(5));
+	}
+
+	public void testLinesRenderedOnDemand() throws Exception {
+		int[] ids = new int[1000];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = i;
+		}
+		RenderingService service = new RenderingService();
+		GCodeLineIndex index = createIndex(service, ids);
+		assertEquals(1000, service.convertCount);
+
+		// The first lines are cached while building the index
+		assertEquals("G1 X10", index.getLine(10));
+		assertEquals(1000, service.convertCount);
+		// Other lines are rendered once when requested
+		assertEquals("G1 X900", index.getLine(900));
+		assertEquals("G1 X900", index.getLine(900));
+		assertEquals(1001, service.convertCount);
+		assertEquals('9', index.getChar(index.getLineOffset(900) + 4));
+	}
+
+	/**
+	 * A line rendered with another length than the indexed one is an error, its text is not patched
+	 * @throws Exception Exception
+	 */
+	public void testRenderingMismatch() throws Exception {
+		int[] ids = new int[1000];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = i;
+		}
+		RenderingService service = new RenderingService();
+		GCodeLineIndex index = createIndex(service, ids);
+		service.prefix = "G01 X";
+		try{
+			index.getLine(900);
+			fail("Rendering mismatch expected");
+		}catch(IllegalStateException e){
+			// Expected
+		}
+		// Cached lines are not rendered again
+		assertEquals("G1 X10", index.getLine(10));
+	}
+}
@@ -16,54 +16,58 @@
  *******************************************************************************/
 package org.goko.gcode.filesender.controller;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-
-import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.AbstractDocument;
+import org.eclipse.jface.text.DefaultLineTracker;
+import org.eclipse.jface.text.GapTextStore;
 import org.goko.core.common.exception.GkException;
-import org.goko.core.gcode.bean.GCodeCommand;
 import org.goko.core.gcode.bean.IGCodeProvider;
 import org.goko.core.gcode.service.IGCodeService;
 import org.goko.core.log.GkLog;
 
-public class GCodeDocumentProvider extends Document {
+/**
+ * Read only document displaying one command per line
+ * The text is not stored in the document : lines are rendered from the provider when the viewer requests them, using a line offset index.
+ * The highlighting is done line by line when lines are painted (see GCodeLineStyler).
+ *
+ * @author PsyKo
+ *
+ */
+public class GCodeDocumentProvider extends AbstractDocument {
 	private static final GkLog LOG = GkLog.getLogger(GCodeDocumentProvider.class);
 
 	/** EOL String token */
 	private static String EOL = System.getProperty("line.separator");
 
 	private IGCodeProvider gcodeProvider;
-	private Map<Integer, Integer> gCodeCommandLine;
+	/** The line offset index, <code>null</code> if the provider could not be indexed */
+	private GCodeLineIndex lineIndex;
 
 	private IGCodeService gcodeService;
 
 	public GCodeDocumentProvider(IGCodeProvider gcodeProvider, IGCodeService gcodeService){
 		this.gcodeProvider = gcodeProvider;
 		this.gcodeService = gcodeService;
-		this.gCodeCommandLine = new HashMap<Integer, Integer>();
 		try {
 			init();
 		} catch (GkException e) {
 			LOG.error(e);
+			// Empty document
+			lineIndex = null;
+			setTextStore(new GapTextStore());
+			setLineTracker(new DefaultLineTracker());
 		}
+		completeInitialization();
 	}
 
 	private void init() throws GkException {
-		List<GCodeCommand> lstCommands = gcodeProvider.getGCodeCommands();
-		int line = 0;
-		StringBuffer buffer = new StringBuffer();
-		for (GCodeCommand gCodeCommand : lstCommands) {
-			buffer.append(new String(gcodeService.convert(gCodeCommand)));//GCodeFileTextRenderer.render(gCodeCommand) );
-			buffer.append(EOL);
-			gCodeCommandLine.put(gCodeCommand.getId(), line++);
-		}
-		set(buffer.toString());
+		lineIndex = new GCodeLineIndex(gcodeProvider, gcodeService, EOL);
+		setTextStore(new GCodeTextStore(lineIndex));
+		setLineTracker(new GCodeLineTracker(lineIndex));
 	}
 
 	public int getLineForCommand(int idCommand){
-		if(gCodeCommandLine.containsKey(idCommand)){
-			return gCodeCommandLine.get(idCommand);
+		if(lineIndex != null){
+			return lineIndex.getLineForCommand(idCommand);
 		}
 		return -1;
 	}
@@ -41,7 +41,9 @@ import org.goko.core.controller.bean.MachineState;
 import org.goko.core.controller.bean.MachineValue;
 import org.goko.core.controller.bean.MachineValueDefinition;
 import org.goko.core.controller.event.MachineValueUpdateEvent;
+import org.goko.core.execution.GCodeExecutionTimeline;
 import org.goko.core.execution.IGCodeExecutionTimeService;
+import org.goko.core.gcode.bean.GCodeCommandState;
 import org.goko.core.gcode.bean.GCodeContext;
 import org.goko.core.gcode.bean.IGCodeProvider;
 import org.goko.core.gcode.bean.execution.IGCodeExecutionToken;
@@ -83,6 +85,10 @@ public class GCodeFileSenderController extends AbstractController<GCodeFileSende
 	private IGCodeExecutionMonitorService monitorService;
 
 	private Runnable elapsedTimeRunnable;
+	/** The execution timeline of the current provider */
+	private volatile GCodeExecutionTimeline executionTimeline;
+	/** Id of the last command of the stream whose state changed */
+	private volatile Integer lastCommandId;
 
 	/**
 	 * Constructor
@@ -158,6 +164,7 @@ public class GCodeFileSenderController extends AbstractController<GCodeFileSende
 			getDataModel().setFileLastUpdate( StringUtils.EMPTY );
 			getDataModel().setFileSize( StringUtils.EMPTY );
 			getDataModel().setgCodeDocument(null);
+			executionTimeline = null;
 			throw e;
 		}
 		updateStreamingAllowed();
@@ -210,10 +217,10 @@ public class GCodeFileSenderController extends AbstractController<GCodeFileSende
 		GCodeContext currentContext = controllerService.getCurrentGCodeContext();
 		IGCodeProvider gcodeFile = gCodeService.parseFile(getDataModel().getFilePath(), currentContext);
 		getDataModel().setGcodeProvider(gcodeFile);
-		long seconds = (long) timeService.evaluateExecutionTime(gcodeFile);
+		executionTimeline = timeService.evaluateExecutionTimeline(gcodeFile);
 
 		getDataModel().setTotalCommandCount(CollectionUtils.size(gcodeFile.getGCodeCommands()));
-		getDataModel().setRemainingTime(getDurationAsString(seconds*1000));		
+		updateRemainingTime(executionTimeline.getTotalTime());
 		workspaceService.addGCodeProvider(gcodeFile);
 
 	}
@@ -240,13 +247,20 @@ public class GCodeFileSenderController extends AbstractController<GCodeFileSende
 
 	public void startFileStreaming(){
 		try{
-			GCodeExecutionToken token = controllerService.executeGCode(getDataModel().getGcodeProvider());
-			if(getDataModel().getGcodeProvider() != null){
-				workspaceService.deleteGCodeProvider(getDataModel().getGcodeProvider().getId());
+			IGCodeProvider provider = getDataModel().getGcodeProvider();
+			GCodeExecutionToken token = controllerService.executeGCode(provider);
+			if(provider != null){
+				workspaceService.deleteGCodeProvider(provider.getId());
 			}
 
 			getDataModel().setSentCommandCount( 0 );
 			getDataModel().setTotalCommandCount( token.getCommandCount() );
+			// The token keeps the commands, and their ids, of the streamed provider
+			if(executionTimeline == null || executionTimeline.getProvider() != provider){
+				executionTimeline = timeService.evaluateExecutionTimeline(token);
+			}
+			lastCommandId = null;
+			updateRemainingTime(executionTimeline.getTotalTime());
 
 			token.addListener(this);
 			getDataModel().setGcodeProvider(token);
@@ -284,6 +298,14 @@ public class GCodeFileSenderController extends AbstractController<GCodeFileSende
 		getDataModel().setElapsedTime(getDurationAsString(elapsedTime));
 	}
 
+	/**
+	 * Update the displayed remaining time
+	 * @param seconds the remaining time in seconds
+	 */
+	private void updateRemainingTime(double seconds){
+		getDataModel().setRemainingTime(getDurationAsString((long) (seconds * 1000)));
+	}
+
 	protected String getDurationAsString(long milliseconds){
 		int seconds = (int) (milliseconds / 1000) % 60 ;
 		int minutes = (int) ((milliseconds / (1000*60)) % 60);
@@ -383,7 +405,20 @@ public class GCodeFileSenderController extends AbstractController<GCodeFileSende
 	 */
 	@Override
 	public void onExecutionPause(IGCodeExecutionToken token) throws GkException {
-		
+		// The machine stops, so the remaining commands start again at rest
+		GCodeExecutionTimeline timeline = executionTimeline;
+		if(timeline == null){
+			return;
+		}
+		int nextIndex = 0;
+		if(lastCommandId != null){
+			nextIndex = timeline.getIndex(lastCommandId) + 1;
+		}
+		if(nextIndex > 0 && nextIndex < timeline.getCommandCount()){
+			Integer nextCommandId = token.getGCodeCommands().get(nextIndex).getId();
+			timeService.updateExecutionTimeline(token, timeline, nextCommandId, 1);
+			updateRemainingTime(timeline.getRemainingTime(lastCommandId));
+		}
 	}
 
 	@Override
@@ -394,6 +429,13 @@ public class GCodeFileSenderController extends AbstractController<GCodeFileSende
 	@Override
 	public void onCommandStateChanged(IGCodeExecutionToken token, Integer idCommand) throws GkException {
 		getDataModel().setSentCommandCount( token.getExecutedCommandCount()+ token.getErrorCommandCount() );
-		getDataModel().setTotalCommandCount( token.getCommandCount() );		
+		getDataModel().setTotalCommandCount( token.getCommandCount() );
+		GCodeExecutionTimeline timeline = executionTimeline;
+		// Sent commands are only queued by the controller, the remaining time follows the completed ones
+		GCodeCommandState state = token.getCommandState(idCommand);
+		if(timeline != null && (state.isState(GCodeCommandState.EXECUTED) || state.isState(GCodeCommandState.CONFIRMED))){
+			lastCommandId = idCommand;
+			updateRemainingTime(timeline.getRemainingTime(idCommand));
+		}
 	}
 }
@@ -0,0 +1,263 @@
+/*******************************************************************************
+ * 	This file is part of Goko.
+ *
+ *   Goko is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Goko is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Goko.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package org.goko.gcode.filesender.controller;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.goko.core.common.exception.GkException;
+import org.goko.core.gcode.bean.GCodeCommand;
+import org.goko.core.gcode.bean.IGCodeProvider;
+import org.goko.core.gcode.service.IGCodeService;
+import org.goko.core.log.GkLog;
+
+/**
+ * Line offset index of a GCode document
+ * The document contains one line per command. Only the offsets of the lines are kept, the text of a line is rendered
+ * from its command when requested, and the most recently requested lines are kept in a small cache.
+ *
+ * @author PsyKo
+ *
+ */
+public class GCodeLineIndex {
+	/** LOG */
+	private static final GkLog LOG = GkLog.getLogger(GCodeLineIndex.class);
+	/** Number of rendered lines kept in cache */
+	private static final int CACHE_SIZE = 512;
+	/** The provider */
+	private IGCodeProvider gcodeProvider;
+	/** The service used to render the commands */
+	private IGCodeService gcodeService;
+	/** The line delimiter */
+	private String delimiter;
+	/** The id of the command of each line */
+	private int[] commandIds;
+	/** <code>true</code> if the ids of the commands are increasing */
+	private boolean sortedIds;
+	/** Offset of each line, the last one being the length of the document */
+	private int[] lineOffsets;
+	/** Recently rendered lines, without delimiter */
+	private Map<Integer, String> cache;
+
+	/**
+	 * Constructor
+	 * @param gcodeProvider the provider
+	 * @param gcodeService the service used to render the commands
+	 * @param delimiter the line delimiter
+	 * @throws GkException GkException
+	 */
+	public GCodeLineIndex(IGCodeProvider gcodeProvider, IGCodeService gcodeService, String delimiter) throws GkException {
+		this.gcodeProvider = gcodeProvider;
+		this.gcodeService = gcodeService;
+		this.delimiter = delimiter;
+		this.cache = new LinkedHashMap<Integer, String>(CACHE_SIZE, 0.75f, true){
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+				return size() > CACHE_SIZE;
+			}
+		};
+		build();
+	}
+
+	/**
+	 * Render every command once to compute the offsets of the lines. The first lines are kept in cache since they are the first displayed
+	 * @throws GkException GkException
+	 */
+	private void build() throws GkException{
+		List<GCodeCommand> lstCommands = gcodeProvider.getGCodeCommands();
+		int count = lstCommands.size();
+		commandIds  = new int[count];
+		lineOffsets = new int[count + 1];
+		sortedIds   = true;
+		int offset = 0;
+		int line = 0;
+		for (GCodeCommand gCodeCommand : lstCommands) {
+			String text = new String(gcodeService.convert(gCodeCommand));
+			if(line < CACHE_SIZE){
+				cache.put(line, text);
+			}
+			commandIds[line]  = gCodeCommand.getId();
+			lineOffsets[line] = offset;
+			if(line > 0 && commandIds[line] <= commandIds[line - 1]){
+				sortedIds = false;
+			}
+			offset += text.length() + delimiter.length();
+			line++;
+		}
+		lineOffsets[count] = offset;
+	}
+
+	/**
+	 * @return the number of commands lines
+	 */
+	public int getLineCount(){
+		return commandIds.length;
+	}
+
+	/**
+	 * @return the total length of the document
+	 */
+	public int getLength(){
+		return lineOffsets[commandIds.length];
+	}
+
+	/**
+	 * @param line the index of the line
+	 * @return the offset of the line
+	 */
+	public int getLineOffset(int line){
+		return lineOffsets[line];
+	}
+
+	/**
+	 * @param line the index of the line
+	 * @return the length of the line, including its delimiter
+	 */
+	public int getLineLength(int line){
+		return lineOffsets[line + 1] - lineOffsets[line];
+	}
+
+	/**
+	 * @return the line delimiter
+	 */
+	public String getDelimiter(){
+		return delimiter;
+	}
+
+	/**
+	 * Returns the line containing the given offset. The length of the document belongs to the line following the last command line
+	 * @param offset the offset
+	 * @return the index of the line
+	 */
+	public int getLineOfOffset(int offset){
+		int low  = 0;
+		int high = commandIds.length;
+		while(low < high){
+			int middle = (low + high + 1) >>> 1;
+			if(lineOffsets[middle] <= offset){
+				low = middle;
+			}else{
+				high = middle - 1;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Returns the text of the given line, without delimiter
+	 * @param line the index of the line
+	 * @return the text
+	 * @throws IllegalStateException if the line can't be rendered, or if its rendering no longer matches the indexed length
+	 */
+	public String getLine(int line){
+		String text = cache.get(line);
+		if(text == null){
+			try {
+				GCodeCommand command = gcodeProvider.getCommandById(commandIds[line]);
+				text = new String(gcodeService.convert(command));
+			} catch (GkException e) {
+				throw new IllegalStateException(e);
+			}
+			// The offsets of the following lines depend on this length, a different rendering means the index is wrong
+			int length = getLineLength(line) - delimiter.length();
+			if(text.length() != length){
+				String message = "Line "+line+" of command "+commandIds[line]+" is rendered with "+text.length()+" characters instead of the "+length+" indexed : '"+text+"'";
+				LOG.error(message);
+				throw new IllegalStateException(message);
+			}
+			cache.put(line, text);
+		}
+		return text;
+	}
+
+	/**
+	 * Returns the character at the given offset
+	 * @param offset the offset
+	 * @return the character
+	 * @throws IndexOutOfBoundsException if the offset is not in the document
+	 */
+	public char getChar(int offset){
+		if(offset < 0 || offset >= getLength()){
+			throw new IndexOutOfBoundsException("Offset "+offset+" is out of the document of length "+getLength());
+		}
+		int line = getLineOfOffset(offset);
+		int column = offset - lineOffsets[line];
+		String text = getLine(line);
+		if(column < text.length()){
+			return text.charAt(column);
+		}
+		return delimiter.charAt(column - text.length());
+	}
+
+	/**
+	 * Returns the text of the given range, rendering only the lines it covers
+	 * @param offset the offset of the range
+	 * @param length the length of the range
+	 * @return the text
+	 * @throws IndexOutOfBoundsException if the range is not in the document
+	 */
+	public String get(int offset, int length){
+		if(offset < 0 || length < 0 || offset + length > getLength()){
+			throw new IndexOutOfBoundsException("Range ["+offset+", "+(offset + length)+"] is out of the document of length "+getLength());
+		}
+		StringBuilder buffer = new StringBuilder(length);
+		int end  = offset + length;
+		int line = getLineOfOffset(offset);
+		int current = offset;
+		while(current < end){
+			String text = getLine(line) + delimiter;
+			int column = current - lineOffsets[line];
+			int count  = Math.min(text.length() - column, end - current);
+			buffer.append(text, column, column + count);
+			current += count;
+			line++;
+		}
+		return buffer.toString();
+	}
+
+	/**
+	 * Returns the line of the given command
+	 * @param idCommand the id of the command
+	 * @return the index of the line or -1 if the command is not in the document
+	 */
+	public int getLineForCommand(int idCommand){
+		if(sortedIds){
+			int low  = 0;
+			int high = commandIds.length - 1;
+			while(low <= high){
+				int middle = (low + high) >>> 1;
+				if(commandIds[middle] < idCommand){
+					low = middle + 1;
+				}else if(commandIds[middle] > idCommand){
+					high = middle - 1;
+				}else{
+					return middle;
+				}
+			}
+			return -1;
+		}
+		for (int i = 0; i < commandIds.length; i++) {
+			if(commandIds[i] == idCommand){
+				return i;
+			}
+		}
+		return -1;
+	}
+}
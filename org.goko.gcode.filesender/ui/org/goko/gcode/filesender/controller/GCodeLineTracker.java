@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * 	This file is part of Goko.
+ *
+ *   Goko is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Goko is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Goko.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package org.goko.gcode.filesender.controller;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.ILineTracker;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.Region;
+import org.eclipse.jface.text.TextUtilities;
+
+/**
+ * Read only line tracker using the offsets of a {@link GCodeLineIndex}
+ * As in any document ending with a delimiter, the last line is an empty line located at the end of the document.
+ *
+ * @author PsyKo
+ *
+ */
+public class GCodeLineTracker implements ILineTracker {
+	/** The line index */
+	private GCodeLineIndex index;
+
+	/**
+	 * Constructor
+	 * @param index the line index
+	 */
+	public GCodeLineTracker(GCodeLineIndex index) {
+		this.index = index;
+	}
+
+	/** (inheritDoc)
+	 * @see org.eclipse.jface.text.ILineTracker#getLegalLineDelimiters()
+	 */
+	@Override
+	public String[] getLegalLineDelimiters() {
+		return TextUtilities.copy(TextUtilities.DELIMITERS);
+	}
+
+	/** (inheritDoc)
+	 * @see org.eclipse.jface.text.ILineTracker#getLineDelimiter(int)
+	 */
+	@Override
+	public String getLineDelimiter(int line) throws BadLocationException {
+		checkLine(line);
+		if(line == index.getLineCount()){
+			return null;
+		}
+		return index.getDelimiter();
+	}
+
+	/** (inheritDoc)
+	 * @see org.eclipse.jface.text.ILineTracker#computeNumberOfLines(java.lang.String)
+	 */
+	@Override
+	public int computeNumberOfLines(String text) {
+		int count = 0;
+		int length = text.length();
+		for (int i = 0; i < length; i++) {
+			char c = text.charAt(i);
+			if(c == '\r'){
+				if(i + 1 < length && text.charAt(i + 1) == '\n'){
+					i++;
+				}
+				count++;
+			}else if(c == '\n'){
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/** (inheritDoc)
+	 * @see org.eclipse.jface.text.ILineTracker#getNumberOfLines()
+	 */
+	@Override
+	public int getNumberOfLines() {
+		return index.getLineCount() + 1;
+	}
+
+	/** (inheritDoc)
+	 * @see org.eclipse.jface.text.ILineTracker#getNumberOfLines(int, int)
+	 */
+	@Override
+	public int getNumberOfLines(int offset, int length) throws BadLocationException {
+		checkOffset(offset);
+		checkOffset(offset + length);
+		if(length == 0){
+			return 1;
+		}
+		return index.getLineOfOffset(offset + length) - index.getLineOfOffset(offset) + 1;
+	}
+
+	/** (inheritDoc)
+	 * @see org.eclipse.jface.text.ILineTracker#getLineOffset(int)
+	 */
+	@Override
+	public int getLineOffset(int line) throws BadLocationException {
+		checkLine(line);
+		return index.getLineOffset(line);
+	}
+
+	/** (inheritDoc)
+	 * @see org.eclipse.jface.text.ILineTracker#getLineLength(int)
+	 */
+	@Override
+	public int getLineLength(int line) throws BadLocationException {
+		checkLine(line);
+		if(line == index.getLineCount()){
+			return 0;
+		}
+		return index.getLineLength(line);
+	}
+
+	/** (inheritDoc)
+	 * @see org.eclipse.jface.text.ILineTracker#getLineNumberOfOffset(int)
+	 */
+	@Override
+	public int getLineNumberOfOffset(int offset) throws BadLocationException {
+		checkOffset(offset);
+		return index.getLineOfOffset(offset);
+	}
+
+	/** (inheritDoc)
+	 * @see org.eclipse.jface.text.ILineTracker#getLineInformationOfOffset(int)
+	 */
+	@Override
+	public IRegion getLineInformationOfOffset(int offset) throws BadLocationException {
+		return getLineInformation(getLineNumberOfOffset(offset));
+	}
+
+	/** (inheritDoc)
+	 * @see org.eclipse.jface.text.ILineTracker#getLineInformation(int)
+	 */
+	@Override
+	public IRegion getLineInformation(int line) throws BadLocationException {
+		checkLine(line);
+		if(line == index.getLineCount()){
+			return new Region(index.getLength(), 0);
+		}
+		return new Region(index.getLineOffset(line), index.getLineLength(line) - index.getDelimiter().length());
+	}
+
+	/** (inheritDoc)
+	 * @see org.eclipse.jface.text.ILineTracker#replace(int, int, java.lang.String)
+	 */
+	@Override
+	public void replace(int offset, int length, String text) throws BadLocationException {
+		throw new UnsupportedOperationException("GCode document is read only");
+	}
+
+	/** (inheritDoc)
+	 * @see org.eclipse.jface.text.ILineTracker#set(java.lang.String)
+	 */
+	@Override
+	public void set(String text) {
+		throw new UnsupportedOperationException("GCode document is read only");
+	}
+
+	private void checkLine(int line) throws BadLocationException{
+		if(line < 0 || line > index.getLineCount()){
+			throw new BadLocationException();
+		}
+	}
+
+	private void checkOffset(int offset) throws BadLocationException{
+		if(offset < 0 || offset > index.getLength()){
+			throw new BadLocationException();
+		}
+	}
+}
@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * 	This file is part of Goko.
+ *
+ *   Goko is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Goko is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Goko.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package org.goko.gcode.filesender.controller;
+
+import org.eclipse.jface.text.ITextStore;
+
+/**
+ * Read only text store serving the text of a {@link GCodeLineIndex}
+ *
+ * @author PsyKo
+ *
+ */
+public class GCodeTextStore implements ITextStore {
+	/** The line index */
+	private GCodeLineIndex index;
+
+	/**
+	 * Constructor
+	 * @param index the line index
+	 */
+	public GCodeTextStore(GCodeLineIndex index) {
+		this.index = index;
+	}
+
+	/** (inheritDoc)
+	 * @see org.eclipse.jface.text.ITextStore#get(int)
+	 */
+	@Override
+	public char get(int offset) {
+		return index.getChar(offset);
+	}
+
+	/** (inheritDoc)
+	 * @see org.eclipse.jface.text.ITextStore#get(int, int)
+	 */
+	@Override
+	public String get(int offset, int length) {
+		return index.get(offset, length);
+	}
+
+	/** (inheritDoc)
+	 * @see org.eclipse.jface.text.ITextStore#getLength()
+	 */
+	@Override
+	public int getLength() {
+		return index.getLength();
+	}
+
+	/** (inheritDoc)
+	 * @see org.eclipse.jface.text.ITextStore#replace(int, int, java.lang.String)
+	 */
+	@Override
+	public void replace(int offset, int length, String text) {
+		throw new UnsupportedOperationException("GCode document is read only");
+	}
+
+	/** (inheritDoc)
+	 * @see org.eclipse.jface.text.ITextStore#set(java.lang.String)
+	 */
+	@Override
+	public void set(String text) {
+		throw new UnsupportedOperationException("GCode document is read only");
+	}
+}
@@ -37,6 +37,8 @@ public class GCodeEditor extends SourceViewer{
 		super(parent, ruler, styles);
 		GCodeEditorConfiguration configuration = new GCodeEditorConfiguration();
 		configure(configuration);
+		setEditable(false);
+		getTextWidget().addLineStyleListener(new GCodeLineStyler(this, configuration.getScanner()));
 	}
 
 	/**
@@ -50,6 +52,8 @@ public class GCodeEditor extends SourceViewer{
 		super(parent, verticalRuler, overviewRuler, showAnnotationsOverview, styles);
 		GCodeEditorConfiguration configuration = new GCodeEditorConfiguration();
 		configure(configuration);
+		setEditable(false);
+		getTextWidget().addLineStyleListener(new GCodeLineStyler(this, configuration.getScanner()));
 
 	}
 
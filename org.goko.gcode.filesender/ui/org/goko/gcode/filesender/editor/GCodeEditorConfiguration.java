@@ -16,10 +16,7 @@
  *******************************************************************************/
 package org.goko.gcode.filesender.editor;
 
-import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.presentation.IPresentationReconciler;
-import org.eclipse.jface.text.presentation.PresentationReconciler;
-import org.eclipse.jface.text.rules.DefaultDamagerRepairer;
 import org.eclipse.jface.text.rules.ITokenScanner;
 import org.eclipse.jface.text.source.ISourceViewer;
 import org.eclipse.jface.text.source.SourceViewerConfiguration;
@@ -28,19 +25,17 @@ public class GCodeEditorConfiguration extends SourceViewerConfiguration {
 
 	private ITokenScanner scanner;
 
+	/**
+	 * The presentation is computed line by line by the {@link GCodeLineStyler}, to avoid scanning the whole document
+	 * @see org.eclipse.jface.text.source.SourceViewerConfiguration#getPresentationReconciler(org.eclipse.jface.text.source.ISourceViewer)
+	 */
 	@Override
 	public IPresentationReconciler getPresentationReconciler(ISourceViewer sourceViewer) {
-		PresentationReconciler reconciler = new PresentationReconciler();
-
-		DefaultDamagerRepairer damager = new DefaultDamagerRepairer(getScanner());
-		reconciler.setDamager(damager, IDocument.DEFAULT_CONTENT_TYPE);
-		reconciler.setRepairer(damager, IDocument.DEFAULT_CONTENT_TYPE);
-
-		return reconciler;
+		return null;
 	}
 
 
-	private ITokenScanner getScanner(){
+	public ITokenScanner getScanner(){
 		if(scanner == null) {
 			scanner=new GCodeEditorScanner();
 		}
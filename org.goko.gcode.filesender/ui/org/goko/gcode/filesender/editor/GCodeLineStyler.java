@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * 	This file is part of Goko.
+ *
+ *   Goko is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Goko is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Goko.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package org.goko.gcode.filesender.editor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.ITextViewer;
+import org.eclipse.jface.text.TextAttribute;
+import org.eclipse.jface.text.rules.IToken;
+import org.eclipse.jface.text.rules.ITokenScanner;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.LineStyleEvent;
+import org.eclipse.swt.custom.LineStyleListener;
+import org.eclipse.swt.custom.StyleRange;
+
+/**
+ * Highlights the lines of the GCode editor when they are painted
+ * Only the displayed lines are scanned, instead of the whole document when it is set in the viewer.
+ *
+ * @author PsyKo
+ *
+ */
+public class GCodeLineStyler implements LineStyleListener {
+	/** The viewer */
+	private ITextViewer viewer;
+	/** The scanner */
+	private ITokenScanner scanner;
+
+	/**
+	 * Constructor
+	 * @param viewer the viewer
+	 * @param scanner the scanner used to highlight a line
+	 */
+	public GCodeLineStyler(ITextViewer viewer, ITokenScanner scanner) {
+		this.viewer = viewer;
+		this.scanner = scanner;
+	}
+
+	/** (inheritDoc)
+	 * @see org.eclipse.swt.custom.LineStyleListener#lineGetStyle(org.eclipse.swt.custom.LineStyleEvent)
+	 */
+	@Override
+	public void lineGetStyle(LineStyleEvent event) {
+		IDocument document = viewer.getDocument();
+		if(document == null || event.lineText.length() == 0){
+			return;
+		}
+		List<StyleRange> styles = new ArrayList<StyleRange>();
+		scanner.setRange(document, event.lineOffset, event.lineText.length());
+		IToken token = scanner.nextToken();
+		while(!token.isEOF()){
+			if(token.getData() instanceof TextAttribute){
+				TextAttribute attribute = (TextAttribute) token.getData();
+				StyleRange style = new StyleRange(scanner.getTokenOffset(), scanner.getTokenLength(), attribute.getForeground(), attribute.getBackground(), attribute.getStyle() & (SWT.BOLD | SWT.ITALIC));
+				style.underline = (attribute.getStyle() & TextAttribute.UNDERLINE) != 0;
+				style.strikeout = (attribute.getStyle() & TextAttribute.STRIKETHROUGH) != 0;
+				styles.add(style);
+			}
+			token = scanner.nextToken();
+		}
+		event.styles = styles.toArray(new StyleRange[styles.size()]);
+	}
+}
@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * 	This file is part of Goko.
+ *
+ *   Goko is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Goko is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Goko.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package org.goko.gcode.rs274ngcv3.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.goko.core.common.exception.GkException;
+import org.goko.gcode.rs274ngcv3.parser.GCodeLexer;
+import org.goko.gcode.rs274ngcv3.parser.GCodeToken;
+
+/**
+ * Compares the tokens/sec throughput of the {@link GCodeLexer} against the former {@link RegexGCodeLexer}.
+ * Run as a Java application, optional arguments are the number of lines and the number of measured iterations.
+ *
+ * @author PsyKo
+ *
+ */
+public class GCodeLexerBenchmark {
+	/** Default number of generated lines */
+	private static final int DEFAULT_LINE_COUNT = 200000;
+	/** Default number of measured iterations */
+	private static final int DEFAULT_ITERATION_COUNT = 5;
+	/** Number of warm up iterations */
+	private static final int WARMUP_ITERATION_COUNT = 3;
+
+	public static void main(String[] args) throws GkException {
+		int lineCount = DEFAULT_LINE_COUNT;
+		int iterationCount = DEFAULT_ITERATION_COUNT;
+		if(args.length > 0){
+			lineCount = Integer.valueOf(args[0]);
+		}
+		if(args.length > 1){
+			iterationCount = Integer.valueOf(args[1]);
+		}
+		List<String> lines = generateLines(lineCount);
+
+		final GCodeLexer lexer = new GCodeLexer();
+		final RegexGCodeLexer regexLexer = new RegexGCodeLexer();
+
+		run("Regex lexer", lines, iterationCount, new Tokenizer() {
+			@Override
+			public int tokenize(String line) throws GkException {
+				return regexLexer.createTokens(line).size();
+			}
+		});
+
+		run("Scanner lexer", lines, iterationCount, new Tokenizer() {
+			@Override
+			public int tokenize(String line) throws GkException {
+				return lexer.createTokens(line).size();
+			}
+		});
+	}
+
+	/**
+	 * Run the benchmark for the given tokenizer and print the result
+	 * @param name the name of the tokenizer
+	 * @param lines the lines to tokenize
+	 * @param iterationCount the number of measured iterations
+	 * @param tokenizer the tokenizer
+	 * @throws GkException GkException
+	 */
+	private static void run(String name, List<String> lines, int iterationCount, Tokenizer tokenizer) throws GkException{
+		for (int i = 0; i < WARMUP_ITERATION_COUNT; i++) {
+			tokenizeAll(lines, tokenizer);
+		}
+		long tokenCount = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < iterationCount; i++) {
+			tokenCount += tokenizeAll(lines, tokenizer);
+		}
+		long elapsed = System.nanoTime() - start;
+		double seconds = elapsed / 1e9;
+		System.out.println(String.format("%-15s : %,12.0f tokens/s  %,12.0f lines/s", name, tokenCount / seconds, (lines.size() * (double)iterationCount) / seconds));
+	}
+
+	private static long tokenizeAll(List<String> lines, Tokenizer tokenizer) throws GkException{
+		long count = 0;
+		for (String line : lines) {
+			count += tokenizer.tokenize(line);
+		}
+		return count;
+	}
+
+	/**
+	 * Generates lines looking like a CAM surfacing output
+	 * @param lineCount the number of lines
+	 * @return the list of lines
+	 */
+	private static List<String> generateLines(int lineCount){
+		List<String> lines = new ArrayList<String>(lineCount);
+		lines.add("(Generated surfacing program)");
+		lines.add("G21 G90 G17 G54");
+		for (int i = 0; i < lineCount - 2; i++) {
+			double x = (i % 1000) * 0.125;
+			double y = (i / 1000) * 0.5;
+			double z = -Math.abs(Math.sin(i * 0.01)) * 2.5;
+			if(i % 500 == 0){
+				lines.add(String.format(Locale.US, "N%d G0 X%.4f Y%.4f Z5.0 ; rapid", i, x, y));
+			}else{
+				lines.add(String.format(Locale.US, "N%d G1 X%.4f Y%.4f Z%.4f F1200", i, x, y, z));
+			}
+		}
+		return lines;
+	}
+
+	/**
+	 * Tokenizing strategy
+	 */
+	private interface Tokenizer{
+		int tokenize(String line) throws GkException;
+	}
+}
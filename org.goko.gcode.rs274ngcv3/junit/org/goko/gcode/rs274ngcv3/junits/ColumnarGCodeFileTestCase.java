@@ -0,0 +1,150 @@
+package org.goko.gcode.rs274ngcv3.junits;
+
+import java.io.File;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+import org.goko.core.common.measure.quantity.type.BigDecimalQuantity;
+import org.goko.core.gcode.bean.GCodeCommand;
+import org.goko.core.gcode.bean.GCodeContext;
+import org.goko.core.gcode.bean.IGCodeProvider;
+import org.goko.core.gcode.bean.Tuple6b;
+import org.goko.core.gcode.bean.commands.ArcMotionCommand;
+import org.goko.core.gcode.bean.commands.MotionCommand;
+import org.goko.core.gcode.bean.commands.SettingCommand;
+import org.goko.core.gcode.bean.provider.GCodeProviderCoordinates;
+import org.goko.core.gcode.service.IGCodeService;
+import org.goko.core.math.Tuple6d;
+import org.goko.gcode.rs274ngcv3.RS274GCodeService;
+import org.goko.gcode.rs274ngcv3.config.RS274Preference;
+
+public class ColumnarGCodeFileTestCase extends TestCase{
+	private IGCodeService gcodeService;
+	private File file;
+	private String content;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		this.gcodeService = new RS274GCodeService();
+		this.gcodeService.start();
+		RS274Preference.getInstance().setDecimalTruncateEnabled(false);
+
+		StringBuilder builder = new StringBuilder();
+		builder.append("(Header)\r\n");
+		builder.append("G21 G90 G17\r\n");
+		builder.append("\r\n");
+		for (int i = 0; i < 3000; i++) {
+			if(i % 700 == 0){
+				builder.append("G91\n");
+			}else if(i % 700 == 350){
+				builder.append("G90\n");
+			}else if(i % 500 == 100){
+				builder.append("G20\n");
+			}else if(i % 500 == 200){
+				builder.append("G21\n");
+			}
+			if(i % 11 == 5){
+				builder.append("G2 X").append(i % 7).append(" Y").append(i % 5).append(" I1.5 J-0.5 F250.123456789\n");
+				builder.append("X").append(i % 3).append(" Y1 I1 J1\n");
+			}
+			builder.append("G1 X").append(i % 17).append(" Y").append(i % 23).append(" Z-").append(i % 3).append(" F100\n");
+		}
+		builder.append("M5");
+		content = builder.toString();
+		file = File.createTempFile("goko", ".nc");
+		FileUtils.writeStringToFile(file, content);
+	}
+
+	public void testSameCommandsAsParse() throws Exception{
+		IGCodeProvider expected = gcodeService.parse(content, new GCodeContext());
+		IGCodeProvider columnar = gcodeService.parseCompactFile(file.getAbsolutePath(), new GCodeContext());
+
+		List<GCodeCommand> lstExpected = expected.getGCodeCommands();
+		List<GCodeCommand> lstColumnar = columnar.getGCodeCommands();
+		assertEquals(lstExpected.size(), lstColumnar.size());
+		for (int i = 0; i < lstExpected.size(); i++) {
+			assertSameCommand(lstExpected.get(i), lstColumnar.get(i));
+		}
+	}
+
+	public void testRandomAccess() throws Exception{
+		IGCodeProvider expected = gcodeService.parse(content, new GCodeContext());
+		IGCodeProvider columnar = gcodeService.parseCompactFile(file.getAbsolutePath(), new GCodeContext());
+
+		int count = expected.getGCodeCommands().size();
+		for (int id = count; id > 0; id -= 97) {
+			assertSameCommand(expected.getCommandById(id), columnar.getCommandById(id));
+		}
+	}
+
+	public void testCoordinates() throws Exception{
+		IGCodeProvider expected = gcodeService.parse(content, new GCodeContext());
+		IGCodeProvider columnar = gcodeService.parseCompactFile(file.getAbsolutePath(), new GCodeContext());
+
+		GCodeProviderCoordinates expectedCoordinates = new GCodeProviderCoordinates(expected);
+		GCodeProviderCoordinates columnarCoordinates = GCodeProviderCoordinates.getCoordinates(columnar);
+		assertEquals(expectedCoordinates.size(), columnarCoordinates.size());
+		Tuple6d expectedTuple = new Tuple6d();
+		Tuple6d actualTuple = new Tuple6d();
+		for (int i = 0; i < expectedCoordinates.size(); i++) {
+			assertEquals(expectedCoordinates.getCommandId(i), columnarCoordinates.getCommandId(i));
+			assertEquals(expectedCoordinates.isMotion(i), columnarCoordinates.isMotion(i));
+			assertTrue(expectedCoordinates.getStart(i, expectedTuple).epsilonEquals(columnarCoordinates.getStart(i, actualTuple), 0));
+			assertTrue(expectedCoordinates.getEnd(i, expectedTuple).epsilonEquals(columnarCoordinates.getEnd(i, actualTuple), 0));
+		}
+	}
+
+	private void assertSameCommand(GCodeCommand expected, GCodeCommand actual) throws Exception{
+		assertEquals(expected.getId(), actual.getId());
+		assertEquals(expected.getLineNumber(), actual.getLineNumber());
+		assertEquals(expected.getClass(), actual.getClass());
+		assertEquals(new String(gcodeService.convert(expected)), new String(gcodeService.convert(actual)));
+		if(expected instanceof SettingCommand){
+			SettingCommand expectedSetting = (SettingCommand) expected;
+			SettingCommand actualSetting = (SettingCommand) actual;
+			assertEquals(expectedSetting.getMotionMode(), actualSetting.getMotionMode());
+			assertEquals(expectedSetting.getUnit(), actualSetting.getUnit());
+			assertEquals(expectedSetting.getDistanceMode(), actualSetting.getDistanceMode());
+			assertEquals(expectedSetting.getPlane(), actualSetting.getPlane());
+			assertEquals(expectedSetting.isExplicitFeedrate(), actualSetting.isExplicitFeedrate());
+			assertEquals(expectedSetting.getFeedrate(), actualSetting.getFeedrate());
+		}
+		if(expected instanceof MotionCommand){
+			assertSameTuple(((MotionCommand) expected).getAbsoluteStartCoordinate(), ((MotionCommand) actual).getAbsoluteStartCoordinate());
+			assertSameTuple(((MotionCommand) expected).getAbsoluteEndCoordinate(), ((MotionCommand) actual).getAbsoluteEndCoordinate());
+		}
+		if(expected instanceof ArcMotionCommand){
+			assertEquals(((ArcMotionCommand) expected).isClockwise(), ((ArcMotionCommand) actual).isClockwise());
+			assertSameTuple(((ArcMotionCommand) expected).getAbsoluteCenterCoordinate(), ((ArcMotionCommand) actual).getAbsoluteCenterCoordinate());
+		}
+	}
+
+	private void assertSameTuple(Tuple6b expected, Tuple6b actual){
+		assertSameQuantity(expected.getX(), actual.getX());
+		assertSameQuantity(expected.getY(), actual.getY());
+		assertSameQuantity(expected.getZ(), actual.getZ());
+		assertSameQuantity(expected.getA(), actual.getA());
+		assertSameQuantity(expected.getB(), actual.getB());
+		assertSameQuantity(expected.getC(), actual.getC());
+	}
+
+	private void assertSameQuantity(BigDecimalQuantity<?> expected, BigDecimalQuantity<?> actual){
+		if(expected == null){
+			assertNull(actual);
+			return;
+		}
+		// Same value and scale. Units are compared by symbol, equal units are not always the same instance
+		assertEquals(expected.getValue(), actual.getValue());
+		assertEquals(expected.getUnit().getSymbol(), actual.getUnit().getSymbol());
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		FileUtils.deleteQuietly(file);
+		this.gcodeService.stop();
+	}
+}
@@ -0,0 +1,74 @@
+package org.goko.gcode.rs274ngcv3.junits;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.goko.core.common.exception.GkException;
+import org.goko.gcode.rs274ngcv3.benchmark.RegexGCodeLexer;
+import org.goko.gcode.rs274ngcv3.parser.GCodeLexer;
+import org.goko.gcode.rs274ngcv3.parser.GCodeToken;
+import org.goko.gcode.rs274ngcv3.parser.GCodeTokenType;
+
+public class GCodeLexerTestCase extends TestCase{
+	private GCodeLexer lexer;
+	private RegexGCodeLexer regexLexer;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		this.lexer = new GCodeLexer();
+		this.regexLexer = new RegexGCodeLexer();
+	}
+
+	public void testSameTokensAsRegexLexer() throws Exception{
+		assertSameTokens("N12G90X12.5Y36.8Z45.3F100");
+		assertSameTokens("N12 G90 X12.5 Y36.8 Z45.3 F100");
+		assertSameTokens("G3 X0.5 Y36.8 Z45.3 F100 I14.56 J32.23 K12.5");
+		assertSameTokens("N12 G90 X.5 Y.8 Z-45.3 F100.");
+		assertSameTokens("N12G90X12.5Y36.8Z45.3F100(M3)");
+		assertSameTokens("N12G90X12.5Y36.8Z45.3F100.00;M3");
+		assertSameTokens("( T0 M6 )");
+		assertSameTokens("   ");
+		assertSameTokens("");
+	}
+
+	public void testTokenTypes() throws Exception{
+		List<GCodeToken> tokens = lexer.createTokens("G1 X-1.5 (comment) Y+2 ; end (not a comment)");
+		assertEquals(5, tokens.size());
+		assertToken(tokens.get(0), GCodeTokenType.WORD, "G1");
+		assertToken(tokens.get(1), GCodeTokenType.WORD, "X-1.5");
+		assertToken(tokens.get(2), GCodeTokenType.MULTILINE_COMMENT, "(comment)");
+		assertToken(tokens.get(3), GCodeTokenType.WORD, "Y+2");
+		assertToken(tokens.get(4), GCodeTokenType.SIMPLE_COMMENT, "; end (not a comment)");
+	}
+
+	public void testUnexpectedCharacter() throws Exception{
+		assertUnexpected("G1 X");
+		assertUnexpected("G1 X1 #2");
+		assertUnexpected("G1 (unclosed");
+	}
+
+	private void assertSameTokens(String line) throws GkException{
+		List<GCodeToken> expected = regexLexer.createTokens(line);
+		List<GCodeToken> actual = lexer.createTokens(line);
+		assertEquals(line, expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertToken(actual.get(i), expected.get(i).getType(), expected.get(i).getValue());
+		}
+	}
+
+	private void assertToken(GCodeToken token, GCodeTokenType type, String value){
+		assertEquals(type, token.getType());
+		assertEquals(value, token.getValue());
+	}
+
+	private void assertUnexpected(String line){
+		try {
+			lexer.createTokens(line);
+			fail("Expected an exception for '"+line+"'");
+		} catch (GkException e) {
+			// Expected
+		}
+	}
+}
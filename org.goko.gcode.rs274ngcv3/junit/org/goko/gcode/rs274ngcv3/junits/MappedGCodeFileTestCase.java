@@ -0,0 +1,94 @@
+package org.goko.gcode.rs274ngcv3.junits;
+
+import java.io.File;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+import org.goko.core.gcode.bean.GCodeCommand;
+import org.goko.core.gcode.bean.GCodeContext;
+import org.goko.core.gcode.bean.IGCodeProvider;
+import org.goko.core.gcode.bean.Tuple6b;
+import org.goko.core.gcode.service.IGCodeService;
+import org.goko.gcode.rs274ngcv3.RS274GCodeService;
+import org.goko.gcode.rs274ngcv3.config.RS274Preference;
+
+public class MappedGCodeFileTestCase extends TestCase{
+	private IGCodeService gcodeService;
+	private File file;
+	private String content;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		this.gcodeService = new RS274GCodeService();
+		this.gcodeService.start();
+		RS274Preference.getInstance().setDecimalTruncateEnabled(false);
+
+		StringBuilder builder = new StringBuilder();
+		builder.append("(Header)\r\n");
+		builder.append("G21 G90\r\n");
+		builder.append("\r\n");
+		for (int i = 0; i < 3000; i++) {
+			if(i % 700 == 0){
+				builder.append("G91\n");
+			}else if(i % 700 == 350){
+				builder.append("G90\n");
+			}
+			builder.append("G1 X").append(i % 17).append(" Y").append(i % 23).append(" Z-").append(i % 3).append(" F100\n");
+		}
+		builder.append("M5");
+		content = builder.toString();
+		file = File.createTempFile("goko", ".nc");
+		FileUtils.writeStringToFile(file, content);
+	}
+
+	public void testSameCommandsAsParse() throws Exception{
+		IGCodeProvider expected = gcodeService.parse(content, new GCodeContext());
+		IGCodeProvider mapped = gcodeService.indexFile(file.getAbsolutePath(), new GCodeContext());
+
+		List<GCodeCommand> lstExpected = expected.getGCodeCommands();
+		List<GCodeCommand> lstMapped = mapped.getGCodeCommands();
+		assertEquals(lstExpected.size(), lstMapped.size());
+		for (int i = 0; i < lstExpected.size(); i++) {
+			assertSameCommand(lstExpected.get(i), lstMapped.get(i));
+		}
+		assertSameTuple(expected.getBounds().getMin(), mapped.getBounds().getMin());
+		assertSameTuple(expected.getBounds().getMax(), mapped.getBounds().getMax());
+	}
+
+	public void testRandomAccess() throws Exception{
+		IGCodeProvider expected = gcodeService.parse(content, new GCodeContext());
+		IGCodeProvider mapped = gcodeService.indexFile(file.getAbsolutePath(), new GCodeContext());
+
+		int count = expected.getGCodeCommands().size();
+		for (int id = count; id > 0; id -= 97) {
+			assertSameCommand(expected.getCommandById(id), mapped.getCommandById(id));
+		}
+	}
+
+	private void assertSameCommand(GCodeCommand expected, GCodeCommand actual) throws Exception{
+		assertEquals(expected.getId(), actual.getId());
+		assertEquals(expected.getLineNumber(), actual.getLineNumber());
+		assertEquals(expected.getClass(), actual.getClass());
+		assertEquals(new String(gcodeService.convert(expected)), new String(gcodeService.convert(actual)));
+		if(expected.getBounds() != null){
+			assertSameTuple(expected.getBounds().getMin(), actual.getBounds().getMin());
+			assertSameTuple(expected.getBounds().getMax(), actual.getBounds().getMax());
+		}
+	}
+
+	private void assertSameTuple(Tuple6b expected, Tuple6b actual){
+		assertEquals(0, expected.getX().getValue().compareTo(actual.getX().getValue()));
+		assertEquals(0, expected.getY().getValue().compareTo(actual.getY().getValue()));
+		assertEquals(0, expected.getZ().getValue().compareTo(actual.getZ().getValue()));
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		FileUtils.deleteQuietly(file);
+		this.gcodeService.stop();
+	}
+}
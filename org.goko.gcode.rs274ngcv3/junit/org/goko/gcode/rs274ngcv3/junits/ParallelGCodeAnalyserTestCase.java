@@ -0,0 +1,172 @@
+package org.goko.gcode.rs274ngcv3.junits;
+
+import java.io.File;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+import org.goko.core.common.exception.GkException;
+import org.goko.core.gcode.bean.GCodeCommand;
+import org.goko.core.gcode.bean.GCodeContext;
+import org.goko.core.gcode.bean.IGCodeProvider;
+import org.goko.core.gcode.bean.Tuple6b;
+import org.goko.core.gcode.bean.commands.ArcMotionCommand;
+import org.goko.core.gcode.bean.commands.MotionCommand;
+import org.goko.core.gcode.bean.commands.SettingCommand;
+import org.goko.core.gcode.service.IGCodeService;
+import org.goko.gcode.rs274ngcv3.RS274GCodeService;
+import org.goko.gcode.rs274ngcv3.config.RS274Preference;
+import org.goko.gcode.rs274ngcv3.parser.advanced.ParallelGCodeAnalyser;
+
+public class ParallelGCodeAnalyserTestCase extends TestCase{
+	private IGCodeService gcodeService;
+	private ParallelGCodeAnalyser analyser;
+	private String content;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		this.gcodeService = new RS274GCodeService();
+		this.gcodeService.start();
+		this.analyser = new ParallelGCodeAnalyser();
+		RS274Preference.getInstance().setDecimalTruncateEnabled(false);
+
+		// Modal changes are spread over the file so that chunks start in various states
+		StringBuilder builder = new StringBuilder();
+		builder.append("(Header)\n");
+		for (int i = 0; i < 20000; i++) {
+			switch (i % 1711) {
+			case 0:		builder.append("G20\n");		break;
+			case 900:	builder.append("G21 F250\n");	break;
+			default:	break;
+			}
+			switch (i % 1303) {
+			case 0:		builder.append("G91\n");		break;
+			case 600:	builder.append("G90 G18\n");	break;
+			case 1000:	builder.append("G17\n");		break;
+			default:	break;
+			}
+			switch (i % 977) {
+			case 0:		builder.append("G2 X").append(i % 7).append(" Y1 I0.5 J0.5\n");	break;
+			case 400:	builder.append("G0 Z").append(i % 5).append('\n');				break;
+			case 700:	builder.append("G1 X1 F").append(100 + i % 50).append('\n');	break;
+			default:	builder.append("X").append(i % 17).append(" Y").append(i % 23).append(" I1 J1\n");	break;
+			}
+		}
+		builder.append("M5");
+		content = builder.toString();
+	}
+
+	public void testSameCommandsAsSequentialParsing() throws Exception{
+		IGCodeProvider expected = gcodeService.parse(content, new GCodeContext());
+		IGCodeProvider actual = analyser.createFile(content, new GCodeContext());
+		assertSameProvider(expected, actual);
+	}
+
+	public void testReaderSameCommandsAsSequentialParsing() throws Exception{
+		IGCodeProvider expected = gcodeService.parse(content, new GCodeContext());
+		// Short reads, so the chunks are filled in several reads
+		FilterReader reader = new FilterReader(new StringReader(content)){
+			@Override
+			public int read(char[] cbuf, int off, int len) throws IOException {
+				return super.read(cbuf, off, Math.min(len, 1000));
+			}
+		};
+		IGCodeProvider actual = analyser.createFile(reader, new GCodeContext());
+		assertSameProvider(expected, actual);
+	}
+
+	public void testReaderLongLine() throws Exception{
+		StringBuilder comment = new StringBuilder("(");
+		for (int i = 0; i < 100000; i++) {
+			comment.append('-');
+		}
+		String longContent = "G1 X1 F100\n" + comment + ")\nX2\nX3";
+		IGCodeProvider expected = gcodeService.parse(longContent, new GCodeContext());
+		IGCodeProvider actual = analyser.createFile(new StringReader(longContent), new GCodeContext());
+		assertSameProvider(expected, actual);
+	}
+
+	/**
+	 * Files ending their lines with carriage returns only are parsed the same way, whether they are parsed in parallel or not
+	 * @throws Exception Exception
+	 */
+	public void testCarriageReturnFile() throws Exception{
+		String smallContent = "G1 X1 F100 ; feed\n(comment)\nX2\nX3 Y4\n";
+		StringBuilder bigContent = new StringBuilder();
+		while(bigContent.length() < 512 * 1024){
+			bigContent.append(smallContent).append(content).append('\n');
+		}
+		for (String lfContent : new String[]{smallContent, bigContent.toString()}) {
+			IGCodeProvider expected = gcodeService.parse(lfContent, new GCodeContext());
+			File file = File.createTempFile("goko", ".nc");
+			try{
+				FileUtils.writeStringToFile(file, lfContent.replace('\n', '\r'), "ISO-8859-1");
+				assertSameProvider(expected, gcodeService.parseFile(file.getAbsolutePath(), new GCodeContext()));
+			}finally{
+				file.delete();
+			}
+		}
+	}
+
+	private void assertSameProvider(IGCodeProvider expected, IGCodeProvider actual) throws Exception{
+		List<GCodeCommand> lstExpected = expected.getGCodeCommands();
+		List<GCodeCommand> lstActual = actual.getGCodeCommands();
+		assertEquals(lstExpected.size(), lstActual.size());
+		for (int i = 0; i < lstExpected.size(); i++) {
+			assertSameCommand(lstExpected.get(i), lstActual.get(i));
+		}
+		assertSameTuple(expected.getBounds().getMin(), actual.getBounds().getMin());
+		assertSameTuple(expected.getBounds().getMax(), actual.getBounds().getMax());
+	}
+
+	public void testErrorInLastChunk() throws Exception{
+		try{
+			analyser.createFile(content + "\nG1 X1 #", new GCodeContext());
+			fail("An exception should have been raised");
+		}catch(GkException e){
+			// Expected
+		}
+	}
+
+	private void assertSameCommand(GCodeCommand expected, GCodeCommand actual) throws Exception{
+		assertEquals(expected.getId(), actual.getId());
+		assertEquals(expected.getLineNumber(), actual.getLineNumber());
+		assertEquals(expected.getClass(), actual.getClass());
+		assertEquals(new String(gcodeService.convert(expected)), new String(gcodeService.convert(actual)));
+		if(expected instanceof SettingCommand){
+			SettingCommand expectedSetting = (SettingCommand) expected;
+			SettingCommand actualSetting = (SettingCommand) actual;
+			assertEquals(expectedSetting.getUnit(), actualSetting.getUnit());
+			assertEquals(expectedSetting.getDistanceMode(), actualSetting.getDistanceMode());
+			assertEquals(expectedSetting.getPlane(), actualSetting.getPlane());
+			assertEquals(expectedSetting.getMotionMode(), actualSetting.getMotionMode());
+			assertEquals(expectedSetting.getMotionType(), actualSetting.getMotionType());
+			assertEquals(expectedSetting.getFeedrate(), actualSetting.getFeedrate());
+		}
+		if(expected instanceof MotionCommand){
+			assertSameTuple(((MotionCommand) expected).getAbsoluteStartCoordinate(), ((MotionCommand) actual).getAbsoluteStartCoordinate());
+			assertSameTuple(((MotionCommand) expected).getAbsoluteEndCoordinate(), ((MotionCommand) actual).getAbsoluteEndCoordinate());
+		}
+		if(expected instanceof ArcMotionCommand){
+			assertEquals(((ArcMotionCommand) expected).isClockwise(), ((ArcMotionCommand) actual).isClockwise());
+			assertSameTuple(((ArcMotionCommand) expected).getAbsoluteCenterCoordinate(), ((ArcMotionCommand) actual).getAbsoluteCenterCoordinate());
+		}
+	}
+
+	private void assertSameTuple(Tuple6b expected, Tuple6b actual){
+		assertEquals(0, expected.getX().getValue().compareTo(actual.getX().getValue()));
+		assertEquals(0, expected.getY().getValue().compareTo(actual.getY().getValue()));
+		assertEquals(0, expected.getZ().getValue().compareTo(actual.getZ().getValue()));
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		this.gcodeService.stop();
+	}
+}
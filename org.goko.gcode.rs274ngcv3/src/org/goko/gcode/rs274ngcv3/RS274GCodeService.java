@@ -32,26 +32,37 @@
  */
 package org.goko.gcode.rs274ngcv3;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.InputStream;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.List;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.goko.core.common.applicative.logging.IApplicativeLogService;
 import org.goko.core.common.exception.GkException;
 import org.goko.core.common.exception.GkFunctionalException;
+import org.goko.core.common.exception.GkTechnicalException;
 import org.goko.core.gcode.bean.GCodeCommand;
 import org.goko.core.gcode.bean.GCodeContext;
 import org.goko.core.gcode.bean.GCodeFile;
+import org.goko.core.gcode.bean.IGCodeCommandCursor;
 import org.goko.core.gcode.bean.IGCodeProvider;
 import org.goko.core.gcode.service.IGCodeService;
 import org.goko.core.log.GkLog;
 import org.goko.gcode.rs274ngcv3.config.RS274Preference;
 import org.goko.gcode.rs274ngcv3.parser.GCodeLexer;
-import org.goko.gcode.rs274ngcv3.parser.GCodeToken;
 import org.goko.gcode.rs274ngcv3.parser.advanced.AdvancedGCodeAnalyser;
+import org.goko.gcode.rs274ngcv3.parser.advanced.GCodeCommandCursor;
+import org.goko.gcode.rs274ngcv3.parser.advanced.ParallelGCodeAnalyser;
 import org.goko.gcode.rs274ngcv3.parser.advanced.RS274CommandWriter;
+import org.goko.gcode.rs274ngcv3.provider.ColumnarGCodeFile;
+import org.goko.gcode.rs274ngcv3.provider.MappedGCodeFile;
 
 public class RS274GCodeService implements IGCodeService {
 	private static final GkLog LOG = GkLog.getLogger(RS274GCodeService.class);
@@ -61,8 +72,14 @@ public class RS274GCodeService implements IGCodeService {
 	public static final String NAME = "GCode";
 	/** Instace */
 	private static RS274GCodeService instance;
+	/** Size in bytes from which files are parsed in parallel */
+	private static final long PARALLEL_PARSING_THRESHOLD = 512 * 1024;
+	/** Charset used to read the files, whatever their size or the way they are parsed. It's the one of the indexed files */
+	private static final Charset FILE_CHARSET = Charset.forName("ISO-8859-1");
 	/** Applicative log service */
 	private IApplicativeLogService applicativeLogService;
+	/** Analyser used for big files */
+	private ParallelGCodeAnalyser parallelAnalyser;
 	/**
 	 * Empty constructor
 	 */
@@ -107,19 +124,98 @@ public class RS274GCodeService implements IGCodeService {
 	 */
 	@Override
 	public GCodeFile parseFile(String filepath, GCodeContext context) throws GkException {
-		File 				file = new File(filepath);
+		File file = getExistingFile(filepath);
+		GCodeFile gcodeFile = null;
+		if(file.length() >= PARALLEL_PARSING_THRESHOLD){
+			gcodeFile = parseFileInParallel(file, getParserContext(context));
+		}else{
+			gcodeFile = createFile(openFile(filepath, context));
+		}
+		LOG.info("End of file parsing...");
+		return gcodeFile;
+	}
+
+	/** (inheritDoc)
+	 * @see org.goko.core.gcode.service.IGCodeService#openFile(java.lang.String, org.goko.core.gcode.bean.GCodeContext)
+	 */
+	@Override
+	public IGCodeCommandCursor openFile(String filepath, GCodeContext context) throws GkException {
+		File file = getExistingFile(filepath);
+		try {
+			return new GCodeCommandCursor(new InputStreamReader(new FileInputStream(file), FILE_CHARSET), getParserContext(context));
+		} catch (FileNotFoundException e) {
+			throw new GkTechnicalException(e);
+		}
+	}
+
+	/**
+	 * Returns the file at the given path
+	 * @param filepath the path of the file
+	 * @return the {@link File}
+	 * @throws GkException GkException if the file does not exist
+	 */
+	private File getExistingFile(String filepath) throws GkException{
+		File file = new File(filepath);
 		if(!file.exists()){
 			throw new GkFunctionalException("File '"+filepath+"' does not exist...");
 		}
-		GCodeContext parserContext = context;
-		if(parserContext == null){
-			parserContext = new GCodeContext();
+		return file;
+	}
+
+	/**
+	 * Parse the given file in parallel, streaming its content to the analyser
+	 * @param file the file
+	 * @param context the parser context
+	 * @return the {@link GCodeFile}
+	 * @throws GkException GkException
+	 */
+	private GCodeFile parseFileInParallel(File file, GCodeContext context) throws GkException{
+		Reader reader = null;
+		try {
+			reader = new InputStreamReader(new FileInputStream(file), FILE_CHARSET);
+			return getParallelAnalyser().createFile(reader, context);
+		} catch (FileNotFoundException e) {
+			throw new GkTechnicalException(e);
+		}finally{
+			IOUtils.closeQuietly(reader);
 		}
-		GCodeLexer 			gcodeLexer = new GCodeLexer();
-		List<GCodeToken> 	lstTokens = gcodeLexer.createTokensFromFile(filepath);
-		LOG.info("End of token creation...");
-		GCodeFile		 	gcodeFile = new AdvancedGCodeAnalyser().createFile(lstTokens, parserContext);
-		return gcodeFile;
+	}
+
+	/**
+	 * Returns the analyser used to parse big files
+	 * @return the {@link ParallelGCodeAnalyser}
+	 */
+	private synchronized ParallelGCodeAnalyser getParallelAnalyser(){
+		if(parallelAnalyser == null){
+			parallelAnalyser = new ParallelGCodeAnalyser();
+		}
+		return parallelAnalyser;
+	}
+
+	/** (inheritDoc)
+	 * @see org.goko.core.gcode.service.IGCodeService#indexFile(java.lang.String, org.goko.core.gcode.bean.GCodeContext)
+	 */
+	@Override
+	public IGCodeProvider indexFile(String filepath, GCodeContext context) throws GkException {
+		MappedGCodeFile mappedFile = new MappedGCodeFile(new File(filepath), getParserContext(context));
+		LOG.info("End of file indexing...");
+		return mappedFile;
+	}
+
+	/** (inheritDoc)
+	 * @see org.goko.core.gcode.service.IGCodeService#parseCompactFile(java.lang.String, org.goko.core.gcode.bean.GCodeContext)
+	 */
+	@Override
+	public IGCodeProvider parseCompactFile(String filepath, GCodeContext context) throws GkException {
+		File file = getExistingFile(filepath);
+		ColumnarGCodeFile columnarFile = null;
+		try {
+			columnarFile = new ColumnarGCodeFile(file.getName(), new InputStreamReader(new FileInputStream(file), FILE_CHARSET), getParserContext(context));
+		} catch (FileNotFoundException e) {
+			throw new GkTechnicalException(e);
+		}
+		LOG.info("End of file parsing...");
+		return columnarFile;
 	}
 
 	/** (inheritDoc)
@@ -127,16 +223,39 @@ public class RS274GCodeService implements IGCodeService {
 	 */
 	@Override
 	public IGCodeProvider parse(String gcode, GCodeContext context) throws GkException {
-		InputStream 		inputStream = new ByteArrayInputStream(gcode.getBytes());
-		GCodeLexer 			gcodeLexer = new GCodeLexer();
-		List<GCodeToken> 	lstTokens = gcodeLexer.createTokensFromInputStream(inputStream);
-		GCodeContext parserContext = context;
-		if(parserContext == null){
-			parserContext = new GCodeContext();
+		return createFile(new GCodeCommandCursor(new StringReader(gcode), getParserContext(context)));
+	}
+
+	/**
+	 * Build a GCodeFile by consuming the given cursor. The cursor is closed once read.
+	 * @param cursor the cursor
+	 * @return a {@link GCodeFile}
+	 * @throws GkException GkException
+	 */
+	private GCodeFile createFile(IGCodeCommandCursor cursor) throws GkException{
+		List<GCodeCommand> lstCommands = new ArrayList<GCodeCommand>();
+		try{
+			while(cursor.hasNext()){
+				lstCommands.add(cursor.next());
+			}
+		}finally{
+			cursor.close();
 		}
-		GCodeFile 			gcodeFile = new AdvancedGCodeAnalyser().createFile(lstTokens, parserContext);
-		return gcodeFile;
+		return new GCodeFile(lstCommands);
 	}
+
+	/**
+	 * Returns the context to use for parsing
+	 * @param context the given context, can be null
+	 * @return a {@link GCodeContext}
+	 */
+	private GCodeContext getParserContext(GCodeContext context){
+		if(context == null){
+			return new GCodeContext();
+		}
+		return context;
+	}
+
 	/** (inheritDoc)
 	 * @see org.goko.core.gcode.service.IGCodeService#parseCommand(java.lang.String)
 	 */
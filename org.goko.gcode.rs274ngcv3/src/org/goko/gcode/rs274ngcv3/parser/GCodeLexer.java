@@ -16,16 +16,18 @@
  *******************************************************************************/
 package org.goko.gcode.rs274ngcv3.parser;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Scanner;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.goko.core.common.exception.GkException;
 import org.goko.core.common.exception.GkFunctionalException;
@@ -33,30 +35,23 @@ import org.goko.core.common.exception.GkTechnicalException;
 
 /**
  * GCode file tokenizer
+ *
+ * Tokens are extracted in a single left to right scan of each line, without regular expressions nor intermediate strings.
+ * The produced token types are the same as the previous regex based implementation : line numbers (N words) are
+ * reported as {@link GCodeTokenType#WORD} and resolved by the builders.
+ *
  * @author PsyKo
  *
  */
 public class GCodeLexer {
-	/** Multi line comment pattern */
-	private Pattern multilineCommentPattern;
-	/** Simple comment pattern*/
-	private Pattern simpleCommentPattern;
-	/** Line number pattern */
-	private Pattern lineNumberPattern;
-	/** Word pattern*/
-	private Pattern wordPattern;
-	/** White space detection pattern*/
-	private Pattern spacePattern;
+	/** Token shared by all the end of lines */
+	private static final GCodeToken NEW_LINE_TOKEN = new GCodeToken(GCodeTokenType.NEW_LINE, StringUtils.EMPTY);
 
 	/**
 	 * Constructor
 	 */
 	public GCodeLexer() {
-		multilineCommentPattern = Pattern.compile(GCodeTokenType.MULTILINE_COMMENT.getPattern(), Pattern.MULTILINE | Pattern.DOTALL);
-		simpleCommentPattern    = Pattern.compile(GCodeTokenType.SIMPLE_COMMENT.getPattern());
-		lineNumberPattern = Pattern.compile(GCodeTokenType.LINE_NUMBER.getPattern());
-		wordPattern    = Pattern.compile(GCodeTokenType.WORD.getPattern());
-		spacePattern    = Pattern.compile("^[ ]+");
+
 	}
 	/**
 	 * Create a list of token from a String
@@ -84,68 +79,131 @@ public class GCodeLexer {
 		}
 	}
 
+	/**
+	 * Create a list of token from an InputStream. The stream is closed once read.
+	 * @param inStream the input stream
+	 * @return a list of {@link GCodeToken}
+	 * @throws GkException GkException
+	 */
 	public List<GCodeToken> createTokensFromInputStream(InputStream inStream) throws GkException{
-		Scanner scanner = new Scanner(inStream);
+		return createTokensFromReader(new InputStreamReader(inStream));
+	}
 
+	/**
+	 * Create a list of token from a Reader. The reader is closed once read.
+	 * @param reader the reader
+	 * @return a list of {@link GCodeToken}
+	 * @throws GkException GkException
+	 */
+	public List<GCodeToken> createTokensFromReader(Reader reader) throws GkException{
+		BufferedReader bufferedReader = new BufferedReader(reader);
 		List<GCodeToken> lstFileTokens = new ArrayList<GCodeToken>();
-		String line = null;
-		GCodeToken newLineToken = new GCodeToken(GCodeTokenType.NEW_LINE, StringUtils.EMPTY);
-
-		while(scanner.hasNextLine()){
-			line = scanner.nextLine();
-			lstFileTokens.addAll(createTokens(line));
-			lstFileTokens.add(newLineToken);//new GCodeToken(GCodeTokenType.NEW_LINE, StringUtils.EMPTY));
+		try {
+			String line = null;
+			while((line = bufferedReader.readLine()) != null){
+				createTokens(line, lstFileTokens);
+				lstFileTokens.add(NEW_LINE_TOKEN);
+			}
+		} catch (IOException e) {
+			throw new GkTechnicalException(e);
+		} finally{
+			IOUtils.closeQuietly(bufferedReader);
 		}
-
-		scanner.close();
 		return lstFileTokens;
 	}
+
 	/**
-	 * Recursive method used to split the stringCommand into a list of tokens
+	 * Split the stringCommand into a list of tokens
 	 * @param stringCommand the string command
 	 * @param tokens the list of token
 	 * @throws GkException GkException
 	 */
 	protected List<GCodeToken> createTokens(String stringCommand, List<GCodeToken> tokens) throws GkException{
-		if(StringUtils.isBlank(stringCommand)){
+		if(stringCommand == null){
 			return tokens;
 		}
-		Matcher spaceMatcher    = spacePattern.matcher(stringCommand);
-		if(spaceMatcher.find()){
-			String remainingString = spaceMatcher.replaceFirst(StringUtils.EMPTY);
-			return createTokens(remainingString,tokens);
-		}
-		Matcher wordMatcher    = wordPattern.matcher(stringCommand);
-		if(wordMatcher.find()){
-			String remainingString = extractToken(wordMatcher, tokens, GCodeTokenType.WORD);
-			return createTokens(remainingString,tokens);
+		return createTokens(stringCommand, 0, stringCommand.length(), tokens);
+	}
+
+	/**
+	 * Split the given portion of the stringCommand into a list of tokens
+	 * @param stringCommand the string command
+	 * @param beginIndex the index of the first character to tokenize, inclusive
+	 * @param endIndex the index of the last character to tokenize, exclusive
+	 * @param tokens the list of token
+	 * @throws GkException GkException
+	 */
+	public List<GCodeToken> createTokens(String stringCommand, int beginIndex, int endIndex, List<GCodeToken> tokens) throws GkException{
+		int index = beginIndex;
+		while(index < endIndex){
+			char c = stringCommand.charAt(index);
+			if(isSpace(c)){
+				index++;
+			}else if(isLetter(c)){
+				int tokenEnd = scanWord(stringCommand, index, endIndex);
+				if(tokenEnd < 0){
+					throw new GkFunctionalException("Unexpected character : "+stringCommand.substring(index, endIndex));
+				}
+				tokens.add(new GCodeToken(GCodeTokenType.WORD, stringCommand.substring(index, tokenEnd)));
+				index = tokenEnd;
+			}else if(c == '('){
+				int tokenEnd = stringCommand.indexOf(')', index + 1);
+				if(tokenEnd < 0 || tokenEnd >= endIndex){
+					throw new GkFunctionalException("Unexpected character : "+stringCommand.substring(index, endIndex));
+				}
+				tokens.add(new GCodeToken(GCodeTokenType.MULTILINE_COMMENT, stringCommand.substring(index, tokenEnd + 1)));
+				index = tokenEnd + 1;
+			}else if(c == ';'){
+				tokens.add(new GCodeToken(GCodeTokenType.SIMPLE_COMMENT, stringCommand.substring(index, endIndex)));
+				index = endIndex;
+			}else{
+				throw new GkFunctionalException("Unexpected character : "+stringCommand.substring(index, endIndex));
+			}
 		}
-		Matcher lineNumberMatcher    = lineNumberPattern.matcher(stringCommand);
-		if(lineNumberMatcher.find()){
-			String remainingString = extractToken(lineNumberMatcher, tokens, GCodeTokenType.LINE_NUMBER);
-			return createTokens(remainingString,tokens);
+		return tokens;
+	}
+
+	/**
+	 * Scan a word starting at the given index : a letter followed by a number (<code>X12</code>, <code>Y-1.5</code>, <code>Z.5</code>)
+	 * @param str the string to scan
+	 * @param beginIndex the index of the letter
+	 * @param endIndex the scan limit
+	 * @return the index following the last character of the word, or -1 if no valid number follows the letter
+	 */
+	private int scanWord(String str, int beginIndex, int endIndex){
+		int index = beginIndex + 1;
+		if(index < endIndex && (str.charAt(index) == '-' || str.charAt(index) == '+')){
+			index++;
 		}
-		Matcher multilineCommentMatcher = multilineCommentPattern.matcher(stringCommand);
-		if(multilineCommentMatcher.find()){
-			String remainingString = extractToken(multilineCommentMatcher, tokens, GCodeTokenType.MULTILINE_COMMENT);
-			return createTokens(remainingString,tokens);
+		int integerStart = index;
+		while(index < endIndex && isDigit(str.charAt(index))){
+			index++;
 		}
-		Matcher simpleCommentMatcher    = simpleCommentPattern.matcher(stringCommand);
-		if(simpleCommentMatcher.find()){
-			String remainingString = extractToken(simpleCommentMatcher, tokens,GCodeTokenType.SIMPLE_COMMENT);
-			return createTokens(remainingString,tokens);
+		boolean hasInteger = index > integerStart;
+		if(index < endIndex && str.charAt(index) == '.'){
+			index++;
+			int decimalStart = index;
+			while(index < endIndex && isDigit(str.charAt(index))){
+				index++;
+			}
+			if(!hasInteger && index == decimalStart){
+				return -1;
+			}
+		}else if(!hasInteger){
+			return -1;
 		}
-		throw new GkFunctionalException("Unexpected character : "+stringCommand);
+		return index;
 	}
-	/**
-	 * Extract the first token from the given matcher
-	 * @param matcher the matcher
-	 * @param tokens the list of tokens
-	 * @param type the type of token to create
-	 * @return the remaining String after the token extraction
-	 */
-	protected String extractToken(Matcher matcher, List<GCodeToken> tokens, GCodeTokenType type){
-		tokens.add( new GCodeToken(type, matcher.group()) );
-		return matcher.replaceFirst(StringUtils.EMPTY);
+
+	private static boolean isSpace(char c){
+		return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+	}
+
+	private static boolean isLetter(char c){
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+	}
+
+	private static boolean isDigit(char c){
+		return c >= '0' && c <= '9';
 	}
 }
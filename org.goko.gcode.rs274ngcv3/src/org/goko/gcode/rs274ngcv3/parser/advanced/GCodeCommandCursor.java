@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * 	This file is part of Goko.
+ *
+ *   Goko is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Goko is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Goko.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package org.goko.gcode.rs274ngcv3.parser.advanced;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.goko.core.common.exception.GkException;
+import org.goko.core.common.exception.GkTechnicalException;
+import org.goko.core.gcode.bean.GCodeCommand;
+import org.goko.core.gcode.bean.GCodeContext;
+import org.goko.core.gcode.bean.IGCodeCommandCursor;
+import org.goko.gcode.rs274ngcv3.parser.GCodeLexer;
+import org.goko.gcode.rs274ngcv3.parser.GCodeToken;
+
+/**
+ * Cursor reading GCode commands line by line from a {@link Reader}.
+ * Only the tokens of the current line are kept in memory, and the parsing context is updated incrementally.
+ * Command ids and missing line numbers are generated the same way {@link org.goko.core.gcode.bean.provider.AbstractGCodeProvider} does.
+ *
+ * @author PsyKo
+ *
+ */
+public class GCodeCommandCursor implements IGCodeCommandCursor {
+	/** The source reader */
+	private BufferedReader reader;
+	/** The lexer */
+	private GCodeLexer lexer;
+	/** The analyser */
+	private AdvancedGCodeAnalyser analyser;
+	/** The parsing context */
+	private GCodeContext context;
+	/** The tokens of the next line to build */
+	private List<GCodeToken> lineTokens;
+	/** The number of returned commands */
+	private int commandCount;
+	/** The end of the reader was reached */
+	private boolean endOfStream;
+
+	/**
+	 * Constructor
+	 * @param reader the reader to parse
+	 * @param initialContext the initial context. It is copied and left untouched.
+	 */
+	public GCodeCommandCursor(Reader reader, GCodeContext initialContext) {
+		this.reader 	= new BufferedReader(reader);
+		this.lexer 		= new GCodeLexer();
+		this.analyser 	= new AdvancedGCodeAnalyser();
+		this.context 	= new GCodeContext(initialContext);
+		this.lineTokens = new ArrayList<GCodeToken>();
+	}
+
+	/** (inheritDoc)
+	 * @see org.goko.core.gcode.bean.IGCodeCommandCursor#hasNext()
+	 */
+	@Override
+	public boolean hasNext() throws GkException {
+		if(lineTokens.isEmpty()){
+			readNextTokens();
+		}
+		return !lineTokens.isEmpty();
+	}
+
+	/** (inheritDoc)
+	 * @see org.goko.core.gcode.bean.IGCodeCommandCursor#next()
+	 */
+	@Override
+	public GCodeCommand next() throws GkException {
+		if(!hasNext()){
+			throw new GkTechnicalException("No more GCode command available.");
+		}
+		GCodeCommand command = null;
+		try{
+			command = analyser.createCommand(lineTokens, context);
+		}finally{
+			lineTokens.clear();
+		}
+		commandCount++;
+		if(command.getId() == null){
+			command.setId(commandCount);
+		}
+		if(command.getLineNumber() == null){
+			command.setLineNumber(commandCount);
+		}
+		return command;
+	}
+
+	/**
+	 * Read lines until one contains tokens, or the end of the stream is reached
+	 * @throws GkException GkException
+	 */
+	private void readNextTokens() throws GkException{
+		while(!endOfStream && lineTokens.isEmpty()){
+			String line = readLine();
+			if(line == null){
+				close();
+			}else{
+				lexer.createTokens(line, 0, line.length(), lineTokens);
+			}
+		}
+	}
+
+	/**
+	 * Read the next line from the reader
+	 * @return the line, or <code>null</code> at the end of the stream
+	 * @throws GkException GkException
+	 */
+	private String readLine() throws GkException{
+		try {
+			return reader.readLine();
+		} catch (IOException e) {
+			throw new GkTechnicalException(e);
+		}
+	}
+
+	/** (inheritDoc)
+	 * @see org.goko.core.gcode.bean.IGCodeCommandCursor#getCurrentContext()
+	 */
+	@Override
+	public GCodeContext getCurrentContext() {
+		return new GCodeContext(context);
+	}
+
+	/** (inheritDoc)
+	 * @see org.goko.core.gcode.bean.IGCodeCommandCursor#close()
+	 */
+	@Override
+	public void close() throws GkException {
+		endOfStream = true;
+		IOUtils.closeQuietly(reader);
+	}
+
+}
@@ -0,0 +1,453 @@
+/*******************************************************************************
+ * 	This file is part of Goko.
+ *
+ *   Goko is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Goko is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Goko.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package org.goko.gcode.rs274ngcv3.parser.advanced;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.goko.core.common.exception.GkException;
+import org.goko.core.common.exception.GkTechnicalException;
+import org.goko.core.gcode.bean.GCodeCommand;
+import org.goko.core.gcode.bean.GCodeContext;
+import org.goko.core.gcode.bean.GCodeFile;
+import org.goko.core.gcode.bean.commands.ArcMotionCommand;
+import org.goko.core.gcode.bean.commands.EnumGCodeCommandMotionMode;
+import org.goko.core.gcode.bean.commands.EnumGCodeCommandMotionType;
+import org.goko.core.gcode.bean.commands.MotionCommand;
+import org.goko.core.gcode.bean.commands.SettingCommand;
+import org.goko.gcode.rs274ngcv3.parser.GCodeLexer;
+import org.goko.gcode.rs274ngcv3.parser.GCodeToken;
+
+/**
+ * Parallel version of the {@link AdvancedGCodeAnalyser} file creation.
+ * The parsing is done in two phases :
+ * <ul>
+ * <li>the content is split in chunks at line boundaries, and each chunk is lexed and built in parallel on a fork/join pool.
+ * When the content is read from a {@link Reader}, the chunks are submitted as they are read.
+ * Every chunk starts from a copy of the initial context, used as a placeholder for the real one</li>
+ * <li>a sequential pass propagates the modal state (units, distance mode, plane, motion mode, feedrate, coordinate system and position)
+ * through the built commands. Only the commands whose type or coordinates depend on a wrong placeholder value are built again</li>
+ * </ul>
+ * The result is the same as a sequential parsing of the content.
+ *
+ * @author PsyKo
+ *
+ */
+public class ParallelGCodeAnalyser {
+	/** Size of the chunks in characters. Bigger parts of the content are split */
+	private static final int CHUNK_SIZE = 64 * 1024;
+	/** The pool used for the first phase */
+	private ForkJoinPool pool;
+
+	/**
+	 * Constructor using one thread per available processor
+	 */
+	public ParallelGCodeAnalyser() {
+		this(new ForkJoinPool());
+	}
+
+	/**
+	 * Constructor
+	 * @param pool the fork/join pool to use
+	 */
+	public ParallelGCodeAnalyser(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Create a GCodeFile by parsing the given content
+	 * @param content the GCode content
+	 * @param initialContext the initial context. It is copied and left untouched.
+	 * @return a {@link GCodeFile}
+	 * @throws GkException GkException
+	 */
+	public GCodeFile createFile(String content, GCodeContext initialContext) throws GkException{
+		GCodeStitcher stitcher = new GCodeStitcher(initialContext);
+		stitcher.stitch(content, pool.invoke(new GCodeChunkTask(content, 0, content.length(), initialContext)));
+		return new GCodeFile(stitcher.lstCommands);
+	}
+
+	/**
+	 * Create a GCodeFile by parsing the content of the given reader.
+	 * The content is read by chunks, so only the chunks waiting to be stitched are kept in memory. The reader is not closed.
+	 * @param reader the reader of the GCode content
+	 * @param initialContext the initial context. It is copied and left untouched.
+	 * @return a {@link GCodeFile}
+	 * @throws GkException GkException
+	 */
+	public GCodeFile createFile(Reader reader, GCodeContext initialContext) throws GkException{
+		GCodeStitcher stitcher = new GCodeStitcher(initialContext);
+		Deque<GCodeChunkTask> pendingTasks = new ArrayDeque<GCodeChunkTask>();
+		char[] buffer = new char[CHUNK_SIZE];
+		int length = 0;
+		boolean endOfStream = false;
+		try{
+			while(!endOfStream){
+				int read = reader.read(buffer, length, buffer.length - length);
+				if(read < 0){
+					endOfStream = true;
+				}else{
+					length += read;
+				}
+				if(!endOfStream && length < buffer.length){
+					continue;
+				}
+				int split = length;
+				if(!endOfStream){
+					split = getLastLineEnd(buffer, length) + 1;
+					if(split == 0){
+						// The line is longer than the buffer
+						buffer = Arrays.copyOf(buffer, buffer.length * 2);
+						continue;
+					}
+				}
+				if(split > 0){
+					String content = new String(buffer, 0, split);
+					GCodeChunkTask task = new GCodeChunkTask(content, 0, split, initialContext);
+					pool.execute(task);
+					pendingTasks.add(task);
+					System.arraycopy(buffer, split, buffer, 0, length - split);
+					length -= split;
+				}
+				// Don't read further than the pool can handle
+				while(pendingTasks.size() > pool.getParallelism() * 2){
+					GCodeChunkTask task = pendingTasks.poll();
+					stitcher.stitch(task.content, task.join());
+				}
+			}
+		}catch(IOException e){
+			throw new GkTechnicalException(e);
+		}
+		while(!pendingTasks.isEmpty()){
+			GCodeChunkTask task = pendingTasks.poll();
+			stitcher.stitch(task.content, task.join());
+		}
+		return new GCodeFile(stitcher.lstCommands);
+	}
+
+	/**
+	 * Add the given command, generating the id and the line number the same way {@link GCodeCommandCursor} does
+	 * @param lstCommands the target list
+	 * @param command the command to add
+	 */
+	private void addCommand(List<GCodeCommand> lstCommands, GCodeCommand command){
+		lstCommands.add(command);
+		int commandCount = lstCommands.size();
+		if(command.getId() == null){
+			command.setId(commandCount);
+		}
+		if(command.getLineNumber() == null){
+			command.setLineNumber(commandCount);
+		}
+	}
+
+	/**
+	 * Determine if the given command has to be built again using the real context.
+	 * This is the case when the builder or the unit of the coordinates depend on an inherited value that differs from the placeholder's one.
+	 * @param command the command built using a placeholder context
+	 * @param context the real context
+	 * @return <code>true</code> if the command must be built again, <code>false</code> otherwise
+	 */
+	private boolean isRebuildRequired(GCodeCommand command, GCodeContext context){
+		if(!(command instanceof MotionCommand)){
+			return false;
+		}
+		MotionCommand motionCommand = (MotionCommand) command;
+		if(motionCommand.isInheritedUnit() && motionCommand.getUnit() != context.getUnit()){
+			return true;
+		}
+		return motionCommand.isInheritedMotionMode()
+				&& (motionCommand.getMotionMode() != context.getMotionMode() || motionCommand.getMotionType() != context.getMotionType())
+				&& (motionCommand instanceof ArcMotionCommand || context.getMotionType() == EnumGCodeCommandMotionType.ARC);
+	}
+
+	/**
+	 * Replace the values inherited from the placeholder context by the ones of the real context
+	 * @param command the command built using a placeholder context
+	 * @param context the real context
+	 */
+	private void restoreInheritedState(GCodeCommand command, GCodeContext context){
+		if(!(command instanceof SettingCommand)){
+			return;
+		}
+		SettingCommand settingCommand = (SettingCommand) command;
+		if(settingCommand.isInheritedMotionMode()){
+			settingCommand.setMotionMode(context.getMotionMode());
+			settingCommand.setMotionType(context.getMotionType());
+		}else if(settingCommand.getMotionMode() == EnumGCodeCommandMotionMode.PROBE){
+			// Probing doesn't define the motion type
+			settingCommand.setMotionType(context.getMotionType());
+		}
+		if(settingCommand.isInheritedFeedrate()){
+			settingCommand.setFeedrate(context.getFeedrate());
+		}
+		if(settingCommand.isInheritedUnit()){
+			settingCommand.setUnit(context.getUnit());
+		}
+		if(!settingCommand.isExplicitPlane()){
+			settingCommand.setPlane(context.getPlane());
+		}
+		if(!settingCommand.isExplicitcoordinateSystem()){
+			settingCommand.setCoordinateSystem(context.getCoordinateSystem());
+		}
+		if(settingCommand.isInheritedDistanceMode()){
+			settingCommand.setDistanceMode(context.getDistanceMode());
+		}
+		if(settingCommand instanceof MotionCommand){
+			// Also updates the end coordinate, the center of the arcs and the bounds
+			((MotionCommand) settingCommand).setAbsoluteStartCoordinate(context.getPosition());
+		}
+	}
+
+	/**
+	 * Determine if the given character ends a line. Lines end with '\n', '\r' or both, like {@link java.io.BufferedReader#readLine()}.
+	 * A "\r\n" pair is seen as two line ends around an empty line, which holds no command
+	 * @param c the character
+	 * @return <code>true</code> if the character ends a line
+	 */
+	private static boolean isLineEnd(char c){
+		return c == '\n' || c == '\r';
+	}
+
+	/**
+	 * Returns the index of the last line end character in the given buffer
+	 * @param buffer the buffer
+	 * @param length the number of characters in the buffer
+	 * @return the index of the last line end character, -1 if there is none
+	 */
+	private static int getLastLineEnd(char[] buffer, int length){
+		for (int i = length - 1; i >= 0; i--) {
+			if(isLineEnd(buffer[i])){
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the index of the end of the line starting at the given index
+	 * @param content the content
+	 * @param lineBegin the beginning of the line
+	 * @param end the upper limit
+	 * @return the index of the line end character, or <code>end</code>
+	 */
+	private static int getLineEnd(String content, int lineBegin, int end){
+		for (int i = lineBegin; i < end; i++) {
+			if(isLineEnd(content.charAt(i))){
+				return i;
+			}
+		}
+		return end;
+	}
+
+	/**
+	 * Second phase of the parsing : sequentially stitch the commands built in parallel, in the file order
+	 */
+	private class GCodeStitcher {
+		/** The real context */
+		private GCodeContext context;
+		/** The lexer for the commands to build again */
+		private GCodeLexer lexer;
+		/** The analyser for the commands to build again */
+		private AdvancedGCodeAnalyser analyser;
+		/** Reused token list */
+		private List<GCodeToken> tokens;
+		/** The stitched commands */
+		private List<GCodeCommand> lstCommands;
+
+		/**
+		 * Constructor
+		 * @param initialContext the initial context. It is copied and left untouched.
+		 */
+		GCodeStitcher(GCodeContext initialContext) {
+			this.context = new GCodeContext(initialContext);
+			this.lexer = new GCodeLexer();
+			this.analyser = new AdvancedGCodeAnalyser();
+			this.tokens = new ArrayList<GCodeToken>();
+			this.lstCommands = new ArrayList<GCodeCommand>();
+		}
+
+		/**
+		 * Stitch the given chunks
+		 * @param content the content the chunks were built from
+		 * @param chunks the chunks, in the content order
+		 * @throws GkException GkException
+		 */
+		void stitch(String content, List<GCodeChunk> chunks) throws GkException{
+			for (GCodeChunk chunk : chunks) {
+				// Stitch the commands built in the first phase
+				for (int i = 0; i < chunk.commands.size(); i++) {
+					GCodeCommand command = chunk.commands.get(i);
+					if(isRebuildRequired(command, context)){
+						lexer.createTokens(content, chunk.lineBegin[i], chunk.lineEnd[i], tokens);
+						command = analyser.createCommand(tokens, context);
+						tokens.clear();
+					}else{
+						restoreInheritedState(command, context);
+						command.updateContext(context);
+					}
+					addCommand(lstCommands, command);
+				}
+				// Sequentially parse what could not be built in the first phase. Errors are raised here, in the file order
+				int lineBegin = chunk.pendingBegin;
+				while(lineBegin < chunk.end){
+					int lineEnd = getLineEnd(content, lineBegin, chunk.end);
+					lexer.createTokens(content, lineBegin, lineEnd, tokens);
+					if(!tokens.isEmpty()){
+						addCommand(lstCommands, analyser.createCommand(tokens, context));
+						tokens.clear();
+					}
+					lineBegin = lineEnd + 1;
+				}
+			}
+		}
+	}
+
+	/**
+	 * A chunk of content, and the commands built from it in the first phase
+	 */
+	private static class GCodeChunk {
+		/** Index after the last character of the chunk */
+		private int end;
+		/** The commands built in the first phase */
+		private List<GCodeCommand> commands;
+		/** Beginning of the line of each built command */
+		private int[] lineBegin;
+		/** End of the line of each built command */
+		private int[] lineEnd;
+		/** Index of the first line that was not built in the first phase */
+		private int pendingBegin;
+
+		/**
+		 * Constructor
+		 * @param begin the beginning of the chunk
+		 * @param end the end of the chunk
+		 */
+		GCodeChunk(int begin, int end) {
+			this.end = end;
+			this.pendingBegin = begin;
+			this.commands = new ArrayList<GCodeCommand>();
+			this.lineBegin = new int[64];
+			this.lineEnd = new int[64];
+		}
+
+		/**
+		 * Register a built command
+		 * @param command the command
+		 * @param begin the beginning of its line
+		 * @param end the end of its line
+		 */
+		void add(GCodeCommand command, int begin, int end){
+			int index = commands.size();
+			if(index == lineBegin.length){
+				lineBegin = Arrays.copyOf(lineBegin, index * 2);
+				lineEnd = Arrays.copyOf(lineEnd, index * 2);
+			}
+			lineBegin[index] = begin;
+			lineEnd[index] = end;
+			commands.add(command);
+		}
+	}
+
+	/**
+	 * Fork/join task splitting the content at line boundaries and building the chunks
+	 */
+	private static class GCodeChunkTask extends RecursiveTask<List<GCodeChunk>> {
+		private static final long serialVersionUID = 1L;
+		/** The whole content */
+		private String content;
+		/** Beginning of the part to handle */
+		private int begin;
+		/** End of the part to handle */
+		private int end;
+		/** The placeholder context */
+		private GCodeContext placeholderContext;
+
+		/**
+		 * Constructor
+		 * @param content the whole content
+		 * @param begin the beginning of the part to handle
+		 * @param end the end of the part to handle
+		 * @param placeholderContext the placeholder context
+		 */
+		GCodeChunkTask(String content, int begin, int end, GCodeContext placeholderContext) {
+			this.content = content;
+			this.begin = begin;
+			this.end = end;
+			this.placeholderContext = placeholderContext;
+		}
+
+		/** (inheritDoc)
+		 * @see java.util.concurrent.RecursiveTask#compute()
+		 */
+		@Override
+		protected List<GCodeChunk> compute() {
+			int split = end;
+			if(end - begin > CHUNK_SIZE){
+				split = getLineEnd(content, begin + (end - begin) / 2, end) + 1;
+			}
+			if(split >= end){
+				List<GCodeChunk> result = new ArrayList<GCodeChunk>();
+				result.add(buildChunk());
+				return result;
+			}
+			GCodeChunkTask left = new GCodeChunkTask(content, begin, split, placeholderContext);
+			GCodeChunkTask right = new GCodeChunkTask(content, split, end, placeholderContext);
+			left.fork();
+			List<GCodeChunk> rightResult = right.compute();
+			List<GCodeChunk> result = left.join();
+			result.addAll(rightResult);
+			return result;
+		}
+
+		/**
+		 * Lex and build the commands of the handled part, starting from the placeholder context
+		 * @return the {@link GCodeChunk}
+		 */
+		private GCodeChunk buildChunk(){
+			GCodeChunk chunk = new GCodeChunk(begin, end);
+			GCodeLexer lexer = new GCodeLexer();
+			AdvancedGCodeAnalyser analyser = new AdvancedGCodeAnalyser();
+			GCodeContext context = new GCodeContext(placeholderContext);
+			List<GCodeToken> tokens = new ArrayList<GCodeToken>();
+			try{
+				int lineBegin = begin;
+				while(lineBegin < end){
+					int lineEnd = getLineEnd(content, lineBegin, end);
+					lexer.createTokens(content, lineBegin, lineEnd, tokens);
+					if(!tokens.isEmpty()){
+						chunk.add(analyser.createCommand(tokens, context), lineBegin, lineEnd);
+						tokens.clear();
+					}
+					lineBegin = lineEnd + 1;
+					chunk.pendingBegin = lineBegin;
+				}
+			}catch(GkException e){
+				// The remaining lines are parsed in the sequential phase, where the error will be reported in order
+			}
+			chunk.pendingBegin = Math.min(chunk.pendingBegin, end);
+			return chunk;
+		}
+	}
+}
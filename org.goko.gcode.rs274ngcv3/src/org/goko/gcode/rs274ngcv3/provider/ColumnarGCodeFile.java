@@ -0,0 +1,793 @@
+/*******************************************************************************
+ * 	This file is part of Goko.
+ *
+ *   Goko is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Goko is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Goko.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package org.goko.gcode.rs274ngcv3.provider;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+import org.goko.core.common.exception.GkException;
+import org.goko.core.common.exception.GkFunctionalException;
+import org.goko.core.common.exception.GkTechnicalException;
+import org.goko.core.common.measure.SI;
+import org.goko.core.common.measure.quantity.Angle;
+import org.goko.core.common.measure.quantity.Length;
+import org.goko.core.common.measure.quantity.Quantity;
+import org.goko.core.common.measure.quantity.type.BigDecimalQuantity;
+import org.goko.core.common.measure.quantity.type.NumberQuantity;
+import org.goko.core.common.measure.units.Unit;
+import org.goko.core.gcode.bean.BoundingTuple6b;
+import org.goko.core.gcode.bean.GCodeCommand;
+import org.goko.core.gcode.bean.GCodeContext;
+import org.goko.core.gcode.bean.IGCodeProvider;
+import org.goko.core.gcode.bean.Tuple6b;
+import org.goko.core.gcode.bean.commands.ArcMotionCommand;
+import org.goko.core.gcode.bean.commands.EnumCoordinateSystem;
+import org.goko.core.gcode.bean.commands.EnumGCodeCommandDistanceMode;
+import org.goko.core.gcode.bean.commands.EnumGCodeCommandMotionMode;
+import org.goko.core.gcode.bean.commands.EnumGCodeCommandMotionType;
+import org.goko.core.gcode.bean.commands.EnumGCodeCommandPlane;
+import org.goko.core.gcode.bean.commands.EnumGCodeCommandType;
+import org.goko.core.gcode.bean.commands.EnumGCodeCommandUnit;
+import org.goko.core.gcode.bean.commands.MotionCommand;
+import org.goko.core.gcode.bean.commands.SettingCommand;
+import org.goko.core.gcode.bean.provider.GCodeProviderCoordinates;
+import org.goko.core.gcode.bean.provider.ICoordinatesGCodeProvider;
+import org.goko.core.math.Tuple6d;
+import org.goko.gcode.rs274ngcv3.parser.GCodeLexer;
+import org.goko.gcode.rs274ngcv3.parser.GCodeToken;
+import org.goko.gcode.rs274ngcv3.parser.advanced.AdvancedGCodeAnalyser;
+
+/**
+ * {@link IGCodeProvider} storing its commands in primitive columns instead of {@link GCodeCommand} objects.
+ *
+ * Each command is described by its id, line number, type and explicit flags (<code>int[]</code>), its modal state (<code>byte[]</code>,
+ * 6 values per command), its absolute start and end coordinates (<code>double[]</code>, 6 values per command, in millimeters and degrees),
+ * its feedrate (<code>float[]</code>) and the text of its line. The commands returned by {@link #getGCodeCommands()} and
+ * {@link #getCommandById(Integer)} are views built on demand : the line is parsed again using a context restored from the columns.
+ * The unit and the scale of each value of the start coordinate and of the feedrate are kept, so the restored context holds the same
+ * {@link BigDecimal} values as the parsed commands. The few values a double can't restore are kept as they are.
+ * Modifications made on these views are not written back in the provider.
+ *
+ * @author PsyKo
+ *
+ */
+public class ColumnarGCodeFile implements ICoordinatesGCodeProvider {
+	/** Number of coordinate values per command */
+	private static final int COORDINATE_STRIDE = 6;
+	/** Number of modal values per command */
+	private static final int MODAL_STRIDE = 6;
+	/** Offset of the motion mode in the modal values */
+	private static final int MODAL_MOTION_MODE = 0;
+	/** Offset of the motion type in the modal values */
+	private static final int MODAL_MOTION_TYPE = 1;
+	/** Offset of the unit in the modal values */
+	private static final int MODAL_UNIT = 2;
+	/** Offset of the distance mode in the modal values */
+	private static final int MODAL_DISTANCE_MODE = 3;
+	/** Offset of the plane in the modal values */
+	private static final int MODAL_PLANE = 4;
+	/** Offset of the coordinate system in the modal values */
+	private static final int MODAL_COORDINATE_SYSTEM = 5;
+	/** Mask of the command type in the type and flags value */
+	private static final int TYPE_MASK = 0xFF;
+	/** Flag for an explicit motion mode */
+	public static final int FLAG_EXPLICIT_MOTION_MODE = 1 << 8;
+	/** Flag for an explicit feedrate */
+	public static final int FLAG_EXPLICIT_FEEDRATE = 1 << 9;
+	/** Flag for an explicit unit */
+	public static final int FLAG_EXPLICIT_UNIT = 1 << 10;
+	/** Flag for an explicit distance mode */
+	public static final int FLAG_EXPLICIT_DISTANCE_MODE = 1 << 11;
+	/** Flag for an explicit tool number */
+	public static final int FLAG_EXPLICIT_TOOL_NUMBER = 1 << 12;
+	/** Flag for an explicit plane */
+	public static final int FLAG_EXPLICIT_PLANE = 1 << 13;
+	/** Flag for an explicit coordinate system */
+	public static final int FLAG_EXPLICIT_COORDINATE_SYSTEM = 1 << 14;
+	/** Flag for an explicit spindle speed */
+	public static final int FLAG_EXPLICIT_SPINDLE_SPEED = 1 << 15;
+	/** Flag for a clockwise arc */
+	public static final int FLAG_CLOCKWISE = 1 << 16;
+	/** Value of an undefined line number */
+	private static final int NO_LINE_NUMBER = -1;
+	/** Value of an undefined modal state */
+	private static final byte NO_MODAL_VALUE = -1;
+	/** Unit index of an undefined value */
+	private static final byte NO_UNIT = -1;
+	/** The name of this provider */
+	private String name;
+	/** The id of this provider */
+	private Integer id;
+	/** The number of commands */
+	private int commandCount;
+	/** The ids of the commands */
+	private int[] ids;
+	/** The line numbers of the commands */
+	private int[] lineNumbers;
+	/** The type and explicit flags of the commands */
+	private int[] typeFlags;
+	/** The modal states of the commands */
+	private byte[] modals;
+	/** The feedrates of the commands, NaN if undefined */
+	private float[] feedrates;
+	/** The absolute start coordinates of the commands */
+	private double[] start;
+	/** The absolute end coordinates of the commands */
+	private double[] end;
+	/** The units of the exact values */
+	private List<Unit<?>> units;
+	/** The unit index of each value of the absolute start coordinates, NO_UNIT if undefined */
+	private byte[] startUnits;
+	/** The scale of each value of the absolute start coordinates */
+	private byte[] startScales;
+	/** The scale of the feedrates */
+	private byte[] feedrateScales;
+	/** The values of the start coordinates that can't be restored from the columns, by offset in the columns */
+	private Map<Integer, BigDecimal> exactStartValues;
+	/** The feedrates that can't be restored from the columns, by command index */
+	private Map<Integer, BigDecimal> exactFeedrates;
+	/** The text of all the lines */
+	private char[] text;
+	/** The offset of each line in the text. Holds one more value than the number of commands */
+	private int[] textOffsets;
+	/** Length of the used part of the text */
+	private int textLength;
+	/** The bounds */
+	private BoundingTuple6b bounds;
+	/** The lexer used to build the views */
+	private GCodeLexer lexer;
+	/** The analyser used to build the views */
+	private AdvancedGCodeAnalyser analyser;
+	/** Reused token list */
+	private List<GCodeToken> tokens;
+
+	/**
+	 * Constructor
+	 * @param name the name of this provider
+	 * @param reader the reader to parse. It is closed once read.
+	 * @param initialContext the initial parsing context. It is copied and left untouched.
+	 * @throws GkException GkException
+	 */
+	public ColumnarGCodeFile(String name, Reader reader, GCodeContext initialContext) throws GkException {
+		this.name 		 = name;
+		this.id 		 = 0;
+		this.lexer 		 = new GCodeLexer();
+		this.analyser 	 = new AdvancedGCodeAnalyser();
+		this.tokens 	 = new ArrayList<GCodeToken>();
+		this.ids 		 = new int[1024];
+		this.lineNumbers = new int[1024];
+		this.typeFlags 	 = new int[1024];
+		this.feedrates 	 = new float[1024];
+		this.modals 	 = new byte[1024 * MODAL_STRIDE];
+		this.start 		 = new double[1024 * COORDINATE_STRIDE];
+		this.end 		 = new double[1024 * COORDINATE_STRIDE];
+		this.startUnits  = new byte[1024 * COORDINATE_STRIDE];
+		this.startScales = new byte[1024 * COORDINATE_STRIDE];
+		this.feedrateScales = new byte[1024];
+		this.units 		 = new ArrayList<Unit<?>>();
+		this.exactStartValues = new HashMap<Integer, BigDecimal>();
+		this.exactFeedrates = new HashMap<Integer, BigDecimal>();
+		this.textOffsets = new int[1025];
+		this.text 		 = new char[16 * 1024];
+		read(new BufferedReader(reader), new GCodeContext(initialContext));
+	}
+
+	/**
+	 * Parse all the lines of the given reader
+	 * @param reader the reader
+	 * @param context the parsing context
+	 * @throws GkException GkException
+	 */
+	private void read(BufferedReader reader, GCodeContext context) throws GkException{
+		Tuple6d position = new Tuple6d();
+		new Tuple6b().setZero().toTuple6d(position);
+		if(context.getPosition() != null){
+			context.getPosition().toTuple6d(position);
+		}
+		double[] min = null;
+		double[] max = null;
+		try{
+			String line = reader.readLine();
+			while(line != null){
+				tokens.clear();
+				lexer.createTokens(line, 0, line.length(), tokens);
+				if(!tokens.isEmpty()){
+					GCodeCommand command = analyser.createCommand(tokens, context);
+					add(command, line, position, context);
+					if(command instanceof MotionCommand){
+						if(min == null){
+							min = Arrays.copyOfRange(start, (commandCount - 1) * COORDINATE_STRIDE, commandCount * COORDINATE_STRIDE);
+							max = Arrays.copyOf(min, COORDINATE_STRIDE);
+						}
+						updateBounds(min, max, start, commandCount - 1);
+						updateBounds(min, max, end, commandCount - 1);
+					}
+				}
+				line = reader.readLine();
+			}
+		}catch(IOException e){
+			throw new GkTechnicalException(e);
+		}finally{
+			IOUtils.closeQuietly(reader);
+		}
+		trimToSize();
+		if(min == null){
+			bounds = new BoundingTuple6b(new Tuple6b().setNull(), new Tuple6b().setNull());
+		}else{
+			bounds = new BoundingTuple6b(toTuple6b(min, 0), toTuple6b(max, 0));
+		}
+	}
+
+	/**
+	 * Store the given command in the columns
+	 * @param command the command
+	 * @param line the text of the command
+	 * @param position the current position, updated by motion commands
+	 * @param context the parsing context, after the command
+	 */
+	private void add(GCodeCommand command, String line, Tuple6d position, GCodeContext context){
+		ensureCapacity(commandCount + 1, line.length());
+		int index = commandCount;
+		int flags = command.getType().ordinal();
+		Arrays.fill(modals, index * MODAL_STRIDE, (index + 1) * MODAL_STRIDE, NO_MODAL_VALUE);
+		feedrates[index] = Float.NaN;
+		if(command instanceof SettingCommand){
+			SettingCommand setting = (SettingCommand) command;
+			flags |= setting.isExplicitMotionMode() ? FLAG_EXPLICIT_MOTION_MODE : 0;
+			flags |= setting.isExplicitFeedrate() ? FLAG_EXPLICIT_FEEDRATE : 0;
+			flags |= setting.isExplicitUnit() ? FLAG_EXPLICIT_UNIT : 0;
+			flags |= setting.isExplicitDistanceMode() ? FLAG_EXPLICIT_DISTANCE_MODE : 0;
+			flags |= setting.isExplicitToolNumber() ? FLAG_EXPLICIT_TOOL_NUMBER : 0;
+			flags |= setting.isExplicitPlane() ? FLAG_EXPLICIT_PLANE : 0;
+			flags |= setting.isExplicitcoordinateSystem() ? FLAG_EXPLICIT_COORDINATE_SYSTEM : 0;
+			flags |= setting.isExplicitSplindleSpeed() ? FLAG_EXPLICIT_SPINDLE_SPEED : 0;
+			setModal(index, MODAL_MOTION_MODE, setting.getMotionMode());
+			setModal(index, MODAL_MOTION_TYPE, setting.getMotionType());
+			setModal(index, MODAL_UNIT, setting.getUnit());
+			setModal(index, MODAL_DISTANCE_MODE, setting.getDistanceMode());
+			setModal(index, MODAL_PLANE, setting.getPlane());
+			setModal(index, MODAL_COORDINATE_SYSTEM, setting.getCoordinateSystem());
+			if(setting.getFeedrate() != null){
+				storeFeedrate(index, setting.getFeedrate());
+			}
+		}
+		if(command instanceof ArcMotionCommand && ((ArcMotionCommand) command).isClockwise()){
+			flags |= FLAG_CLOCKWISE;
+		}
+		if(command instanceof MotionCommand){
+			MotionCommand motionCommand = (MotionCommand) command;
+			store(start, index, motionCommand.getAbsoluteStartCoordinate(position));
+			storeExactStart(index, motionCommand.getAbsoluteStartCoordinate());
+			motionCommand.getAbsoluteEndCoordinate(position);
+		}else{
+			store(start, index, position);
+			// The position is not changed by the command
+			storeExactStart(index, context.getPosition());
+		}
+		store(end, index, position);
+
+		commandCount++;
+		ids[index] 			= command.getId() == null ? commandCount : command.getId();
+		lineNumbers[index] 	= command.getLineNumber() == null ? commandCount : command.getLineNumber();
+		typeFlags[index] 	= flags;
+		line.getChars(0, line.length(), text, textLength);
+		textLength += line.length();
+		textOffsets[commandCount] = textLength;
+	}
+
+	/**
+	 * Store the ordinal of the given modal value
+	 * @param index the index of the command
+	 * @param offset the offset of the modal value
+	 * @param value the value, can be null
+	 */
+	private void setModal(int index, int offset, Enum<?> value){
+		if(value != null){
+			modals[index * MODAL_STRIDE + offset] = (byte) value.ordinal();
+		}
+	}
+
+	/**
+	 * Returns the modal value of the command at the given index
+	 * @param index the index of the command
+	 * @param offset the offset of the modal value
+	 * @param values the values of the enum
+	 * @return the value, or <code>null</code> if undefined
+	 */
+	private <E extends Enum<E>> E getModal(int index, int offset, E[] values){
+		byte ordinal = modals[index * MODAL_STRIDE + offset];
+		if(ordinal == NO_MODAL_VALUE){
+			return null;
+		}
+		return values[ordinal];
+	}
+
+	/**
+	 * Make sure the columns can hold the given number of commands
+	 * @param capacity the number of commands
+	 * @param lineLength the length of the line to add
+	 */
+	private void ensureCapacity(int capacity, int lineLength){
+		if(capacity > ids.length){
+			int newCapacity = Math.max(capacity, ids.length * 2);
+			ids 		= Arrays.copyOf(ids, newCapacity);
+			lineNumbers = Arrays.copyOf(lineNumbers, newCapacity);
+			typeFlags 	= Arrays.copyOf(typeFlags, newCapacity);
+			feedrates 	= Arrays.copyOf(feedrates, newCapacity);
+			modals 		= Arrays.copyOf(modals, newCapacity * MODAL_STRIDE);
+			start 		= Arrays.copyOf(start, newCapacity * COORDINATE_STRIDE);
+			end 		= Arrays.copyOf(end, newCapacity * COORDINATE_STRIDE);
+			startUnits 	= Arrays.copyOf(startUnits, newCapacity * COORDINATE_STRIDE);
+			startScales = Arrays.copyOf(startScales, newCapacity * COORDINATE_STRIDE);
+			feedrateScales = Arrays.copyOf(feedrateScales, newCapacity);
+			textOffsets = Arrays.copyOf(textOffsets, newCapacity + 1);
+		}
+		if(textLength + lineLength > text.length){
+			text = Arrays.copyOf(text, Math.max(textLength + lineLength, text.length * 2));
+		}
+	}
+
+	/**
+	 * Release the unused capacity of the columns
+	 */
+	private void trimToSize(){
+		ids 		= Arrays.copyOf(ids, commandCount);
+		lineNumbers = Arrays.copyOf(lineNumbers, commandCount);
+		typeFlags 	= Arrays.copyOf(typeFlags, commandCount);
+		feedrates 	= Arrays.copyOf(feedrates, commandCount);
+		modals 		= Arrays.copyOf(modals, commandCount * MODAL_STRIDE);
+		start 		= Arrays.copyOf(start, commandCount * COORDINATE_STRIDE);
+		end 		= Arrays.copyOf(end, commandCount * COORDINATE_STRIDE);
+		startUnits 	= Arrays.copyOf(startUnits, commandCount * COORDINATE_STRIDE);
+		startScales = Arrays.copyOf(startScales, commandCount * COORDINATE_STRIDE);
+		feedrateScales = Arrays.copyOf(feedrateScales, commandCount);
+		textOffsets = Arrays.copyOf(textOffsets, commandCount + 1);
+		text 		= Arrays.copyOf(text, textLength);
+	}
+
+	/**
+	 * Store the given tuple at the given index
+	 * @param array the target array
+	 * @param index the index of the command
+	 * @param tuple the tuple to store
+	 */
+	private void store(double[] array, int index, Tuple6d tuple){
+		int offset = index * COORDINATE_STRIDE;
+		array[offset]     = tuple.x;
+		array[offset + 1] = tuple.y;
+		array[offset + 2] = tuple.z;
+		array[offset + 3] = tuple.a;
+		array[offset + 4] = tuple.b;
+		array[offset + 5] = tuple.c;
+	}
+
+	/**
+	 * Store the unit and the scale of the values of the given absolute start coordinate. The values are stored in {@link #start}
+	 * @param index the index of the command
+	 * @param tuple the exact start coordinate, can be null
+	 */
+	private void storeExactStart(int index, Tuple6b tuple){
+		int offset = index * COORDINATE_STRIDE;
+		if(tuple == null){
+			Arrays.fill(startUnits, offset, offset + COORDINATE_STRIDE, NO_UNIT);
+			return;
+		}
+		storeExactValue(offset,     tuple.getX(), SI.MILLIMETRE);
+		storeExactValue(offset + 1, tuple.getY(), SI.MILLIMETRE);
+		storeExactValue(offset + 2, tuple.getZ(), SI.MILLIMETRE);
+		storeExactValue(offset + 3, tuple.getA(), SI.DEGREE_ANGLE);
+		storeExactValue(offset + 4, tuple.getB(), SI.DEGREE_ANGLE);
+		storeExactValue(offset + 5, tuple.getC(), SI.DEGREE_ANGLE);
+	}
+
+	/**
+	 * Store the unit and the scale of the given value of a start coordinate
+	 * @param offset the offset of the value in the columns
+	 * @param quantity the value, can be null
+	 * @param columnUnit the unit of the value in {@link #start}
+	 */
+	private <Q extends Quantity<Q>> void storeExactValue(int offset, BigDecimalQuantity<Q> quantity, Unit<Q> columnUnit){
+		if(quantity == null){
+			startUnits[offset] = NO_UNIT;
+			return;
+		}
+		startUnits[offset] = getUnitIndex(quantity.getUnit());
+		BigDecimal value = quantity.getValue();
+		if(value.scale() == (byte) value.scale()){
+			startScales[offset] = (byte) value.scale();
+			if(value.equals(restoreExactValue(offset, columnUnit).getValue())){
+				return;
+			}
+		}
+		exactStartValues.put(offset, value);
+	}
+
+	/**
+	 * Restore the given value of a start coordinate
+	 * @param offset the offset of the value in the columns
+	 * @param columnUnit the unit of the value in {@link #start}
+	 * @return the value, or <code>null</code> if undefined
+	 */
+	@SuppressWarnings("unchecked")
+	private <Q extends Quantity<Q>> BigDecimalQuantity<Q> restoreExactValue(int offset, Unit<Q> columnUnit){
+		if(startUnits[offset] == NO_UNIT){
+			return null;
+		}
+		Unit<Q> unit = (Unit<Q>) units.get(startUnits[offset]);
+		BigDecimal value = exactStartValues.get(offset);
+		if(value == null){
+			double columnValue = start[offset];
+			if(unit != columnUnit){
+				columnValue = columnUnit.getConverterTo(unit).convert(columnValue);
+			}
+			value = BigDecimal.valueOf(columnValue).setScale(startScales[offset], RoundingMode.HALF_EVEN);
+		}
+		return NumberQuantity.of(value, unit);
+	}
+
+	/**
+	 * Restore the exact absolute start coordinate of the command at the given index
+	 * @param index the index of the command
+	 * @return a {@link Tuple6b} using the units of the parsed command
+	 */
+	private Tuple6b restoreExactStart(int index){
+		int offset = index * COORDINATE_STRIDE;
+		Tuple6b tuple = new Tuple6b().setNull();
+		tuple.setX(this.<Length>restoreExactValue(offset,     SI.MILLIMETRE));
+		tuple.setY(this.<Length>restoreExactValue(offset + 1, SI.MILLIMETRE));
+		tuple.setZ(this.<Length>restoreExactValue(offset + 2, SI.MILLIMETRE));
+		tuple.setA(this.<Angle>restoreExactValue(offset + 3,  SI.DEGREE_ANGLE));
+		tuple.setB(this.<Angle>restoreExactValue(offset + 4,  SI.DEGREE_ANGLE));
+		tuple.setC(this.<Angle>restoreExactValue(offset + 5,  SI.DEGREE_ANGLE));
+		return tuple;
+	}
+
+	/**
+	 * Returns the index of the given unit in {@link #units}, registering it if required
+	 * @param unit the unit
+	 * @return the index of the unit
+	 */
+	private byte getUnitIndex(Unit<?> unit){
+		// Units don't override equals, and a few instances are used
+		for (int i = 0; i < units.size(); i++) {
+			if(units.get(i) == unit){
+				return (byte) i;
+			}
+		}
+		units.add(unit);
+		return (byte) (units.size() - 1);
+	}
+
+	/**
+	 * Store the given feedrate
+	 * @param index the index of the command
+	 * @param feedrate the feedrate
+	 */
+	private void storeFeedrate(int index, BigDecimal feedrate){
+		feedrates[index] = feedrate.floatValue();
+		if(feedrate.scale() == (byte) feedrate.scale()){
+			feedrateScales[index] = (byte) feedrate.scale();
+			if(feedrate.equals(restoreFeedrate(index))){
+				return;
+			}
+		}
+		exactFeedrates.put(index, feedrate);
+	}
+
+	/**
+	 * Restore the feedrate of the command at the given index
+	 * @param index the index of the command
+	 * @return the feedrate, or <code>null</code> if undefined
+	 */
+	private BigDecimal restoreFeedrate(int index){
+		if(Float.isNaN(feedrates[index])){
+			return null;
+		}
+		BigDecimal feedrate = exactFeedrates.get(index);
+		if(feedrate == null){
+			feedrate = new BigDecimal(Float.toString(feedrates[index])).setScale(feedrateScales[index], RoundingMode.HALF_EVEN);
+		}
+		return feedrate;
+	}
+
+	/**
+	 * Extend the given bounds with the coordinates at the given index
+	 * @param min the minimum values
+	 * @param max the maximum values
+	 * @param array the coordinates
+	 * @param index the index of the command
+	 */
+	private void updateBounds(double[] min, double[] max, double[] array, int index){
+		int offset = index * COORDINATE_STRIDE;
+		for (int i = 0; i < COORDINATE_STRIDE; i++) {
+			min[i] = Math.min(min[i], array[offset + i]);
+			max[i] = Math.max(max[i], array[offset + i]);
+		}
+	}
+
+	/**
+	 * Create a {@link Tuple6b} from the coordinates at the given index
+	 * @param array the coordinates
+	 * @param index the index of the command
+	 * @return a {@link Tuple6b} in millimeters and degrees
+	 */
+	private Tuple6b toTuple6b(double[] array, int index){
+		int offset = index * COORDINATE_STRIDE;
+		return new Tuple6b(toBigDecimal(array[offset]),
+						   toBigDecimal(array[offset + 1]),
+						   toBigDecimal(array[offset + 2]),
+						   toBigDecimal(array[offset + 3]),
+						   toBigDecimal(array[offset + 4]),
+						   toBigDecimal(array[offset + 5]),
+						   SI.MILLIMETRE, SI.DEGREE_ANGLE);
+	}
+
+	/**
+	 * Convert the given value to the shortest {@link BigDecimal} representing it, without exponent
+	 * @param value the value
+	 * @return a {@link BigDecimal}
+	 */
+	private BigDecimal toBigDecimal(double value){
+		BigDecimal result = BigDecimal.valueOf(value).stripTrailingZeros();
+		if(result.scale() < 0){
+			result = result.setScale(0);
+		}
+		return result;
+	}
+
+	/**
+	 * Build the view of the command at the given index
+	 * @param index the index of the command
+	 * @return a {@link GCodeCommand} detached from this provider
+	 * @throws GkException GkException
+	 */
+	protected synchronized GCodeCommand getCommandAt(int index) throws GkException{
+		if(index < 0 || index >= commandCount){
+			throw new GkFunctionalException("GCodeCommand at index '"+index+"' does not exist.");
+		}
+		GCodeContext context = new GCodeContext();
+		context.setMotionMode(getModal(index, MODAL_MOTION_MODE, EnumGCodeCommandMotionMode.values()));
+		context.setMotionType(getModal(index, MODAL_MOTION_TYPE, EnumGCodeCommandMotionType.values()));
+		context.setUnit(getModal(index, MODAL_UNIT, EnumGCodeCommandUnit.values()));
+		context.setDistanceMode(getModal(index, MODAL_DISTANCE_MODE, EnumGCodeCommandDistanceMode.values()));
+		context.setPlane(getModal(index, MODAL_PLANE, EnumGCodeCommandPlane.values()));
+		context.setCoordinateSystem(getModal(index, MODAL_COORDINATE_SYSTEM, EnumCoordinateSystem.values()));
+		context.setFeedrate(restoreFeedrate(index));
+		context.setPosition(restoreExactStart(index));
+
+		tokens.clear();
+		lexer.createTokens(getLine(index), 0, textOffsets[index + 1] - textOffsets[index], tokens);
+		GCodeCommand command = analyser.createCommand(tokens, context);
+		command.setId(ids[index]);
+		command.setLineNumber(lineNumbers[index]);
+		return command;
+	}
+
+	/**
+	 * Returns the text of the command at the given index
+	 * @param index the index of the command
+	 * @return the text of the line
+	 */
+	public String getLine(int index){
+		return new String(text, textOffsets[index], textOffsets[index + 1] - textOffsets[index]);
+	}
+
+	/**
+	 * Returns the index of the command with the given id
+	 * @param idCommand the id of the command
+	 * @return the index of the command, or -1 if not found
+	 */
+	public int indexOf(int idCommand){
+		int index = Arrays.binarySearch(ids, idCommand);
+		return index < 0 ? -1 : index;
+	}
+
+	/**
+	 * @param index the index of the command
+	 * @return the id of the command at the given index
+	 */
+	public int getCommandId(int index){
+		return ids[index];
+	}
+
+	/**
+	 * @param index the index of the command
+	 * @return the line number of the command at the given index, or -1 if undefined
+	 */
+	public int getLineNumber(int index){
+		return lineNumbers[index];
+	}
+
+	/**
+	 * @param index the index of the command
+	 * @return the type of the command at the given index
+	 */
+	public EnumGCodeCommandType getType(int index){
+		return EnumGCodeCommandType.values()[typeFlags[index] & TYPE_MASK];
+	}
+
+	/**
+	 * Test the given flag on the command at the given index
+	 * @param index the index of the command
+	 * @param flag the flag (<code>FLAG_XXX</code> constant)
+	 * @return <code>true</code> if the flag is set
+	 */
+	public boolean isFlagSet(int index, int flag){
+		return (typeFlags[index] & flag) != 0;
+	}
+
+	/**
+	 * @param index the index of the command
+	 * @return the motion mode of the command at the given index
+	 */
+	public EnumGCodeCommandMotionMode getMotionMode(int index){
+		return getModal(index, MODAL_MOTION_MODE, EnumGCodeCommandMotionMode.values());
+	}
+
+	/**
+	 * @param index the index of the command
+	 * @return the motion type of the command at the given index
+	 */
+	public EnumGCodeCommandMotionType getMotionType(int index){
+		return getModal(index, MODAL_MOTION_TYPE, EnumGCodeCommandMotionType.values());
+	}
+
+	/**
+	 * @param index the index of the command
+	 * @return the unit of the command at the given index
+	 */
+	public EnumGCodeCommandUnit getUnit(int index){
+		return getModal(index, MODAL_UNIT, EnumGCodeCommandUnit.values());
+	}
+
+	/**
+	 * @param index the index of the command
+	 * @return the plane of the command at the given index
+	 */
+	public EnumGCodeCommandPlane getPlane(int index){
+		return getModal(index, MODAL_PLANE, EnumGCodeCommandPlane.values());
+	}
+
+	/**
+	 * @param index the index of the command
+	 * @return the feedrate of the command at the given index, in the unit of the command, or NaN if undefined
+	 */
+	public float getFeedrate(int index){
+		return feedrates[index];
+	}
+
+	/**
+	 * Copy the absolute start coordinate of the command at the given index
+	 * @param index the index of the command
+	 * @param target the target tuple
+	 * @return the target tuple, in millimeters and degrees
+	 */
+	public Tuple6d getStart(int index, Tuple6d target){
+		int offset = index * COORDINATE_STRIDE;
+		target.set(start[offset], start[offset + 1], start[offset + 2], start[offset + 3], start[offset + 4], start[offset + 5]);
+		return target;
+	}
+
+	/**
+	 * Copy the absolute end coordinate of the command at the given index
+	 * @param index the index of the command
+	 * @param target the target tuple
+	 * @return the target tuple, in millimeters and degrees
+	 */
+	public Tuple6d getEnd(int index, Tuple6d target){
+		int offset = index * COORDINATE_STRIDE;
+		target.set(end[offset], end[offset + 1], end[offset + 2], end[offset + 3], end[offset + 4], end[offset + 5]);
+		return target;
+	}
+
+	/**
+	 * @return the number of commands in this file
+	 */
+	public int getCommandCount() {
+		return commandCount;
+	}
+
+	/** (inheritDoc)
+	 * The coordinates arrays are shared with this provider.
+	 * @see org.goko.core.gcode.bean.provider.ICoordinatesGCodeProvider#getCoordinates()
+	 */
+	@Override
+	public GCodeProviderCoordinates getCoordinates() throws GkException {
+		boolean[] motion = new boolean[commandCount];
+		for (int i = 0; i < commandCount; i++) {
+			motion[i] = getType(i) == EnumGCodeCommandType.MOTION;
+		}
+		return new GCodeProviderCoordinates(ids, motion, start, end);
+	}
+
+	/** (inheritDoc)
+	 * @see org.goko.core.gcode.bean.IGCodeProvider#getCommandById(java.lang.Integer)
+	 */
+	@Override
+	public GCodeCommand getCommandById(Integer id) throws GkException {
+		int index = indexOf(id);
+		if(index < 0){
+			throw new GkFunctionalException("GCodeCommand with internal id '"+id+"' does not exist.");
+		}
+		return getCommandAt(index);
+	}
+
+	/** (inheritDoc)
+	 * The returned list builds the commands when they are accessed.
+	 * @see org.goko.core.gcode.bean.IGCodeProvider#getGCodeCommands()
+	 */
+	@Override
+	public List<GCodeCommand> getGCodeCommands() {
+		return new AbstractList<GCodeCommand>() {
+			@Override
+			public GCodeCommand get(int index) {
+				try {
+					return getCommandAt(index);
+				} catch (GkException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+
+			@Override
+			public int size() {
+				return commandCount;
+			}
+		};
+	}
+
+	/** (inheritDoc)
+	 * @see org.goko.core.gcode.bean.IGCodeProvider#getBounds()
+	 */
+	@Override
+	public BoundingTuple6b getBounds() {
+		return bounds;
+	}
+
+	/** (inheritDoc)
+	 * @see org.goko.core.gcode.bean.IGCodeProvider#getId()
+	 */
+	@Override
+	public Integer getId() {
+		return id;
+	}
+
+	/** (inheritDoc)
+	 * @see org.goko.core.gcode.bean.IGCodeProvider#setId(java.lang.Integer)
+	 */
+	@Override
+	public void setId(Integer id) {
+		this.id = id;
+	}
+
+	/** (inheritDoc)
+	 * @see org.goko.core.gcode.bean.IGCodeProvider#getName()
+	 */
+	@Override
+	public String getName() {
+		return name;
+	}
+}
@@ -0,0 +1,395 @@
+/*******************************************************************************
+ * 	This file is part of Goko.
+ *
+ *   Goko is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Goko is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Goko.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package org.goko.gcode.rs274ngcv3.provider;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+import org.goko.core.common.exception.GkException;
+import org.goko.core.common.exception.GkFunctionalException;
+import org.goko.core.common.exception.GkTechnicalException;
+import org.goko.core.gcode.bean.BoundingTuple6b;
+import org.goko.core.gcode.bean.GCodeCommand;
+import org.goko.core.gcode.bean.GCodeContext;
+import org.goko.core.gcode.bean.IGCodeProvider;
+import org.goko.core.gcode.bean.Tuple6b;
+import org.goko.gcode.rs274ngcv3.parser.GCodeLexer;
+import org.goko.gcode.rs274ngcv3.parser.GCodeToken;
+import org.goko.gcode.rs274ngcv3.parser.advanced.AdvancedGCodeAnalyser;
+
+/**
+ * {@link IGCodeProvider} decoding its commands on demand from a memory mapped file.
+ *
+ * The file is indexed once when opened : the offset of each command line is stored in a <code>long[]</code>,
+ * the bounds are computed, and a copy of the parsing context is kept every {@link #CHECKPOINT_INTERVAL} commands.
+ * Decoding a command then only requires to replay the commands since the previous checkpoint. Sequential accesses
+ * reuse the context of the previously decoded command, and recently decoded commands are kept in a small cache.
+ *
+ * @author PsyKo
+ *
+ */
+public class MappedGCodeFile implements IGCodeProvider {
+	/** Number of commands between two context checkpoints */
+	private static final int CHECKPOINT_INTERVAL = 1024;
+	/** Maximum size of a mapped segment */
+	private static final long MAX_SEGMENT_SIZE = Integer.MAX_VALUE;
+	/** Number of decoded commands kept in cache */
+	private static final int CACHE_SIZE = 512;
+	/** Charset used to decode the lines */
+	private static final Charset CHARSET = Charset.forName("ISO-8859-1");
+	/** The mapped file */
+	private File file;
+	/** The id of this provider */
+	private Integer id;
+	/** The mapped segments of the file. Each command line is entirely contained in a single segment */
+	private MappedByteBuffer[] segments;
+	/** Offset of each segment in the file */
+	private long[] segmentOffsets;
+	/** Offset of each command line in the file */
+	private long[] commandOffsets;
+	/** The number of commands */
+	private int commandCount;
+	/** Parsing contexts at the beginning of every CHECKPOINT_INTERVAL commands */
+	private List<GCodeContext> checkpoints;
+	/** The bounds */
+	private BoundingTuple6b bounds;
+	/** The lexer */
+	private GCodeLexer lexer;
+	/** The analyser */
+	private AdvancedGCodeAnalyser analyser;
+	/** Reused token list */
+	private List<GCodeToken> tokens;
+	/** Reused line buffer */
+	private byte[] lineBuffer;
+	/** Index of the last decoded command */
+	private int lastDecodedIndex;
+	/** Context resulting of the last decoded command */
+	private GCodeContext lastDecodedContext;
+	/** Recently decoded commands */
+	private Map<Integer, GCodeCommand> cache;
+
+	/**
+	 * Constructor
+	 * @param file the file to map
+	 * @param initialContext the initial parsing context
+	 * @throws GkException GkException
+	 */
+	public MappedGCodeFile(File file, GCodeContext initialContext) throws GkException {
+		this.file 			= file;
+		this.id 			= 0;
+		this.lexer 			= new GCodeLexer();
+		this.analyser 		= new AdvancedGCodeAnalyser();
+		this.tokens 		= new ArrayList<GCodeToken>();
+		this.lineBuffer 	= new byte[256];
+		this.commandOffsets = new long[1024];
+		this.checkpoints 	= new ArrayList<GCodeContext>();
+		this.bounds 		= new BoundingTuple6b(new Tuple6b().setNull(), new Tuple6b().setNull());
+		this.lastDecodedIndex = -1;
+		this.cache = new LinkedHashMap<Integer, GCodeCommand>(CACHE_SIZE, 0.75f, true){
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, GCodeCommand> eldest) {
+				return size() > CACHE_SIZE;
+			}
+		};
+		if(!file.exists()){
+			throw new GkFunctionalException("File '"+file.getAbsolutePath()+"' does not exist...");
+		}
+		index(new GCodeContext(initialContext));
+	}
+
+	/**
+	 * Map the file and build the command index
+	 * @param context the parsing context
+	 * @throws GkException GkException
+	 */
+	private void index(GCodeContext context) throws GkException{
+		RandomAccessFile randomAccessFile = null;
+		List<MappedByteBuffer> lstSegments = new ArrayList<MappedByteBuffer>();
+		List<Long> lstSegmentOffsets = new ArrayList<Long>();
+		try{
+			randomAccessFile = new RandomAccessFile(file, "r");
+			FileChannel channel = randomAccessFile.getChannel();
+			long fileSize = channel.size();
+			long position = 0;
+			while(position < fileSize){
+				long segmentSize = Math.min(fileSize - position, MAX_SEGMENT_SIZE);
+				MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, position, segmentSize);
+				boolean lastSegment = position + segmentSize >= fileSize;
+				int consumed = indexSegment(segment, position, lastSegment, context);
+				if(consumed == 0){
+					throw new GkTechnicalException("Line too long in file '"+file.getAbsolutePath()+"'");
+				}
+				lstSegments.add(segment);
+				lstSegmentOffsets.add(position);
+				position += consumed;
+			}
+		}catch(IOException e){
+			throw new GkTechnicalException(e);
+		}finally{
+			// The mapping stays valid once the channel is closed
+			IOUtils.closeQuietly(randomAccessFile);
+		}
+		segments = lstSegments.toArray(new MappedByteBuffer[lstSegments.size()]);
+		segmentOffsets = new long[lstSegmentOffsets.size()];
+		for (int i = 0; i < segmentOffsets.length; i++) {
+			segmentOffsets[i] = lstSegmentOffsets.get(i);
+		}
+		commandOffsets = Arrays.copyOf(commandOffsets, commandCount);
+	}
+
+	/**
+	 * Index the complete lines of the given segment
+	 * @param segment the segment
+	 * @param segmentOffset the offset of the segment in the file
+	 * @param lastSegment <code>true</code> if the segment reaches the end of the file
+	 * @param context the parsing context
+	 * @return the number of bytes consumed by complete lines
+	 * @throws GkException GkException
+	 */
+	private int indexSegment(MappedByteBuffer segment, long segmentOffset, boolean lastSegment, GCodeContext context) throws GkException{
+		int limit = segment.limit();
+		int lineStart = 0;
+		for (int i = 0; i < limit; i++) {
+			byte b = segment.get(i);
+			if(b == '\n' || b == '\r'){
+				indexLine(segment, segmentOffset, lineStart, i, context);
+				lineStart = i + 1;
+			}
+		}
+		if(lastSegment){
+			if(lineStart < limit){
+				indexLine(segment, segmentOffset, lineStart, limit, context);
+			}
+			return limit;
+		}
+		return lineStart;
+	}
+
+	/**
+	 * Index a single line
+	 * @param segment the segment containing the line
+	 * @param segmentOffset the offset of the segment in the file
+	 * @param lineStart the start of the line in the segment
+	 * @param lineEnd the end of the line in the segment
+	 * @param context the parsing context
+	 * @throws GkException GkException
+	 */
+	private void indexLine(MappedByteBuffer segment, long segmentOffset, int lineStart, int lineEnd, GCodeContext context) throws GkException{
+		if(lineEnd == lineStart){
+			return;
+		}
+		tokens.clear();
+		String line = readLine(segment, lineStart, lineEnd);
+		lexer.createTokens(line, 0, line.length(), tokens);
+		if(tokens.isEmpty()){
+			return;
+		}
+		if(commandCount % CHECKPOINT_INTERVAL == 0){
+			checkpoints.add(new GCodeContext(context));
+		}
+		if(commandCount == commandOffsets.length){
+			commandOffsets = Arrays.copyOf(commandOffsets, commandOffsets.length * 2);
+		}
+		commandOffsets[commandCount] = segmentOffset + lineStart;
+		commandCount++;
+		GCodeCommand command = analyser.createCommand(tokens, context);
+		bounds.add(command.getBounds());
+	}
+
+	/**
+	 * Read the bytes of a line as a String
+	 * @param segment the segment
+	 * @param lineStart the start of the line in the segment
+	 * @param lineEnd the end of the line in the segment
+	 * @return the line
+	 */
+	private String readLine(MappedByteBuffer segment, int lineStart, int lineEnd){
+		int length = lineEnd - lineStart;
+		if(lineBuffer.length < length){
+			lineBuffer = new byte[Math.max(length, lineBuffer.length * 2)];
+		}
+		for (int i = 0; i < length; i++) {
+			lineBuffer[i] = segment.get(lineStart + i);
+		}
+		return new String(lineBuffer, 0, length, CHARSET);
+	}
+
+	/**
+	 * Read the line of the command at the given index
+	 * @param index the index of the command
+	 * @return the line
+	 */
+	private String readCommandLine(int index){
+		long offset = commandOffsets[index];
+		int segmentIndex = Arrays.binarySearch(segmentOffsets, offset);
+		if(segmentIndex < 0){
+			segmentIndex = -segmentIndex - 2;
+		}
+		MappedByteBuffer segment = segments[segmentIndex];
+		int lineStart = (int) (offset - segmentOffsets[segmentIndex]);
+		int lineEnd = lineStart;
+		int limit = segment.limit();
+		while(lineEnd < limit){
+			byte b = segment.get(lineEnd);
+			if(b == '\n' || b == '\r'){
+				break;
+			}
+			lineEnd++;
+		}
+		return readLine(segment, lineStart, lineEnd);
+	}
+
+	/**
+	 * Build the command at the given index using the given context
+	 * @param index the index of the command
+	 * @param context the context, updated by the command
+	 * @return the {@link GCodeCommand}
+	 * @throws GkException GkException
+	 */
+	private GCodeCommand buildCommand(int index, GCodeContext context) throws GkException{
+		String line = readCommandLine(index);
+		tokens.clear();
+		lexer.createTokens(line, 0, line.length(), tokens);
+		GCodeCommand command = analyser.createCommand(tokens, context);
+		command.setId(index + 1);
+		if(command.getLineNumber() == null){
+			command.setLineNumber(index + 1);
+		}
+		return command;
+	}
+
+	/**
+	 * Returns the command at the given index
+	 * @param index the index of the command
+	 * @return the {@link GCodeCommand}
+	 * @throws GkException GkException
+	 */
+	protected synchronized GCodeCommand getCommandAt(int index) throws GkException{
+		if(index < 0 || index >= commandCount){
+			throw new GkFunctionalException("GCodeCommand with internal id '"+(index + 1)+"' does not exist.");
+		}
+		GCodeCommand command = cache.get(index);
+		if(command != null){
+			return command;
+		}
+		GCodeContext context = null;
+		if(lastDecodedContext != null && index == lastDecodedIndex + 1){
+			context = lastDecodedContext;
+		}else{
+			int checkpoint = index / CHECKPOINT_INTERVAL;
+			context = new GCodeContext(checkpoints.get(checkpoint));
+			for (int i = checkpoint * CHECKPOINT_INTERVAL; i < index; i++) {
+				buildCommand(i, context);
+			}
+		}
+		command = buildCommand(index, context);
+		lastDecodedIndex = index;
+		lastDecodedContext = context;
+		cache.put(index, command);
+		return command;
+	}
+
+	/** (inheritDoc)
+	 * @see org.goko.core.gcode.bean.IGCodeProvider#getCommandById(java.lang.Integer)
+	 */
+	@Override
+	public GCodeCommand getCommandById(Integer id) throws GkException {
+		return getCommandAt(id - 1);
+	}
+
+	/** (inheritDoc)
+	 * The returned list decodes the commands when they are accessed.
+	 * @see org.goko.core.gcode.bean.IGCodeProvider#getGCodeCommands()
+	 */
+	@Override
+	public List<GCodeCommand> getGCodeCommands() {
+		return new AbstractList<GCodeCommand>() {
+			@Override
+			public GCodeCommand get(int index) {
+				try {
+					return getCommandAt(index);
+				} catch (GkException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+
+			@Override
+			public int size() {
+				return commandCount;
+			}
+		};
+	}
+
+	/**
+	 * @return the number of commands in this file
+	 */
+	public int getCommandCount() {
+		return commandCount;
+	}
+
+	/** (inheritDoc)
+	 * @see org.goko.core.gcode.bean.IGCodeProvider#getBounds()
+	 */
+	@Override
+	public BoundingTuple6b getBounds() {
+		return bounds;
+	}
+
+	/** (inheritDoc)
+	 * @see org.goko.core.gcode.bean.IGCodeProvider#getId()
+	 */
+	@Override
+	public Integer getId() {
+		return id;
+	}
+
+	/** (inheritDoc)
+	 * @see org.goko.core.gcode.bean.IGCodeProvider#setId(java.lang.Integer)
+	 */
+	@Override
+	public void setId(Integer id) {
+		this.id = id;
+	}
+
+	/** (inheritDoc)
+	 * @see org.goko.core.gcode.bean.IGCodeProvider#getName()
+	 */
+	@Override
+	public String getName() {
+		return file.getName();
+	}
+
+	/**
+	 * @return the file
+	 */
+	public File getFile() {
+		return file;
+	}
+}
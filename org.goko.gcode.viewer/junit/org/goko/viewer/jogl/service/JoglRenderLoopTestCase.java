@@ -0,0 +1,98 @@
+package org.goko.viewer.jogl.service;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import javax.media.opengl.GLAutoDrawable;
+
+import junit.framework.TestCase;
+
+public class JoglRenderLoopTestCase extends TestCase {
+	/** Name of the render threads */
+	private static final String THREAD_NAME = "Goko 3D view rendering";
+	/** Released on each rendered frame */
+	private Semaphore frames;
+	private JoglRenderLoop loop;
+
+	/** {@inheritDoc}
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		frames = new Semaphore(0);
+		GLAutoDrawable drawable = (GLAutoDrawable) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{GLAutoDrawable.class}, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if("display".equals(method.getName())){
+					frames.release();
+				}
+				return null;
+			}
+		});
+		loop = new JoglRenderLoop(drawable);
+	}
+
+	/** {@inheritDoc}
+	 * @see junit.framework.TestCase#tearDown()
+	 */
+	@Override
+	protected void tearDown() throws Exception {
+		loop.stop();
+		waitRenderThreads(0);
+		super.tearDown();
+	}
+
+	/**
+	 * Wait until the given number of render threads is alive
+	 * @param expected the expected number of threads
+	 * @return the number of alive render threads
+	 * @throws InterruptedException InterruptedException
+	 */
+	private int waitRenderThreads(int expected) throws InterruptedException{
+		int count = -1;
+		for (int i = 0; i < 100 && count != expected; i++) {
+			if(count >= 0){
+				Thread.sleep(10);
+			}
+			count = 0;
+			for (Thread thread : Thread.getAllStackTraces().keySet()) {
+				if(THREAD_NAME.equals(thread.getName()) && thread.isAlive()){
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	public void testFirstFrame() throws Exception {
+		loop.start();
+		assertTrue(frames.tryAcquire(1, TimeUnit.SECONDS));
+	}
+
+	public void testRequestFrame() throws Exception {
+		loop.start();
+		assertTrue(frames.tryAcquire(1, TimeUnit.SECONDS));
+		loop.requestFrame();
+		assertTrue(frames.tryAcquire(1, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * A stop quickly followed by a start leaves a single render thread
+	 * @throws Exception Exception
+	 */
+	public void testRestart() throws Exception {
+		loop.start();
+		assertTrue(frames.tryAcquire(1, TimeUnit.SECONDS));
+		loop.stop();
+		loop.start();
+		assertTrue(frames.tryAcquire(1, TimeUnit.SECONDS));
+		assertEquals(1, waitRenderThreads(1));
+		// The replaced thread does not come back waiting for frames
+		Thread.sleep(50);
+		assertEquals(1, waitRenderThreads(1));
+	}
+}
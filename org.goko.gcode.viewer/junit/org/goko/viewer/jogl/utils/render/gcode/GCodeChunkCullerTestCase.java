@@ -0,0 +1,82 @@
+package org.goko.viewer.jogl.utils.render.gcode;
+
+import junit.framework.TestCase;
+
+public class GCodeChunkCullerTestCase extends TestCase {
+	private GCodeChunkCuller culler;
+
+	/** {@inheritDoc}
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		culler = new GCodeChunkCuller();
+		// Orthographic view of the [-100, 100] cube on a 800x800 viewport : 1mm is 4 pixels
+		culler.setView(new float[]{0.01f, 0, 0, 0,
+								   0, 0.01f, 0, 0,
+								   0, 0, 0.01f, 0,
+								   0, 0, 0, 1}, 800, 800);
+	}
+
+	private static float[] box(float minX, float minY, float minZ, float maxX, float maxY, float maxZ){
+		return new float[]{minX, minY, minZ, maxX, maxY, maxZ};
+	}
+
+	public void testInsideFrustum() throws Exception {
+		assertEquals(GCodeChunkCuller.FULL, culler.classify(box(-10, -10, -10, 10, 10, 10), 0));
+	}
+
+	public void testOutsideFrustum() throws Exception {
+		assertEquals(GCodeChunkCuller.CULLED, culler.classify(box(150, -10, -10, 160, 10, 10), 0));
+		assertEquals(GCodeChunkCuller.CULLED, culler.classify(box(-160, -10, -10, -150, 10, 10), 0));
+		assertEquals(GCodeChunkCuller.CULLED, culler.classify(box(-10, 150, -10, 10, 160, 10), 0));
+		assertEquals(GCodeChunkCuller.CULLED, culler.classify(box(-10, -160, -10, 10, -150, 10), 0));
+		// Beyond the near and far planes
+		assertEquals(GCodeChunkCuller.CULLED, culler.classify(box(-10, -10, 150, 10, 10, 160), 0));
+		assertEquals(GCodeChunkCuller.CULLED, culler.classify(box(-10, -10, -160, 10, 10, -150), 0));
+	}
+
+	public void testCrossingFrustum() throws Exception {
+		assertEquals(GCodeChunkCuller.FULL, culler.classify(box(90, -10, -10, 110, 10, 10), 0));
+		// Larger than the frustum, no corner inside
+		assertEquals(GCodeChunkCuller.FULL, culler.classify(box(-200, -200, -200, 200, 200, 200), 0));
+	}
+
+	public void testDecimationThreshold() throws Exception {
+		// 1.5mm is 6 pixels
+		assertEquals(GCodeChunkCuller.DECIMATED, culler.classify(box(0, 0, 0, 1.5f, 1.5f, 50), 0));
+		// 2.5mm is 10 pixels in one direction
+		assertEquals(GCodeChunkCuller.FULL, culler.classify(box(0, 0, 0, 2.5f, 1, 0), 0));
+		assertEquals(GCodeChunkCuller.FULL, culler.classify(box(0, 0, 0, 1, 2.5f, 0), 0));
+
+		culler.setDecimationSize(20);
+		assertEquals(GCodeChunkCuller.DECIMATED, culler.classify(box(0, 0, 0, 2.5f, 2.5f, 0), 0));
+		// Decimation disabled
+		culler.setDecimationSize(0);
+		assertEquals(GCodeChunkCuller.FULL, culler.classify(box(0, 0, 0, 0.1f, 0.1f, 0), 0));
+	}
+
+	public void testChunkIndex() throws Exception {
+		float[] bounds = new float[]{ -10, -10, -10, 10, 10, 10,
+									  150, -10, -10, 160, 10, 10,
+									  0, 0, 0, 1, 1, 1};
+		assertEquals(GCodeChunkCuller.FULL, culler.classify(bounds, 0));
+		assertEquals(GCodeChunkCuller.CULLED, culler.classify(bounds, 1));
+		assertEquals(GCodeChunkCuller.DECIMATED, culler.classify(bounds, 2));
+	}
+
+	public void testBoxCrossingCameraPlane() throws Exception {
+		// Perspective view : w = -z, the camera is at the origin looking toward -z
+		culler.setView(new float[]{1, 0, 0, 0,
+								   0, 1, 0, 0,
+								   0, 0, 0, -1,
+								   0, 0, 0, 0}, 800, 800);
+		// Small box partly behind the camera : never decimated
+		assertEquals(GCodeChunkCuller.FULL, culler.classify(box(-0.001f, -0.001f, -1, 0.001f, 0.001f, 1), 0));
+		// Small box in front of the camera
+		assertEquals(GCodeChunkCuller.DECIMATED, culler.classify(box(-0.001f, -0.001f, -2, 0.001f, 0.001f, -1), 0));
+		// Box behind the camera
+		assertEquals(GCodeChunkCuller.CULLED, culler.classify(box(-0.001f, -0.001f, 1, 0.001f, 0.001f, 2), 0));
+	}
+}
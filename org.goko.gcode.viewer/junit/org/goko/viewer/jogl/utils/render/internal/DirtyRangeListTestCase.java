@@ -0,0 +1,81 @@
+package org.goko.viewer.jogl.utils.render.internal;
+
+import junit.framework.TestCase;
+
+public class DirtyRangeListTestCase extends TestCase {
+
+	private void assertRanges(DirtyRangeList list, int... bounds){
+		assertEquals(bounds.length / 2, list.size());
+		for (int i = 0; i < list.size(); i++) {
+			assertEquals(bounds[2 * i], list.getStart(i));
+			assertEquals(bounds[2 * i + 1], list.getEnd(i));
+		}
+	}
+
+	public void testSortedDistinctRanges() throws Exception {
+		DirtyRangeList list = new DirtyRangeList(0, 8);
+		list.add(50, 60);
+		list.add(10, 20);
+		list.add(30, 40);
+		assertRanges(list, 10, 20, 30, 40, 50, 60);
+	}
+
+	public void testMergeAdjacentRanges() throws Exception {
+		DirtyRangeList list = new DirtyRangeList(0, 8);
+		list.add(10, 20);
+		list.add(20, 30);
+		list.add(5, 10);
+		assertRanges(list, 5, 30);
+	}
+
+	public void testMergeOverlappingRanges() throws Exception {
+		DirtyRangeList list = new DirtyRangeList(0, 8);
+		list.add(10, 20);
+		list.add(15, 25);
+		list.add(12, 14);
+		assertRanges(list, 10, 25);
+	}
+
+	public void testMergeBridgingRanges() throws Exception {
+		DirtyRangeList list = new DirtyRangeList(0, 8);
+		list.add(10, 20);
+		list.add(30, 40);
+		list.add(50, 60);
+		list.add(70, 80);
+		// Joins the 3 first ranges
+		list.add(15, 55);
+		assertRanges(list, 10, 60, 70, 80);
+	}
+
+	public void testMergeGap() throws Exception {
+		DirtyRangeList list = new DirtyRangeList(4, 8);
+		list.add(10, 20);
+		list.add(24, 30);
+		list.add(35, 40);
+		assertRanges(list, 10, 30, 35, 40);
+		list.add(0, 6);
+		assertRanges(list, 0, 30, 35, 40);
+	}
+
+	public void testCollapseWhenFull() throws Exception {
+		DirtyRangeList list = new DirtyRangeList(0, 3);
+		list.add(10, 20);
+		list.add(30, 40);
+		list.add(50, 60);
+		assertEquals(3, list.size());
+		list.add(0, 5);
+		assertRanges(list, 0, 60);
+	}
+
+	public void testEmptyRangesAndClear() throws Exception {
+		DirtyRangeList list = new DirtyRangeList(0, 8);
+		list.add(10, 10);
+		list.add(20, 15);
+		assertTrue(list.isEmpty());
+		list.add(10, 20);
+		assertFalse(list.isEmpty());
+		list.clear();
+		assertTrue(list.isEmpty());
+		assertEquals(0, list.size());
+	}
+}
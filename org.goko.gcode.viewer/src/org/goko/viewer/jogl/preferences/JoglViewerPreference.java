@@ -38,6 +38,8 @@ public class JoglViewerPreference extends GkPreference{
 	public static final String NODE = "org.goko.gcode.viewer";
 
 	public static final String MULTISAMPLING 	= "performances.multisampling";
+	public static final String MAXIMUM_FRAME_RATE 	= "performances.maximumFrameRate";
+	public static final String ARC_MAXIMUM_DEVIATION 	= "performances.arcMaximumDeviation";
 	public static final String MAJOR_GRID_SPACING 	= "grid.majorSpacing";
 	public static final String MINOR_GRID_SPACING 	= "grid.minorSpacing";
 
@@ -186,6 +188,34 @@ public class JoglViewerPreference extends GkPreference{
 		setValue(MULTISAMPLING, String.valueOf(multisampling));
 	}
 
+	/**
+	 * @return the maximum number of frames per second, 0 for no limit
+	 */
+	public int getMaximumFrameRate() {
+		return Integer.valueOf(getString(MAXIMUM_FRAME_RATE));
+	}
+
+	/**
+	 * @param maximumFrameRate the maximum number of frames per second, 0 for no limit
+	 */
+	public void setMaximumFrameRate(int maximumFrameRate) {
+		setValue(MAXIMUM_FRAME_RATE, String.valueOf(maximumFrameRate));
+	}
+
+	/**
+	 * @return the maximum distance between an arc and its rendered segments, in millimeters
+	 */
+	public double getArcMaximumDeviation() {
+		return Double.valueOf(getString(ARC_MAXIMUM_DEVIATION));
+	}
+
+	/**
+	 * @param arcMaximumDeviation the maximum distance between an arc and its rendered segments, in millimeters
+	 */
+	public void setArcMaximumDeviation(double arcMaximumDeviation) {
+		setValue(ARC_MAXIMUM_DEVIATION, String.valueOf(arcMaximumDeviation));
+	}
+
 	/**
 	 * @return the majorGridSpacing
 	 * @throws GkException 
@@ -22,6 +22,8 @@ public class JoglViewerPreferenceInitializer extends GkPreferenceInitializer{
 		prefs.setDefault(JoglViewerPreference.ROTARY_AXIS_POSITION_Y, "0");
 		prefs.setDefault(JoglViewerPreference.ROTARY_AXIS_POSITION_Z, "0");
 		prefs.setDefault(JoglViewerPreference.MULTISAMPLING, "1");
+		prefs.setDefault(JoglViewerPreference.MAXIMUM_FRAME_RATE, "60");
+		prefs.setDefault(JoglViewerPreference.ARC_MAXIMUM_DEVIATION, "0.01");
 		prefs.setDefault(JoglViewerPreference.MAJOR_GRID_SPACING, "5");
 		prefs.setDefault(JoglViewerPreference.MINOR_GRID_SPACING, "1");
 		
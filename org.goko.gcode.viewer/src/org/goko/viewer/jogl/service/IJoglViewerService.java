@@ -70,4 +70,14 @@ public interface IJoglViewerService extends IViewer3DService{
 	public void setLayerVisible(int layerId, boolean visible);
 	
 	public boolean isLayerVisible(int layerId);
+
+	/**
+	 * Request the rendering of a new frame. The scene is only rendered on request
+	 */
+	public void requestFrame();
+
+	/**
+	 * Stop the rendering of the scene
+	 */
+	public void stopRendering();
 }
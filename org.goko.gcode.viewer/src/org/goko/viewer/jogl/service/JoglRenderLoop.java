@@ -0,0 +1,139 @@
+/*
+ *	This file is part of Goko.
+ *
+ *  Goko is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Goko is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Goko.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.goko.viewer.jogl.service;
+
+import javax.media.opengl.GLAutoDrawable;
+
+import org.goko.core.log.GkLog;
+
+/**
+ * On demand render loop of a drawable.
+ * <p>
+ * A frame is only rendered when requested, several requests received before the frame is rendered leading to a
+ * single frame. The frame rate can be capped, so that continuous requests (camera moves, machine motion) don't take more
+ * time than necessary from the other threads.
+ * </p>
+ * @author PsyKo
+ *
+ */
+public class JoglRenderLoop implements Runnable {
+	/** LOG */
+	private static final GkLog LOG = GkLog.getLogger(JoglRenderLoop.class);
+	/** The drawable to render */
+	private final GLAutoDrawable drawable;
+	/** Minimum interval between two frames in milliseconds, 0 for no limit */
+	private long minimumFrameInterval;
+	/** Frame request flag */
+	private boolean frameRequested;
+	/** The current render thread, <code>null</code> when the loop is stopped. A previous thread exits as soon as it's replaced */
+	private Thread renderThread;
+	/** Time of the last frame in milliseconds */
+	private long lastFrameTime;
+
+	/**
+	 * Constructor
+	 * @param drawable the drawable to render
+	 */
+	public JoglRenderLoop(GLAutoDrawable drawable) {
+		this.drawable = drawable;
+	}
+
+	/**
+	 * Start the render thread, and render a first frame
+	 */
+	public synchronized void start(){
+		if(renderThread == null){
+			frameRequested = true;
+			renderThread = new Thread(this, "Goko 3D view rendering");
+			renderThread.setDaemon(true);
+			renderThread.start();
+		}
+	}
+
+	/**
+	 * Stop the render thread
+	 */
+	public synchronized void stop(){
+		renderThread = null;
+		notifyAll();
+	}
+
+	/**
+	 * Request the rendering of a frame
+	 */
+	public synchronized void requestFrame(){
+		if(!frameRequested){
+			frameRequested = true;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Sets the maximum frame rate
+	 * @param maximumFrameRate the maximum number of frames per second, 0 for no limit
+	 */
+	public synchronized void setMaximumFrameRate(int maximumFrameRate){
+		if(maximumFrameRate <= 0){
+			minimumFrameInterval = 0;
+		}else{
+			minimumFrameInterval = Math.max(1, 1000 / maximumFrameRate);
+		}
+		notifyAll();
+	}
+
+	/** (inheritDoc)
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run() {
+		try{
+			while(waitFrameRequest()){
+				try{
+					drawable.display();
+				}catch(RuntimeException e){
+					LOG.error(e);
+				}
+			}
+		}catch(InterruptedException e){
+			LOG.error(e);
+		}
+	}
+
+	/**
+	 * Wait until a frame is requested and the minimum interval since the last frame is elapsed
+	 * @return <code>true</code> if a frame should be rendered, <code>false</code> if the loop is stopped or the calling
+	 * thread is no longer the render thread
+	 * @throws InterruptedException InterruptedException
+	 */
+	private synchronized boolean waitFrameRequest() throws InterruptedException{
+		while(renderThread == Thread.currentThread()){
+			if(frameRequested){
+				long remaining = lastFrameTime + minimumFrameInterval - System.currentTimeMillis();
+				if(remaining <= 0){
+					frameRequested = false;
+					lastFrameTime = System.currentTimeMillis();
+					return true;
+				}
+				wait(remaining);
+			}else{
+				wait();
+			}
+		}
+		return false;
+	}
+}
@@ -46,6 +46,8 @@ import org.eclipse.jface.util.IPropertyChangeListener;
 import org.eclipse.jface.util.PropertyChangeEvent;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Listener;
 import org.goko.core.common.exception.GkException;
 import org.goko.core.common.exception.GkFunctionalException;
 import org.goko.core.log.GkLog;
@@ -94,6 +96,8 @@ public abstract class JoglSceneManager implements GLEventListener, IPropertyChan
 	private Map<Integer, Boolean> layerVisibility;
 	private Light light0;
 	private Light light1;
+	/** The on demand render loop */
+	private JoglRenderLoop renderLoop;
 	
 	public JoglSceneManager() {
 		getRenderers();
@@ -124,6 +128,22 @@ public abstract class JoglSceneManager implements GLEventListener, IPropertyChan
 		canvas 		= new GokoJoglCanvas(parent, SWT.NO_BACKGROUND, canvasCapabilities);
 		canvas.addGLEventListener(this);
 		proxy 		= new JoglRendererProxy(null);
+		// Camera interactions request a new frame
+		Listener interactionListener = new Listener() {
+			@Override
+			public void handleEvent(Event event) {
+				if(event.type != SWT.MouseMove || (event.stateMask & SWT.BUTTON_MASK) != 0){
+					requestFrame();
+				}
+			}
+		};
+		canvas.addListener(SWT.MouseDown, interactionListener);
+		canvas.addListener(SWT.MouseUp, interactionListener);
+		canvas.addListener(SWT.MouseMove, interactionListener);
+		canvas.addListener(SWT.MouseWheel, interactionListener);
+		canvas.addListener(SWT.Resize, interactionListener);
+		renderLoop 	= new JoglRenderLoop(canvas);
+		renderLoop.setMaximumFrameRate(JoglViewerPreference.getInstance().getMaximumFrameRate());
 
 		addCamera(new PerspectiveCamera(canvas));
 		addCamera(new OrthographicCamera(canvas));
@@ -131,8 +151,27 @@ public abstract class JoglSceneManager implements GLEventListener, IPropertyChan
 
 		setOverlayFont(new Font("SansSerif", Font.PLAIN, 12));
 		onCanvasCreated(canvas);
+		renderLoop.start();
 		return canvas;
 	}
+
+	/**
+	 * Request the rendering of a new frame. The scene is only rendered on request
+	 */
+	public void requestFrame(){
+		if(renderLoop != null){
+			renderLoop.requestFrame();
+		}
+	}
+
+	/**
+	 * Stop the rendering of the scene
+	 */
+	public void stopRendering(){
+		if(renderLoop != null){
+			renderLoop.stop();
+		}
+	}
 	
 	protected abstract void onCanvasCreated(GokoJoglCanvas canvas);
 	
@@ -220,17 +259,20 @@ public abstract class JoglSceneManager implements GLEventListener, IPropertyChan
 		synchronized (renderers) {
 			getRenderers().add(renderer);
 		}
+		requestFrame();
 	}
 	
 	public void removeRenderer(ICoreJoglRenderer renderer) throws GkException {
 		synchronized (renderers) {
 			getRenderers().remove(renderer);
 		}
+		requestFrame();
 	}
 	public void removeRenderer(IViewer3DRenderer renderer) throws GkException {
 		synchronized (renderers) {
 			getRenderers().remove(renderer);
 		}
+		requestFrame();
 	}
 	/**
 	 * Removes the given JOGL Renderer
@@ -239,6 +281,7 @@ public abstract class JoglSceneManager implements GLEventListener, IPropertyChan
 	 */
 	protected void removeRenderer(AbstractCoreJoglRenderer renderer) throws GkException {
 		getRenderers().remove(renderer);
+		requestFrame();
 	}
 
 	/**
@@ -253,6 +296,7 @@ public abstract class JoglSceneManager implements GLEventListener, IPropertyChan
 
 	public void setRendererEnabled(String idRenderer, boolean enabled) throws GkException{		
 		getJoglRenderer(idRenderer).setEnabled(enabled);
+		requestFrame();
 	}
 
 	/** (inheritDoc)
@@ -310,6 +354,7 @@ public abstract class JoglSceneManager implements GLEventListener, IPropertyChan
 		if(camera != null){
 			camera.reshape(drawable, x, y, width, height);
 		}
+		requestFrame();
 	}
 
 
@@ -330,6 +375,7 @@ public abstract class JoglSceneManager implements GLEventListener, IPropertyChan
 				camera = tmpCamera;
 				camera.updateViewport(x, y, getWidth(), height);
 				camera.setActivated(true);
+				requestFrame();
 				return;
 			}
 		}
@@ -413,6 +459,10 @@ public abstract class JoglSceneManager implements GLEventListener, IPropertyChan
 		if(canvasCapabilities != null){
 			canvasCapabilities.setNumSamples(JoglViewerPreference.getInstance().getMultisampling());
 		}
+		if(renderLoop != null){
+			renderLoop.setMaximumFrameRate(JoglViewerPreference.getInstance().getMaximumFrameRate());
+		}
+		requestFrame();
 	}
 
 	public void addCamera(AbstractCamera camera) throws GkException{
@@ -430,6 +480,7 @@ public abstract class JoglSceneManager implements GLEventListener, IPropertyChan
 
 	public void setEnabled(boolean enabled) {
 		this.enabled = enabled;
+		requestFrame();
 	}
 
 	/**
@@ -470,6 +521,7 @@ public abstract class JoglSceneManager implements GLEventListener, IPropertyChan
 	
 	public void setLayerVisible(int  layerId, boolean visible){
 		this.layerVisibility.put(layerId, visible);
+		requestFrame();
 	}
 		
 }
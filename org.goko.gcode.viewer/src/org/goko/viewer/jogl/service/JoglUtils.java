@@ -272,6 +272,23 @@ public class JoglUtils {
 		return buffer;
 	}
 
+	/**
+	 * Write a vertex in a buffer holding 4 floats (x, y, z, 1) per vertex.
+	 * The position of the buffer is left untouched, so distinct vertices of the same buffer can be written by several threads.
+	 * @param buffer the target buffer
+	 * @param vertexIndex the index of the vertex
+	 * @param x the x coordinate
+	 * @param y the y coordinate
+	 * @param z the z coordinate
+	 */
+	public static void putVertex(FloatBuffer buffer, int vertexIndex, double x, double y, double z){
+		int offset = vertexIndex * 4;
+		buffer.put(offset, 	   (float) x);
+		buffer.put(offset + 1, (float) y);
+		buffer.put(offset + 2, (float) z);
+		buffer.put(offset + 3, 1);
+	}
+
 	/**
 	 * Generate a FloatBuffer with the given list of Tuple3f.
 	 * For each tuple3f, 3 float values will be added the the created buffer.
@@ -36,6 +36,8 @@ import javax.vecmath.Vector3d;
 import org.apache.commons.lang3.StringUtils;
 import org.eclipse.jface.util.IPropertyChangeListener;
 import org.eclipse.jface.util.PropertyChangeEvent;
+import org.goko.core.common.event.EventListener;
+import org.goko.core.common.event.IEventDispatcher;
 import org.goko.core.common.exception.GkException;
 import org.goko.core.common.measure.quantity.Length;
 import org.goko.core.common.measure.units.Unit;
@@ -45,9 +47,12 @@ import org.goko.core.controller.ICoordinateSystemAdapter;
 import org.goko.core.controller.IFourAxisControllerAdapter;
 import org.goko.core.controller.IThreeAxisControllerAdapter;
 import org.goko.core.controller.ThreeToFourAxisAdapterWrapper;
+import org.goko.core.controller.event.MachineValueBatchUpdateEvent;
 import org.goko.core.gcode.bean.BoundingTuple6b;
 import org.goko.core.gcode.bean.IGCodeProvider;
 import org.goko.core.gcode.bean.commands.EnumCoordinateSystem;
+import org.goko.core.gcode.bean.execution.IGCodeExecutionToken;
+import org.goko.core.gcode.service.IGCodeExecutionListener;
 import org.goko.core.gcode.service.IGCodeExecutionMonitorService;
 import org.goko.core.log.GkLog;
 import org.goko.core.workspace.service.GCodeProviderEvent;
@@ -82,6 +87,8 @@ public class JoglViewerServiceImpl extends JoglSceneManager implements IJoglView
 	private static final String SERVICE_ID = "org.goko.viewer.jogl";
 	/** The current controller service*/
 	private IFourAxisControllerAdapter controllerAdapter;
+	/** The controller service notifying the machine value updates, before any adapter wrapping */
+	private IEventDispatcher controllerDispatcher;
 	/** The coordinate system adapter */
 	private ICoordinateSystemAdapter coordinateSystemAdapter;
 	/** Jog service */
@@ -90,6 +97,8 @@ public class JoglViewerServiceImpl extends JoglSceneManager implements IJoglView
 	private IGCodeExecutionMonitorService executionMonitorService;
 	/** The workspace service */
 	private IWorkspaceService workspaceService;
+	/** Listener requesting a frame on execution state changes */
+	private IGCodeExecutionListener executionFrameRequester;
 	/** Bind camera on tool position ? */
 	private boolean lockCameraOnTool;
 
@@ -159,6 +168,9 @@ public class JoglViewerServiceImpl extends JoglSceneManager implements IJoglView
 		}
 		gcodeRenderer = new RotaryAxisAdapter(this.controllerAdapter, new DefaultGCodeProviderRenderer(provider));
 		executionMonitorService.addExecutionListener(gcodeRenderer);
+		// The frame must be requested once the renderer is up to date
+		executionMonitorService.removeExecutionListener(executionFrameRequester);
+		executionMonitorService.addExecutionListener(executionFrameRequester);
 		bounds = provider.getBounds();
 		if(boundsRenderer != null){
 			removeRenderer(boundsRenderer);
@@ -183,7 +195,7 @@ public class JoglViewerServiceImpl extends JoglSceneManager implements IJoglView
 		if(controllerService instanceof IFourAxisControllerAdapter){
 			setControllerAdapter((IFourAxisControllerAdapter)controllerService);
 		}else{
-			setControllerAdapter(new ThreeToFourAxisAdapterWrapper(controllerService));
+			setControllerAdapter(new ThreeToFourAxisAdapterWrapper(controllerService), controllerService);
 		}
 	}
 	/**
@@ -191,7 +203,45 @@ public class JoglViewerServiceImpl extends JoglSceneManager implements IJoglView
 	 * @throws GkException GkException 
 	 */
 	public void setControllerAdapter(IFourAxisControllerAdapter controllerService) throws GkException {
-		this.controllerAdapter = controllerService;
+		setControllerAdapter(controllerService, controllerService);
+	}
+
+	/**
+	 * @param controllerService the controllerService to unset
+	 * @throws GkException GkException
+	 */
+	public void unsetControllerAdapter(IThreeAxisControllerAdapter controllerService) throws GkException {
+		if(controllerService == controllerDispatcher){
+			controllerDispatcher.removeListener(this);
+			controllerDispatcher = null;
+		}
+	}
+
+	/**
+	 * @param controllerService the controllerService to unset
+	 * @throws GkException GkException
+	 */
+	public void unsetControllerAdapter(IFourAxisControllerAdapter controllerService) throws GkException {
+		unsetControllerAdapter((IThreeAxisControllerAdapter) controllerService);
+	}
+
+	/**
+	 * Sets the controller adapter
+	 * @param adapter the four axis adapter to use
+	 * @param controllerService the bound controller service, which is the one notifying the machine value updates
+	 * @throws GkException GkException
+	 */
+	private void setControllerAdapter(IFourAxisControllerAdapter adapter, Object controllerService) throws GkException {
+		this.controllerAdapter = adapter;
+		// Machine values updates (tool position, offsets...) request a new frame
+		if(controllerDispatcher != null){
+			controllerDispatcher.removeListener(this);
+			controllerDispatcher = null;
+		}
+		if(controllerService instanceof IEventDispatcher){
+			controllerDispatcher = (IEventDispatcher) controllerService;
+			controllerDispatcher.addListener(this);
+		}
 		if(toolRenderer == null){
 			toolRenderer = new ToolRenderer(getControllerAdapter());
 			addRenderer(toolRenderer);
@@ -254,6 +304,7 @@ public class JoglViewerServiceImpl extends JoglSceneManager implements IJoglView
 	@Override
 	public void setLockCameraOnTool(boolean lockCameraOnTool) {
 		this.lockCameraOnTool = lockCameraOnTool;
+		requestFrame();
 	}
 
 	/**
@@ -322,8 +373,19 @@ public class JoglViewerServiceImpl extends JoglSceneManager implements IJoglView
 	/**
 	 * @param executionMonitorService the executionMonitorService to set
 	 */
-	public void setGCodeExecutionMonitorService(IGCodeExecutionMonitorService executionMonitorService) {
+	public void setGCodeExecutionMonitorService(IGCodeExecutionMonitorService executionMonitorService) throws GkException {
 		this.executionMonitorService = executionMonitorService;
+		this.executionFrameRequester = new ExecutionFrameRequester();
+		this.executionMonitorService.addExecutionListener(executionFrameRequester);
+	}
+
+	/**
+	 * Request a new frame when the machine values are updated
+	 * @param event the update event
+	 */
+	@EventListener(MachineValueBatchUpdateEvent.class)
+	public void onMachineValueUpdate(MachineValueBatchUpdateEvent event){
+		requestFrame();
 	}
 
 
@@ -356,6 +418,7 @@ public class JoglViewerServiceImpl extends JoglSceneManager implements IJoglView
 	public void zoomToFit() throws GkException {
 		if(bounds != null){
 			getCamera().zoomToFit(bounds);
+			requestFrame();
 		}
 	}
 
@@ -397,6 +460,53 @@ public class JoglViewerServiceImpl extends JoglSceneManager implements IJoglView
 	public void setCoordinateSystemEnabled(EnumCoordinateSystem cs, boolean enabled) {
 		if(coordinateSystemRenderer != null){
 			coordinateSystemRenderer.setCoordinateSystemEnabled(cs, enabled);
+			requestFrame();
+		}
+	}
+
+	/**
+	 * Request a new frame when the execution state changes
+	 */
+	private class ExecutionFrameRequester implements IGCodeExecutionListener{
+
+		/** (inheritDoc)
+		 * @see org.goko.core.gcode.service.IGCodeTokenExecutionListener#onExecutionStart(org.goko.core.gcode.bean.execution.IGCodeExecutionToken)
+		 */
+		@Override
+		public void onExecutionStart(IGCodeExecutionToken token) throws GkException {
+			requestFrame();
+		}
+
+		/** (inheritDoc)
+		 * @see org.goko.core.gcode.service.IGCodeTokenExecutionListener#onExecutionCanceled(org.goko.core.gcode.bean.execution.IGCodeExecutionToken)
+		 */
+		@Override
+		public void onExecutionCanceled(IGCodeExecutionToken token) throws GkException {
+			requestFrame();
+		}
+
+		/** (inheritDoc)
+		 * @see org.goko.core.gcode.service.IGCodeTokenExecutionListener#onExecutionPause(org.goko.core.gcode.bean.execution.IGCodeExecutionToken)
+		 */
+		@Override
+		public void onExecutionPause(IGCodeExecutionToken token) throws GkException {
+			requestFrame();
+		}
+
+		/** (inheritDoc)
+		 * @see org.goko.core.gcode.service.IGCodeTokenExecutionListener#onExecutionComplete(org.goko.core.gcode.bean.execution.IGCodeExecutionToken)
+		 */
+		@Override
+		public void onExecutionComplete(IGCodeExecutionToken token) throws GkException {
+			requestFrame();
+		}
+
+		/** (inheritDoc)
+		 * @see org.goko.core.gcode.service.IGCodeCommandExecutionListener#onCommandStateChanged(org.goko.core.gcode.bean.execution.IGCodeExecutionToken, java.lang.Integer)
+		 */
+		@Override
+		public void onCommandStateChanged(IGCodeExecutionToken token, Integer idCommand) throws GkException {
+			requestFrame();
 		}
 	}
 
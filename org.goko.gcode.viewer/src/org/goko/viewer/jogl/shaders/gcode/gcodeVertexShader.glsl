@@ -1,11 +1,13 @@
 #version 330
 
 layout(location = 0)in vec4 vertexPosition_modelspace;
-layout(location = 1)in vec4 vertexColor;
+layout(location = 1)in int vertexType;
 layout(location = 2)in int vertexStatus;
 flat out vec4 vColor;
 uniform mat4 modelViewMatrix;
 uniform mat4 projectionMatrix;
+// Color of each vertex type, see GCodeGeometry.MAXIMUM_TYPE_COUNT
+uniform vec4 typeColors[32];
 
 void main(){
 	// Output position of the vertex, in clip space : MVP * position
@@ -13,7 +15,7 @@ void main(){
   	
   	 
     if(vertexStatus == 0){ // Normal
-   		vColor = vertexColor;
+   		vColor = typeColors[vertexType];
     }else if(vertexStatus == 1){ // SENT
     	vColor = vec4(0.75,0.1,0.95,1); 
     }else if(vertexStatus == 2){ // EXECUTED
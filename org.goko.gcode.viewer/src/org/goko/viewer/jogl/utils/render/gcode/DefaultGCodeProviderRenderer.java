@@ -17,65 +17,106 @@
 
 package org.goko.viewer.jogl.utils.render.gcode;
 
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 
 import javax.media.opengl.GL;
 import javax.media.opengl.GL3;
-import javax.vecmath.Color4f;
-import javax.vecmath.Point3d;
 
-import org.apache.commons.collections.CollectionUtils;
 import org.goko.core.common.exception.GkException;
-import org.goko.core.gcode.bean.GCodeCommand;
 import org.goko.core.gcode.bean.GCodeCommandState;
 import org.goko.core.gcode.bean.IGCodeProvider;
 import org.goko.core.gcode.bean.execution.IGCodeExecutionToken;
 import org.goko.core.gcode.service.IGCodeExecutionListener;
-import org.goko.viewer.jogl.service.JoglUtils;
 import org.goko.viewer.jogl.shaders.EnumGokoShaderProgram;
 import org.goko.viewer.jogl.shaders.ShaderLoader;
 import org.goko.viewer.jogl.utils.render.gcode.colorizer.MotionModeGCodeColorizer;
-import org.goko.viewer.jogl.utils.render.gcode.geometry.GCodePartitionCodeGenerator;
+import org.goko.viewer.jogl.utils.render.gcode.geometry.GCodeGeometry;
+import org.goko.viewer.jogl.utils.render.gcode.geometry.GCodeGeometryBuilder;
 import org.goko.viewer.jogl.utils.render.internal.AbstractVboJoglRenderer;
+import org.goko.viewer.jogl.utils.render.internal.DirtyRangeList;
 
 import com.jogamp.common.nio.Buffers;
+import com.jogamp.opengl.math.FloatUtil;
+import com.jogamp.opengl.util.PMVMatrix;
 
 /**
  * Default GCode provider renderer
+ * The toolpath is drawn chunk by chunk : chunks out of the view are skipped, and chunks covering only a few pixels are drawn
+ * using their decimated polyline. Consecutive chunks drawn the same way are merged in a single draw call.
  * @author PsyKo
  *
  */
 public class DefaultGCodeProviderRenderer extends AbstractVboJoglRenderer implements IGCodeProviderRenderer, IGCodeExecutionListener {
+	/** Vertex type layout */
+	private static final int TYPE_LAYOUT = 1;
+	/** Name of the uniform holding the color of each vertex type */
+	private static final String TYPE_COLORS_UNIFORM = "typeColors";
 	/** Command state layout */
 	private static final int STATE_LAYOUT = 2;
+	/** Maximum number of unchanged vertices between two state ranges uploaded at once */
+	private static final int STATE_MERGE_GAP = 1024;
+	/** Maximum number of state ranges uploaded separately */
+	private static final int STATE_MAXIMUM_RANGES = 32;
 	/** The GCodeProvider to render */
 	private IGCodeProvider gcodeProvider;
-	/** The list of vertices */
-	private List<Point3d> lstVertices;
-	/** The vertices generator */
-	GCodePartitionCodeGenerator generator;
-	/** TEST : the map of vertices by ID */
-	private Map<Integer, Integer[]> mapVerticesPositionByIdCommand;
+	/** The geometry builder */
+	private GCodeGeometryBuilder geometryBuilder;
+	/** The geometry of the provider */
+	private GCodeGeometry geometry;
 	/** GCode colorizer */
 	private IGCodeColorizer colorizer;
-	/** Float buffer for command state */
-	private IntBuffer stateBuffer;
+	/** Buffer for command state, one byte per vertex */
+	private ByteBuffer stateBuffer;
+	/** The ranges of the state buffer modified since the last upload */
+	private final DirtyRangeList dirtyStateRanges;
+	/** Lock on the state buffer and its modified ranges, written by the execution and read by the render */
+	private final Object stateLock;
 	/** The id of the state buffer object*/
 	private Integer stateBufferObject;
+	/** The id of the type buffer object*/
+	private Integer typeBufferObject;
+	/** Location of the type colors uniform in the shader program */
+	private int typeColorsLocation;
+	/** The id of the buffer object holding the indices of the decimated polylines */
+	private Integer lodBufferObject;
+	/** The culler used to select the chunks to draw */
+	private final GCodeChunkCuller culler;
+	/** The clip matrix of the current frame (projection x model view), column major */
+	private final float[] clipMatrix;
+	/** The current viewport */
+	private final int[] viewport;
 
 	/**
 	 * Constructor
 	 * @param gcodeProvider the GCodeProvider to render
 	 */
 	public DefaultGCodeProviderRenderer(IGCodeProvider gcodeProvider) {
-		super(GL.GL_LINE_STRIP, COLORS | VERTICES);
+		super(GL.GL_LINE_STRIP, VERTICES);
 		this.gcodeProvider = gcodeProvider;
-		this.generator = new GCodePartitionCodeGenerator();
+		this.geometryBuilder = new GCodeGeometryBuilder();
 		this.colorizer = new MotionModeGCodeColorizer();
+		this.dirtyStateRanges = new DirtyRangeList(STATE_MERGE_GAP, STATE_MAXIMUM_RANGES);
+		this.stateLock = new Object();
+		this.culler = new GCodeChunkCuller();
+		this.clipMatrix = new float[16];
+		this.viewport = new int[4];
+	}
+
+	/** (inheritDoc)
+	 * @see org.goko.viewer.jogl.service.AbstractCoreJoglRenderer#render(javax.media.opengl.GL3, com.jogamp.opengl.util.PMVMatrix)
+	 */
+	@Override
+	public void render(GL3 gl, PMVMatrix modelViewMatrix) throws GkException {
+		// Keep the complete transformation of the frame for the culling of the chunks
+		float[] projectionModelView = new float[16];
+		float[] model = new float[16];
+		FloatUtil.multMatrixf(modelViewMatrix.glGetPMatrixf(), modelViewMatrix.glGetMvMatrixf(), projectionModelView, 0);
+		FloatBuffer modelBuffer = getModelMatrix().glGetMvMatrixf().duplicate();
+		modelBuffer.get(model);
+		FloatUtil.multMatrixf(projectionModelView, 0, model, 0, clipMatrix, 0);
+		super.render(gl, modelViewMatrix);
 	}
 
 
@@ -85,38 +126,14 @@ public class DefaultGCodeProviderRenderer extends AbstractVboJoglRenderer implem
 	 */
 	@Override
 	protected void buildGeometry() throws GkException {
-		List<GCodeCommand> commands = gcodeProvider.getGCodeCommands();
-		ArrayList<Point3d> lstVertices = new ArrayList<Point3d>();
-		ArrayList<Color4f> lstColors = new ArrayList<Color4f>();
-		mapVerticesPositionByIdCommand = new HashMap<Integer, Integer[]>();
-		boolean firstCommand = true;
-		for (GCodeCommand command : commands) {
-			List<Point3d> lstCmdVertices = generator.generateVertices(command);
-			if(CollectionUtils.isNotEmpty(lstCmdVertices)){
-				if(firstCommand){
-					firstCommand = false;
-				}else{
-					lstCmdVertices.remove(0);
-				}
-				// First index is the position of the first vertices that belong to the command
-				// Second index is the number of vertices that belongs to this command
-				if(CollectionUtils.isNotEmpty(lstCmdVertices)){
-					mapVerticesPositionByIdCommand.put( command.getId(), new Integer[]{lstVertices.size(), lstCmdVertices.size()});
-					lstVertices.addAll(lstCmdVertices);
-				}
-				// Let's generate the colors
-				Color4f color = colorizer.getColor(command);
-				for (Point3d point3d : lstCmdVertices) {
-					lstColors.add(color);
-				}
-			}
+		GCodeGeometry geometry = geometryBuilder.build(gcodeProvider, colorizer);
+		setVerticesCount(geometry.getVerticesCount());
+		synchronized (stateLock) {
+			this.geometry = geometry;
+			stateBuffer = Buffers.newDirectByteBuffer(getVerticesCount());
+			dirtyStateRanges.clear();
 		}
-		setVerticesCount(CollectionUtils.size(lstVertices));
-		stateBuffer = IntBuffer.allocate(getVerticesCount());
-		stateBuffer.rewind();
-		//generateCommandStateBuffer();
-		setColorsBuffer(JoglUtils.buildFloatBuffer4f(lstColors));
-		setVerticesBuffer(JoglUtils.buildFloatBuffer3d(lstVertices));
+		setVerticesBuffer(geometry.getVerticesBuffer());
 	}
 
 
@@ -133,11 +150,23 @@ public class DefaultGCodeProviderRenderer extends AbstractVboJoglRenderer implem
 	 */
 	@Override
 	protected void performUpdateBufferObjects(GL3 gl) throws GkException {
-		//super.performUpdateBufferObjects(gl);
-		stateBuffer.rewind();
-		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, stateBufferObject);
-		gl.glBufferData(GL.GL_ARRAY_BUFFER, getVerticesCount()*Buffers.SIZEOF_FLOAT, stateBuffer, GL.GL_DYNAMIC_DRAW);
-		setUpdateBuffer(false);
+		// Only the states are updated, and only in the ranges modified since the last upload
+		synchronized (stateLock) {
+			if(!dirtyStateRanges.isEmpty()){
+				gl.glBindBuffer(GL.GL_ARRAY_BUFFER, stateBufferObject);
+				ByteBuffer uploadBuffer = stateBuffer.duplicate();
+				for (int i = 0; i < dirtyStateRanges.size(); i++) {
+					int start = dirtyStateRanges.getStart(i);
+					int end = dirtyStateRanges.getEnd(i);
+					uploadBuffer.clear();
+					uploadBuffer.limit(end);
+					uploadBuffer.position(start);
+					gl.glBufferSubData(GL.GL_ARRAY_BUFFER, start, end - start, uploadBuffer);
+				}
+				dirtyStateRanges.clear();
+			}
+			setUpdateBuffer(false);
+		}
 	}
 
 	/** (inheritDoc)
@@ -145,16 +174,34 @@ public class DefaultGCodeProviderRenderer extends AbstractVboJoglRenderer implem
 	 */
 	@Override
 	protected void initializeAdditionalBufferObjects(GL3 gl) throws GkException {
-		// Initialize the status buffer object
+		// Initialize the status, type and decimated polylines buffer objects
 		if(this.stateBufferObject == null){
-			int[] vbo = new int[1];
-			gl.glGenBuffers(1, vbo, 0);
+			int[] vbo = new int[3];
+			gl.glGenBuffers(3, vbo, 0);
 			this.stateBufferObject = vbo[0];
+			this.typeBufferObject = vbo[1];
+			this.lodBufferObject = vbo[2];
 		}
+		IntBuffer lodIndicesBuffer = geometry.getLodIndicesBuffer();
+		lodIndicesBuffer.rewind();
+		gl.glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, lodBufferObject);
+		gl.glBufferData(GL.GL_ELEMENT_ARRAY_BUFFER, geometry.getLodIndicesCount() * Buffers.SIZEOF_INT, lodIndicesBuffer, GL.GL_STATIC_DRAW);
+		gl.glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, 0);
+
+		ByteBuffer typesBuffer = geometry.getTypesBuffer();
+		typesBuffer.rewind();
+		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, typeBufferObject);
+		gl.glBufferData(GL.GL_ARRAY_BUFFER, getVerticesCount(), typesBuffer, GL.GL_STATIC_DRAW);
+		gl.glEnableVertexAttribArray(TYPE_LAYOUT);
+		typeColorsLocation = gl.glGetUniformLocation(getShaderProgram(), TYPE_COLORS_UNIFORM);
+
 		// Make sure we take everything
-		stateBuffer.rewind();
-		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, stateBufferObject);
-		gl.glBufferData(GL.GL_ARRAY_BUFFER, getVerticesCount()*Buffers.SIZEOF_FLOAT, stateBuffer, GL.GL_DYNAMIC_DRAW);
+		synchronized (stateLock) {
+			stateBuffer.rewind();
+			gl.glBindBuffer(GL.GL_ARRAY_BUFFER, stateBufferObject);
+			gl.glBufferData(GL.GL_ARRAY_BUFFER, getVerticesCount(), stateBuffer, GL.GL_DYNAMIC_DRAW);
+			dirtyStateRanges.clear();
+		}
 		gl.glEnableVertexAttribArray(STATE_LAYOUT);
 	}
 
@@ -163,9 +210,14 @@ public class DefaultGCodeProviderRenderer extends AbstractVboJoglRenderer implem
 	 */
 	@Override
 	protected void enableAdditionalVertexAttribArray(GL3 gl) throws GkException {
+		gl.glEnableVertexAttribArray(TYPE_LAYOUT);
+		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, typeBufferObject);
+		gl.glVertexAttribIPointer(TYPE_LAYOUT, 1, GL.GL_UNSIGNED_BYTE, 0, 0);
+
 		gl.glEnableVertexAttribArray(STATE_LAYOUT);
 		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, stateBufferObject);
-		gl.glVertexAttribPointer(STATE_LAYOUT, 1, GL3.GL_FLOAT, false, 0, 0);
+		// Integer attribute, read from the unsigned byte of each vertex
+		gl.glVertexAttribIPointer(STATE_LAYOUT, 1, GL.GL_UNSIGNED_BYTE, 0, 0);
 	}
 
 	/** (inheritDoc)
@@ -173,8 +225,93 @@ public class DefaultGCodeProviderRenderer extends AbstractVboJoglRenderer implem
 	 */
 	@Override
 	protected void disableAdditionalVertexAttribArray(GL3 gl) throws GkException {
+		gl.glDisableVertexAttribArray(TYPE_LAYOUT);
 		gl.glDisableVertexAttribArray(STATE_LAYOUT);
 	}
+
+	/** (inheritDoc)
+	 * @see org.goko.viewer.jogl.utils.render.internal.AbstractVboJoglRenderer#updateShaderData(javax.media.opengl.GL3)
+	 */
+	@Override
+	protected void updateShaderData(GL3 gl) throws GkException {
+		// The type of each vertex is resolved to its color by the shader
+		if(geometry.getTypeCount() > 0){
+			gl.glUniform4fv(typeColorsLocation, geometry.getTypeCount(), geometry.getTypeColors(), 0);
+		}
+	}
+
+	/** (inheritDoc)
+	 * @see org.goko.viewer.jogl.utils.render.internal.AbstractVboJoglRenderer#performDraw(javax.media.opengl.GL3)
+	 */
+	@Override
+	protected void performDraw(GL3 gl) throws GkException {
+		gl.glGetIntegerv(GL.GL_VIEWPORT, viewport, 0);
+		culler.setView(clipMatrix, viewport[2], viewport[3]);
+		gl.glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, lodBufferObject);
+
+		float[] bounds = geometry.getChunkBounds();
+		// Pending range of fully drawn vertices, and pending range of decimated polylines indices
+		int fullFirst = 0;
+		int fullLast  = -1;
+		int lodFirst  = 0;
+		int lodEnd 	  = 0;
+		for (int chunk = 0; chunk < geometry.getChunkCount(); chunk++) {
+			int visibility = culler.classify(bounds, chunk);
+			if(visibility != GCodeChunkCuller.FULL || fullLast != geometry.getChunkFirstVertex(chunk)){
+				drawVertices(gl, fullFirst, fullLast);
+				fullFirst = geometry.getChunkFirstVertex(chunk);
+				fullLast  = -1;
+			}
+			if(visibility != GCodeChunkCuller.DECIMATED || lodEnd != geometry.getChunkFirstLodIndex(chunk)){
+				drawDecimatedVertices(gl, lodFirst, lodEnd);
+				lodFirst = geometry.getChunkFirstLodIndex(chunk);
+				lodEnd 	 = lodFirst;
+			}
+			if(visibility == GCodeChunkCuller.FULL){
+				fullLast = geometry.getChunkLastVertex(chunk);
+			}else if(visibility == GCodeChunkCuller.DECIMATED){
+				lodEnd = geometry.getChunkEndLodIndex(chunk);
+			}
+		}
+		drawVertices(gl, fullFirst, fullLast);
+		drawDecimatedVertices(gl, lodFirst, lodEnd);
+		gl.glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, 0);
+	}
+
+	/**
+	 * Draw the given range of vertices
+	 * @param gl the GL
+	 * @param first the index of the first vertex
+	 * @param last the index of the last vertex, or -1 if there is nothing to draw
+	 */
+	private void drawVertices(GL3 gl, int first, int last){
+		if(last > first){
+			gl.glDrawArrays(getRenderPrimitive(), first, last - first + 1);
+		}
+	}
+
+	/**
+	 * Draw the given range of the decimated polylines
+	 * @param gl the GL
+	 * @param first the position of the first index
+	 * @param end the position following the last index
+	 */
+	private void drawDecimatedVertices(GL3 gl, int first, int end){
+		if(end - first > 1){
+			gl.glDrawElements(getRenderPrimitive(), end - first, GL.GL_UNSIGNED_INT, first * Buffers.SIZEOF_INT);
+		}
+	}
+
+	/** (inheritDoc)
+	 * @see org.goko.viewer.jogl.utils.render.internal.AbstractVboJoglRenderer#performDestroy(javax.media.opengl.GL3)
+	 */
+	@Override
+	public void performDestroy(GL3 gl) throws GkException {
+		if(isInitialized() && stateBufferObject != null){
+			gl.glDeleteBuffers(3, IntBuffer.wrap(new int[]{stateBufferObject, typeBufferObject, lodBufferObject}));
+		}
+		super.performDestroy(gl);
+	}
 	/** (inheritDoc)
 	 * @see org.goko.viewer.jogl.utils.render.gcode.IGCodeProviderRenderer#getGCodeProvider()
 	 */
@@ -218,12 +355,15 @@ public class DefaultGCodeProviderRenderer extends AbstractVboJoglRenderer implem
 	 */
 	@Override
 	public void onExecutionStart(IGCodeExecutionToken token) throws GkException {
-		if(stateBuffer != null){
-			int capacity = stateBuffer.capacity();
-			for (int i = 0; i < capacity; i++){
-				stateBuffer.put(i, 0);
+		synchronized (stateLock) {
+			if(stateBuffer != null){
+				int capacity = stateBuffer.capacity();
+				for (int i = 0; i < capacity; i++){
+					stateBuffer.put(i, (byte) 0);
+				}
+				dirtyStateRanges.add(0, capacity);
+				update();
 			}
-			update();
 		}
 	}
 
@@ -269,13 +409,21 @@ public class DefaultGCodeProviderRenderer extends AbstractVboJoglRenderer implem
 	@Override
 	public void onCommandStateChanged(IGCodeExecutionToken token, Integer idCommand) throws GkException {
 
-		Integer[] verticesIndex = mapVerticesPositionByIdCommand.get(idCommand);
-		if(verticesIndex != null){
-			GCodeCommandState state = token.getCommandState(idCommand);
-			for (int i = verticesIndex[0]; i < verticesIndex[0] + verticesIndex[1]; i++) {
-				stateBuffer.put(i, state.state);
+		synchronized (stateLock) {
+			if(geometry == null){
+				return;
+			}
+			int index = geometry.indexOf(idCommand);
+			if(index >= 0 && geometry.getFirstVertex(index) < geometry.getEndVertex(index)){
+				GCodeCommandState state = token.getCommandState(idCommand);
+				int start = geometry.getFirstVertex(index);
+				int end = geometry.getEndVertex(index);
+				for (int i = start; i < end; i++) {
+					stateBuffer.put(i, (byte) state.state);
+				}
+				dirtyStateRanges.add(start, end);
+				update();
 			}
-			update();
 		}
 	}
 }
@@ -0,0 +1,137 @@
+/*
+ *	This file is part of Goko.
+ *
+ *  Goko is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Goko is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Goko.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.goko.viewer.jogl.utils.render.gcode;
+
+/**
+ * Classifies the chunks of a toolpath against the current view : chunks outside of the view frustum are culled, chunks projecting on
+ * a few pixels are drawn using their decimated polyline, other chunks are fully drawn.
+ * The test is done on the 8 corners of the bounding box of each chunk, transformed in clip space.
+ *
+ * @author PsyKo
+ *
+ */
+public class GCodeChunkCuller {
+	/** The chunk is out of the view */
+	public static final int CULLED = 0;
+	/** The chunk has to be fully drawn */
+	public static final int FULL = 1;
+	/** The chunk can be drawn using its decimated polyline */
+	public static final int DECIMATED = 2;
+	/** Default size in pixels under which a chunk is drawn using its decimated polyline */
+	public static final float DEFAULT_DECIMATION_SIZE = 8;
+	/** Smallest w coordinate of a corner considered in front of the camera */
+	private static final float W_EPSILON = 1e-6f;
+	/** The clip matrix (projection x model view), column major */
+	private final float[] clipMatrix;
+	/** Half width of the viewport in pixels */
+	private float halfWidth;
+	/** Half height of the viewport in pixels */
+	private float halfHeight;
+	/** Size in pixels under which a chunk is drawn using its decimated polyline */
+	private float decimationSize;
+
+	/**
+	 * Constructor
+	 */
+	public GCodeChunkCuller() {
+		this.clipMatrix = new float[16];
+		this.decimationSize = DEFAULT_DECIMATION_SIZE;
+	}
+
+	/**
+	 * Set the current view
+	 * @param clipMatrix the clip matrix (projection x model view), column major
+	 * @param viewportWidth the width of the viewport in pixels
+	 * @param viewportHeight the height of the viewport in pixels
+	 */
+	public void setView(float[] clipMatrix, int viewportWidth, int viewportHeight){
+		System.arraycopy(clipMatrix, 0, this.clipMatrix, 0, 16);
+		this.halfWidth  = viewportWidth / 2f;
+		this.halfHeight = viewportHeight / 2f;
+	}
+
+	/**
+	 * Classify the given chunk
+	 * @param bounds the bounding boxes of the chunks : minimum x, y, z then maximum x, y, z
+	 * @param chunk the index of the chunk
+	 * @return {@link #CULLED}, {@link #FULL} or {@link #DECIMATED}
+	 */
+	public int classify(float[] bounds, int chunk){
+		float[] m = clipMatrix;
+		int offset = chunk * 6;
+		// Bits set for the planes every corner is outside of
+		int outside = 0x3F;
+		boolean behindCamera = false;
+		float minX = Float.MAX_VALUE;
+		float minY = Float.MAX_VALUE;
+		float maxX = -Float.MAX_VALUE;
+		float maxY = -Float.MAX_VALUE;
+		for (int corner = 0; corner < 8; corner++) {
+			float x = bounds[offset + ((corner & 1) == 0 ? 0 : 3)];
+			float y = bounds[offset + ((corner & 2) == 0 ? 1 : 4)];
+			float z = bounds[offset + ((corner & 4) == 0 ? 2 : 5)];
+			float cx = m[0] * x + m[4] * y + m[8]  * z + m[12];
+			float cy = m[1] * x + m[5] * y + m[9]  * z + m[13];
+			float cz = m[2] * x + m[6] * y + m[10] * z + m[14];
+			float cw = m[3] * x + m[7] * y + m[11] * z + m[15];
+			int planes = 0;
+			if(cx < -cw){ planes |= 0x01; }
+			if(cx >  cw){ planes |= 0x02; }
+			if(cy < -cw){ planes |= 0x04; }
+			if(cy >  cw){ planes |= 0x08; }
+			if(cz < -cw){ planes |= 0x10; }
+			if(cz >  cw){ planes |= 0x20; }
+			outside &= planes;
+			if(cw < W_EPSILON){
+				behindCamera = true;
+			}else{
+				minX = Math.min(minX, cx / cw);
+				maxX = Math.max(maxX, cx / cw);
+				minY = Math.min(minY, cy / cw);
+				maxY = Math.max(maxY, cy / cw);
+			}
+		}
+		if(outside != 0){
+			return CULLED;
+		}
+		// The projected size is meaningless when the box crosses the camera plane
+		if(behindCamera){
+			return FULL;
+		}
+		float width  = (maxX - minX) * halfWidth;
+		float height = (maxY - minY) * halfHeight;
+		if(width < decimationSize && height < decimationSize){
+			return DECIMATED;
+		}
+		return FULL;
+	}
+
+	/**
+	 * @return the size in pixels under which a chunk is drawn using its decimated polyline
+	 */
+	public float getDecimationSize() {
+		return decimationSize;
+	}
+
+	/**
+	 * @param decimationSize the size in pixels under which a chunk is drawn using its decimated polyline. 0 disables the decimation
+	 */
+	public void setDecimationSize(float decimationSize) {
+		this.decimationSize = decimationSize;
+	}
+}
@@ -1,67 +1,68 @@
 package org.goko.viewer.jogl.utils.render.gcode.geometry;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.FloatBuffer;
 
-import javax.vecmath.Matrix3d;
-import javax.vecmath.Point3d;
-import javax.vecmath.Vector3d;
-
-import org.goko.core.common.exception.GkException;
 import org.goko.core.gcode.bean.commands.ArcMotionCommand;
+import org.goko.core.gcode.bean.provider.ArcTessellation;
+import org.goko.core.gcode.bean.provider.ArcTessellationCache;
+import org.goko.core.gcode.bean.provider.ArcTessellator;
+import org.goko.core.math.Tuple6d;
 
 /**
- * Linear motion renderer
+ * Arc motion renderer
+ * Arcs are tessellated using the maximum deviation of the viewer settings, and the tessellations are kept in the cache of the provider
+ * so they are not computed again when the geometry is rebuilt.
  *
  * @author PsyKo
  *
  */
 public class ArcMotionRenderer{
+	/** The tessellator */
+	private final ArcTessellator tessellator;
+	/** The tessellations of the rendered provider */
+	private final ArcTessellationCache cache;
 
+	/**
+	 * Constructor
+	 * @param cache the tessellations of the rendered provider
+	 * @param maximumDeviation the maximum distance between an arc and its segments, in millimeters
+	 */
+	public ArcMotionRenderer(ArcTessellationCache cache, double maximumDeviation) {
+		this.tessellator = new ArcTessellator(maximumDeviation);
+		this.cache = cache;
+	}
 
-	public List<Point3d> render(ArcMotionCommand command) throws GkException{
-		List<Point3d> vertices = new ArrayList<Point3d>();
-		boolean clockwise = command.isClockwise();
-
-		Point3d start 	= command.getAbsoluteStartCoordinate().toPoint3d();
-		Point3d center 	= command.getAbsoluteCenterCoordinate().toPoint3d();
-		Point3d end 	= command.getAbsoluteEndCoordinate().toPoint3d();
-
-		Vector3d v1 = new Vector3d(start.x - center.x, start.y - center.y, start.z - center.z);
-		Vector3d v2 = new Vector3d(end.x - center.x, end.y - center.y, end.z - center.z);
-
-		double smallestAngle = StrictMath.atan2(v1.y,v1.x) - StrictMath.atan2(v2.y,v2.x);
-		double angle = smallestAngle ;
-		// If smallestAngle < 0 then it is a counterclockwise angle.
-		if(smallestAngle < 0){
-			if(clockwise){ // The angle is CCW but the command is CCW
-				angle = - ( 2*Math.PI - Math.abs(smallestAngle) );  // In OpenGl when rotating, CW rotation = negative angle
-			}else{
-				angle = Math.abs(smallestAngle); // In OpenGl when rotating, CCW rotation = positive angle
-			}
-		}else{
-			if(clockwise){ // The angle is CW and we have a CW command
-				angle = - Math.abs(smallestAngle); // In OpenGl when rotating, CW rotation = negative angle
-			}else{ // The angle is CW but we want the CCW command
-				angle =  2*Math.PI - smallestAngle;
-			}
-		}
-
-		int nbPoints = 8;
-		// Adaptive points count
-		double arcLength = Math.abs(angle * v1.length());
-		nbPoints = (int) (arcLength * 8 );
-		Matrix3d rot = new Matrix3d();
-		rot.rotZ(angle / (nbPoints + 1));
-		double dz = (end.z - start.z) / (nbPoints + 1);
+	/**
+	 * Returns the tessellation of the given arc
+	 * @param command the command
+	 * @param start the absolute start coordinate, in millimeters and degrees
+	 * @param end the absolute end coordinate, in millimeters and degrees
+	 * @return the {@link ArcTessellation}
+	 */
+	public ArcTessellation tessellate(ArcMotionCommand command, Tuple6d start, Tuple6d end){
+		return cache.getTessellation(tessellator, command, start, end);
+	}
 
-		vertices.add(start);
-		for(int i = 0; i < nbPoints; i++){
-			rot.transform(v1);
-			vertices.add(new Point3d(center.x + v1.x, center.y + v1.y, start.z + i * dz));
-		}
-		vertices.add(end);
-		return vertices;
+	/**
+	 * Returns the number of vertices of the given arc, without tessellating it unless it's already cached
+	 * @param command the command
+	 * @param start the absolute start coordinate, in millimeters and degrees
+	 * @param end the absolute end coordinate, in millimeters and degrees
+	 * @return the number of vertices of the tessellation of the arc
+	 */
+	public int getVerticesCount(ArcMotionCommand command, Tuple6d start, Tuple6d end){
+		return cache.getVerticesCount(tessellator, command, start, end);
 	}
 
+	/**
+	 * Write the vertices of the given arc in the given buffer
+	 * @param tessellation the tessellation of the arc
+	 * @param firstVertex the index of the first vertex of the arc to write, used to skip the vertex shared with the previous motion
+	 * @param buffer the target buffer, 4 floats per vertex
+	 * @param vertexIndex the index of the first vertex to write in the buffer
+	 * @return the number of written vertices
+	 */
+	public int write(ArcTessellation tessellation, int firstVertex, FloatBuffer buffer, int vertexIndex){
+		return tessellation.write(buffer, firstVertex, vertexIndex);
+	}
 }
@@ -0,0 +1,212 @@
+/*
+ *	This file is part of Goko.
+ *
+ *  Goko is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Goko is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Goko.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.goko.viewer.jogl.utils.render.gcode.geometry;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import org.goko.core.gcode.bean.provider.GCodeProviderCoordinates;
+
+/**
+ * Geometry of a GCode provider, ready to be uploaded in vertex buffer objects.
+ * Vertices are rendered as a single line strip : every command owns a contiguous range of vertices and shares its first point with
+ * the last vertex of the previous command. Each vertex also has a type index, resolved to a color by the shader using {@link #getTypeColors()}.
+ * <p>
+ * The strip is also split in chunks of consecutive vertices, each chunk sharing its last vertex with the next one. Every chunk has a bounding box
+ * used for culling, and a decimated polyline (indices in the vertices of the chunk) drawn instead of the chunk when it only covers a few pixels.
+ * The decimated polylines of consecutive chunks can be drawn as a single strip.
+ * </p>
+ *
+ * @author PsyKo
+ *
+ */
+public class GCodeGeometry {
+	/** Maximum number of vertex types. Must match the size of the colors array in the gcode vertex shader */
+	public static final int MAXIMUM_TYPE_COUNT = 32;
+	/** The coordinates of the commands, used to find the index of a command */
+	private final GCodeProviderCoordinates coordinates;
+	/** Index of the first vertex of each command, followed by the total number of vertices */
+	private final int[] firstVertex;
+	/** The vertices, 4 floats per vertex */
+	private final FloatBuffer verticesBuffer;
+	/** The type of each vertex, one byte per vertex */
+	private final ByteBuffer typesBuffer;
+	/** The color of each type, 4 floats per type */
+	private final float[] typeColors;
+	/** Index of the first vertex of each chunk, followed by the index of the last vertex of the strip */
+	private final int[] chunkFirstVertex;
+	/** Bounding box of each chunk : minimum x, y, z then maximum x, y, z */
+	private final float[] chunkBounds;
+	/** Indices of the decimated polylines of all the chunks */
+	private final IntBuffer lodIndicesBuffer;
+	/** Position of the first index of each chunk in the decimated polylines, followed by the total number of indices */
+	private final int[] chunkFirstLodIndex;
+
+	/**
+	 * Constructor
+	 * @param coordinates the coordinates of the commands
+	 * @param firstVertex the index of the first vertex of each command, followed by the total number of vertices
+	 * @param verticesBuffer the vertices buffer
+	 * @param typesBuffer the types buffer
+	 * @param typeColors the color of each type
+	 * @param chunkFirstVertex the index of the first vertex of each chunk, followed by the index of the last vertex of the strip
+	 * @param chunkBounds the bounding box of each chunk
+	 * @param lodIndicesBuffer the indices of the decimated polylines
+	 * @param chunkFirstLodIndex the position of the first index of each chunk in the decimated polylines, followed by the total number of indices
+	 */
+	GCodeGeometry(GCodeProviderCoordinates coordinates, int[] firstVertex, FloatBuffer verticesBuffer, ByteBuffer typesBuffer, float[] typeColors,
+					int[] chunkFirstVertex, float[] chunkBounds, IntBuffer lodIndicesBuffer, int[] chunkFirstLodIndex) {
+		this.coordinates 		= coordinates;
+		this.firstVertex 		= firstVertex;
+		this.verticesBuffer 	= verticesBuffer;
+		this.typesBuffer 		= typesBuffer;
+		this.typeColors 		= typeColors;
+		this.chunkFirstVertex 	= chunkFirstVertex;
+		this.chunkBounds 		= chunkBounds;
+		this.lodIndicesBuffer 	= lodIndicesBuffer;
+		this.chunkFirstLodIndex = chunkFirstLodIndex;
+	}
+
+	/**
+	 * @return the total number of vertices
+	 */
+	public int getVerticesCount(){
+		return firstVertex[firstVertex.length - 1];
+	}
+
+	/**
+	 * @return the number of commands
+	 */
+	public int size(){
+		return firstVertex.length - 1;
+	}
+
+	/**
+	 * Returns the index of the command with the given id
+	 * @param idCommand the id of the command
+	 * @return the index of the command, or -1 if not found
+	 */
+	public int indexOf(int idCommand){
+		return coordinates.indexOf(idCommand);
+	}
+
+	/**
+	 * @param index the index of the command
+	 * @return the index of the first vertex of the command at the given index
+	 */
+	public int getFirstVertex(int index){
+		return firstVertex[index];
+	}
+
+	/**
+	 * @param index the index of the command
+	 * @return the index following the last vertex of the command at the given index
+	 */
+	public int getEndVertex(int index){
+		return firstVertex[index + 1];
+	}
+
+	/**
+	 * @return the vertices buffer, 4 floats per vertex
+	 */
+	public FloatBuffer getVerticesBuffer() {
+		return verticesBuffer;
+	}
+
+	/**
+	 * @return the types buffer, one byte per vertex
+	 */
+	public ByteBuffer getTypesBuffer() {
+		return typesBuffer;
+	}
+
+	/**
+	 * @return the color of each type, 4 floats per type
+	 */
+	public float[] getTypeColors() {
+		return typeColors;
+	}
+
+	/**
+	 * @return the number of types
+	 */
+	public int getTypeCount() {
+		return typeColors.length / 4;
+	}
+
+	/**
+	 * @return the number of chunks
+	 */
+	public int getChunkCount(){
+		return chunkFirstVertex.length - 1;
+	}
+
+	/**
+	 * @param chunk the index of the chunk
+	 * @return the index of the first vertex of the given chunk
+	 */
+	public int getChunkFirstVertex(int chunk){
+		return chunkFirstVertex[chunk];
+	}
+
+	/**
+	 * @param chunk the index of the chunk
+	 * @return the index of the last vertex of the given chunk, which is also the first vertex of the next chunk
+	 */
+	public int getChunkLastVertex(int chunk){
+		return chunkFirstVertex[chunk + 1];
+	}
+
+	/**
+	 * @return the bounding box of each chunk : minimum x, y, z then maximum x, y, z
+	 */
+	public float[] getChunkBounds() {
+		return chunkBounds;
+	}
+
+	/**
+	 * @return the indices of the decimated polylines of all the chunks
+	 */
+	public IntBuffer getLodIndicesBuffer() {
+		return lodIndicesBuffer;
+	}
+
+	/**
+	 * @param chunk the index of the chunk
+	 * @return the position of the first index of the decimated polyline of the given chunk
+	 */
+	public int getChunkFirstLodIndex(int chunk){
+		return chunkFirstLodIndex[chunk];
+	}
+
+	/**
+	 * @param chunk the index of the chunk
+	 * @return the position following the last index of the decimated polyline of the given chunk
+	 */
+	public int getChunkEndLodIndex(int chunk){
+		return chunkFirstLodIndex[chunk + 1];
+	}
+
+	/**
+	 * @return the total number of indices in the decimated polylines
+	 */
+	public int getLodIndicesCount(){
+		return chunkFirstLodIndex[chunkFirstLodIndex.length - 1];
+	}
+}
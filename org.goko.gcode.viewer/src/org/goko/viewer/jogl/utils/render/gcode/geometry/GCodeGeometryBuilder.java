@@ -0,0 +1,455 @@
+/*
+ *	This file is part of Goko.
+ *
+ *  Goko is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Goko is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Goko.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.goko.viewer.jogl.utils.render.gcode.geometry;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import javax.vecmath.Color4f;
+
+import org.goko.core.common.exception.GkException;
+import org.goko.core.gcode.bean.GCodeCommand;
+import org.goko.core.gcode.bean.IGCodeProvider;
+import org.goko.core.gcode.bean.commands.ArcMotionCommand;
+import org.goko.core.gcode.bean.commands.LinearMotionCommand;
+import org.goko.core.gcode.bean.provider.ArcTessellation;
+import org.goko.core.gcode.bean.provider.ArcTessellationCache;
+import org.goko.core.gcode.bean.provider.GCodeProviderCoordinates;
+import org.goko.core.math.Tuple6d;
+import org.goko.core.log.GkLog;
+import org.goko.viewer.jogl.preferences.JoglViewerPreference;
+import org.goko.viewer.jogl.utils.render.gcode.IGCodeColorizer;
+
+import com.jogamp.common.nio.Buffers;
+
+/**
+ * Builds the {@link GCodeGeometry} of a GCode provider in two passes :
+ * <ul>
+ * <li>a sequential counting pass reads the commands, resolves their type using the colorizer and computes the range of vertices of every command.
+ * The vertices count of the arcs is computed from their radius and angle, without tessellating them. Everything the second pass needs is copied into arrays</li>
+ * <li>the tessellation writes the vertices and their type directly in direct buffers, in parallel on a fork/join pool. Arcs are tessellated there,
+ * using the cache of the provider. Every command range writes at its own offsets, so no synchronization is required</li>
+ * </ul>
+ * The vertices are then split in chunks, whose bounds and decimated polylines are computed on the same pool.
+ *
+ * @author PsyKo
+ *
+ */
+public class GCodeGeometryBuilder {
+	/** LOG */
+	private static final GkLog LOG = GkLog.getLogger(GCodeGeometryBuilder.class);
+	/** Number of vertices above which a range of commands is split in two tessellation tasks */
+	private static final int SPLIT_THRESHOLD = 16 * 1024;
+	/** Command without geometry */
+	private static final byte NONE = 0;
+	/** Linear motion */
+	private static final byte LINEAR = 1;
+	/** Arc motion */
+	private static final byte ARC = 2;
+	/** Number of segments of a chunk */
+	private static final int CHUNK_SIZE = 4096;
+	/** Number of chunks above which a range of chunks is split in two tasks */
+	private static final int CHUNK_SPLIT_THRESHOLD = 8;
+	/** Maximum number of vertices in the decimated polyline of a chunk */
+	private static final int LOD_MAXIMUM_VERTICES = 16;
+	/** Pool shared by the builders of all the renderers, using one thread per available processor. Its threads are daemon and end when idle */
+	private static final ForkJoinPool SHARED_POOL = new ForkJoinPool();
+	/** The pool used for the tessellation */
+	private ForkJoinPool pool;
+
+	/**
+	 * Constructor using the pool shared by all the builders
+	 */
+	public GCodeGeometryBuilder() {
+		this(SHARED_POOL);
+	}
+
+	/**
+	 * Constructor
+	 * @param pool the fork/join pool to use
+	 */
+	public GCodeGeometryBuilder(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Build the geometry of the given provider
+	 * @param provider the provider
+	 * @param colorizer the colorizer used to resolve the type of the vertices
+	 * @return the {@link GCodeGeometry}
+	 * @throws GkException GkException
+	 */
+	public GCodeGeometry build(IGCodeProvider provider, IGCodeColorizer colorizer) throws GkException{
+		GCodeProviderCoordinates coordinates = GCodeProviderCoordinates.getCoordinates(provider);
+		Tessellation tessellation = new Tessellation(coordinates, JoglViewerPreference.getInstance(), ArcTessellationCache.getCache(provider));
+		float[] typeColors = count(provider.getGCodeCommands(), colorizer, tessellation);
+
+		int verticesCount = tessellation.firstVertex[coordinates.size()];
+		tessellation.verticesBuffer = Buffers.newDirectFloatBuffer(verticesCount * 4);
+		tessellation.typesBuffer 	= Buffers.newDirectByteBuffer(verticesCount);
+		pool.invoke(new TessellationTask(tessellation, 0, coordinates.size()));
+
+		// Split the strip in chunks sharing their last vertex with the next one
+		int chunkCount = verticesCount == 0 ? 0 : Math.max(1, (verticesCount - 2) / CHUNK_SIZE + 1);
+		int[] chunkFirstVertex = new int[chunkCount + 1];
+		for (int i = 0; i < chunkCount; i++) {
+			chunkFirstVertex[i] = i * CHUNK_SIZE;
+		}
+		chunkFirstVertex[chunkCount] = Math.max(0, verticesCount - 1);
+		Chunks chunks = new Chunks(tessellation.verticesBuffer, chunkFirstVertex);
+		pool.invoke(new ChunkTask(chunks, 0, chunkCount));
+
+		// Concatenate the decimated polylines
+		int[] chunkFirstLodIndex = new int[chunkCount + 1];
+		for (int i = 0; i < chunkCount; i++) {
+			chunkFirstLodIndex[i + 1] = chunkFirstLodIndex[i] + chunks.lodIndices[i].length;
+		}
+		IntBuffer lodIndicesBuffer = Buffers.newDirectIntBuffer(chunkFirstLodIndex[chunkCount]);
+		for (int[] indices : chunks.lodIndices) {
+			lodIndicesBuffer.put(indices);
+		}
+		lodIndicesBuffer.rewind();
+
+		return new GCodeGeometry(coordinates, tessellation.firstVertex, tessellation.verticesBuffer, tessellation.typesBuffer, typeColors,
+								chunkFirstVertex, chunks.bounds, lodIndicesBuffer, chunkFirstLodIndex);
+	}
+
+	/**
+	 * Counting pass : computes the range of vertices of every command and copy the data required by the tessellation
+	 * @param commands the commands
+	 * @param colorizer the colorizer
+	 * @param tessellation the tessellation to fill
+	 * @return the color of each type, 4 floats per type
+	 * @throws GkException GkException
+	 */
+	private float[] count(List<GCodeCommand> commands, IGCodeColorizer colorizer, Tessellation tessellation) throws GkException{
+		GCodeProviderCoordinates coordinates = tessellation.coordinates;
+		Map<Color4f, Integer> types = new HashMap<Color4f, Integer>();
+		float[] typeColors = new float[GCodeGeometry.MAXIMUM_TYPE_COUNT * 4];
+		boolean typeOverflow = false;
+		Tuple6d start  = new Tuple6d();
+		Tuple6d end    = new Tuple6d();
+		int verticesCount = 0;
+		int index = 0;
+		for (GCodeCommand command : commands) {
+			tessellation.firstVertex[index] = verticesCount;
+			if(coordinates.isMotion(index)){
+				coordinates.getStart(index, start);
+				coordinates.getEnd(index, end);
+				int commandVerticesCount = 0;
+				if(command instanceof ArcMotionCommand){
+					tessellation.kind[index] = ARC;
+					tessellation.arcs[index] = (ArcMotionCommand) command;
+					commandVerticesCount = tessellation.arcRenderer.getVerticesCount((ArcMotionCommand) command, start, end);
+				}else if(command instanceof LinearMotionCommand){
+					tessellation.kind[index] = LINEAR;
+					commandVerticesCount = tessellation.linearRenderer.getVerticesCount(start, end);
+				}
+				if(commandVerticesCount > 0){
+					// The first vertex is shared with the previous command
+					if(verticesCount > 0){
+						commandVerticesCount -= 1;
+					}
+					Color4f color = colorizer.getColor(command);
+					Integer type = types.get(color);
+					if(type == null){
+						if(types.size() < GCodeGeometry.MAXIMUM_TYPE_COUNT){
+							type = types.size();
+							types.put(color, type);
+							typeColors[type * 4]     = color.x;
+							typeColors[type * 4 + 1] = color.y;
+							typeColors[type * 4 + 2] = color.z;
+							typeColors[type * 4 + 3] = color.w;
+						}else{
+							// Too many colors for the shader, fallback on the first one
+							type = 0;
+							typeOverflow = true;
+						}
+					}
+					tessellation.type[index] = type.byteValue();
+					verticesCount += commandVerticesCount;
+				}
+			}
+			index++;
+		}
+		tessellation.firstVertex[index] = verticesCount;
+		if(typeOverflow){
+			LOG.warn("More than "+GCodeGeometry.MAXIMUM_TYPE_COUNT+" colors used by "+colorizer.getClass().getSimpleName()+", some commands use the wrong color");
+		}
+		return Arrays.copyOf(typeColors, types.size() * 4);
+	}
+
+	/**
+	 * Data shared by the counting pass and the tessellation tasks
+	 */
+	private static class Tessellation{
+		/** The coordinates of the commands */
+		final GCodeProviderCoordinates coordinates;
+		/** Index of the first vertex of each command, followed by the total number of vertices */
+		final int[] firstVertex;
+		/** Kind of geometry of each command */
+		final byte[] kind;
+		/** Type index of each command */
+		final byte[] type;
+		/** The arc command at each index, <code>null</code> for the other commands */
+		final ArcMotionCommand[] arcs;
+		/** The linear motion renderer */
+		final LinearMotionRenderer linearRenderer;
+		/** The arc motion renderer */
+		final ArcMotionRenderer arcRenderer;
+		/** Target vertices buffer */
+		FloatBuffer verticesBuffer;
+		/** Target types buffer */
+		ByteBuffer typesBuffer;
+
+		/**
+		 * Constructor
+		 * @param coordinates the coordinates of the commands
+		 * @param settings the viewer settings
+		 * @param cache the arc tessellations of the provider
+		 */
+		Tessellation(GCodeProviderCoordinates coordinates, JoglViewerPreference settings, ArcTessellationCache cache) {
+			int size = coordinates.size();
+			this.coordinates 	= coordinates;
+			this.firstVertex 	= new int[size + 1];
+			this.kind 			= new byte[size];
+			this.type 			= new byte[size];
+			this.arcs 			= new ArcMotionCommand[size];
+			this.linearRenderer = new LinearMotionRenderer(settings);
+			this.arcRenderer 	= new ArcMotionRenderer(cache, settings.getArcMaximumDeviation());
+		}
+	}
+
+	/**
+	 * Task writing the vertices of a range of commands
+	 */
+	private static class TessellationTask extends RecursiveAction{
+		/** Serial UID */
+		private static final long serialVersionUID = 1L;
+		/** The shared tessellation data */
+		private final Tessellation tessellation;
+		/** Index of the first command of the range */
+		private final int fromIndex;
+		/** Index following the last command of the range */
+		private final int toIndex;
+
+		/**
+		 * Constructor
+		 * @param tessellation the shared tessellation data
+		 * @param fromIndex index of the first command of the range
+		 * @param toIndex index following the last command of the range
+		 */
+		TessellationTask(Tessellation tessellation, int fromIndex, int toIndex) {
+			this.tessellation = tessellation;
+			this.fromIndex 	  = fromIndex;
+			this.toIndex 	  = toIndex;
+		}
+
+		/** (inheritDoc)
+		 * @see java.util.concurrent.RecursiveAction#compute()
+		 */
+		@Override
+		protected void compute() {
+			int[] firstVertex = tessellation.firstVertex;
+			if(toIndex - fromIndex > 1 && firstVertex[toIndex] - firstVertex[fromIndex] > SPLIT_THRESHOLD){
+				int middle = (fromIndex + toIndex) >>> 1;
+				invokeAll(new TessellationTask(tessellation, fromIndex, middle), new TessellationTask(tessellation, middle, toIndex));
+			}else{
+				tessellate();
+			}
+		}
+
+		/**
+		 * Write the vertices of the commands in the range
+		 */
+		private void tessellate(){
+			GCodeProviderCoordinates coordinates = tessellation.coordinates;
+			int[] firstVertex = tessellation.firstVertex;
+			Tuple6d start  = new Tuple6d();
+			Tuple6d end    = new Tuple6d();
+			for (int index = fromIndex; index < toIndex; index++) {
+				int vertexIndex = firstVertex[index];
+				int endVertex 	= firstVertex[index + 1];
+				if(vertexIndex == endVertex){
+					continue;
+				}
+				// The first command with geometry writes all its vertices, the others share their first vertex with the previous command
+				int skippedVertex = vertexIndex > 0 ? 1 : 0;
+				coordinates.getStart(index, start);
+				coordinates.getEnd(index, end);
+				if(tessellation.kind[index] == ARC){
+					ArcTessellation arc = tessellation.arcRenderer.tessellate(tessellation.arcs[index], start, end);
+					tessellation.arcRenderer.write(arc, skippedVertex, tessellation.verticesBuffer, vertexIndex);
+				}else if(tessellation.kind[index] == LINEAR){
+					tessellation.linearRenderer.write(start, end, skippedVertex, tessellation.verticesBuffer, vertexIndex);
+				}
+				byte type = tessellation.type[index];
+				for (int i = vertexIndex; i < endVertex; i++) {
+					tessellation.typesBuffer.put(i, type);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Data shared by the chunk tasks
+	 */
+	private static class Chunks{
+		/** The vertices */
+		final FloatBuffer verticesBuffer;
+		/** Index of the first vertex of each chunk, followed by the index of the last vertex */
+		final int[] chunkFirstVertex;
+		/** Bounding box of each chunk */
+		final float[] bounds;
+		/** Decimated polyline of each chunk */
+		final int[][] lodIndices;
+
+		/**
+		 * Constructor
+		 * @param verticesBuffer the vertices
+		 * @param chunkFirstVertex index of the first vertex of each chunk, followed by the index of the last vertex
+		 */
+		Chunks(FloatBuffer verticesBuffer, int[] chunkFirstVertex) {
+			int chunkCount = chunkFirstVertex.length - 1;
+			this.verticesBuffer 	= verticesBuffer;
+			this.chunkFirstVertex 	= chunkFirstVertex;
+			this.bounds 			= new float[chunkCount * 6];
+			this.lodIndices 		= new int[chunkCount][];
+		}
+	}
+
+	/**
+	 * Task computing the bounds and the decimated polyline of a range of chunks
+	 */
+	private static class ChunkTask extends RecursiveAction{
+		/** Serial UID */
+		private static final long serialVersionUID = 1L;
+		/** The shared chunks data */
+		private final Chunks chunks;
+		/** Index of the first chunk of the range */
+		private final int fromChunk;
+		/** Index following the last chunk of the range */
+		private final int toChunk;
+
+		/**
+		 * Constructor
+		 * @param chunks the shared chunks data
+		 * @param fromChunk index of the first chunk of the range
+		 * @param toChunk index following the last chunk of the range
+		 */
+		ChunkTask(Chunks chunks, int fromChunk, int toChunk) {
+			this.chunks 	= chunks;
+			this.fromChunk 	= fromChunk;
+			this.toChunk 	= toChunk;
+		}
+
+		/** (inheritDoc)
+		 * @see java.util.concurrent.RecursiveAction#compute()
+		 */
+		@Override
+		protected void compute() {
+			if(toChunk - fromChunk > CHUNK_SPLIT_THRESHOLD){
+				int middle = (fromChunk + toChunk) >>> 1;
+				invokeAll(new ChunkTask(chunks, fromChunk, middle), new ChunkTask(chunks, middle, toChunk));
+			}else{
+				for (int chunk = fromChunk; chunk < toChunk; chunk++) {
+					computeBounds(chunk);
+					decimate(chunk);
+				}
+			}
+		}
+
+		/**
+		 * Compute the bounding box of the given chunk
+		 * @param chunk the index of the chunk
+		 */
+		private void computeBounds(int chunk){
+			FloatBuffer vertices = chunks.verticesBuffer;
+			float[] bounds = chunks.bounds;
+			int offset = chunk * 6;
+			int first = chunks.chunkFirstVertex[chunk];
+			int last  = chunks.chunkFirstVertex[chunk + 1];
+			for (int axis = 0; axis < 3; axis++) {
+				bounds[offset + axis] 	  = vertices.get(first * 4 + axis);
+				bounds[offset + axis + 3] = vertices.get(first * 4 + axis);
+			}
+			for (int i = first + 1; i <= last; i++) {
+				for (int axis = 0; axis < 3; axis++) {
+					float value = vertices.get(i * 4 + axis);
+					bounds[offset + axis] 	  = Math.min(bounds[offset + axis], value);
+					bounds[offset + axis + 3] = Math.max(bounds[offset + axis + 3], value);
+				}
+			}
+		}
+
+		/**
+		 * Build the decimated polyline of the given chunk. Vertices closer than a fraction of the chunk size to the last kept vertex are dropped,
+		 * then the result is sampled if it is still too long. The first and last vertices are always kept.
+		 * @param chunk the index of the chunk
+		 */
+		private void decimate(int chunk){
+			FloatBuffer vertices = chunks.verticesBuffer;
+			float[] bounds = chunks.bounds;
+			int offset = chunk * 6;
+			int first = chunks.chunkFirstVertex[chunk];
+			int last  = chunks.chunkFirstVertex[chunk + 1];
+			if(first == last){
+				chunks.lodIndices[chunk] = new int[]{first};
+				return;
+			}
+			float dx = bounds[offset + 3] - bounds[offset];
+			float dy = bounds[offset + 4] - bounds[offset + 1];
+			float dz = bounds[offset + 5] - bounds[offset + 2];
+			float tolerance = (float) Math.sqrt(dx*dx + dy*dy + dz*dz) / LOD_MAXIMUM_VERTICES;
+			float squareTolerance = tolerance * tolerance;
+
+			int[] kept = new int[last - first + 1];
+			int keptCount = 0;
+			kept[keptCount++] = first;
+			int lastKept = first;
+			for (int i = first + 1; i < last; i++) {
+				float x = vertices.get(i * 4) 	  - vertices.get(lastKept * 4);
+				float y = vertices.get(i * 4 + 1) - vertices.get(lastKept * 4 + 1);
+				float z = vertices.get(i * 4 + 2) - vertices.get(lastKept * 4 + 2);
+				if(x*x + y*y + z*z >= squareTolerance){
+					kept[keptCount++] = i;
+					lastKept = i;
+				}
+			}
+			kept[keptCount++] = last;
+
+			if(keptCount > LOD_MAXIMUM_VERTICES){
+				int[] sampled = new int[LOD_MAXIMUM_VERTICES];
+				for (int i = 0; i < LOD_MAXIMUM_VERTICES - 1; i++) {
+					sampled[i] = kept[(int) ((long) i * (keptCount - 1) / (LOD_MAXIMUM_VERTICES - 1))];
+				}
+				sampled[LOD_MAXIMUM_VERTICES - 1] = last;
+				chunks.lodIndices[chunk] = sampled;
+			}else{
+				chunks.lodIndices[chunk] = Arrays.copyOf(kept, keptCount);
+			}
+		}
+	}
+}
@@ -1,81 +1,128 @@
 package org.goko.viewer.jogl.utils.render.gcode.geometry;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.FloatBuffer;
 
 import javax.vecmath.Matrix4d;
 import javax.vecmath.Point3d;
-import javax.vecmath.Vector3d;
 
-import org.goko.core.common.exception.GkException;
-import org.goko.core.gcode.bean.commands.LinearMotionCommand;
+import org.goko.core.math.Tuple6d;
 import org.goko.viewer.jogl.preferences.JoglViewerPreference;
+import org.goko.viewer.jogl.preferences.JoglViewerPreference.EnumRotaryAxisDirection;
+import org.goko.viewer.jogl.service.JoglUtils;
 
 /**
  * Linear motion renderer
+ * The rotary axis settings are read once at creation, so the same renderer can write vertices from several threads.
  *
  * @author PsyKo
  *
  */
 public class LinearMotionRenderer{
-
-	public List<Point3d> render(LinearMotionCommand command) throws GkException{
-		JoglViewerPreference settings = JoglViewerPreference.getInstance();
-		if(command != null){
-			if(settings.isRotaryAxisEnabled()){
-				// The complete angle around the 4th axis
-				double deltaAngle = 0;
-				// FIXME Use a setting to define the 4th axis and then do a dynamic angle detection around the axe A,B or C
-				if( command.getAbsoluteEndCoordinate().getA() != null){
-					deltaAngle = command.getAbsoluteEndCoordinate().getA().doubleValue() - command.getAbsoluteStartCoordinate().getA().doubleValue();
-				}
-
-				if(Math.abs(deltaAngle) <= 0.0001){
-					return renderLinearLine(command);
-				}else{
-					return renderRotaryLine(command);
-				}
+	/** Minimum rotation (in degrees) for a motion to be rendered around the rotary axis */
+	private static final double ROTARY_EPSILON = 0.0001;
+	/** Angle (in degrees) between two vertices of a motion around the rotary axis */
+	private static final double ROTARY_STEP = 5;
+	/** Rotary axis enabled flag */
+	private final boolean rotaryAxisEnabled;
+	/** Direction of the rotary axis */
+	private final EnumRotaryAxisDirection rotaryAxisDirection;
+	/** Position of the rotary axis */
+	private final Point3d rotaryAxisPosition;
+
+	/**
+	 * Constructor
+	 * @param settings the viewer settings
+	 */
+	public LinearMotionRenderer(JoglViewerPreference settings) {
+		this.rotaryAxisEnabled = settings.isRotaryAxisEnabled();
+		if(rotaryAxisEnabled){
+			this.rotaryAxisDirection = settings.getRotaryAxisDirection();
+			if(settings.getRotaryAxisPosition() != null){
+				this.rotaryAxisPosition = settings.getRotaryAxisPosition().toPoint3d();
 			}else{
-				return renderLinearLine(command);
+				this.rotaryAxisPosition = new Point3d();
 			}
+		}else{
+			this.rotaryAxisDirection = null;
+			this.rotaryAxisPosition = null;
 		}
-		return new ArrayList<Point3d>();
 	}
 
-	private List<Point3d> renderLinearLine(LinearMotionCommand command) throws GkException {
-		JoglViewerPreference settings = JoglViewerPreference.getInstance();
-		List<Point3d> vertices = new ArrayList<Point3d>();
-		Point3d startPoint 	= command.getAbsoluteStartCoordinate().toPoint3d();
-		Point3d endPoint 	= command.getAbsoluteEndCoordinate().toPoint3d();
-
-		if(settings.isRotaryAxisEnabled()){
-			// It's a simple line, but it doesn't mean the rotary (A, B or C) value is at 0
-			if(command.getAbsoluteStartCoordinate().getA() != null){
-				Matrix4d rotationMatrix = new Matrix4d();
-				rotateMatrix(rotationMatrix, Math.toRadians(command.getAbsoluteStartCoordinate().getA().doubleValue()));
+	/**
+	 * Returns the number of vertices of the given linear motion
+	 * @param start the absolute start coordinate, in millimeters and degrees
+	 * @param end the absolute end coordinate, in millimeters and degrees
+	 * @return the number of vertices
+	 */
+	public int getVerticesCount(Tuple6d start, Tuple6d end){
+		if(isRotaryLine(start, end)){
+			return getRotaryStepCount(start, end) + 1;
+		}
+		return 2;
+	}
 
-				if(settings.getRotaryAxisPosition() != null){
-					startPoint.sub(settings.getRotaryAxisPosition().toPoint3d());
-					endPoint.sub(settings.getRotaryAxisPosition().toPoint3d());
-				}
-				rotationMatrix.transform(startPoint);
-				rotationMatrix.transform(endPoint);
-				if(settings.getRotaryAxisPosition() != null){
-					startPoint.add(settings.getRotaryAxisPosition().toPoint3d());
-					endPoint.add(settings.getRotaryAxisPosition().toPoint3d());
-				}
-			}
+	/**
+	 * Write the vertices of the given linear motion in the given buffer
+	 * @param start the absolute start coordinate, in millimeters and degrees
+	 * @param end the absolute end coordinate, in millimeters and degrees
+	 * @param firstVertex the index of the first vertex of the motion to write, used to skip the vertex shared with the previous motion
+	 * @param buffer the target buffer, 4 floats per vertex
+	 * @param vertexIndex the index of the first vertex to write in the buffer
+	 * @return the number of written vertices
+	 */
+	public int write(Tuple6d start, Tuple6d end, int firstVertex, FloatBuffer buffer, int vertexIndex){
+		if(isRotaryLine(start, end)){
+			return writeRotaryLine(start, end, firstVertex, buffer, vertexIndex);
 		}
+		return writeLinearLine(start, end, firstVertex, buffer, vertexIndex);
+	}
 
+	/**
+	 * Determine if the given motion has to be rendered around the rotary axis
+	 * @param start the absolute start coordinate
+	 * @param end the absolute end coordinate
+	 * @return <code>true</code> if the motion rotates around the rotary axis
+	 */
+	private boolean isRotaryLine(Tuple6d start, Tuple6d end){
+		// FIXME Use a setting to define the 4th axis and then do a dynamic angle detection around the axe A,B or C
+		return rotaryAxisEnabled && Math.abs(end.a - start.a) > ROTARY_EPSILON;
+	}
 
-		vertices.add(startPoint);
-		vertices.add(endPoint);
-		return vertices;
+	/**
+	 * Returns the number of steps of a motion around the rotary axis
+	 * @param start the absolute start coordinate
+	 * @param end the absolute end coordinate
+	 * @return the number of steps
+	 */
+	private int getRotaryStepCount(Tuple6d start, Tuple6d end){
+		return (int) Math.max(1, Math.abs(end.a - start.a) / ROTARY_STEP);
+	}
+
+	private int writeLinearLine(Tuple6d start, Tuple6d end, int firstVertex, FloatBuffer buffer, int vertexIndex){
+		Point3d startPoint 	= new Point3d(start.x, start.y, start.z);
+		Point3d endPoint 	= new Point3d(end.x, end.y, end.z);
+
+		// It's a simple line, but it doesn't mean the rotary (A, B or C) value is at 0
+		if(rotaryAxisEnabled && start.a != 0){
+			Matrix4d rotationMatrix = new Matrix4d();
+			rotateMatrix(rotationMatrix, Math.toRadians(start.a));
+			startPoint.sub(rotaryAxisPosition);
+			endPoint.sub(rotaryAxisPosition);
+			rotationMatrix.transform(startPoint);
+			rotationMatrix.transform(endPoint);
+			startPoint.add(rotaryAxisPosition);
+			endPoint.add(rotaryAxisPosition);
+		}
+		int index = vertexIndex;
+		if(firstVertex == 0){
+			JoglUtils.putVertex(buffer, index++, startPoint.x, startPoint.y, startPoint.z);
+		}
+		JoglUtils.putVertex(buffer, index++, endPoint.x, endPoint.y, endPoint.z);
+		return index - vertexIndex;
 	}
 
 	private void rotateMatrix(Matrix4d matrix, double angleRadians){
-		JoglViewerPreference settings = JoglViewerPreference.getInstance();
-		switch(settings.getRotaryAxisDirection()){
+		switch(rotaryAxisDirection){
 			case X:matrix.rotX( angleRadians );
 			break;
 			case Y:matrix.rotY( angleRadians );
@@ -85,41 +132,30 @@ public class LinearMotionRenderer{
 			default:matrix.rotY( angleRadians );
 		}
 	}
-	private List<Point3d> renderRotaryLine(LinearMotionCommand command) throws GkException {
-		JoglViewerPreference settings = JoglViewerPreference.getInstance();
-		ArrayList<Point3d> vertices = new ArrayList<Point3d>();
 
-		Point3d startPoint 	= command.getAbsoluteStartCoordinate().toPoint3d();
+	private int writeRotaryLine(Tuple6d start, Tuple6d end, int firstVertex, FloatBuffer buffer, int vertexIndex){
+		int nbPoints = getRotaryStepCount(start, end);
+		double startAngleRad = Math.toRadians(start.a);
+		double stepAngleRad = Math.toRadians(end.a - start.a) / nbPoints;
+		// Translation between two vertices, before rotation
+		double dx = (end.x - start.x) / nbPoints;
+		double dy = (end.y - start.y) / nbPoints;
+		double dz = (end.z - start.z) / nbPoints;
 
 		Matrix4d rotationMatrix = new Matrix4d();
-
-		double deltaAngleDeg = 0;
-
-		Vector3d deltaVector = new Vector3d(command.getAbsoluteEndCoordinate().toPoint3d());
-		deltaVector.sub(command.getAbsoluteStartCoordinate().toPoint3d());
-
-		double startAngle = command.getAbsoluteStartCoordinate().getA().doubleValue();
-		deltaAngleDeg = command.getAbsoluteEndCoordinate().getA().doubleValue() - command.getAbsoluteStartCoordinate().getA().doubleValue();
-
-		int nbPoints = (int) Math.max(1,Math.abs(deltaAngleDeg) / 5);
-		deltaVector.scale(1.0/nbPoints);
-		double startAngleRad = Math.toRadians(startAngle);
-		double stepAngleRad = Math.toRadians(deltaAngleDeg) / nbPoints;
-
-		//startPoint.sub(settings.getRotaryAxisPosition().toPoint3d());
-		Point3d generatorVector = new Point3d(startPoint);
-		generatorVector.sub(settings.getRotaryAxisPosition().toPoint3d());
-		Point3d tmpVector 		= new Point3d(generatorVector);
-
-
-		for(int i = 0; i <= nbPoints; i++){
+		Point3d generatorVector = new Point3d();
+		Point3d tmpVector 		= new Point3d();
+		int index = vertexIndex;
+		for(int i = firstVertex; i <= nbPoints; i++){
+			generatorVector.set(start.x + i * dx - rotaryAxisPosition.x,
+								start.y + i * dy - rotaryAxisPosition.y,
+								start.z + i * dz - rotaryAxisPosition.z);
 			rotationMatrix.setIdentity();
 			rotateMatrix(rotationMatrix, startAngleRad + i*stepAngleRad);
-			rotationMatrix.transform(generatorVector,tmpVector);
-			tmpVector.add(settings.getRotaryAxisPosition().toPoint3d());
-			vertices.add( new Point3d(tmpVector.x, tmpVector.y, tmpVector.z) );
-			generatorVector.add( deltaVector );
+			rotationMatrix.transform(generatorVector, tmpVector);
+			tmpVector.add(rotaryAxisPosition);
+			JoglUtils.putVertex(buffer, index++, tmpVector.x, tmpVector.y, tmpVector.z);
 		}
-		return vertices;
+		return index - vertexIndex;
 	}
 }
@@ -279,7 +279,7 @@ public abstract class AbstractVboJoglRenderer extends AbstractCoreJoglRenderer{
 		}
 		enableAdditionalVertexAttribArray(gl);
 		updateShaderData(gl);
-		gl.glDrawArrays(getRenderPrimitive(), 0, getVerticesCount());
+		performDraw(gl);
 
 	    disableAdditionalVertexAttribArray(gl);
 	    if(useVerticesBuffer){
@@ -299,6 +299,14 @@ public abstract class AbstractVboJoglRenderer extends AbstractCoreJoglRenderer{
 
 	protected void updateShaderData(GL3 gl) throws GkException {
 
+	}
+	/**
+	 * Draws the vertices once the buffers are bound. Draws all the vertices by default
+	 * @param gl the GL
+	 * @throws GkException GkException
+	 */
+	protected void performDraw(GL3 gl) throws GkException {
+		gl.glDrawArrays(getRenderPrimitive(), 0, getVerticesCount());
 	}
 	protected void enableAdditionalVertexAttribArray(GL3 gl) throws GkException {
 
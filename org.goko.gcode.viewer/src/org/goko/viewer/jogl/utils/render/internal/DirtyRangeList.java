@@ -0,0 +1,141 @@
+/*
+ *	This file is part of Goko.
+ *
+ *  Goko is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Goko is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Goko.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.goko.viewer.jogl.utils.render.internal;
+
+/**
+ * Sorted list of the modified ranges of a buffer, waiting to be uploaded.
+ * <p>
+ * Overlapping or close ranges are merged, so that consecutive changes, such as the state of the commands being streamed,
+ * end up in a single upload. When the number of ranges exceeds the limit, they are collapsed into one range.
+ * </p>
+ * This class is not thread safe.
+ * @author PsyKo
+ *
+ */
+public class DirtyRangeList {
+	/** Maximum gap between two ranges for them to be merged */
+	private final int mergeGap;
+	/** Maximum number of ranges */
+	private final int maximumRangeCount;
+	/** Start of the ranges (inclusive) */
+	private final int[] starts;
+	/** End of the ranges (exclusive) */
+	private final int[] ends;
+	/** The number of ranges */
+	private int rangeCount;
+
+	/**
+	 * Constructor
+	 * @param mergeGap maximum gap between two ranges for them to be merged
+	 * @param maximumRangeCount maximum number of ranges
+	 */
+	public DirtyRangeList(int mergeGap, int maximumRangeCount) {
+		this.mergeGap = mergeGap;
+		this.maximumRangeCount = Math.max(1, maximumRangeCount);
+		this.starts = new int[this.maximumRangeCount + 1];
+		this.ends = new int[this.maximumRangeCount + 1];
+	}
+
+	/**
+	 * Add the given range
+	 * @param start the start of the range (inclusive)
+	 * @param end the end of the range (exclusive)
+	 */
+	public void add(int start, int end){
+		if(end <= start){
+			return;
+		}
+		// Find the first range that can be merged with, or the insertion position
+		int index = 0;
+		while(index < rangeCount && ends[index] + mergeGap < start){
+			index++;
+		}
+		if(index < rangeCount && starts[index] <= end + mergeGap){
+			// Merge with this range and the following ones
+			starts[index] = Math.min(starts[index], start);
+			int mergedEnd = Math.max(ends[index], end);
+			int next = index + 1;
+			while(next < rangeCount && starts[next] <= mergedEnd + mergeGap){
+				mergedEnd = Math.max(mergedEnd, ends[next]);
+				next++;
+			}
+			ends[index] = mergedEnd;
+			remove(index + 1, next - index - 1);
+		}else{
+			System.arraycopy(starts, index, starts, index + 1, rangeCount - index);
+			System.arraycopy(ends, index, ends, index + 1, rangeCount - index);
+			starts[index] = start;
+			ends[index] = end;
+			rangeCount++;
+			if(rangeCount > maximumRangeCount){
+				ends[0] = ends[rangeCount - 1];
+				rangeCount = 1;
+			}
+		}
+	}
+
+	/**
+	 * Remove the given number of ranges from the given index
+	 * @param index the index of the first range to remove
+	 * @param count the number of ranges to remove
+	 */
+	private void remove(int index, int count){
+		if(count > 0){
+			System.arraycopy(starts, index + count, starts, index, rangeCount - index - count);
+			System.arraycopy(ends, index + count, ends, index, rangeCount - index - count);
+			rangeCount -= count;
+		}
+	}
+
+	/**
+	 * Remove all the ranges
+	 */
+	public void clear(){
+		rangeCount = 0;
+	}
+
+	/**
+	 * @return <code>true</code> if there is no range
+	 */
+	public boolean isEmpty(){
+		return rangeCount == 0;
+	}
+
+	/**
+	 * @return the number of ranges
+	 */
+	public int size(){
+		return rangeCount;
+	}
+
+	/**
+	 * @param index the index of the range
+	 * @return the start of the range (inclusive)
+	 */
+	public int getStart(int index){
+		return starts[index];
+	}
+
+	/**
+	 * @param index the index of the range
+	 * @return the end of the range (exclusive)
+	 */
+	public int getEnd(int index){
+		return ends[index];
+	}
+}
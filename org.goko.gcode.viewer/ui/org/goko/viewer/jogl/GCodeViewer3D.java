@@ -59,8 +59,6 @@ import org.goko.viewer.jogl.model.GCodeViewer3DController;
 import org.goko.viewer.jogl.model.GCodeViewer3DModel;
 import org.goko.viewer.jogl.service.IJoglViewerService;
 
-import com.jogamp.opengl.util.Animator;
-
 public class GCodeViewer3D extends GkUiComponent<GCodeViewer3DController, GCodeViewer3DModel> {
 	@Inject
 	IGCodeService gcodeService;
@@ -69,7 +67,6 @@ public class GCodeViewer3D extends GkUiComponent<GCodeViewer3DController, GCodeV
 
 	/** Widget that displays OpenGL content. */
 	private GokoJoglCanvas glcanvas;
-	private Animator animator;
 	private static final String VIEWER_ENABLED = "org.goko.gcode.viewer.enabled";
 	private static final String VIEWER_GRID_ENABLED = "org.goko.gcode.viewer.gridEnabled";
 	private static final String VIEWER_LOCK_CAMERA_ON_TOOL = "org.goko.gcode.viewer.lockCameraOnTool";
@@ -273,6 +270,7 @@ public class GCodeViewer3D extends GkUiComponent<GCodeViewer3DController, GCodeV
 		btnKeyboardJog.addSelectionListener(new SelectionAdapter() {
 			@Override public void widgetSelected(SelectionEvent e) {
 				glcanvas.setKeyboardJogEnabled(btnKeyboardJog.getSelection());
+				viewerService.requestFrame();
 			}
 		});
 		btnKeyboardJog.setToolTipText("Enable/disable keyboard jogging");
@@ -282,11 +280,6 @@ public class GCodeViewer3D extends GkUiComponent<GCodeViewer3DController, GCodeV
 
 		glcanvas.setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, true, 1, 1));
 
-		animator = new Animator();
-
-		animator.add(glcanvas);
-		animator.start();
-
 		ContextInjectionFactory.inject(glcanvas, context);
 
 		// glcanvas.setMenu(initContextualMenu(composite));
@@ -342,9 +335,7 @@ public class GCodeViewer3D extends GkUiComponent<GCodeViewer3DController, GCodeV
 
 	@PreDestroy
 	public void dispose(MPart part) {
-		if (animator != null && animator.isStarted()) {
-			animator.stop();
-		}
+		viewerService.stopRendering();
 	}
 
 	@PersistState
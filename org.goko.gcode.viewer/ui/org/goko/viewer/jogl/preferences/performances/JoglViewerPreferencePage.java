@@ -55,6 +55,22 @@ public class JoglViewerPreferencePage extends GkFieldEditorPreferencesPage {
 		comboFieldEditor.setPreferenceName("performances.multisampling");
 		comboFieldEditor.setEntry(lstMultiSampling);
 		
+		ComboFieldEditor frameRateFieldEditor = new ComboFieldEditor(grpPerformances, SWT.READ_ONLY);
+		frameRateFieldEditor.setLabel("Maximum frame rate :");
+		String[][] lstFrameRate = new String[][]{{"30 fps", "30"} ,
+												{"60 fps","60"},
+												{"Unlimited","0"}};
+		frameRateFieldEditor.setPreferenceName("performances.maximumFrameRate");
+		frameRateFieldEditor.setEntry(lstFrameRate);
+		
+		ComboFieldEditor arcDeviationFieldEditor = new ComboFieldEditor(grpPerformances, SWT.READ_ONLY);
+		arcDeviationFieldEditor.setLabel("Arc precision :");
+		String[][] lstArcDeviation = new String[][]{{"0.1 mm (Fastest)", "0.1"} ,
+													{"0.01 mm","0.01"},
+													{"0.001 mm (Nicest)","0.001"}};
+		arcDeviationFieldEditor.setPreferenceName("performances.arcMaximumDeviation");
+		arcDeviationFieldEditor.setEntry(lstArcDeviation);
+		
 		
 		Group grpGrid = new Group(parent, SWT.NONE);
 		grpGrid.setLayout(new GridLayout(1, false));
@@ -81,6 +97,8 @@ public class JoglViewerPreferencePage extends GkFieldEditorPreferencesPage {
 		addField(majorSpacingFieldEditor);
 		addField(minorSpacingFieldEditor);
 		addField(comboFieldEditor);
+		addField(frameRateFieldEditor);
+		addField(arcDeviationFieldEditor);
 	}
 
 	@Inject
@@ -0,0 +1,50 @@
+package org.goko.grbl.controller;
+
+import junit.framework.TestCase;
+
+import org.goko.core.controller.bean.MotionPlannerSettings;
+
+public class GrblControllerServiceTestCase extends TestCase {
+	private GrblControllerService grbl;
+
+	/** {@inheritDoc}
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		grbl = new GrblControllerService();
+		grbl.start();
+	}
+
+	/**
+	 * Without configuration, the default settings are used
+	 * @throws Exception Exception
+	 */
+	public void testDefaultMotionPlannerSettings() throws Exception{
+		MotionPlannerSettings settings = grbl.getMotionPlannerSettings();
+		assertEquals(MotionPlannerSettings.DEFAULT_MAXIMUM_VELOCITY, settings.getMaximumVelocity(0), 1e-9);
+		assertEquals(MotionPlannerSettings.DEFAULT_ACCELERATION, settings.getAcceleration(0), 1e-9);
+		assertEquals(MotionPlannerSettings.DEFAULT_JUNCTION_DEVIATION, settings.getJunctionDeviation(), 1e-9);
+	}
+
+	/**
+	 * Conversion of the Grbl settings into planner settings : seek rate in mm/min, acceleration in mm/sec^2
+	 * @throws Exception Exception
+	 */
+	public void testMotionPlannerSettings() throws Exception{
+		grbl.handleConfigurationReading("$5=1200.000 (default seek, mm/min)");
+		grbl.handleConfigurationReading("$8=25.000 (acceleration, mm/sec^2)");
+		grbl.handleConfigurationReading("$9=0.020 (cornering junction deviation, mm)");
+
+		MotionPlannerSettings settings = grbl.getMotionPlannerSettings();
+		for (int axis = 0; axis < 3; axis++) {
+			assertEquals(20.0, settings.getMaximumVelocity(axis), 1e-9);
+			assertEquals(25.0, settings.getAcceleration(axis), 1e-9);
+		}
+		// Rotary axis are not handled by Grbl 0.8
+		assertEquals(MotionPlannerSettings.DEFAULT_MAXIMUM_VELOCITY, settings.getMaximumVelocity(3), 1e-9);
+		assertEquals(0.02, settings.getJunctionDeviation(), 1e-9);
+		assertEquals(0.0, settings.getJunctionAcceleration(), 1e-9);
+	}
+}
@@ -0,0 +1,97 @@
+package org.goko.grbl.controller;
+
+import java.nio.ByteBuffer;
+
+import junit.framework.TestCase;
+
+import org.goko.core.common.GkUtils;
+import org.goko.grbl.controller.bean.StatusReport;
+
+public class GrblResponseDecoderTestCase extends TestCase {
+	private GrblResponseDecoder decoder;
+
+	/** {@inheritDoc}
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		decoder = new GrblResponseDecoder();
+	}
+
+	private EnumGrblResponse decode(String line){
+		return decoder.decode(ByteBuffer.wrap(GkUtils.toBytes(line)));
+	}
+
+	/**
+	 * Classification of the received lines
+	 * @throws Exception Exception
+	 */
+	public void testClassification() throws Exception{
+		assertEquals(EnumGrblResponse.OK, decode("ok"));
+		assertEquals(EnumGrblResponse.OK, decode(" ok\r"));
+		assertEquals(EnumGrblResponse.EMPTY, decode("\r"));
+		assertEquals(EnumGrblResponse.ERROR, decode("error: Bad number format"));
+		assertEquals("error: Bad number format", decoder.getText());
+		assertEquals(EnumGrblResponse.HEADER, decode("Grbl 0.8c ['$' for help]"));
+		assertEquals(EnumGrblResponse.SETTING, decode("$0=755.906 (x, step/mm)"));
+		assertEquals(EnumGrblResponse.SETTING, decode("$=1"));
+		assertEquals(EnumGrblResponse.OFFSET, decode("[G54:0.000,0.000,0.000]"));
+		assertEquals(EnumGrblResponse.OFFSET, decode("[G28:-10.000,0.000,5.000]"));
+		assertEquals(EnumGrblResponse.OFFSET, decode("[G92:0.000,0.000,0.000]"));
+		assertEquals(EnumGrblResponse.PARSER_STATE, decode("[G0 G54 G17 G21 G90 G94 M0 M5 M9 T0 F0.]"));
+		assertEquals(EnumGrblResponse.STATUS_REPORT, decode("<Idle,MPos:0.000,0.000,0.000,WPos:0.000,0.000,0.000>"));
+		assertEquals(EnumGrblResponse.UNKNOWN, decode("okay"));
+		assertEquals(EnumGrblResponse.UNKNOWN, decode("$X=1"));
+		assertEquals(EnumGrblResponse.UNKNOWN, decode("['$H'|'$X' to unlock]"));
+		assertEquals(EnumGrblResponse.UNKNOWN, decode("<Idle"));
+	}
+
+	/**
+	 * Parsing of a status report
+	 * @throws Exception Exception
+	 */
+	public void testStatusReport() throws Exception{
+		assertEquals(EnumGrblResponse.STATUS_REPORT, decode("<Run,MPos:5.529,0.560,-7.000,WPos:1.529,-5.440,-0.000>"));
+		StatusReport report = decoder.getStatusReport();
+		assertEquals(GrblMachineState.MOTION_RUNNING, report.getState());
+		assertTrue(report.isMachinePositionReported());
+		assertEquals(5.529, report.getMachineX());
+		assertEquals(0.56, report.getMachineY());
+		assertEquals(-7.0, report.getMachineZ());
+		assertTrue(report.isWorkPositionReported());
+		assertEquals(1.529, report.getWorkX());
+		assertEquals(-5.44, report.getWorkY());
+		assertEquals(0.0, report.getWorkZ(), 0);
+	}
+
+	/**
+	 * Unknown fields and states of a status report are ignored
+	 * @throws Exception Exception
+	 */
+	public void testStatusReportUnknownFields() throws Exception{
+		assertEquals(EnumGrblResponse.STATUS_REPORT, decode("<Hold,MPos:1.000,2.000,3.000,Buf:3,RX:0,WPos:4.000,5.000,6.000,Lim:000>"));
+		StatusReport report = decoder.getStatusReport();
+		assertEquals(GrblMachineState.UNDEFINED, report.getState());
+		assertEquals(3.0, report.getMachineZ());
+		assertEquals(4.0, report.getWorkX());
+		assertEquals(6.0, report.getWorkZ());
+
+		// The report is reused
+		assertEquals(EnumGrblResponse.STATUS_REPORT, decode("<Idle,MPos:1.000,2.000,abc>"));
+		assertEquals(GrblMachineState.READY, report.getState());
+		assertFalse(report.isMachinePositionReported());
+		assertFalse(report.isWorkPositionReported());
+	}
+
+	/**
+	 * The decoder doesn't move the position of the buffer
+	 * @throws Exception Exception
+	 */
+	public void testBufferPosition() throws Exception{
+		ByteBuffer buffer = ByteBuffer.wrap(GkUtils.toBytes("xxok"));
+		buffer.position(2);
+		assertEquals(EnumGrblResponse.OK, decoder.decode(buffer));
+		assertEquals(2, buffer.position());
+	}
+}
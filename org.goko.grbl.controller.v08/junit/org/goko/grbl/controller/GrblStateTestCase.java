@@ -0,0 +1,58 @@
+package org.goko.grbl.controller;
+
+import junit.framework.TestCase;
+
+import org.goko.core.common.measure.SI;
+import org.goko.core.common.measure.SIPrefix;
+import org.goko.core.common.measure.quantity.Length;
+import org.goko.core.common.measure.units.Unit;
+import org.goko.core.gcode.bean.GCodeContext;
+import org.goko.grbl.controller.bean.StatusReport;
+
+public class GrblStateTestCase extends TestCase {
+	private static final Unit<Length> MILLIMETRE = SIPrefix.MILLI(SI.METRE);
+	private GrblState state;
+
+	/** {@inheritDoc}
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		state = new GrblState();
+	}
+
+	private StatusReport createReport(double x, double y, double z){
+		StatusReport report = new StatusReport();
+		report.setMachinePosition(x, y, z);
+		report.setWorkPosition(x, y, z);
+		return report;
+	}
+
+	/**
+	 * A context replaced after a parser state reply keeps the work position, even if the next report is unchanged
+	 * @throws Exception Exception
+	 */
+	public void testContextReplacedThenUnchangedReport() throws Exception{
+		state.updatePositions(createReport(10, 20, -5), MILLIMETRE);
+		state.setCurrentContext(new GCodeContext());
+		state.updatePositions(createReport(10, 20, -5), MILLIMETRE);
+
+		GCodeContext context = state.getCurrentContext();
+		assertEquals(10.0, context.getPosition().getX().doubleValue(), 1e-9);
+		assertEquals(20.0, context.getPosition().getY().doubleValue(), 1e-9);
+		assertEquals(-5.0, context.getPosition().getZ().doubleValue(), 1e-9);
+	}
+
+	/**
+	 * A changed report still updates the context
+	 * @throws Exception Exception
+	 */
+	public void testChangedReport() throws Exception{
+		state.updatePositions(createReport(10, 20, -5), MILLIMETRE);
+		state.updatePositions(createReport(11, 20, -5), MILLIMETRE);
+
+		assertEquals(11.0, state.getCurrentContext().getPosition().getX().doubleValue(), 1e-9);
+		assertEquals(11.0, state.getWorkPosition().getX().doubleValue(), 1e-9);
+	}
+}
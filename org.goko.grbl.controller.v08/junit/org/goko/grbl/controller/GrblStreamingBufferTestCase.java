@@ -0,0 +1,131 @@
+package org.goko.grbl.controller;
+
+import junit.framework.TestCase;
+
+public class GrblStreamingBufferTestCase extends TestCase {
+	private GrblStreamingBuffer buffer;
+
+	/** {@inheritDoc}
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		buffer = new GrblStreamingBuffer(Grbl.GRBL_BUFFER_SIZE);
+	}
+
+	/**
+	 * Lines are sent until the buffer is full
+	 */
+	public void testFill(){
+		assertTrue(buffer.hasSpace(127));
+		buffer.add(50, 1);
+		buffer.add(50, 2);
+		assertEquals(100, buffer.getUsedSpace());
+		assertEquals(2, buffer.getPendingLineCount());
+
+		assertTrue(buffer.hasSpace(27));
+		assertFalse(buffer.hasSpace(28));
+		buffer.add(27, 3);
+		assertEquals(127, buffer.getUsedSpace());
+		assertFalse(buffer.hasSpace(1));
+	}
+
+	/**
+	 * Each response releases the oldest line, in order
+	 */
+	public void testAcknowledge(){
+		buffer.add(10, 1);
+		buffer.add(20, GrblStreamingBuffer.NO_COMMAND);
+		buffer.add(30, 3);
+
+		assertEquals(1, buffer.acknowledge());
+		assertEquals(50, buffer.getUsedSpace());
+		assertEquals(GrblStreamingBuffer.NO_COMMAND, buffer.acknowledge());
+		assertEquals(30, buffer.getUsedSpace());
+		assertEquals(3, buffer.acknowledge());
+		assertEquals(0, buffer.getUsedSpace());
+		assertEquals(0, buffer.getPendingLineCount());
+		// Unexpected response
+		assertEquals(GrblStreamingBuffer.NO_COMMAND, buffer.acknowledge());
+		assertEquals(0, buffer.getUsedSpace());
+	}
+
+	/**
+	 * A line which does not fit waits for the responses
+	 */
+	public void testOverflow() throws Exception{
+		buffer.add(100, 1);
+		assertFalse(buffer.hasSpace(30));
+		assertFalse(buffer.waitSpace(30, 10));
+
+		assertEquals(1, buffer.acknowledge());
+		assertTrue(buffer.waitSpace(30, 10));
+	}
+
+	/**
+	 * A line longer than the whole buffer is sent once the buffer is empty
+	 */
+	public void testLineLongerThanBuffer(){
+		assertTrue(buffer.hasSpace(200));
+		buffer.add(10, 1);
+		assertFalse(buffer.hasSpace(200));
+	}
+
+	/**
+	 * The storage of the in flight lines grows without losing their order
+	 */
+	public void testGrow(){
+		for (int i = 0; i < 10; i++) {
+			buffer.add(1, i);
+		}
+		// Move the head so the lines wrap around the storage
+		for (int i = 0; i < 8; i++) {
+			assertEquals(i, buffer.acknowledge());
+		}
+		for (int i = 10; i < 50; i++) {
+			buffer.add(1, i);
+		}
+		assertEquals(42, buffer.getPendingLineCount());
+		for (int i = 8; i < 50; i++) {
+			assertEquals(i, buffer.acknowledge());
+		}
+		assertEquals(0, buffer.getUsedSpace());
+	}
+
+	/**
+	 * Lines which could not be sent, and reset of Grbl
+	 */
+	public void testRemoveLastAndClear(){
+		buffer.add(10, 1);
+		buffer.add(20, 2);
+		buffer.removeLast();
+		assertEquals(10, buffer.getUsedSpace());
+		assertEquals(1, buffer.getPendingLineCount());
+
+		buffer.clear();
+		assertEquals(0, buffer.getUsedSpace());
+		assertEquals(GrblStreamingBuffer.NO_COMMAND, buffer.acknowledge());
+	}
+
+	/**
+	 * A waiting sender is woken up by the response
+	 */
+	public void testWaitSpaceWokenByAcknowledge() throws Exception{
+		buffer.add(120, 1);
+		Thread reader = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(50);
+				} catch (InterruptedException e) {
+					return;
+				}
+				buffer.acknowledge();
+			}
+		});
+		reader.start();
+		assertTrue(buffer.waitSpace(20, 5000));
+		reader.join();
+	}
+}
@@ -0,0 +1,229 @@
+/*******************************************************************************
+ * 	This file is part of Goko.
+ *
+ *   Goko is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Goko is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Goko.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package org.goko.grbl.controller.benchmark;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.goko.core.common.GkUtils;
+import org.goko.grbl.controller.EnumGrblResponse;
+import org.goko.grbl.controller.GrblResponseDecoder;
+import org.goko.grbl.controller.bean.StatusReport;
+
+/**
+ * Compares the {@link GrblResponseDecoder} with the former String based classification of the Grbl lines
+ * (<code>startsWith</code> tests, chained <code>String.matches</code>, then <code>split</code> and <code>BigDecimal</code> for status reports).
+ * The traffic is a recorded Grbl 0.8c session : connection header, settings, offsets and parser state, then a streamed
+ * file with status polling.
+ * Run as a Java application, optional arguments are the number of lines and the number of measured iterations.
+ *
+ * @author PsyKo
+ *
+ */
+public class GrblResponseDecoderBenchmark {
+	/** Default number of decoded lines per iteration */
+	private static final int DEFAULT_LINE_COUNT = 1000000;
+	/** Default number of measured iterations */
+	private static final int DEFAULT_ITERATION_COUNT = 5;
+	/** Number of warm up iterations */
+	private static final int WARMUP_ITERATION_COUNT = 3;
+	/** Lines received when connecting */
+	private static final String[] CONNECTION = new String[]{
+		"Grbl 0.8c ['$' for help]",
+		"$0=250.000 (x, step/mm)",
+		"$1=250.000 (y, step/mm)",
+		"$2=250.000 (z, step/mm)",
+		"$3=10 (step pulse, usec)",
+		"$4=500.000 (default feed, mm/min)",
+		"$5=500.000 (default seek, mm/min)",
+		"$13=0 (report inches, bool)",
+		"ok",
+		"[G54:0.000,0.000,0.000]",
+		"[G55:-12.500,40.000,0.000]",
+		"[G56:0.000,0.000,0.000]",
+		"[G57:0.000,0.000,0.000]",
+		"[G58:0.000,0.000,0.000]",
+		"[G59:0.000,0.000,0.000]",
+		"[G28:0.000,0.000,0.000]",
+		"[G30:0.000,0.000,0.000]",
+		"[G92:0.000,0.000,0.000]",
+		"ok",
+		"[G0 G54 G17 G21 G90 G94 M0 M5 M9 T0 F500.000]",
+		"ok"
+	};
+	/** Lines received while streaming : one status report for every 4 acknowledgements */
+	private static final String[] STREAMING = new String[]{
+		"ok",
+		"ok",
+		"<Run,MPos:12.500,-3.250,1.000,WPos:2.500,-3.250,1.000>",
+		"ok",
+		"ok",
+		"<Run,MPos:12.625,-3.125,1.000,WPos:2.625,-3.125,1.000>",
+		"ok",
+		"<Queue,MPos:12.750,-3.000,1.000,WPos:2.750,-3.000,1.000>",
+		"ok",
+		"ok",
+		"<Idle,MPos:12.750,-3.000,-0.500,WPos:2.750,-3.000,-0.500>",
+		"error: Bad number format"
+	};
+
+	public static void main(String[] args) {
+		int lineCount = DEFAULT_LINE_COUNT;
+		int iterationCount = DEFAULT_ITERATION_COUNT;
+		if(args.length > 0){
+			lineCount = Integer.valueOf(args[0]);
+		}
+		if(args.length > 1){
+			iterationCount = Integer.valueOf(args[1]);
+		}
+		final List<byte[]> traffic = generateTraffic(lineCount);
+
+		run("String matching", traffic, iterationCount, new Decoder() {
+			@Override
+			public double decode(List<byte[]> lines) {
+				double checksum = 0;
+				for (byte[] line : lines) {
+					checksum += legacyDecode(GkUtils.toString(line));
+				}
+				return checksum;
+			}
+		});
+
+		run("GrblResponseDecoder", traffic, iterationCount, new Decoder() {
+			@Override
+			public double decode(List<byte[]> lines) {
+				GrblResponseDecoder decoder = new GrblResponseDecoder();
+				double checksum = 0;
+				for (byte[] line : lines) {
+					EnumGrblResponse response = decoder.decode(ByteBuffer.wrap(line));
+					if(response == EnumGrblResponse.STATUS_REPORT){
+						StatusReport report = decoder.getStatusReport();
+						checksum += report.getMachineX() + report.getMachineY() + report.getMachineZ()
+								  + report.getWorkX() + report.getWorkY() + report.getWorkZ();
+					}else if(response != EnumGrblResponse.OK){
+						checksum += decoder.getText().length();
+					}else{
+						checksum += 1;
+					}
+				}
+				return checksum;
+			}
+		});
+	}
+
+	/**
+	 * The former classification, as done in GrblCommunicator
+	 * @param data the line
+	 * @return a checksum of the decoded values
+	 */
+	private static double legacyDecode(String data){
+		String trimmedData = StringUtils.trim(data);
+		if(StringUtils.isNotEmpty(trimmedData)){
+			if(StringUtils.equals(trimmedData, "ok")){
+				return 1;
+			}else if(StringUtils.startsWith(trimmedData, "error:")){
+				return trimmedData.length();
+			}else if(StringUtils.startsWith(trimmedData, "<") && StringUtils.endsWith(trimmedData, ">")){
+				String mpos = StringUtils.substringBetween(trimmedData, "MPos:", ",WPos");
+				String wpos = StringUtils.substringBetween(trimmedData, "WPos:",">");
+				String[] machineCoordinates = StringUtils.split(mpos,",");
+				String[] workCoordinates = StringUtils.split(wpos,",");
+				BigDecimal result = BigDecimal.ZERO;
+				for (String coordinate : machineCoordinates) {
+					if(NumberUtils.isNumber(coordinate)){
+						result = result.add(new BigDecimal(coordinate));
+					}
+				}
+				for (String coordinate : workCoordinates) {
+					if(NumberUtils.isNumber(coordinate)){
+						result = result.add(new BigDecimal(coordinate));
+					}
+				}
+				return result.doubleValue();
+			}else if(StringUtils.startsWith(trimmedData, "Grbl")){
+				return trimmedData.length();
+			}else if(StringUtils.defaultString(trimmedData).matches("\\$[0-9]*=.*")){
+				return trimmedData.length();
+			}else if(StringUtils.defaultString(trimmedData).matches("\\[(G5|G28|G30|G92).*\\]")){
+				return trimmedData.length();
+			}else if(StringUtils.defaultString(trimmedData).matches("\\[(G0|G1|G2|G3).*\\]")){
+				return trimmedData.length();
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Run the benchmark for the given decoder and print the result
+	 * @param name the name of the decoder
+	 * @param traffic the lines to decode
+	 * @param iterationCount the number of measured iterations
+	 * @param decoder the decoder
+	 */
+	private static void run(String name, List<byte[]> traffic, int iterationCount, Decoder decoder){
+		double checksum = 0;
+		for (int i = 0; i < WARMUP_ITERATION_COUNT; i++) {
+			checksum += decoder.decode(traffic);
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < iterationCount; i++) {
+			checksum += decoder.decode(traffic);
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println(String.format(Locale.US, "%-20s %12.0f lines/s %10.1f ns/line (checksum %.0f)",
+				name,
+				(double) traffic.size() * iterationCount / seconds,
+				seconds * 1e9 / ((double) traffic.size() * iterationCount),
+				checksum));
+	}
+
+	/**
+	 * Generates the traffic : the connection sequence, followed by streaming lines
+	 * @param lineCount the number of lines
+	 * @return the lines
+	 */
+	private static List<byte[]> generateTraffic(int lineCount){
+		List<byte[]> traffic = new ArrayList<byte[]>(lineCount);
+		int i = 0;
+		while(traffic.size() < lineCount){
+			if(i < CONNECTION.length){
+				traffic.add(GkUtils.toBytes(CONNECTION[i]));
+			}else{
+				traffic.add(GkUtils.toBytes(STREAMING[(i - CONNECTION.length) % STREAMING.length]));
+			}
+			i++;
+		}
+		return traffic;
+	}
+
+	/**
+	 * Decoding of a list of lines
+	 */
+	private interface Decoder{
+		/**
+		 * Decode the given lines
+		 * @param lines the lines
+		 * @return a checksum of the decoded values, so the work is not optimized away
+		 */
+		double decode(List<byte[]> lines);
+	}
+}
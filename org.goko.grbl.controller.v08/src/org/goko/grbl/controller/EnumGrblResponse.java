@@ -0,0 +1,47 @@
+/*
+ *
+ *   Goko
+ *   Copyright (C) 2013  PsyKo
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.goko.grbl.controller;
+
+/**
+ * Kinds of lines received from Grbl
+ *
+ * @author PsyKo
+ *
+ */
+public enum EnumGrblResponse {
+	/** Blank line */
+	EMPTY,
+	/** Command acknowledgement */
+	OK,
+	/** Error response */
+	ERROR,
+	/** Status report, between '&lt;' and '&gt;' */
+	STATUS_REPORT,
+	/** Welcome message */
+	HEADER,
+	/** Setting report, like <code>$0=755.906</code> */
+	SETTING,
+	/** Offset report, like <code>[G54:0.000,0.000,0.000]</code> */
+	OFFSET,
+	/** Parser state report, like <code>[G0 G54 G17 G21 G90 G94 M0 M5 M9 T0 F0.]</code> */
+	PARSER_STATE,
+	/** Unknown format */
+	UNKNOWN;
+}
@@ -53,8 +53,10 @@ public abstract class Grbl implements DefaultControllerValues {
     public static final String CONFIGURATION = "$$";
 	/** Constant for Grbl used buffer value in value store */
     public static final String GRBL_USED_BUFFER = "GrblControllerUsedRxBuffer";
-	/** Grbl buffer size */
-	public static final int GRBL_BUFFER_SIZE = 120;
+	/** Grbl buffer size. The RX ring buffer holds 128 bytes (RX_BUFFER_SIZE in serial.h) but always keeps one slot empty.
+	 *  The former 120 bytes left a safety margin for the approximate count of the sent bytes, which is no longer needed now
+	 *  that every line is counted until its response (see {@link GrblStreamingBuffer}) */
+	public static final int GRBL_BUFFER_SIZE = 127;
 	/** G54 offset name */
 	public static final String G54_OFFSET = "G54";
 	/** G55 offset name */
@@ -20,12 +20,10 @@
 package org.goko.grbl.controller;
 
 import java.math.BigDecimal;
-import java.util.List;
+import java.nio.ByteBuffer;
 
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.math.NumberUtils;
-import org.goko.core.common.GkUtils;
-import org.goko.core.common.buffer.ByteCommandBuffer;
+import org.goko.core.common.buffer.ByteLineFramer;
 import org.goko.core.common.exception.GkException;
 import org.goko.core.common.exception.GkFunctionalException;
 import org.goko.core.common.measure.quantity.Length;
@@ -38,7 +36,6 @@ import org.goko.core.connection.IConnectionListener;
 import org.goko.core.connection.IConnectionService;
 import org.goko.core.gcode.bean.Tuple6b;
 import org.goko.core.log.GkLog;
-import org.goko.grbl.controller.bean.StatusReport;
 
 public class GrblCommunicator implements IConnectionDataListener, IConnectionListener {
 	/** LOG */
@@ -47,10 +44,16 @@ public class GrblCommunicator implements IConnectionDataListener, IConnectionLis
 	private GrblControllerService grbl;
 	/** Grbl end line delimiter */
 	private char endLineCharDelimiter;
+	/** Size of the incoming data buffer */
+	private static final int INCOMING_BUFFER_SIZE = 1024;
 	/** Buffer for incoming data	 */
-	private ByteCommandBuffer incomingBuffer;
+	private ByteLineFramer incomingBuffer;
+	/** Decoder of the received lines */
+	private GrblResponseDecoder responseDecoder;
 	/** The connection service */
 	private IConnectionService connectionService;
+	/** Reused buffer for outgoing data */
+	private ByteBuffer outgoingBuffer;
 
 	/**
 	 * Constructor
@@ -58,23 +61,27 @@ public class GrblCommunicator implements IConnectionDataListener, IConnectionLis
 	protected GrblCommunicator(GrblControllerService grbl) {
 		this.grbl = grbl;
 		endLineCharDelimiter = '\n';
-		incomingBuffer 		 = new ByteCommandBuffer((byte) endLineCharDelimiter);
+		incomingBuffer 		 = new ByteLineFramer(INCOMING_BUFFER_SIZE, (byte) endLineCharDelimiter);
+		outgoingBuffer 		 = ByteBuffer.allocate(256);
+		responseDecoder 	 = new GrblResponseDecoder();
 	}
 	/** (inheritDoc)
-	 * @see org.goko.core.connection.IConnectionDataListener#onDataReceived(java.util.List)
+	 * @see org.goko.core.connection.IConnectionDataListener#onDataReceived(java.nio.ByteBuffer)
 	 */
 	@Override
-	public void onDataReceived(List<Byte> data) throws GkException {
-		incomingBuffer.addAll(data);
-		while(incomingBuffer.hasNext()){
-			handleIncomingData(GkUtils.toString(incomingBuffer.unstackNextCommand()));
+	public void onDataReceived(ByteBuffer data) throws GkException {
+		while(data.hasRemaining()){
+			incomingBuffer.write(data);
+			while(incomingBuffer.hasNextLine()){
+				handleIncomingData(incomingBuffer.nextLine());
+			}
 		}
 	}
 	/** (inheritDoc)
-	 * @see org.goko.core.connection.IConnectionDataListener#onDataSent(java.util.List)
+	 * @see org.goko.core.connection.IConnectionDataListener#onDataSent(java.nio.ByteBuffer)
 	 */
 	@Override
-	public void onDataSent(List<Byte> data) throws GkException {
+	public void onDataSent(ByteBuffer data) throws GkException {
 		// TODO Auto-generated method stub
 
 	}
@@ -93,48 +100,49 @@ public class GrblCommunicator implements IConnectionDataListener, IConnectionLis
 	}
 	/**
 	 * Handling of incoming data
-	 * @param data the received data
+	 * @param data the received line
 	 * @throws GkException GkException
 	 */
-	protected void handleIncomingData(String data) throws GkException{
-		String trimmedData = StringUtils.trim(data);
-		if(StringUtils.isNotEmpty(trimmedData)){
-			/* Received OK response */
-			if(StringUtils.equals(trimmedData, Grbl.OK_RESPONSE)){
-				grbl.handleOkResponse();
-
-			/* Received error  */
-			}else if(StringUtils.startsWith(trimmedData, "error:")){
-				grbl.handleError(trimmedData);
-
-			/* Received status report  */
-			}else if(StringUtils.startsWith(trimmedData, "<") && StringUtils.endsWith(trimmedData, ">")){
-				grbl.handleStatusReport(parseStatusReport(trimmedData));
-
-			/* Received Grbl header */
-			}else if(StringUtils.startsWith(trimmedData, "Grbl")){
-				handleHeader(trimmedData);
-				grbl.initialiseConnectedState();
-			//	refreshStatus();
-
-			/* Received a configuration confirmation */
-			}else if(StringUtils.defaultString(trimmedData).matches("\\$[0-9]*=.*")){
-				grbl.handleConfigurationReading(trimmedData);
-
-			/* Received an offset position report */
-			}else if(StringUtils.defaultString(trimmedData).matches("\\[(G5|G28|G30|G92).*\\]")){
-				Tuple6b targetPoint = new Tuple6b().setNull();
-				String offsetName = parseCoordinateSystem(trimmedData, targetPoint);
-				grbl.setOffsetCoordinate(offsetName, targetPoint);
-
-			/* Parser state report */
-			}else if(StringUtils.defaultString(trimmedData).matches("\\[(G0|G1|G2|G3).*\\]")){
-				grbl.receiveParserState(StringUtils.substringBetween(trimmedData, "[","]"));
-			/* Unkown format received */
-			}else{
-				LOG.error("Ignoring received data "+ trimmedData);
-				grbl.getApplicativeLogService().warning("Ignoring received data "+ trimmedData, GrblControllerService.SERVICE_ID);
-			}
+	protected void handleIncomingData(ByteBuffer data) throws GkException{
+		switch(responseDecoder.decode(data)){
+		case EMPTY:
+			break;
+		/* Received OK response */
+		case OK:
+			grbl.handleOkResponse();
+			break;
+		/* Received error  */
+		case ERROR:
+			grbl.handleError(responseDecoder.getText());
+			break;
+		/* Received status report  */
+		case STATUS_REPORT:
+			grbl.handleStatusReport(responseDecoder.getStatusReport());
+			break;
+		/* Received Grbl header */
+		case HEADER:
+			handleHeader(responseDecoder.getText());
+			grbl.initialiseConnectedState();
+			break;
+		/* Received a configuration confirmation */
+		case SETTING:
+			grbl.handleConfigurationReading(responseDecoder.getText());
+			break;
+		/* Received an offset position report */
+		case OFFSET:
+			Tuple6b targetPoint = new Tuple6b().setNull();
+			String offsetName = parseCoordinateSystem(responseDecoder.getText(), targetPoint);
+			grbl.setOffsetCoordinate(offsetName, targetPoint);
+			break;
+		/* Parser state report */
+		case PARSER_STATE:
+			grbl.receiveParserState(StringUtils.substringBetween(responseDecoder.getText(), "[","]"));
+			break;
+		/* Unkown format received */
+		default:
+			LOG.error("Ignoring received data "+ responseDecoder.getText());
+			grbl.getApplicativeLogService().warning("Ignoring received data "+ responseDecoder.getText(), GrblControllerService.SERVICE_ID);
+			break;
 		}
 	}
 
@@ -148,50 +156,6 @@ public class GrblCommunicator implements IConnectionDataListener, IConnectionLis
 			LOG.info("Grbl version is "+tokens[1]);
 		}
 	}
-	/**
-	 * Create a status report from the given string
-	 * @param strStatusReport the String representing the status report
-	 * @return {@link StatusReport}
-	 * @throws GkException 
-	 */
-	private StatusReport parseStatusReport(String strStatusReport) throws GkException{
-		StatusReport result = new StatusReport();
-		int comma = StringUtils.indexOf(strStatusReport, ",");
-		String state = StringUtils.substring(strStatusReport, 1, comma);
-		GrblMachineState grblState = grbl.getGrblStateFromString (state);
-		result.setState(grblState);
-
-		// Looking for MPosition
-		String mpos = StringUtils.substringBetween(strStatusReport, "MPos:", ",WPos");
-		String wpos = StringUtils.substringBetween(strStatusReport, "WPos:",">");
-		Tuple6b machinePosition = new Tuple6b().setNull();
-		Tuple6b workPosition = new Tuple6b().setNull();
-		String[] machineCoordinates = StringUtils.split(mpos,",");
-
-		parseTuple(machineCoordinates, machinePosition);
-		result.setMachinePosition(machinePosition);
-
-		String[] workCoordinates = StringUtils.split(wpos,",");
-		parseTuple(workCoordinates, workPosition);
-		result.setWorkPosition(workPosition);
-
-		return result;
-	}
-
-	private void parseTuple(String[] values, Tuple6b target) throws GkException{
-		if(values != null && values.length >= 3){
-			Unit<Length> unit = grbl.getConfiguration().getReportUnit();
-			if(NumberUtils.isNumber(values[0])){
-				target.setX(NumberQuantity.of(new BigDecimal(values[0]), unit));
-			}
-			if(NumberUtils.isNumber(values[1])){
-				target.setY(NumberQuantity.of(new BigDecimal(values[1]), unit));
-			}
-			if(NumberUtils.isNumber(values[2])){
-				target.setZ(NumberQuantity.of(new BigDecimal(values[2]), unit));
-			}
-		}
-	}
 	private String parseCoordinateSystem(String strOrigin, Tuple6b targetPoint) throws GkException{
 		String identifier = StringUtils.substringBetween(strOrigin, "[", ":");
 		String valuesGroup = StringUtils.substringBetween(strOrigin, ":", "]");
@@ -210,14 +174,6 @@ public class GrblCommunicator implements IConnectionDataListener, IConnectionLis
 
 		return identifier;
 	}
-	/**
-	 * Add the end line character at the end of the given list
-	 * @param list the list
-	 */
-	private void addEndLineCharacter(List<Byte> list){
-		//command.add(new Byte((byte) endLineCharDelimiter));
-		list.add(new Byte((byte) endLineCharDelimiter));
-	}
 	/**
 	 * @return the connectionService
 	 */
@@ -233,16 +189,83 @@ public class GrblCommunicator implements IConnectionDataListener, IConnectionLis
 		this.connectionService.addConnectionListener(this);
 	}
 
-	protected void send(List<Byte> lstByte) throws GkException{
-		addEndLineCharacter(lstByte);
-		getConnectionService().send(lstByte);
+	/**
+	 * Send the given bytes followed by the end line character
+	 * @param data the bytes to send
+	 * @throws GkException GkException
+	 */
+	protected synchronized void send(byte[] data) throws GkException{
+		ByteBuffer buffer = getOutgoingBuffer(data.length + 1);
+		buffer.put(data);
+		buffer.put((byte) endLineCharDelimiter);
+		buffer.flip();
+		sendCountedLine(buffer, GrblStreamingBuffer.NO_COMMAND);
+	}
+
+	/**
+	 * Send a line of a streamed file
+	 * @param line the bytes of the line, end line character included
+	 * @param idCommand the id of the command held by the line
+	 * @throws GkException GkException
+	 */
+	protected synchronized void sendLine(byte[] line, int idCommand) throws GkException{
+		sendCountedLine(ByteBuffer.wrap(line), idCommand);
+	}
+
+	/**
+	 * Register the given line in the character counting buffer, then send it. Both happen under the lock of the communicator
+	 * so the registered lines are in the order of the sent lines.
+	 * @param line the line, end line character included
+	 * @param idCommand the id of the command held by the line
+	 * @throws GkException GkException
+	 */
+	private void sendCountedLine(ByteBuffer line, int idCommand) throws GkException{
+		GrblStreamingBuffer streamingBuffer = grbl.getStreamingBuffer();
+		streamingBuffer.add(line.remaining(), idCommand);
+		try{
+			getConnectionService().send(line);
+		}catch(GkException e){
+			streamingBuffer.removeLast();
+			throw e;
+		}
+		grbl.updateUsedGrblBuffer();
+	}
+
+	/**
+	 * Send the given bytes as is
+	 * @param data the bytes to send
+	 * @throws GkException GkException
+	 */
+	protected synchronized void sendWithoutEndLineCharacter(byte[] data) throws GkException{
+		ByteBuffer buffer = getOutgoingBuffer(data.length);
+		buffer.put(data);
+		buffer.flip();
+		getConnectionService().send(buffer);
 	}
 
-	protected void sendWithoutEndLineCharacter(List<Byte> lstByte) throws GkException{
-		getConnectionService().send(lstByte);
+	/**
+	 * Send the given bytes as is, with the important priority
+	 * @param data the bytes to send
+	 * @throws GkException GkException
+	 */
+	protected synchronized void sendImmediately(byte[] data) throws GkException{
+		ByteBuffer buffer = getOutgoingBuffer(data.length);
+		buffer.put(data);
+		buffer.flip();
+		getConnectionService().send(buffer, DataPriority.IMPORTANT);
 	}
 
-	protected void sendImmediately(List<Byte> lstByte) throws GkException{
-		getConnectionService().send(lstByte, DataPriority.IMPORTANT);
+	/**
+	 * Returns the cleared outgoing buffer, able to hold at least the given number of bytes.
+	 * The connection service copies the sent data, so the same buffer is reused for every command.
+	 * @param capacity the required capacity
+	 * @return the outgoing buffer
+	 */
+	private ByteBuffer getOutgoingBuffer(int capacity){
+		if(outgoingBuffer.capacity() < capacity){
+			outgoingBuffer = ByteBuffer.allocate(Math.max(capacity, outgoingBuffer.capacity() * 2));
+		}
+		outgoingBuffer.clear();
+		return outgoingBuffer;
 	}
 }
@@ -22,12 +22,9 @@ package org.goko.grbl.controller;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -48,11 +45,14 @@ import org.goko.core.common.measure.units.Unit;
 import org.goko.core.config.GokoPreference;
 import org.goko.core.connection.IConnectionService;
 import org.goko.core.controller.ICoordinateSystemAdapter;
+import org.goko.core.controller.IMotionPlannerAdapter;
 import org.goko.core.controller.IThreeAxisControllerAdapter;
 import org.goko.core.controller.action.IGkControllerAction;
 import org.goko.core.controller.bean.EnumControllerAxis;
 import org.goko.core.controller.bean.MachineValue;
 import org.goko.core.controller.bean.MachineValueDefinition;
+import org.goko.core.controller.bean.MotionPlannerSettings;
+import org.goko.core.controller.event.MachineValueBatchUpdateEvent;
 import org.goko.core.controller.event.MachineValueUpdateEvent;
 import org.goko.core.gcode.bean.GCodeCommand;
 import org.goko.core.gcode.bean.GCodeContext;
@@ -68,6 +68,7 @@ import org.goko.core.log.GkLog;
 import org.goko.grbl.controller.bean.GrblExecutionError;
 import org.goko.grbl.controller.bean.StatusReport;
 import org.goko.grbl.controller.configuration.GrblConfiguration;
+import org.goko.grbl.controller.configuration.GrblDoubleSetting;
 import org.goko.grbl.controller.configuration.GrblSetting;
 import org.goko.grbl.controller.executionqueue.GrblGCodeExecutionToken;
 import org.goko.grbl.controller.topic.GrblExecutionErrorTopic;
@@ -80,7 +81,7 @@ import org.osgi.service.event.EventAdmin;
  * @author PsyKo
  *
  */
-public class GrblControllerService extends EventDispatcher implements IGrblControllerService, IThreeAxisControllerAdapter, ICoordinateSystemAdapter {
+public class GrblControllerService extends EventDispatcher implements IGrblControllerService, IThreeAxisControllerAdapter, ICoordinateSystemAdapter, IMotionPlannerAdapter {
 	/**  Service ID */
 	public static final String SERVICE_ID = "Grbl v0.8 Controller";
 	/** Log */
@@ -92,11 +93,11 @@ public class GrblControllerService extends EventDispatcher implements IGrblContr
 	/** Sending runnable */
 	private GrblStreamingRunnable grblStreamingRunnable;
 	/** Status polling */
-	private Timer statusPollingTimer;
+	private GrblStatusPoller statusPoller;
 	/** Controller action factory*/
 	private GrblActionFactory grblActionFactory;
-	/** Grbl used buffer spaces */
-	private int usedGrblBuffer;
+	/** Character counting model of the Grbl RX buffer */
+	private GrblStreamingBuffer streamingBuffer;
 	/** Grbl configuration */
 	private GrblConfiguration configuration;
 	/** Applicative log service */
@@ -110,7 +111,9 @@ public class GrblControllerService extends EventDispatcher implements IGrblContr
 	 * Constructor
 	 */
 	public GrblControllerService() {
+		streamingBuffer 	 = new GrblStreamingBuffer(Grbl.GRBL_BUFFER_SIZE);
 		communicator		 = new GrblCommunicator(this);
+		statusPoller 		 = new GrblStatusPoller(this);
 	}
 	
 	/** (inheritDoc)
@@ -138,23 +141,11 @@ public class GrblControllerService extends EventDispatcher implements IGrblContr
 	}
 
 	protected void stopStatusPolling(){
-		statusPollingTimer.cancel();
+		statusPoller.stop();
 	}
 
 	public void startStatusPolling() {
-		statusPollingTimer = new Timer();
-		TimerTask task = new TimerTask(){
-			@Override
-			public void run() {
-				try {
-					refreshStatus();
-				} catch (GkException e) {
-					LOG.error(e);
-				}
-			}
-
-		};
-		statusPollingTimer.scheduleAtFixedRate(task, new Date(), 100);
+		statusPoller.start();
 	}
 
 
@@ -166,20 +157,43 @@ public class GrblControllerService extends EventDispatcher implements IGrblContr
 		notifyListeners(evt);
 	}
 
+	@EventListener(MachineValueBatchUpdateEvent.class)
+	public void onMachineValueBatchUpdate(MachineValueBatchUpdateEvent evt){
+		notifyListeners(evt);
+	}
+
 	/** (inheritDoc)
 	 * @see org.goko.core.common.service.IGokoService#stop()
 	 */
 	@Override
 	public void stop() throws GkException {
-		// TODO Auto-generated method stub
+		if(grblState != null){
+			grblState.dispose();
+		}
+	}
 
+	/**
+	 * Encode the given command into the line sent to Grbl
+	 * @param command the command
+	 * @return the bytes of the line, end line character included
+	 * @throws GkException GkException
+	 */
+	protected byte[] encodeLine(GCodeCommand command) throws GkException{
+		byte[] byteCommand = getGCodeService().convert(command);
+		byte[] line = new byte[byteCommand.length + 1];
+		System.arraycopy(byteCommand, 0, line, 0, byteCommand.length);
+		line[byteCommand.length] = '\n';
+		return line;
 	}
 
-	public void sendCommand(GCodeCommand command) throws GkException{
-		List<Byte> byteCommand = GkUtils.toBytesList(getGCodeService().convert(command));
-		int usedBufferCount = CollectionUtils.size(byteCommand);
-		communicator.send( byteCommand );
-		setUsedGrblBuffer(usedGrblBuffer + usedBufferCount);
+	/**
+	 * Send a line encoded with {@link #encodeLine(GCodeCommand)}
+	 * @param line the line
+	 * @param idCommand the id of the command held by the line
+	 * @throws GkException GkException
+	 */
+	protected void sendLine(byte[] line, Integer idCommand) throws GkException{
+		communicator.sendLine(line, idCommand);
 	}
 
 	/** (inheritDoc)
@@ -316,25 +330,32 @@ public class GrblControllerService extends EventDispatcher implements IGrblContr
 	}
 
 	/**
-	 * Refresh the status of the remote Grbl controller
+	 * Refresh the status of the remote Grbl controller. The request is merged with the poll in progress, if any
 	 * @throws GkException GkException
 	 */
 	public void refreshStatus() throws GkException{
-		if(isActivePollingEnabled()){
-			communicator.sendWithoutEndLineCharacter( GkUtils.toBytesList(Grbl.CURRENT_STATUS) );
-		}
+		statusPoller.requestPoll();
+	}
+
+	/**
+	 * Send a status request to Grbl. The status character is handled in real time by Grbl, so it bypasses the queued data.
+	 * It never enters the Grbl RX buffer, so it is not counted in the streaming buffer
+	 * @throws GkException GkException
+	 */
+	protected void sendStatusPoll() throws GkException{
+		communicator.sendImmediately( new byte[]{Grbl.STATUS_COMMAND} );
 	}
 
 	public void refreshSpaceCoordinates() throws GkException{
-		communicator.send( GkUtils.toBytesList(Grbl.VIEW_PARAMETERS) );
+		communicator.send( GkUtils.toBytes(Grbl.VIEW_PARAMETERS) );
 	}
 
 	public void refreshParserState() throws GkException{
-		communicator.send( GkUtils.toBytesList(Grbl.PARSER_STATE) );
+		communicator.send( GkUtils.toBytes(Grbl.PARSER_STATE) );
 	}
 
 	public void refreshConfiguration() throws GkException{
-		communicator.send( GkUtils.toBytesList(Grbl.CONFIGURATION) );
+		communicator.send( GkUtils.toBytes(Grbl.CONFIGURATION) );
 	}
 
 	protected void handleConfigurationReading(String cofigurationMessage) throws GkException{
@@ -358,12 +379,16 @@ public class GrblControllerService extends EventDispatcher implements IGrblContr
 	}
 
 	protected void handleError(String errorMessage) throws GkException{
+		int idCommand = streamingBuffer.acknowledge();
+		statusPoller.onAcknowledgement();
+		updateUsedGrblBuffer();
 		if(executionQueue != null){
 			GrblGCodeExecutionToken currentToken = executionQueue.getCurrentToken();
 			String formattedErrorMessage = StringUtils.EMPTY;
-			if(currentToken != null && currentToken.getSentCommandCount() > 0){
+			if(currentToken != null && idCommand != GrblStreamingBuffer.NO_COMMAND && currentToken.getCommandById(idCommand) != null){
 				 // Error occured during GCode programm execution, let's give the source command
-				GCodeCommand command = currentToken.markNextCommandAsError();
+				GCodeCommand command = currentToken.getCommandById(idCommand);
+				currentToken.markAsError(idCommand);
 				formattedErrorMessage = "Error with command '"+command.toString()+"' : "+ StringUtils.substringAfter(errorMessage, "error: ");				
 			}else{
 				formattedErrorMessage = "Grbl Error : "+ StringUtils.substringAfter(errorMessage, "error: ");
@@ -389,19 +414,18 @@ public class GrblControllerService extends EventDispatcher implements IGrblContr
 
 	
 	protected void handleOkResponse() throws GkException{
+		int idCommand = streamingBuffer.acknowledge();
+		statusPoller.onAcknowledgement();
+		updateUsedGrblBuffer();
 		GrblGCodeExecutionToken currentToken = executionQueue.getCurrentToken();
-		if(currentToken != null){
-			GCodeCommand command = currentToken.markNextCommandAsConfirmed();
-			if(command != null ){
-				String strCommand = new String(getGCodeService().convert(command));
-				setUsedGrblBuffer(usedGrblBuffer - StringUtils.length(strCommand));
-			}
-			grblStreamingRunnable.releaseBufferSpaceMutex();
+		if(currentToken != null && idCommand != GrblStreamingBuffer.NO_COMMAND && currentToken.getCommandById(idCommand) != null){
+			currentToken.markAsExecuted(idCommand);
 		}
 	}
 
 	protected void initialiseConnectedState() throws GkException{
-		setUsedGrblBuffer(0);
+		streamingBuffer.clear();
+		updateUsedGrblBuffer();
 		refreshConfiguration();
 		refreshSpaceCoordinates();
 		refreshParserState();
@@ -409,9 +433,9 @@ public class GrblControllerService extends EventDispatcher implements IGrblContr
 		
 	protected void handleStatusReport(StatusReport statusReport) throws GkException{
 		GrblMachineState previousState = getState();
+		statusPoller.onStatusReport(statusReport.getState());
 		grblState.setState(statusReport.getState());		
-		grblState.setMachinePosition(statusReport.getMachinePosition(), getConfiguration().getReportUnit());
-		grblState.setWorkPosition(statusReport.getWorkPosition(), getConfiguration().getReportUnit());
+		grblState.updatePositions(statusReport, getConfiguration().getReportUnit());
 		
 		if(!ObjectUtils.equals(previousState, statusReport.getState())){			
 			eventAdmin.sendEvent(new Event(CONTROLLER_TOPIC_STATE_UPDATE, (Map<String, ?>)null));
@@ -422,26 +446,13 @@ public class GrblControllerService extends EventDispatcher implements IGrblContr
 		return grblState.getState();
 	}
 	
-	protected GrblMachineState getGrblStateFromString(String code){
-		switch(code){
-			case "Alarm": return GrblMachineState.ALARM;
-			case "Idle" : return GrblMachineState.READY;
-			case "Queue" : return GrblMachineState.MOTION_HOLDING;
-			case "Run" : return GrblMachineState.MOTION_RUNNING;
-			case "Home" : return GrblMachineState.HOMING;
-			case "Check" : return GrblMachineState.CHECK;
-			default: return GrblMachineState.UNDEFINED;
-		}
-	}
-
 	/*
 	 *  Action related methods
 	 */
 	
 	public void startHomingSequence() throws GkException{
-		List<Byte> homeCommand = new ArrayList<Byte>();
-		homeCommand.addAll(GkUtils.toBytesList(Grbl.HOME_COMMAND));
-		communicator.send( homeCommand );
+		communicator.send( GkUtils.toBytes(Grbl.HOME_COMMAND) );
+		statusPoller.onMotionCommand();
 	}
 	
 	/**
@@ -450,9 +461,8 @@ public class GrblControllerService extends EventDispatcher implements IGrblContr
 	 * @throws GkException GkException
 	 */
 	public void pauseMotion() throws GkException{
-		List<Byte> pauseCommand = new ArrayList<Byte>();
-		pauseCommand.add(Grbl.PAUSE_COMMAND);
-		communicator.sendImmediately( pauseCommand );
+		// Real time character : not stored in the Grbl RX buffer, not counted
+		communicator.sendImmediately( new byte[]{Grbl.PAUSE_COMMAND} );
 		executionQueue.setPaused(true);
 	}
 
@@ -462,16 +472,15 @@ public class GrblControllerService extends EventDispatcher implements IGrblContr
 	 * @throws GkException GkException
 	 */
 	public void stopMotion() throws GkException{
-		List<Byte> stopCommand = new ArrayList<Byte>();
-		stopCommand.add(Grbl.PAUSE_COMMAND);
-		stopCommand.add(Grbl.RESET_COMMAND); // TODO : it seems that resetting while in motion causes the GRBL to go back to alarm state. Wait motion to be complete before resetting
-		communicator.sendImmediately(stopCommand);
+		// TODO : it seems that resetting while in motion causes the GRBL to go back to alarm state. Wait motion to be complete before resetting
+		// Real time characters : not counted. The reset empties the Grbl RX buffer
+		communicator.sendImmediately(new byte[]{Grbl.PAUSE_COMMAND, Grbl.RESET_COMMAND});
 
 		if(executionQueue != null){
 			executionQueue.clear();
-			grblStreamingRunnable.releaseBufferSpaceMutex();
 		}
-		setUsedGrblBuffer(0);
+		streamingBuffer.clear();
+		updateUsedGrblBuffer();
 	}
 
 	/**
@@ -480,9 +489,9 @@ public class GrblControllerService extends EventDispatcher implements IGrblContr
 	 * @throws GkException GkException
 	 */
 	public void startMotion() throws GkException{
-		List<Byte> startResumeCommand = new ArrayList<Byte>();
-		startResumeCommand.add(Grbl.RESUME_COMMAND);
-		communicator.sendWithoutEndLineCharacter( startResumeCommand );						
+		// Real time character : not stored in the Grbl RX buffer, not counted
+		communicator.sendWithoutEndLineCharacter( new byte[]{Grbl.RESUME_COMMAND} );						
+		statusPoller.onMotionCommand();
 		if(executionQueue != null){
 			executionQueue.setPaused(false);
 		}
@@ -503,10 +512,9 @@ public class GrblControllerService extends EventDispatcher implements IGrblContr
 		}
 		command += step.to(getCurrentGCodeContext().getUnit().getUnit()).value();
 		command += "F"+feedrate;
-		List<Byte> lstBytes = GkUtils.toBytesList(command);
-		communicator.send(lstBytes);
-		List<Byte> distanceModeBackup = GkUtils.toBytesList(oldDistanceMode);
-		communicator.send(distanceModeBackup);
+		communicator.send(GkUtils.toBytes(command));
+		communicator.send(GkUtils.toBytes(oldDistanceMode));
+		statusPoller.onMotionCommand();
 	}
 	
 	/** (inheritDoc)
@@ -518,20 +526,27 @@ public class GrblControllerService extends EventDispatcher implements IGrblContr
 	}
 
 	public void resetZero(List<String> axes) throws GkException{
-		List<Byte> lstBytes = GkUtils.toBytesList("G92");
+		StringBuilder command = new StringBuilder("G92");
 		if(CollectionUtils.isNotEmpty(axes)){
 			for (String axe : axes) {
-				lstBytes.addAll(GkUtils.toBytesList(axe+"0"));
+				command.append(axe).append("0");
 			}
 		}else{
-			lstBytes.addAll( GkUtils.toBytesList("X0Y0Z0"));
+			command.append("X0Y0Z0");
 		}
-		communicator.send(lstBytes);
+		communicator.send(GkUtils.toBytes(command.toString()));
 	}
 
 	public void killAlarm() throws GkException{
-		List<Byte> lstBytes = GkUtils.toBytesList("$X");
-		communicator.send(lstBytes);
+		communicator.send(GkUtils.toBytes(Grbl.KILL_ALARM_COMMAND));
+	}
+
+	/**
+	 * Indicates if a GCode file is being streamed
+	 * @return <code>true</code> if an execution token is running
+	 */
+	protected boolean isStreaming(){
+		return executionQueue != null && executionQueue.getCurrentToken() != null;
 	}
 
 	/**
@@ -539,16 +554,22 @@ public class GrblControllerService extends EventDispatcher implements IGrblContr
 	 * @throws GkException  GkException
 	 */
 	public int getUsedGrblBuffer() throws GkException {
-		return grblState.getUsedGrblBuffer();
+		return streamingBuffer.getUsedSpace();
 	}
 
 	/**
-	 * @param usedGrblBuffer the usedGrblBuffer to set
+	 * Publish the used space of the Grbl RX buffer in the machine values
 	 * @throws GkException GkException
 	 */
-	public void setUsedGrblBuffer(int usedGrblBuffer) throws GkException {
-		this.usedGrblBuffer = usedGrblBuffer;
-		grblState.setUsedGrblBuffer(usedGrblBuffer);
+	protected void updateUsedGrblBuffer() throws GkException {
+		grblState.setUsedGrblBuffer(streamingBuffer.getUsedSpace());
+	}
+
+	/**
+	 * @return the character counting model of the Grbl RX buffer
+	 */
+	protected GrblStreamingBuffer getStreamingBuffer() {
+		return streamingBuffer;
 	}
 
 	/**
@@ -559,6 +580,39 @@ public class GrblControllerService extends EventDispatcher implements IGrblContr
 		return configuration;
 	}
 
+	/** (inheritDoc)
+	 * @see org.goko.core.controller.IMotionPlannerAdapter#getMotionPlannerSettings()
+	 */
+	@Override
+	public MotionPlannerSettings getMotionPlannerSettings() throws GkException {
+		MotionPlannerSettings settings = new MotionPlannerSettings();
+		if(configuration != null){
+			// Grbl 0.8 uses the same rates for the 3 axis : seek rate in mm/min, acceleration in mm/sec^2
+			double seekRate 	= getSettingValue(configuration.getDefaultSeek()) / 60;
+			double acceleration = getSettingValue(configuration.getAcceleration());
+			for (int axis = 0; axis < 3; axis++) {
+				if(seekRate > 0){
+					settings.setMaximumVelocity(axis, seekRate);
+				}
+				if(acceleration > 0){
+					settings.setAcceleration(axis, acceleration);
+				}
+			}
+			double junctionDeviation = getSettingValue(configuration.getJunctionDeviation());
+			if(junctionDeviation > 0){
+				settings.setJunctionDeviation(junctionDeviation);
+			}
+		}
+		return settings;
+	}
+
+	private double getSettingValue(GrblDoubleSetting setting){
+		if(setting == null || setting.getValue() == null){
+			return 0;
+		}
+		return setting.getValue();
+	}
+
 	/**
 	 * @param configuration the configuration to set
 	 * @throws GkException GkException
@@ -568,11 +622,8 @@ public class GrblControllerService extends EventDispatcher implements IGrblContr
 		this.configuration = configuration;
 		if(CollectionUtils.isNotEmpty( configuration.getLstGrblSetting() )){
 			List<GrblSetting<?>> lstSetting = configuration.getLstGrblSetting();
-			List<Byte> cfgCommand = new ArrayList<Byte>();
 			for (GrblSetting<?> grblSetting : lstSetting) {
-				cfgCommand.addAll(GkUtils.toBytesList(grblSetting.getIdentifier()+"="+grblSetting.getValueAsString() ));
-				communicator.send( cfgCommand );
-				cfgCommand.clear();
+				communicator.send( GkUtils.toBytes(grblSetting.getIdentifier()+"="+grblSetting.getValueAsString()) );
 			}
 		}
 	}
@@ -661,8 +712,8 @@ public class GrblControllerService extends EventDispatcher implements IGrblContr
 	 */
 	@Override
 	public void setCurrentCoordinateSystem(EnumCoordinateSystem cs) throws GkException {
-		communicator.send( GkUtils.toBytesList( String.valueOf(cs)) );
-		communicator.send( GkUtils.toBytesList( "$G" ) );
+		communicator.send( GkUtils.toBytes( String.valueOf(cs)) );
+		communicator.send( GkUtils.toBytes( "$G" ) );
 	}
 	/** (inheritDoc)
 	 * @see org.goko.core.controller.ICoordinateSystemAdapter#resetCurrentCoordinateSystem()
@@ -693,8 +744,8 @@ public class GrblControllerService extends EventDispatcher implements IGrblContr
 		cmd += "X"+getPositionAsString(mPos.getX());
 		cmd += "Y"+getPositionAsString(mPos.getY());
 		cmd += "Z"+getPositionAsString(mPos.getZ());
-		communicator.send( GkUtils.toBytesList( cmd ) );
-		communicator.send( GkUtils.toBytesList( Grbl.VIEW_PARAMETERS ) );
+		communicator.send( GkUtils.toBytes( cmd ) );
+		communicator.send( GkUtils.toBytes( Grbl.VIEW_PARAMETERS ) );
 	}	
 	
 	/**
@@ -731,6 +782,14 @@ public class GrblControllerService extends EventDispatcher implements IGrblContr
 		return grblState.isActivePolling();
 	}
 
+	/** (inheritDoc)
+	 * @see org.goko.grbl.controller.IGrblControllerService#getStatusPollingRate()
+	 */
+	@Override
+	public double getStatusPollingRate() {
+		return statusPoller.getEffectiveRate();
+	}
+
 	/** (inheritDoc)
 	 * @see org.goko.grbl.controller.IGrblControllerService#setCheckModeEnabled(boolean)
 	 */
@@ -738,7 +797,7 @@ public class GrblControllerService extends EventDispatcher implements IGrblContr
 	public void setCheckModeEnabled(boolean enabled) throws GkException {		
 		if((enabled && ObjectUtils.equals(GrblMachineState.READY, getState())) || // Check mode is disabled and we want to enable it
 			(!enabled && ObjectUtils.equals(GrblMachineState.CHECK, getState())) ){ // Check mode is enabled and we want to disable it
-			communicator.send(GkUtils.toBytesList(Grbl.CHECK_MODE));
+			communicator.send(GkUtils.toBytes(Grbl.CHECK_MODE));
 		}else{
 			throw new GkFunctionalException("GRBL-001", String.valueOf(enabled), getState().getLabel());
 		}
@@ -0,0 +1,351 @@
+/*
+ *
+ *   Goko
+ *   Copyright (C) 2013  PsyKo
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.goko.grbl.controller;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.goko.core.common.GkUtils;
+import org.goko.grbl.controller.bean.StatusReport;
+
+/**
+ * Decoder for the lines received from Grbl.
+ * <p>
+ * The line is classified by looking at its first and last bytes, without creating any String. Status reports are parsed
+ * in the same pass, and their positions are written as doubles into a {@link StatusReport} reused for every report.
+ * The text of the line is only created on demand, for the less frequent lines (errors, settings, offsets...).
+ * </p>
+ * <p>
+ * The decoder is not thread safe, and the decoded values are only valid until the next call to {@link #decode(ByteBuffer)}.
+ * </p>
+ * @author PsyKo
+ *
+ */
+public class GrblResponseDecoder {
+	/** Error response prefix */
+	private static final byte[] ERROR_PREFIX = GkUtils.toBytes("error:");
+	/** Header prefix */
+	private static final byte[] HEADER_PREFIX = GkUtils.toBytes("Grbl");
+	/** Offset reports prefixes */
+	private static final byte[][] OFFSET_PREFIXES = {GkUtils.toBytes("G5"), GkUtils.toBytes("G28"), GkUtils.toBytes("G30"), GkUtils.toBytes("G92")};
+	/** Parser state reports prefixes */
+	private static final byte[][] PARSER_STATE_PREFIXES = {GkUtils.toBytes("G0"), GkUtils.toBytes("G1"), GkUtils.toBytes("G2"), GkUtils.toBytes("G3")};
+	/** Machine position field of the status report */
+	private static final byte[] MACHINE_POSITION = GkUtils.toBytes("MPos");
+	/** Work position field of the status report */
+	private static final byte[] WORK_POSITION = GkUtils.toBytes("WPos");
+	/** Names of the states in the status report */
+	private static final byte[][] STATE_NAMES = {GkUtils.toBytes("Alarm"), GkUtils.toBytes("Idle"), GkUtils.toBytes("Queue"),
+												 GkUtils.toBytes("Run"), GkUtils.toBytes("Home"), GkUtils.toBytes("Check")};
+	/** States matching the names in STATE_NAMES */
+	private static final GrblMachineState[] STATES = {GrblMachineState.ALARM, GrblMachineState.READY, GrblMachineState.MOTION_HOLDING,
+													  GrblMachineState.MOTION_RUNNING, GrblMachineState.HOMING, GrblMachineState.CHECK};
+	/** Powers of ten exactly represented as double */
+	private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+												   1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+	/** The reused status report */
+	private StatusReport statusReport;
+	/** Reused coordinates of the position being parsed */
+	private double[] coordinates;
+	/** The line being decoded */
+	private ByteBuffer line;
+	/** Index of the first significant byte */
+	private int start;
+	/** Index following the last significant byte */
+	private int end;
+	/** Index of the next byte to read */
+	private int position;
+	/** Text of the decoded line, created on demand */
+	private String text;
+
+	/**
+	 * Constructor
+	 */
+	public GrblResponseDecoder() {
+		statusReport = new StatusReport();
+		coordinates  = new double[3];
+	}
+
+	/**
+	 * Classify the given line, and parse it if it's a status report. The position of the buffer is not modified
+	 * @param line the line, without its end line character
+	 * @return the {@link EnumGrblResponse} of the line
+	 */
+	public EnumGrblResponse decode(ByteBuffer line){
+		this.line 	= line;
+		this.text 	= null;
+		this.start 	= line.position();
+		this.end 	= line.limit();
+		while(start < end && isWhitespace(line.get(start))){
+			start++;
+		}
+		while(end > start && isWhitespace(line.get(end - 1))){
+			end--;
+		}
+		if(start == end){
+			return EnumGrblResponse.EMPTY;
+		}
+		byte first = line.get(start);
+		byte last  = line.get(end - 1);
+		switch(first){
+		case 'o':
+			if(end - start == 2 && line.get(start + 1) == 'k'){
+				return EnumGrblResponse.OK;
+			}
+			break;
+		case 'e':
+			if(startsWith(start, ERROR_PREFIX)){
+				return EnumGrblResponse.ERROR;
+			}
+			break;
+		case '<':
+			if(last == '>'){
+				parseStatusReport();
+				return EnumGrblResponse.STATUS_REPORT;
+			}
+			break;
+		case 'G':
+			if(startsWith(start, HEADER_PREFIX)){
+				return EnumGrblResponse.HEADER;
+			}
+			break;
+		case '$':
+			int index = start + 1;
+			while(index < end && isDigit(line.get(index))){
+				index++;
+			}
+			if(index < end && line.get(index) == '='){
+				return EnumGrblResponse.SETTING;
+			}
+			break;
+		case '[':
+			if(last == ']'){
+				if(startsWithAny(start + 1, OFFSET_PREFIXES)){
+					return EnumGrblResponse.OFFSET;
+				}else if(startsWithAny(start + 1, PARSER_STATE_PREFIXES)){
+					return EnumGrblResponse.PARSER_STATE;
+				}
+			}
+			break;
+		}
+		return EnumGrblResponse.UNKNOWN;
+	}
+
+	/**
+	 * Parse a status report like <code>&lt;Idle,MPos:5.529,0.560,7.000,WPos:1.529,-5.440,-0.000&gt;</code>
+	 */
+	private void parseStatusReport(){
+		statusReport.reset();
+		position = start + 1;
+		int stateEnd = indexOf((byte)',', position, end - 1);
+		statusReport.setState(findState(position, stateEnd));
+		position = stateEnd;
+		// Loop over the fields
+		while(position < end - 1){
+			position++; // Skip the separator
+			int nameStart = position;
+			int nameEnd = indexOf((byte)':', nameStart, end - 1);
+			position = nameEnd + 1;
+			if(regionEquals(nameStart, nameEnd, MACHINE_POSITION)){
+				if(parseCoordinates()){
+					statusReport.setMachinePosition(coordinates[0], coordinates[1], coordinates[2]);
+				}
+			}else if(regionEquals(nameStart, nameEnd, WORK_POSITION)){
+				if(parseCoordinates()){
+					statusReport.setWorkPosition(coordinates[0], coordinates[1], coordinates[2]);
+				}
+			}else{
+				skipValues();
+			}
+		}
+	}
+
+	/**
+	 * Find the state matching the name in the given region
+	 * @param from start index of the name
+	 * @param to end index of the name
+	 * @return the matching {@link GrblMachineState}, or UNDEFINED
+	 */
+	private GrblMachineState findState(int from, int to){
+		for (int i = 0; i < STATE_NAMES.length; i++) {
+			if(regionEquals(from, to, STATE_NAMES[i])){
+				return STATES[i];
+			}
+		}
+		return GrblMachineState.UNDEFINED;
+	}
+
+	/**
+	 * Parse the 3 coordinates of a position field into the reused coordinates array
+	 * @return <code>true</code> if the 3 coordinates are valid numbers
+	 */
+	private boolean parseCoordinates(){
+		int count = 0;
+		boolean valid = true;
+		while(position < end - 1){
+			int valueEnd = position;
+			while(valueEnd < end - 1 && line.get(valueEnd) != ','){
+				valueEnd++;
+			}
+			if(count < coordinates.length){
+				double value = parseNumber(position, valueEnd);
+				valid &= !Double.isNaN(value);
+				coordinates[count] = value;
+			}
+			count++;
+			position = valueEnd;
+			if(!isNumberStart(position + 1)){
+				break;
+			}
+			position++;
+		}
+		return valid && count >= coordinates.length;
+	}
+
+	/**
+	 * Skip the values of an unknown field
+	 */
+	private void skipValues(){
+		while(position < end - 1){
+			if(line.get(position) == ',' && !isNumberStart(position + 1)){
+				return;
+			}
+			position++;
+		}
+	}
+
+	/**
+	 * Parse the number in the given region without creating any String, except for the ones exceeding the precision of a double
+	 * @param from start index of the number
+	 * @param to end index of the number
+	 * @return the number, or NaN if the region is not a valid number
+	 */
+	private double parseNumber(int from, int to){
+		int index = from;
+		boolean negative = false;
+		if(index < to && (line.get(index) == '-' || line.get(index) == '+')){
+			negative = line.get(index) == '-';
+			index++;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int scale  = -1;
+		for(; index < to; index++){
+			byte b = line.get(index);
+			if(isDigit(b)){
+				mantissa = mantissa * 10 + (b - '0');
+				digits++;
+				if(scale >= 0){
+					scale++;
+				}
+			}else if(b == '.' && scale < 0){
+				scale = 0;
+			}else{
+				return Double.NaN;
+			}
+		}
+		if(digits == 0){
+			return Double.NaN;
+		}
+		scale = Math.max(scale, 0);
+		if(digits > 15 || scale >= POWERS_OF_TEN.length){
+			return Double.parseDouble(toString(from, to));
+		}
+		double value = mantissa / POWERS_OF_TEN[scale];
+		return negative ? -value : value;
+	}
+
+	private boolean isNumberStart(int index){
+		if(index >= end - 1){
+			return false;
+		}
+		byte b = line.get(index);
+		return isDigit(b) || b == '-' || b == '+' || b == '.';
+	}
+
+	private int indexOf(byte b, int from, int to){
+		for (int i = from; i < to; i++) {
+			if(line.get(i) == b){
+				return i;
+			}
+		}
+		return to;
+	}
+
+	private boolean startsWith(int from, byte[] prefix){
+		if(end - from < prefix.length){
+			return false;
+		}
+		for (int i = 0; i < prefix.length; i++) {
+			if(line.get(from + i) != prefix[i]){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean startsWithAny(int from, byte[][] prefixes){
+		for (byte[] prefix : prefixes) {
+			if(startsWith(from, prefix)){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean regionEquals(int from, int to, byte[] value){
+		return to - from == value.length && startsWith(from, value);
+	}
+
+	private static boolean isWhitespace(byte b){
+		return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+	}
+
+	private static boolean isDigit(byte b){
+		return b >= '0' && b <= '9';
+	}
+
+	private String toString(int from, int to){
+		byte[] bytes = new byte[to - from];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = line.get(from + i);
+		}
+		return new String(bytes, StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * Returns the status report of the last decoded line
+	 * @return the reused {@link StatusReport}
+	 */
+	public StatusReport getStatusReport() {
+		return statusReport;
+	}
+
+	/**
+	 * Returns the trimmed text of the last decoded line. The String is only created on the first call
+	 * @return the text of the line
+	 */
+	public String getText() {
+		if(text == null){
+			text = toString(start, end);
+		}
+		return text;
+	}
+}
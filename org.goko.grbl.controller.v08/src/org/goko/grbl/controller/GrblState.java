@@ -23,6 +23,7 @@ import java.math.BigDecimal;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.apache.commons.lang3.ObjectUtils;
 import org.goko.core.common.exception.GkException;
 import org.goko.core.common.measure.quantity.Length;
 import org.goko.core.common.measure.units.Unit;
@@ -38,6 +39,7 @@ import org.goko.core.gcode.bean.commands.EnumGCodeCommandMotionMode;
 import org.goko.core.gcode.bean.commands.EnumGCodeCommandPlane;
 import org.goko.core.gcode.bean.commands.EnumGCodeCommandUnit;
 import org.goko.core.log.GkLog;
+import org.goko.grbl.controller.bean.StatusReport;
 
 public class GrblState extends MachineValueStore{
 	/** LOG */
@@ -46,12 +48,17 @@ public class GrblState extends MachineValueStore{
 	private GCodeContext currentContext;
 	private boolean activePolling;
 	private Tuple6b workPosition;
+	/** The last applied status report */
+	private StatusReport lastStatusReport;
+	/** The unit of the last applied status report */
+	private Unit<Length> lastReportUnit;
 
 	public GrblState() {
 		super();
 		offsets 		= new HashMap<EnumCoordinateSystem, Tuple6b>();
 		currentContext 	= new GCodeContext();
 		workPosition 	= new Tuple6b().setZero();
+		lastStatusReport = new StatusReport();
 		try {
 			initValues();
 		} catch (GkException e) {
@@ -148,6 +155,25 @@ public class GrblState extends MachineValueStore{
 			currentContext.setPosition(workPosition);
 		}
 	}
+	/**
+	 * Update the machine and work positions from the given status report.
+	 * The positions are only converted and formatted when they differ from the last applied report
+	 * @param statusReport the status report
+	 * @param unit the unit of the report
+	 * @throws GkException GkException
+	 */
+	public synchronized void updatePositions(StatusReport statusReport, Unit<Length> unit) throws GkException{
+		boolean unitChanged = !ObjectUtils.equals(unit, lastReportUnit);
+		if(unitChanged || !statusReport.isSameMachinePosition(lastStatusReport)){
+			setMachinePosition(statusReport.getMachinePosition(unit), unit);
+		}
+		if(unitChanged || !statusReport.isSameWorkPosition(lastStatusReport)){
+			setWorkPosition(statusReport.getWorkPosition(unit), unit);
+		}
+		lastStatusReport.set(statusReport);
+		lastReportUnit = unit;
+	}
+
 	public int getUsedBuffer() throws GkException{
 		MachineValue<Integer> buffer = getIntegerValue(Grbl.GRBL_USED_BUFFER);
 		return buffer.getValue();
@@ -266,10 +292,13 @@ public class GrblState extends MachineValueStore{
 	}
 
 	/**
+	 * Sets the current context. The context takes the current work position, since status reports only apply the
+	 * work position when it changes
 	 * @param currentContext the currentContext to set
 	 */
-	protected void setCurrentContext(GCodeContext currentContext) {
+	protected synchronized void setCurrentContext(GCodeContext currentContext) {
 		this.currentContext = currentContext;
+		currentContext.setPosition(workPosition);
 		try {
 			updateValue(Grbl.CONTEXT_FEEDRATE, currentContext.getFeedrate());
 			updateValue(Grbl.CONTEXT_COORD_SYSTEM, currentContext.getCoordinateSystem()); //g54 ne sont pas trouvs
@@ -0,0 +1,245 @@
+/*
+ *
+ *   Goko
+ *   Copyright (C) 2013  PsyKo
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.goko.grbl.controller;
+
+import org.goko.core.common.exception.GkException;
+import org.goko.core.log.GkLog;
+
+/**
+ * Thread polling the status of Grbl.
+ * <p>
+ * The polling rate adapts to what the machine is doing : fast while it moves or right after a motion command (jog, homing...),
+ * paced by the acknowledgements while a file is streamed, and slow while idle. A poll is only sent once the previous one
+ * was answered, or considered lost after a timeout, so there is never more than one poll in flight.
+ * </p>
+ * @author PsyKo
+ *
+ */
+public class GrblStatusPoller implements Runnable {
+	/** LOG */
+	private static final GkLog LOG = GkLog.getLogger(GrblStatusPoller.class);
+	/** Interval between two polls while the machine is idle, in milliseconds */
+	private static final long IDLE_INTERVAL = 500;
+	/** Interval between two polls while the machine is moving, in milliseconds */
+	private static final long MOTION_INTERVAL = 50;
+	/** Minimum interval between two polls while streaming, in milliseconds */
+	private static final long STREAMING_MIN_INTERVAL = 100;
+	/** Maximum interval between two polls while streaming, in milliseconds */
+	private static final long STREAMING_MAX_INTERVAL = 500;
+	/** Number of acknowledgements received before polling while streaming */
+	private static final int ACKNOWLEDGEMENTS_PER_POLL = 8;
+	/** Delay after which an unanswered poll is considered lost, in milliseconds */
+	private static final long POLL_TIMEOUT = 1000;
+	/** Duration of the fast polling after a motion command, in milliseconds */
+	private static final long MOTION_GRACE_PERIOD = 1000;
+	/** Weight of the last interval in the averaged interval between two reports */
+	private static final double RATE_SMOOTHING = 0.2;
+	/** The Grbl service */
+	private GrblControllerService grblService;
+	/** The polling thread */
+	private Thread thread;
+	/** Running flag */
+	private volatile boolean running;
+	/** Indicates that a poll was sent and not answered yet */
+	private boolean pollPending;
+	/** Indicates that an immediate poll was requested */
+	private boolean pollRequested;
+	/** Time of the last poll */
+	private long lastPollTime;
+	/** Number of acknowledgements received since the last poll */
+	private int acknowledgementCount;
+	/** Indicates that the last reported state is a motion state */
+	private boolean moving;
+	/** End of the fast polling following a motion command */
+	private long motionExpectedUntil;
+	/** Time of the last status report */
+	private long lastReportTime;
+	/** Averaged interval between two status reports, in milliseconds */
+	private double averageReportInterval;
+
+	/**
+	 * Constructor
+	 * @param grblService the Grbl service
+	 */
+	GrblStatusPoller(GrblControllerService grblService) {
+		this.grblService = grblService;
+	}
+
+	/**
+	 * Start the polling thread
+	 */
+	public synchronized void start(){
+		stop();
+		pollPending 			= false;
+		pollRequested 			= true;
+		acknowledgementCount 	= 0;
+		moving 					= false;
+		motionExpectedUntil 	= 0;
+		lastReportTime 			= 0;
+		averageReportInterval 	= 0;
+		running = true;
+		thread = new Thread(this, "Grbl status polling");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stop the polling thread
+	 */
+	public synchronized void stop(){
+		running = false;
+		if(thread != null){
+			thread.interrupt();
+			thread = null;
+		}
+	}
+
+	/** (inheritDoc)
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run() {
+		while(running){
+			try{
+				if(waitNextPoll()){
+					grblService.sendStatusPoll();
+				}
+			}catch(InterruptedException e){
+				return;
+			}catch(GkException e){
+				LOG.error(e);
+			}
+		}
+	}
+
+	/**
+	 * Wait until the next poll is due
+	 * @return <code>true</code> if a poll has to be sent now, <code>false</code> if the delay has to be evaluated again
+	 * @throws InterruptedException InterruptedException
+	 * @throws GkException GkException
+	 */
+	private synchronized boolean waitNextPoll() throws InterruptedException, GkException{
+		long now = now();
+		long delay = getDelayBeforeNextPoll(now);
+		if(delay > 0){
+			wait(delay);
+			return false;
+		}
+		lastPollTime 			= now;
+		acknowledgementCount 	= 0;
+		pollRequested 			= false;
+		if(!grblService.isActivePollingEnabled()){
+			return false;
+		}
+		pollPending = true;
+		return true;
+	}
+
+	/**
+	 * Compute the delay before the next poll, according to the activity of the machine
+	 * @param now the current time
+	 * @return the delay in milliseconds
+	 */
+	private long getDelayBeforeNextPoll(long now){
+		if(pollPending){
+			long timeout = lastPollTime + POLL_TIMEOUT - now;
+			if(timeout > 0){
+				return timeout;
+			}
+			LOG.warn("No status report received for the last poll");
+			pollPending = false;
+		}
+		if(pollRequested){
+			return 0;
+		}
+		long elapsed = now - lastPollTime;
+		if(grblService.isStreaming()){
+			if(acknowledgementCount >= ACKNOWLEDGEMENTS_PER_POLL){
+				return STREAMING_MIN_INTERVAL - elapsed;
+			}
+			return STREAMING_MAX_INTERVAL - elapsed;
+		}
+		if(moving || now < motionExpectedUntil){
+			return MOTION_INTERVAL - elapsed;
+		}
+		return IDLE_INTERVAL - elapsed;
+	}
+
+	/**
+	 * Request a poll as soon as the previous one is answered
+	 */
+	public synchronized void requestPoll(){
+		pollRequested = true;
+		notifyAll();
+	}
+
+	/**
+	 * Notify that a command was acknowledged by Grbl
+	 */
+	public synchronized void onAcknowledgement(){
+		acknowledgementCount++;
+		if(acknowledgementCount == ACKNOWLEDGEMENTS_PER_POLL){
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Notify that a command starting a motion was sent, so the polling speeds up before the state is reported
+	 */
+	public synchronized void onMotionCommand(){
+		motionExpectedUntil = now() + MOTION_GRACE_PERIOD;
+		notifyAll();
+	}
+
+	/**
+	 * Notify that a status report was received
+	 * @param state the reported state
+	 */
+	public synchronized void onStatusReport(GrblMachineState state){
+		long now = now();
+		pollPending = false;
+		moving = state == GrblMachineState.MOTION_RUNNING || state == GrblMachineState.HOMING;
+		if(lastReportTime > 0){
+			long interval = now - lastReportTime;
+			if(averageReportInterval == 0){
+				averageReportInterval = interval;
+			}else{
+				averageReportInterval += (interval - averageReportInterval) * RATE_SMOOTHING;
+			}
+		}
+		lastReportTime = now;
+		notifyAll();
+	}
+
+	/**
+	 * Returns the effective rate of the status reports
+	 * @return the number of status reports per second, 0 if no report was received recently
+	 */
+	public synchronized double getEffectiveRate(){
+		if(lastReportTime == 0 || averageReportInterval <= 0 || now() - lastReportTime > 2 * POLL_TIMEOUT){
+			return 0;
+		}
+		return 1000 / averageReportInterval;
+	}
+
+	private static long now(){
+		return System.nanoTime() / 1000000L;
+	}
+}
@@ -0,0 +1,179 @@
+/*
+ *
+ *   Goko
+ *   Copyright (C) 2013  PsyKo
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.goko.grbl.controller;
+
+/**
+ * Character counting model of the Grbl serial RX buffer.
+ * <p>
+ * Every line sent to Grbl is registered with its length in bytes (end line character included) and the id of the
+ * streamed command it holds, if any. Grbl answers each line with exactly one <code>ok</code> or <code>error</code>,
+ * in order, so each response releases the oldest registered line.
+ * </p>
+ * <p>
+ * The real time characters (status report '?', feed hold '!', cycle start '~' and reset) are not registered : the serial
+ * interrupt of Grbl executes them as soon as they are received, without storing them in the RX buffer nor answering them.
+ * </p>
+ * @author PsyKo
+ *
+ */
+public class GrblStreamingBuffer {
+	/** Id registered for the lines which are not part of a streamed file */
+	public static final int NO_COMMAND = -1;
+	/** Capacity of the Grbl RX buffer */
+	private final int capacity;
+	/** Lengths of the in flight lines */
+	private int[] lengths;
+	/** Command ids of the in flight lines */
+	private int[] commandIds;
+	/** Index of the oldest in flight line */
+	private int head;
+	/** Number of in flight lines */
+	private int count;
+	/** Number of bytes used in the Grbl RX buffer */
+	private int usedSpace;
+
+	/**
+	 * Constructor
+	 * @param capacity the capacity of the Grbl RX buffer
+	 */
+	public GrblStreamingBuffer(int capacity) {
+		this.capacity 	= capacity;
+		this.lengths 	= new int[16];
+		this.commandIds = new int[16];
+	}
+
+	/**
+	 * Register a line sent to Grbl
+	 * @param length the length of the line in bytes, end line character included
+	 * @param commandId the id of the streamed command, or {@link #NO_COMMAND}
+	 */
+	public synchronized void add(int length, int commandId){
+		if(count == lengths.length){
+			grow();
+		}
+		int index = (head + count) % lengths.length;
+		lengths[index] 	  = length;
+		commandIds[index] = commandId;
+		count++;
+		usedSpace += length;
+	}
+
+	/**
+	 * Unregister the last registered line, when it could not be sent
+	 */
+	public synchronized void removeLast(){
+		if(count > 0){
+			count--;
+			usedSpace -= lengths[(head + count) % lengths.length];
+		}
+	}
+
+	/**
+	 * Release the oldest in flight line after Grbl answered it
+	 * @return the id of the command held by the released line, {@link #NO_COMMAND} if it was not a streamed command or if nothing was in flight
+	 */
+	public synchronized int acknowledge(){
+		if(count == 0){
+			return NO_COMMAND;
+		}
+		int commandId = commandIds[head];
+		usedSpace -= lengths[head];
+		head = (head + 1) % lengths.length;
+		count--;
+		notifyAll();
+		return commandId;
+	}
+
+	/**
+	 * Indicates if a line of the given length can be sent without overflowing the Grbl RX buffer.
+	 * A line longer than the whole buffer is accepted once the buffer is empty.
+	 * @param length the length of the line
+	 * @return <code>true</code> if the line can be sent
+	 */
+	public synchronized boolean hasSpace(int length){
+		return usedSpace == 0 || usedSpace + length <= capacity;
+	}
+
+	/**
+	 * Wait until a line of the given length can be sent, or until the timeout expires
+	 * @param length the length of the line
+	 * @param timeout the maximum time to wait in milliseconds
+	 * @return <code>true</code> if the line can be sent
+	 * @throws InterruptedException InterruptedException
+	 */
+	public synchronized boolean waitSpace(int length, long timeout) throws InterruptedException{
+		long deadline = System.currentTimeMillis() + timeout;
+		while(!hasSpace(length)){
+			long remaining = deadline - System.currentTimeMillis();
+			if(remaining <= 0){
+				return false;
+			}
+			wait(remaining);
+		}
+		return true;
+	}
+
+	/**
+	 * Forget all the in flight lines, after a reset of Grbl
+	 */
+	public synchronized void clear(){
+		head = 0;
+		count = 0;
+		usedSpace = 0;
+		notifyAll();
+	}
+
+	/**
+	 * @return the number of bytes used in the Grbl RX buffer
+	 */
+	public synchronized int getUsedSpace(){
+		return usedSpace;
+	}
+
+	/**
+	 * @return the number of lines waiting for a response
+	 */
+	public synchronized int getPendingLineCount(){
+		return count;
+	}
+
+	/**
+	 * @return the capacity of the Grbl RX buffer
+	 */
+	public int getCapacity(){
+		return capacity;
+	}
+
+	/**
+	 * Double the size of the in flight line storage
+	 */
+	private void grow(){
+		int[] newLengths 	= new int[lengths.length * 2];
+		int[] newCommandIds = new int[lengths.length * 2];
+		for (int i = 0; i < count; i++) {
+			int index = (head + i) % lengths.length;
+			newLengths[i] 	 = lengths[index];
+			newCommandIds[i] = commandIds[index];
+		}
+		lengths 	= newLengths;
+		commandIds 	= newCommandIds;
+		head 		= 0;
+	}
+}
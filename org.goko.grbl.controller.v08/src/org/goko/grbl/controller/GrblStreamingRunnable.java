@@ -19,7 +19,9 @@
  */
 package org.goko.grbl.controller;
 
-import org.apache.commons.lang3.StringUtils;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
 import org.goko.common.events.GCodeCommandSelectionEvent;
 import org.goko.core.common.event.GokoEventBus;
 import org.goko.core.common.exception.GkException;
@@ -30,18 +32,24 @@ import org.goko.core.log.GkLog;
 import org.goko.grbl.controller.executionqueue.GrblGCodeExecutionToken;
 
 /**
- * Thread for streaming GCode command
+ * Thread for streaming GCode command using the character counting protocol.
+ * <p>
+ * Commands are taken from the current token and encoded ahead of time into a send window. As soon as Grbl acknowledges
+ * a line, as many encoded commands as fit in its RX buffer are sent, so the buffer never runs dry.
+ * </p>
  * @author PsyKo
  *
  */
 public class GrblStreamingRunnable  implements Runnable {
 	private static final GkLog LOG = GkLog.getLogger(GrblStreamingRunnable.class);
+	/** Maximum number of commands encoded ahead of time */
+	private static final int SEND_WINDOW_SIZE = 32;
 	/** The execution queue */
 	private ExecutionQueue<GrblGCodeExecutionToken> executionQueue;
 	/** The GrblService running */
 	private GrblControllerService grblService;
-
-	private Object bufferSpaceMutex = new Object();
+	/** Commands taken from the current token, not sent yet */
+	private Deque<EncodedCommand> sendWindow;
 
 	/**
 	 * @param queue
@@ -51,6 +59,7 @@ public class GrblStreamingRunnable  implements Runnable {
 		super();
 		this.executionQueue = queue;
 		this.grblService = grblService;
+		this.sendWindow = new ArrayDeque<EncodedCommand>(SEND_WINDOW_SIZE);
 	}
 
 	/** (inheritDoc)
@@ -78,28 +87,69 @@ public class GrblStreamingRunnable  implements Runnable {
 
 	protected void runExecutionToken() throws GkException{
 		try{
-			while(executionQueue.getCurrentToken() != null && executionQueue.getCurrentToken().hasMoreCommand()){
-				GrblGCodeExecutionToken token = executionQueue.getCurrentToken();
+			GrblGCodeExecutionToken token = executionQueue.getCurrentToken();
+			sendWindow.clear();
+			while(token != null && (token.hasMoreCommand() || !sendWindow.isEmpty())){
 				waitTokenUnpaused();
-				if(token.hasMoreCommand()){
-					GCodeCommand command = token.getNextCommand();
-					waitBufferSpace(StringUtils.length(command.getStringCommand()));
-					command = token.takeNextCommand();
-					if(command.getType() == EnumGCodeCommandType.COMMENT){
-						// Skip comments
-						token.markAsExecuted(command.getId());
-					}else{
-						grblService.sendCommand(command);
-						token.markAsSent( command.getId() );
-					}
-					GokoEventBus.getInstance().post(new GCodeCommandSelectionEvent(command));
+				if(executionQueue.getCurrentToken() != token){
+					// Token was cancelled
+					break;
+				}
+				fillSendWindow(token);
+				sendWindow(token);
+				if(!sendWindow.isEmpty()){
+					grblService.getStreamingBuffer().waitSpace(sendWindow.peek().line.length, 500);
 				}
 			}
+			sendWindow.clear();
 			LOG.info("runExecutionToken ends");
 		}catch(GkException e){
 			LOG.error(e);
+		}catch(InterruptedException e){
+			LOG.error(e);
+		}
+	}
+
+	/**
+	 * Take and encode the next commands of the token until the send window is full
+	 * @param token the token
+	 * @throws GkException GkException
+	 */
+	private void fillSendWindow(GrblGCodeExecutionToken token) throws GkException{
+		while(sendWindow.size() < SEND_WINDOW_SIZE && token.hasMoreCommand()){
+			GCodeCommand command = token.takeNextCommand();
+			byte[] line = null;
+			if(command.getType() != EnumGCodeCommandType.COMMENT){
+				line = grblService.encodeLine(command);
+			}
+			sendWindow.add(new EncodedCommand(command, line));
 		}
 	}
+
+	/**
+	 * Send the commands of the send window as long as they fit in the Grbl RX buffer
+	 * @param token the token
+	 * @throws GkException GkException
+	 */
+	private void sendWindow(GrblGCodeExecutionToken token) throws GkException{
+		GrblStreamingBuffer streamingBuffer = grblService.getStreamingBuffer();
+		while(!sendWindow.isEmpty() && !token.isPaused()){
+			EncodedCommand encodedCommand = sendWindow.peek();
+			GCodeCommand command = encodedCommand.command;
+			if(encodedCommand.line == null){
+				// Skip comments
+				token.markAsExecuted(command.getId());
+			}else if(streamingBuffer.hasSpace(encodedCommand.line.length)){
+				grblService.sendLine(encodedCommand.line, command.getId());
+				token.markAsSent( command.getId() );
+			}else{
+				return;
+			}
+			sendWindow.poll();
+			GokoEventBus.getInstance().post(new GCodeCommandSelectionEvent(command));
+		}
+	}
+
 	/**
 	 * Wait until the current token is complete
 	 * @throws GkException GkException
@@ -133,24 +183,17 @@ public class GrblStreamingRunnable  implements Runnable {
 	}
 	
 	/**
-	 * Wait until there is enough space in Grbl buffer
-	 * @throws GkException GkException
+	 * A command taken from the token with its encoded line
 	 */
-	private void waitBufferSpace(int size) throws GkException {
-		while(executionQueue.getCurrentToken() != null && (grblService.getUsedGrblBuffer() + size) > Grbl.GRBL_BUFFER_SIZE){
-			synchronized ( bufferSpaceMutex ) {
-				try {
-					bufferSpaceMutex.wait();
-				} catch (InterruptedException e) {
-					LOG.error(e);
-				}
-			}
-		}
-	}
+	private static class EncodedCommand{
+		/** The command */
+		private final GCodeCommand command;
+		/** The line to send, end line character included, <code>null</code> for comments */
+		private final byte[] line;
 
-	protected void releaseBufferSpaceMutex(){
-		synchronized (bufferSpaceMutex) {
-			bufferSpaceMutex.notify();
+		EncodedCommand(GCodeCommand command, byte[] line) {
+			this.command = command;
+			this.line = line;
 		}
 	}
 }
@@ -41,6 +41,12 @@ public interface IGrblControllerService extends IControllerService, IStepJogServ
 	void setActivePollingEnabled(boolean enabled) throws GkException;
 	
 	boolean isActivePollingEnabled() throws GkException;
+
+	/**
+	 * Returns the effective rate of the status polling
+	 * @return the number of status reports received per second
+	 */
+	double getStatusPollingRate();
 	
 	GrblMachineState getState() throws GkException;
 	
@@ -19,17 +19,99 @@
  */
 package org.goko.grbl.controller.bean;
 
-import org.goko.core.controller.bean.MachineState;
+import java.math.BigDecimal;
+
+import org.goko.core.common.measure.quantity.Length;
+import org.goko.core.common.measure.quantity.type.NumberQuantity;
+import org.goko.core.common.measure.units.Unit;
 import org.goko.core.gcode.bean.Tuple6b;
 import org.goko.grbl.controller.GrblMachineState;
 
+/**
+ * Status report received from Grbl.
+ * The positions are stored as raw values, in the report unit of Grbl, so the same instance can be reused for every report.
+ *
+ * @author PsyKo
+ *
+ */
 public class StatusReport {
 	/** The state of the machine */
 	private GrblMachineState state;
 	/** The machine position */
-	private Tuple6b machinePosition;
+	private double[] machinePosition;
+	/** Indicates that the report contains a machine position */
+	private boolean machinePositionReported;
 	/** The work position of the machine */
-	private Tuple6b workPosition;
+	private double[] workPosition;
+	/** Indicates that the report contains a work position */
+	private boolean workPositionReported;
+
+	/**
+	 * Constructor
+	 */
+	public StatusReport() {
+		machinePosition = new double[3];
+		workPosition 	= new double[3];
+		reset();
+	}
+
+	/**
+	 * Clear this report before reuse
+	 */
+	public void reset(){
+		state 					= null;
+		machinePositionReported = false;
+		workPositionReported 	= false;
+	}
+
+	/**
+	 * Copy the given report into this one
+	 * @param report the report to copy
+	 */
+	public void set(StatusReport report){
+		this.state 					 = report.state;
+		this.machinePositionReported = report.machinePositionReported;
+		this.workPositionReported 	 = report.workPositionReported;
+		System.arraycopy(report.machinePosition, 0, machinePosition, 0, machinePosition.length);
+		System.arraycopy(report.workPosition, 0, workPosition, 0, workPosition.length);
+	}
+
+	/**
+	 * Indicates if the given report holds the same machine position
+	 * @param report the report to compare with
+	 * @return <code>true</code> if both reports hold the same machine position
+	 */
+	public boolean isSameMachinePosition(StatusReport report){
+		return machinePositionReported == report.machinePositionReported && isSame(machinePosition, report.machinePosition);
+	}
+
+	/**
+	 * Indicates if the given report holds the same work position
+	 * @param report the report to compare with
+	 * @return <code>true</code> if both reports hold the same work position
+	 */
+	public boolean isSameWorkPosition(StatusReport report){
+		return workPositionReported == report.workPositionReported && isSame(workPosition, report.workPosition);
+	}
+
+	private static boolean isSame(double[] a, double[] b){
+		return a[0] == b[0] && a[1] == b[1] && a[2] == b[2];
+	}
+
+	/**
+	 * Create a tuple from the given coordinates
+	 * @param coordinates the coordinates
+	 * @param unit the unit of the coordinates
+	 * @return {@link Tuple6b}
+	 */
+	private static Tuple6b toTuple(double[] coordinates, Unit<Length> unit){
+		Tuple6b tuple = new Tuple6b().setNull();
+		tuple.setX(NumberQuantity.of(BigDecimal.valueOf(coordinates[0]), unit));
+		tuple.setY(NumberQuantity.of(BigDecimal.valueOf(coordinates[1]), unit));
+		tuple.setZ(NumberQuantity.of(BigDecimal.valueOf(coordinates[2]), unit));
+		return tuple;
+	}
+
 	/**
 	 * @return the state
 	 */
@@ -43,27 +125,93 @@ public class StatusReport {
 		this.state = state;
 	}
 	/**
-	 * @return the machinePosition
+	 * @return <code>true</code> if the report contains a machine position
+	 */
+	public boolean isMachinePositionReported() {
+		return machinePositionReported;
+	}
+	/**
+	 * @param x the X machine coordinate
+	 * @param y the Y machine coordinate
+	 * @param z the Z machine coordinate
+	 */
+	public void setMachinePosition(double x, double y, double z) {
+		machinePosition[0] = x;
+		machinePosition[1] = y;
+		machinePosition[2] = z;
+		machinePositionReported = true;
+	}
+	/**
+	 * @param unit the unit of the report
+	 * @return the machinePosition, or <code>null</code> if the report contains no machine position
+	 */
+	public Tuple6b getMachinePosition(Unit<Length> unit) {
+		if(!machinePositionReported){
+			return null;
+		}
+		return toTuple(machinePosition, unit);
+	}
+	/**
+	 * @return <code>true</code> if the report contains a work position
+	 */
+	public boolean isWorkPositionReported() {
+		return workPositionReported;
+	}
+	/**
+	 * @param x the X work coordinate
+	 * @param y the Y work coordinate
+	 * @param z the Z work coordinate
+	 */
+	public void setWorkPosition(double x, double y, double z) {
+		workPosition[0] = x;
+		workPosition[1] = y;
+		workPosition[2] = z;
+		workPositionReported = true;
+	}
+	/**
+	 * @param unit the unit of the report
+	 * @return the workPosition, or <code>null</code> if the report contains no work position
+	 */
+	public Tuple6b getWorkPosition(Unit<Length> unit) {
+		if(!workPositionReported){
+			return null;
+		}
+		return toTuple(workPosition, unit);
+	}
+	/**
+	 * @return the X machine coordinate
+	 */
+	public double getMachineX() {
+		return machinePosition[0];
+	}
+	/**
+	 * @return the Y machine coordinate
+	 */
+	public double getMachineY() {
+		return machinePosition[1];
+	}
+	/**
+	 * @return the Z machine coordinate
 	 */
-	public Tuple6b getMachinePosition() {
-		return machinePosition;
+	public double getMachineZ() {
+		return machinePosition[2];
 	}
 	/**
-	 * @param machinePosition the machinePosition to set
+	 * @return the X work coordinate
 	 */
-	public void setMachinePosition(Tuple6b machinePosition) {
-		this.machinePosition = machinePosition;
+	public double getWorkX() {
+		return workPosition[0];
 	}
 	/**
-	 * @return the workPosition
+	 * @return the Y work coordinate
 	 */
-	public Tuple6b getWorkPosition() {
-		return workPosition;
+	public double getWorkY() {
+		return workPosition[1];
 	}
 	/**
-	 * @param workPosition the workPosition to set
+	 * @return the Z work coordinate
 	 */
-	public void setWorkPosition(Tuple6b workPosition) {
-		this.workPosition = workPosition;
+	public double getWorkZ() {
+		return workPosition[2];
 	}
 }
@@ -19,9 +19,7 @@
  */
 package org.goko.grbl.controller.executionqueue;
 
-import org.apache.commons.collections.MapUtils;
 import org.goko.core.common.exception.GkException;
-import org.goko.core.gcode.bean.GCodeCommand;
 import org.goko.core.gcode.bean.IGCodeProvider;
 import org.goko.core.gcode.bean.provider.GCodeStreamedExecutionToken;
 
@@ -42,33 +40,6 @@ public class GrblGCodeExecutionToken  extends GCodeStreamedExecutionToken{
 		super(provider);
 	}
 
-	/**
-	 * Mark th enext command as executed
-	 * @return
-	 * @throws GkException GkException
-	 */
-	public GCodeCommand markNextCommandAsConfirmed() throws GkException{
-		if(MapUtils.isNotEmpty(mapSentCommandById)){
-			GCodeCommand nextCommand = mapSentCommandById.get(mapSentCommandById.keySet().toArray()[0]);
-			markAsExecuted(nextCommand.getId());
-			return nextCommand;
-		}
-		return null;
-	}
-
-	/**
-	 * Mark th enext command as executed
-	 * @throws GkException GkException
-	 */
-	public GCodeCommand markNextCommandAsError() throws GkException{
-		if(MapUtils.isNotEmpty(mapSentCommandById)){
-			GCodeCommand nextCommand = mapSentCommandById.get(mapSentCommandById.keySet().toArray()[0]);
-			markAsError(nextCommand.getId());
-			return nextCommand;
-		}
-		return null;
-	}
-
 	/** (inheritDoc)
 	 * @see org.goko.core.gcode.bean.provider.GCodeStreamedExecutionToken#markAsExecuted(java.lang.Integer)
 	 */
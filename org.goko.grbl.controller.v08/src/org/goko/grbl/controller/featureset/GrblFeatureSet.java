@@ -6,6 +6,7 @@ package org.goko.grbl.controller.featureset;
 import org.goko.core.common.exception.GkException;
 import org.goko.core.controller.IControllerService;
 import org.goko.core.controller.ICoordinateSystemAdapter;
+import org.goko.core.controller.IMotionPlannerAdapter;
 import org.goko.core.controller.IStepJogService;
 import org.goko.core.controller.IThreeAxisControllerAdapter;
 import org.goko.core.feature.IFeatureSet;
@@ -42,6 +43,7 @@ public class GrblFeatureSet implements IFeatureSet {
 		context.registerService(IStepJogService.class, 			service, null);
 		context.registerService(IThreeAxisControllerAdapter.class, service, null);
 		context.registerService(ICoordinateSystemAdapter.class, service, null);
+		context.registerService(IMotionPlannerAdapter.class, 	service, null);
 		
 		service.start();
 		
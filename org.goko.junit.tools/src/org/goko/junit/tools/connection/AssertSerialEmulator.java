@@ -10,11 +10,10 @@ import org.junit.Assert;
 public class AssertSerialEmulator {
 
 	public static final void assertMessagePresent(SerialConnectionEmulator emulator, String message){
-		List<List<Byte>> buffers = emulator.getSentBuffer();
+		List<byte[]> buffers = emulator.getSentBuffer();
 		if(CollectionUtils.isNotEmpty(buffers)){			
-			for (List<Byte> list : buffers) {
-				String str = GkUtils.toString(list);
-				if(StringUtils.equals(GkUtils.toString(list), message)){
+			for (byte[] bytes : buffers) {
+				if(StringUtils.equals(GkUtils.toString(bytes), message)){
 					return;
 				}
 			}
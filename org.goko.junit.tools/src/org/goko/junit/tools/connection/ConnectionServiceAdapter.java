@@ -4,6 +4,7 @@
 package org.goko.junit.tools.connection;
 
 import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -107,10 +108,13 @@ public abstract class ConnectionServiceAdapter implements IConnectionService {
 	 * @param data the received data
 	 * @throws GkException GkException
 	 */
-	protected void notifyInputListeners(List<Byte> data) throws GkException{
+	protected void notifyInputListeners(ByteBuffer data) throws GkException{
 		if(CollectionUtils.isNotEmpty(inputListeners)){
+			int position = data.position();
+			int limit = data.limit();
 			for(WeakReference<IConnectionDataListener> reference : inputListeners){
 				if(reference.get() != null){
+					data.limit(limit).position(position);
 					reference.get().onDataReceived(data);
 				}
 			}
@@ -122,10 +126,13 @@ public abstract class ConnectionServiceAdapter implements IConnectionService {
 	 * @param data the received data
 	 * @throws GkException GkException
 	 */
-	protected void notifyOutputListeners(List<Byte> data) throws GkException{
+	protected void notifyOutputListeners(ByteBuffer data) throws GkException{
 		if(CollectionUtils.isNotEmpty(outputListeners)){
+			int position = data.position();
+			int limit = data.limit();
 			for(WeakReference<IConnectionDataListener> reference : outputListeners){
 				if(reference.get() != null){
+					data.limit(limit).position(position);
 					reference.get().onDataSent(data);
 				}
 			}
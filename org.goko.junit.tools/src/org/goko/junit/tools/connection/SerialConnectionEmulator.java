@@ -1,5 +1,6 @@
 package org.goko.junit.tools.connection;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -14,7 +15,7 @@ public class SerialConnectionEmulator extends ConnectionServiceAdapter implement
 	/** Connected state */
 	private boolean connected;
 	/** Output buffer */
-	private List<List<Byte>> sentBuffer;
+	private List<byte[]> sentBuffer;
 	/** End line character */
 	private char endChararacter = '\n';
 	
@@ -22,7 +23,7 @@ public class SerialConnectionEmulator extends ConnectionServiceAdapter implement
 	 * Constructor 
 	 */
 	public SerialConnectionEmulator() {
-		sentBuffer = new ArrayList<List<Byte>>();
+		sentBuffer = new ArrayList<byte[]>();
 	}
 	
 	/** {@inheritDoc}
@@ -84,13 +85,31 @@ public class SerialConnectionEmulator extends ConnectionServiceAdapter implement
 		return connected;
 	}
 
+	/** {@inheritDoc}
+	 * @see org.goko.core.connection.IConnectionService#send(java.nio.ByteBuffer, org.goko.core.connection.DataPriority)
+	 */
+	@Override
+	public void send(ByteBuffer data, DataPriority priority) throws GkException {
+		send(data);
+	}
+
+	/** {@inheritDoc}
+	 * @see org.goko.core.connection.IConnectionService#send(java.nio.ByteBuffer)
+	 */
+	@Override
+	public void send(ByteBuffer data) throws GkException {
+		byte[] bytes = new byte[data.remaining()];
+		data.duplicate().get(bytes);
+		sentBuffer.add(bytes);
+		notifyOutputListeners(ByteBuffer.wrap(bytes));
+	}
+
 	/** {@inheritDoc}
 	 * @see org.goko.core.connection.IConnectionService#send(java.util.List, org.goko.core.connection.DataPriority)
 	 */
 	@Override
 	public void send(List<Byte> data, DataPriority priority) throws GkException {
-		sentBuffer.add(data);
-		notifyOutputListeners(data);	
+		send(ByteBuffer.wrap(GkUtils.toBytes(data)));
 	}
 
 	/** {@inheritDoc}
@@ -98,8 +117,7 @@ public class SerialConnectionEmulator extends ConnectionServiceAdapter implement
 	 */
 	@Override
 	public void send(List<Byte> data) throws GkException {
-		sentBuffer.add(data);
-		notifyOutputListeners(data);		
+		send(ByteBuffer.wrap(GkUtils.toBytes(data)));
 	}
 
 	/** {@inheritDoc}
@@ -122,7 +140,7 @@ public class SerialConnectionEmulator extends ConnectionServiceAdapter implement
 	 * @throws GkException GkException
 	 */
 	public void receiveData(String data) throws GkException{
-		notifyInputListeners(GkUtils.toBytesList(data)); 
+		notifyInputListeners(ByteBuffer.wrap(GkUtils.toBytes(data)));
 	}
 	/**
 	 * Simulate the reception of the given data 
@@ -130,7 +148,7 @@ public class SerialConnectionEmulator extends ConnectionServiceAdapter implement
 	 * @throws GkException GkException
 	 */
 	public void receiveDataWithEndChar(String data) throws GkException{
-		notifyInputListeners(GkUtils.toBytesList(data+endChararacter)); 
+		notifyInputListeners(ByteBuffer.wrap(GkUtils.toBytes(data+endChararacter)));
 	}
 
 	/**
@@ -150,14 +168,14 @@ public class SerialConnectionEmulator extends ConnectionServiceAdapter implement
 	/**
 	 * @return the sentBuffer
 	 */
-	protected List<List<Byte>> getSentBuffer() {
+	protected List<byte[]> getSentBuffer() {
 		return sentBuffer;
 	}
 
 	/**
 	 * @param sentBuffer the sentBuffer to set
 	 */
-	protected void setSentBuffer(List<List<Byte>> sentBuffer) {
+	protected void setSentBuffer(List<byte[]> sentBuffer) {
 		this.sentBuffer = sentBuffer;
 	}
 
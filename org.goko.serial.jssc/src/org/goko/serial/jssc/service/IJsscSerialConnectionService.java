@@ -34,4 +34,18 @@ public interface IJsscSerialConnectionService extends IConnectionService {
 	List<String> getAvailableSerialPort() throws GkException;
 	
 	JsscSerialConnection getCurrentConnectionInformation() throws GkException;
+
+	/**
+	 * Returns the number of pending outgoing bytes
+	 * @return the number of bytes in the send queue, 0 if not connected
+	 * @throws GkException GkException
+	 */
+	int getSendQueueBytes() throws GkException;
+
+	/**
+	 * Returns the outgoing throughput measured over the last second
+	 * @return the number of bytes sent per second, 0 if not connected
+	 * @throws GkException GkException
+	 */
+	double getSentBytesPerSecond() throws GkException;
 }
@@ -19,112 +19,256 @@
  */
 package org.goko.serial.jssc.service;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import jssc.SerialPortException;
 
-import org.apache.commons.collections.CollectionUtils;
-import org.goko.core.common.GkUtils;
 import org.goko.core.common.exception.GkException;
 import org.goko.core.log.GkLog;
 
+/**
+ * Sender thread of the serial connection.
+ * <p>
+ * The thread sleeps until data is queued. On each wake up it drains everything that is ready, important data first,
+ * and writes it to the serial port as a single frame. Queued bytes are copied in two growable buffers owned by the
+ * sender, so queuing data does not allocate once the buffers reached their working size.
+ * </p>
+ * @author PsyKo
+ *
+ */
 public class JsscSender implements Runnable {
 	/** LOG */
 	private static final GkLog LOG = GkLog.getLogger(JsscSender.class);
-	/** Outgoing queue */
-	//private ConcurrentLinkedDeque<List<Byte>> queue;
-	private BlockingQueue<List<Byte>> queue;
-	/** Important datas */
-	private BlockingQueue<List<Byte>> importantQueue;
-	/** Clear to send flag */
-	//private boolean clearToSend;
+	/** Maximum size of a written frame */
+	private static final int MAX_FRAME_SIZE = 4096;
+	/** Initial capacity of the outgoing buffers */
+	private static final int INITIAL_CAPACITY = 1024;
+	/** Duration of the window used to compute the throughput */
+	private static final long RATE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+	/** Outgoing bytes, in write mode */
+	private ByteBuffer queue;
+	/** Important outgoing bytes, in write mode */
+	private ByteBuffer importantQueue;
+	/** Lock guarding both queues */
+	private ReentrantLock lock;
+	/** Condition signaled when data is queued or when the sender is stopped */
+	private Condition notEmpty;
 	/** The service holding the serial port */
 	private JsscSerialConnectionService jsscService;
-	/** ock waiting for send permission */
-	private Object clearToSendLock;
-	private int importantBytes;
-	private boolean stopped;
-	private Long nbBytes = 0L;
+	/** Stop indicator */
+	private volatile boolean stopped;
+	/** Total number of sent bytes */
+	private volatile long sentBytes;
+	/** Throughput measured over the last complete window, in bytes per second */
+	private volatile double sentBytesPerSecond;
+	/** Time of the last write */
+	private volatile long lastWriteTime;
+	/** Start of the current throughput window */
+	private long windowStart;
+	/** Bytes sent in the current throughput window */
+	private long windowBytes;
+
 	/**
 	 * Constructor
-	 * @param serialPort the serial port to use
+	 * @param jsscService the service holding the serial port
 	 */
 	public JsscSender(JsscSerialConnectionService jsscService) {
-
-		this.queue = new LinkedBlockingQueue<List<Byte>>();
-		this.importantQueue = new LinkedBlockingQueue<List<Byte>>();
-		this.jsscService = jsscService;
-
-		this.clearToSendLock = new Object();
-
+		this.queue 			= ByteBuffer.allocate(INITIAL_CAPACITY);
+		this.importantQueue = ByteBuffer.allocate(INITIAL_CAPACITY);
+		this.lock 			= new ReentrantLock();
+		this.notEmpty 		= lock.newCondition();
+		this.jsscService 	= jsscService;
+		this.windowStart 	= System.nanoTime();
 	}
 
 	/** (inheritDoc)
 	 * @see java.lang.Runnable#run()
 	 */
 	@Override
-	public  void run() {
-
+	public void run() {
 		while(!stopped){
-			if(jsscService.getSerialPort().isOpened()){
-				List<Byte> lst = null;
+			byte[] data = null;
+			try {
+				data = takeFrame();
+			}catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+
+			if(data != null){
 				try {
-					if(CollectionUtils.isNotEmpty(queue)){
-						lst = queue.take();
-					}else if(CollectionUtils.isNotEmpty(importantQueue)){
-						lst = importantQueue.take();
-					}
-				}catch (InterruptedException e) {
+					jsscService.getSerialPort().writeBytes(data);
+					updateThroughput(data.length);
+					jsscService.notifyOutputListeners(ByteBuffer.wrap(data));
+				} catch (SerialPortException e) {
+					LOG.error(e);
+				} catch (GkException e) {
 					LOG.error(e);
 				}
+			}
+		}
+	}
 
-				if(lst != null){
-					try {
-						jsscService.getSerialPort().writeString( GkUtils.toString(lst) );
-						jsscService.notifyOutputListeners(lst);
-					} catch (SerialPortException e) {
-						LOG.error(e);
-					} catch (GkException e) {
-						LOG.error(e);
-					}
+	/**
+	 * Wait for queued data and drain everything that fits in one frame, important data first
+	 * @return the bytes to write, or <code>null</code> if the sender was stopped
+	 * @throws InterruptedException InterruptedException
+	 */
+	private byte[] takeFrame() throws InterruptedException{
+		lock.lockInterruptibly();
+		try{
+			while(importantQueue.position() == 0 && queue.position() == 0){
+				if(stopped){
+					return null;
 				}
+				notEmpty.await();
 			}
+			// The serial port only writes whole arrays, so the frame is the only allocation left on the sending path
+			byte[] frame = new byte[Math.min(importantQueue.position() + queue.position(), MAX_FRAME_SIZE)];
+			int length = drain(importantQueue, frame, 0);
+			drain(queue, frame, length);
+			return frame;
+		}finally{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Moves as many bytes as possible from the given buffer to the frame. Caller must hold the lock
+	 * @param source the buffer to drain, in write mode
+	 * @param frame the target frame
+	 * @param offset the offset of the first free byte in the frame
+	 * @return the offset of the first free byte in the frame after the copy
+	 */
+	private int drain(ByteBuffer source, byte[] frame, int offset){
+		int count = Math.min(source.position(), frame.length - offset);
+		if(count > 0){
+			source.flip();
+			source.get(frame, offset, count);
+			source.compact();
+		}
+		return offset + count;
+	}
+
+	/**
+	 * Update the throughput metrics after a write
+	 * @param count the number of written bytes
+	 */
+	private void updateThroughput(int count){
+		long now = System.nanoTime();
+		sentBytes += count;
+		windowBytes += count;
+		lastWriteTime = now;
+		long elapsed = now - windowStart;
+		if(elapsed >= RATE_WINDOW_NANOS){
+			sentBytesPerSecond = windowBytes * 1e9 / elapsed;
+			windowStart = now;
+			windowBytes = 0;
 		}
 	}
 
 	public void stop() {
-		this.stopped = true;
+		lock.lock();
+		try{
+			this.stopped = true;
+			notEmpty.signalAll();
+		}finally{
+			lock.unlock();
+		}
 	}
 
 	public void start() {
 		this.stopped = false;
 	}
+
+	/**
+	 * Add Bytes to the output queue. The bytes between the position and the limit of the buffer are copied, the buffer
+	 * itself is left unchanged
+	 * @param bytes the bytes to add
+	 */
+	protected void sendBytes(ByteBuffer bytes){
+		lock.lock();
+		try{
+			queue = append(queue, bytes);
+			notEmpty.signal();
+		}finally{
+			lock.unlock();
+		}
+	}
+
 	/**
-	 * Add Bytes to the output queue
-	 * @param bytes the list of {@link Byte} to add
+	 * Add Bytes to the output queue as important. They will be sent before any normal data
+	 * The bytes between the position and the limit of the buffer are copied, the buffer itself is left unchanged
+	 * @param bytes the bytes to add
 	 */
-	protected void sendBytes(List<Byte> bytes){
-		queue.add(new ArrayList<Byte>(bytes));
+	protected void sendBytesImmediately(ByteBuffer bytes){
+		lock.lock();
+		try{
+			importantQueue = append(importantQueue, bytes);
+			notEmpty.signal();
+		}finally{
+			lock.unlock();
+		}
 	}
 
 	/**
-	 * Add Bytes to the output queue as important. They will be sent event if the ClearToSend flag is <code>false</code>
-	 * @param bytes the list of {@link Byte} to add
+	 * Copy the given bytes at the end of the target buffer, growing it if required. Caller must hold the lock
+	 * @param target the target buffer, in write mode
+	 * @param bytes the bytes to add
+	 * @return the target buffer, or its replacement if it had to grow
 	 */
-	protected void sendBytesImmediately(List<Byte> bytes){
-		importantQueue.add( new ArrayList<Byte>(bytes));
-		synchronized (clearToSendLock) {
-			clearToSendLock.notify();
+	private ByteBuffer append(ByteBuffer target, ByteBuffer bytes){
+		ByteBuffer result = target;
+		if(result.remaining() < bytes.remaining()){
+			result = ByteBuffer.allocate(Math.max(target.capacity() * 2, target.position() + bytes.remaining()));
+			target.flip();
+			result.put(target);
 		}
+		result.put(bytes.duplicate());
+		return result;
 	}
 
 	/**
-	 * Empty the output queue
+	 * Empty the output queue. Important data is kept
 	 */
 	protected void clearOutputBuffer(){
-		queue.clear();
+		lock.lock();
+		try{
+			queue.clear();
+		}finally{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the number of bytes waiting to be sent
+	 */
+	public int getQueuedBytes(){
+		lock.lock();
+		try{
+			return queue.position() + importantQueue.position();
+		}finally{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the total number of bytes written to the serial port
+	 */
+	public long getSentBytes(){
+		return sentBytes;
+	}
+
+	/**
+	 * @return the throughput measured over the last second, 0 if nothing was sent recently
+	 */
+	public double getSentBytesPerSecond(){
+		if(System.nanoTime() - lastWriteTime > 2 * RATE_WINDOW_NANOS){
+			return 0;
+		}
+		return sentBytesPerSecond;
 	}
 }
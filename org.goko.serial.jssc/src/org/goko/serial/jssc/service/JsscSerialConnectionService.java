@@ -20,6 +20,7 @@
 package org.goko.serial.jssc.service;
 
 import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -30,6 +31,7 @@ import jssc.SerialPortException;
 import jssc.SerialPortList;
 
 import org.apache.commons.collections.CollectionUtils;
+import org.goko.core.common.GkUtils;
 import org.goko.core.common.exception.GkException;
 import org.goko.core.common.exception.GkFunctionalException;
 import org.goko.core.common.exception.GkTechnicalException;
@@ -170,10 +172,10 @@ public class JsscSerialConnectionService implements IJsscSerialConnectionService
 	}
 
 	/** (inheritDoc)
-	 * @see org.goko.core.connection.IConnectionService#send(java.util.List, org.goko.core.connection.DataPriority)
+	 * @see org.goko.core.connection.IConnectionService#send(java.nio.ByteBuffer, org.goko.core.connection.DataPriority)
 	 */
 	@Override
-	public void send(List<Byte> data, DataPriority priority) throws GkException {
+	public void send(ByteBuffer data, DataPriority priority) throws GkException {
 		if(isConnected()){
 			if(priority == DataPriority.IMPORTANT){
 				jsscSender.sendBytesImmediately(data);
@@ -184,16 +186,32 @@ public class JsscSerialConnectionService implements IJsscSerialConnectionService
 	}
 
 	/** (inheritDoc)
-	 * @see org.goko.core.connection.IConnectionService#send(java.util.List)
+	 * @see org.goko.core.connection.IConnectionService#send(java.nio.ByteBuffer)
 	 */
 	@Override
-	public void send(List<Byte> data) throws GkException {
+	public void send(ByteBuffer data) throws GkException {
 		if(!isConnected()){
 			throw new GkFunctionalException("Not connected to any serial device.");
 		}
 		jsscSender.sendBytes(data);
 	}
 
+	/** (inheritDoc)
+	 * @see org.goko.core.connection.IConnectionService#send(java.util.List, org.goko.core.connection.DataPriority)
+	 */
+	@Override
+	public void send(List<Byte> data, DataPriority priority) throws GkException {
+		send(ByteBuffer.wrap(GkUtils.toBytes(data)), priority);
+	}
+
+	/** (inheritDoc)
+	 * @see org.goko.core.connection.IConnectionService#send(java.util.List)
+	 */
+	@Override
+	public void send(List<Byte> data) throws GkException {
+		send(ByteBuffer.wrap(GkUtils.toBytes(data)));
+	}
+
 	/** (inheritDoc)
 	 * @see org.goko.core.connection.IConnectionService#addInputDataListener(org.goko.core.connection.IConnectionDataListener)
 	 */
@@ -250,6 +268,28 @@ public class JsscSerialConnectionService implements IJsscSerialConnectionService
 		connectionListeners.add(new WeakReference<IConnectionListener>(listener));
 	}
 
+	/** (inheritDoc)
+	 * @see org.goko.serial.jssc.service.IJsscSerialConnectionService#getSendQueueBytes()
+	 */
+	@Override
+	public int getSendQueueBytes() throws GkException {
+		if(jsscSender == null){
+			return 0;
+		}
+		return jsscSender.getQueuedBytes();
+	}
+
+	/** (inheritDoc)
+	 * @see org.goko.serial.jssc.service.IJsscSerialConnectionService#getSentBytesPerSecond()
+	 */
+	@Override
+	public double getSentBytesPerSecond() throws GkException {
+		if(jsscSender == null){
+			return 0;
+		}
+		return jsscSender.getSentBytesPerSecond();
+	}
+
 	/** (inheritDoc)
 	 * @see org.goko.core.connection.IConnectionService#clearOutputBuffer()
 	 */
@@ -270,21 +310,39 @@ public class JsscSerialConnectionService implements IJsscSerialConnectionService
 		}
 	}
 
-	protected void notifyInputListeners(List<Byte> data) throws GkException{
+	/**
+	 * Notifies the input listeners. Each listener receives the buffer with its original position and limit
+	 * @param data the received data
+	 * @throws GkException GkException
+	 */
+	protected void notifyInputListeners(ByteBuffer data) throws GkException{
 		if(CollectionUtils.isNotEmpty(inputListeners)){
+			int position = data.position();
+			int limit = data.limit();
 			for(WeakReference<IConnectionDataListener> reference : inputListeners){
-				if(reference.get() != null){
-					reference.get().onDataReceived(data);
+				IConnectionDataListener listener = reference.get();
+				if(listener != null){
+					data.limit(limit).position(position);
+					listener.onDataReceived(data);
 				}
 			}
 		}
 	}
 
-	protected void notifyOutputListeners(List<Byte> data) throws GkException{
+	/**
+	 * Notifies the output listeners. Each listener receives the buffer with its original position and limit
+	 * @param data the sent data
+	 * @throws GkException GkException
+	 */
+	protected void notifyOutputListeners(ByteBuffer data) throws GkException{
 		if(CollectionUtils.isNotEmpty(outputListeners)){
+			int position = data.position();
+			int limit = data.limit();
 			for(WeakReference<IConnectionDataListener> reference : outputListeners){
-				if(reference.get() != null){
-					reference.get().onDataSent(data);
+				IConnectionDataListener listener = reference.get();
+				if(listener != null){
+					data.limit(limit).position(position);
+					listener.onDataSent(data);
 				}
 			}
 		}
@@ -19,6 +19,7 @@
  */
 package org.goko.serial.jssc.console.internal;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 
 import javax.inject.Inject;
@@ -58,7 +59,7 @@ public class JsscSerialConsoleController extends AbstractController<JsscSerialCo
 	}
 
 	@Override
-	public void onDataReceived(List<Byte> data) throws GkException {
+	public void onDataReceived(ByteBuffer data) throws GkException {
 		if(getDataModel().isConsoleEnabled()){
 			inputBuffer.addAll(data);
 			while(inputBuffer.hasNext()){
@@ -80,7 +81,7 @@ public class JsscSerialConsoleController extends AbstractController<JsscSerialCo
 	}
 
 	@Override
-	public void onDataSent(List<Byte> data) throws GkException {
+	public void onDataSent(ByteBuffer data) throws GkException {
 		if(getDataModel().isConsoleEnabled()){
 			outputBuffer.addAll(data);
 			if(outputBuffer.hasNext()){
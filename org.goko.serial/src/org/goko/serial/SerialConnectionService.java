@@ -5,11 +5,13 @@ import gnu.io.SerialPort;
 
 import java.io.IOException;
 import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.collections.CollectionUtils;
+import org.goko.core.common.GkUtils;
 import org.goko.core.common.exception.GkException;
 import org.goko.core.common.exception.GkFunctionalException;
 import org.goko.core.common.exception.GkTechnicalException;
@@ -125,6 +127,22 @@ public class SerialConnectionService implements IConnectionService, ISerialDataL
 		return isConnected();
 	}
 
+	/** (inheritDoc)
+	 * @see org.goko.core.connection.IConnectionService#send(java.nio.ByteBuffer, org.goko.core.connection.DataPriority)
+	 */
+	@Override
+	public void send(ByteBuffer data, DataPriority priority) throws GkException {
+		send(GkUtils.toBytesList(data), priority);
+	}
+
+	/** (inheritDoc)
+	 * @see org.goko.core.connection.IConnectionService#send(java.nio.ByteBuffer)
+	 */
+	@Override
+	public void send(ByteBuffer data) throws GkException {
+		send(GkUtils.toBytesList(data));
+	}
+
 	/** (inheritDoc)
 	 * @see org.goko.core.connection.IConnectionService#send(java.util.List, org.goko.core.connection.DataPriority)
 	 */
@@ -199,7 +217,7 @@ public class SerialConnectionService implements IConnectionService, ISerialDataL
 		if(CollectionUtils.isNotEmpty(inputListeners)){
 			for(WeakReference<IConnectionDataListener> reference : inputListeners){
 				if(reference.get() != null){
-					reference.get().onDataReceived(data);
+					reference.get().onDataReceived(ByteBuffer.wrap(GkUtils.toBytes(data)));
 				}
 			}
 		}
@@ -209,7 +227,7 @@ public class SerialConnectionService implements IConnectionService, ISerialDataL
 		if(CollectionUtils.isNotEmpty(outputListeners)){
 			for(WeakReference<IConnectionDataListener> reference : outputListeners){
 				if(reference.get() != null){
-					reference.get().onDataSent(data);
+					reference.get().onDataSent(ByteBuffer.wrap(GkUtils.toBytes(data)));
 				}
 			}
 		}
@@ -19,7 +19,7 @@
  */
 package org.goko.serial.bindings;
 
-import java.util.List;
+import java.nio.ByteBuffer;
 
 import javax.inject.Inject;
 
@@ -69,8 +69,7 @@ public class SerialConsoleController extends AbstractController<SerialConsoleBin
 				addCommandHistory(cmdText);
 				resetCommandHistoryIndex();
 				getDataModel().setCurrentCommand( StringUtils.EMPTY );
-				List<Byte> data = GkUtils.toBytesList(cmdText);
-				connectionService.send(data);
+				connectionService.send(ByteBuffer.wrap(GkUtils.toBytes(cmdText)));
 			}
 		} catch (GkException e) {
 			LOG.error(e);
@@ -99,10 +98,10 @@ public class SerialConsoleController extends AbstractController<SerialConsoleBin
 		}
 	}
 	/** (inheritDoc)
-	 * @see org.goko.core.connection.IConnectionDataListener#onDataReceived(java.util.List)
+	 * @see org.goko.core.connection.IConnectionDataListener#onDataReceived(java.nio.ByteBuffer)
 	 */
 	@Override
-	public void onDataReceived(List<Byte> data) throws GkException {
+	public void onDataReceived(ByteBuffer data) throws GkException {
 //		if(getDataModel().isEnabled()){
 //			appendTextToConsoleWidget(GkUtils.toString(data),SWT.COLOR_BLACK);
 //			updateCarretPosition();
@@ -157,10 +156,10 @@ public class SerialConsoleController extends AbstractController<SerialConsoleBin
 		}
 	}
 	/** (inheritDoc)
-	 * @see org.goko.core.connection.IConnectionDataListener#onDataSent(java.util.List)
+	 * @see org.goko.core.connection.IConnectionDataListener#onDataSent(java.nio.ByteBuffer)
 	 */
 	@Override
-	public void onDataSent(List<Byte> data) throws GkException {
+	public void onDataSent(ByteBuffer data) throws GkException {
 		if(getDataModel().isEnabled()){
 			appendTextToConsoleWidget(GkUtils.toString(data),SWT.COLOR_BLUE);
 			updateCarretPosition();
@@ -0,0 +1,100 @@
+package org.goko.tinyg.controller;
+
+import junit.framework.TestCase;
+
+public class TinyGAckTrackerTestCase extends TestCase {
+	private TinyGAckTracker tracker;
+
+	/** {@inheritDoc}
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		tracker = new TinyGAckTracker();
+	}
+
+	/**
+	 * Responses are matched to the sent lines in FIFO order
+	 */
+	public void testFifoMatching(){
+		tracker.add(10, "n10 g1 x1");
+		tracker.add(TinyGAckTracker.NO_COMMAND, "g91 g0 x5");
+		tracker.add(11, "n11 g1 x2");
+		assertEquals(3, tracker.getPendingCount());
+
+		assertEquals(10, tracker.acknowledge("n10 g1 x1"));
+		assertEquals(TinyGAckTracker.NO_COMMAND, tracker.acknowledge("g91 g0 x5"));
+		assertEquals(11, tracker.acknowledge("n11 g1 x2"));
+		assertEquals(0, tracker.getPendingCount());
+		assertEquals(0, tracker.getMismatchCount());
+	}
+
+	/**
+	 * The echoed text may differ from the sent text by its case and whitespaces
+	 */
+	public void testEchoIgnoresCaseAndWhitespaces(){
+		tracker.add(1, "N1 G1 X10.5 Y2");
+		assertEquals(1, tracker.acknowledge("n1g1x10.5y2"));
+		assertEquals(0, tracker.getMismatchCount());
+		assertEquals(TinyGAckTracker.hash("N1 G1 X10.5"), TinyGAckTracker.hash(" n1g1 x10.5 "));
+	}
+
+	/**
+	 * A response which does not match the oldest line still releases it, but is counted
+	 */
+	public void testMismatch(){
+		tracker.add(1, "n1 g1 x1");
+		tracker.add(2, "n2 g1 x2");
+
+		assertEquals(1, tracker.acknowledge("n2 g1 x2"));
+		assertEquals(1, tracker.getMismatchCount());
+		assertEquals(2, tracker.acknowledge("n2 g1 x2"));
+		assertEquals(1, tracker.getMismatchCount());
+	}
+
+	/**
+	 * A response received while nothing is in flight is not matched to any command
+	 */
+	public void testUnexpectedResponse(){
+		assertEquals(TinyGAckTracker.NO_COMMAND, tracker.acknowledge("g0 x0"));
+		assertEquals(0, tracker.getPendingCount());
+	}
+
+	/**
+	 * Lines which could not be sent, and queue flush
+	 */
+	public void testRemoveLastAndClear(){
+		tracker.add(1, "n1 g1 x1");
+		tracker.add(2, "n2 g1 x2");
+		tracker.removeLast();
+		assertEquals(1, tracker.getPendingCount());
+		assertEquals(1, tracker.acknowledge("n1 g1 x1"));
+
+		tracker.add(3, "n3 g1 x3");
+		tracker.clear();
+		assertEquals(0, tracker.getPendingCount());
+		assertEquals(TinyGAckTracker.NO_COMMAND, tracker.acknowledge("n3 g1 x3"));
+	}
+
+	/**
+	 * The storage of the in flight lines grows without losing their order
+	 */
+	public void testGrow(){
+		for (int i = 0; i < 20; i++) {
+			tracker.add(i, "n"+i);
+		}
+		// Move the head so the lines wrap around the storage
+		for (int i = 0; i < 15; i++) {
+			assertEquals(i, tracker.acknowledge("n"+i));
+		}
+		for (int i = 20; i < 100; i++) {
+			tracker.add(i, "n"+i);
+		}
+		assertEquals(85, tracker.getPendingCount());
+		for (int i = 15; i < 100; i++) {
+			assertEquals(i, tracker.acknowledge("n"+i));
+		}
+		assertEquals(0, tracker.getMismatchCount());
+	}
+}
@@ -0,0 +1,206 @@
+package org.goko.tinyg.controller;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.apache.commons.lang3.StringUtils;
+import org.goko.core.common.GkUtils;
+import org.goko.core.common.exception.GkException;
+import org.goko.core.connection.IConnectionDataListener;
+import org.goko.core.gcode.bean.GCodeContext;
+import org.goko.core.gcode.bean.IGCodeProvider;
+import org.goko.core.gcode.bean.execution.IGCodeExecutionToken;
+import org.goko.core.gcode.service.IGCodeExecutionListener;
+import org.goko.core.gcode.service.IGCodeExecutionMonitorService;
+import org.goko.gcode.rs274ngcv3.RS274GCodeService;
+import org.goko.junit.tools.connection.SerialConnectionEmulator;
+
+/**
+ * Measures the number of GCode acknowledgements per second handled by the {@link TinyGControllerService}.
+ * A responder thread answers every streamed command with its gc response through the {@link SerialConnectionEmulator},
+ * the time is measured until the execution token is complete. For reference, the cost of the former parsing of each
+ * echoed command is also measured.
+ * Run as a Java application, optional arguments are the number of commands and the number of measured iterations.
+ *
+ * @author PsyKo
+ *
+ */
+public class TinyGAcknowledgementBenchmark {
+	/** Default number of streamed commands */
+	private static final int DEFAULT_COMMAND_COUNT = 20000;
+	/** Default number of measured iterations */
+	private static final int DEFAULT_ITERATION_COUNT = 3;
+
+	public static void main(String[] args) throws Exception {
+		int commandCount = DEFAULT_COMMAND_COUNT;
+		int iterationCount = DEFAULT_ITERATION_COUNT;
+		if(args.length > 0){
+			commandCount = Integer.valueOf(args[0]);
+		}
+		if(args.length > 1){
+			iterationCount = Integer.valueOf(args[1]);
+		}
+
+		SerialConnectionEmulator serialEmulator = new SerialConnectionEmulator();
+		TinyGControllerService tinyg = new TinyGControllerService();
+		tinyg.setConnectionService(serialEmulator);
+		RS274GCodeService gcodeService = new RS274GCodeService();
+		tinyg.setGCodeService(gcodeService);
+		tinyg.setMonitorService(new NullExecutionMonitor());
+		tinyg.start();
+		serialEmulator.connect(null);
+		tinyg.setPlannerBufferSpaceCheck(false);
+		serialEmulator.receiveDataWithEndChar("{\"r\":{\"sr\":{\"line\":0,\"posx\":0.000,\"posy\":0.000,\"posz\":0.000,\"posa\":0.000,\"feed\":0.00,\"vel\":0.00,\"unit\":1,\"coor\":1,\"dist\":0,\"frmo\":1,\"momo\":4,\"stat\":1}},\"f\":[1,0,0,0]}");
+		serialEmulator.receiveDataWithEndChar("{\"r\":{\"ex\":2},\"f\":[1,0,0,0]}");
+
+		Responder responder = new Responder(serialEmulator);
+		serialEmulator.addOutputDataListener(responder);
+		Thread responderThread = new Thread(responder);
+		responderThread.setDaemon(true);
+		responderThread.start();
+
+		String program = generateProgram(commandCount);
+		for (int i = 0; i < iterationCount; i++) {
+			serialEmulator.clearSentBuffer();
+			IGCodeProvider provider = gcodeService.parse(program, tinyg.getCurrentGCodeContext());
+			long start = System.nanoTime();
+			IGCodeExecutionToken token = tinyg.executeGCode(provider);
+			while(token.getExecutedCommandCount() + token.getErrorCommandCount() < commandCount){
+				if(responder.getError() != null){
+					throw responder.getError();
+				}
+				Thread.sleep(1);
+			}
+			double seconds = (System.nanoTime() - start) / 1e9;
+			System.out.println(String.format(Locale.US, "Streaming with acknowledgement tracking %10.0f acks/s", commandCount / seconds));
+		}
+
+		measureFormerParsing(gcodeService, responder.getEchoedCommands(), tinyg.getCurrentGCodeContext());
+		tinyg.stop();
+		System.exit(0);
+	}
+
+	/**
+	 * Measure the former handling of an acknowledgement : the parsing of the echoed command
+	 * @param gcodeService the GCode service
+	 * @param echoedCommands the echoed commands
+	 * @param context the context
+	 * @throws GkException GkException
+	 */
+	private static void measureFormerParsing(RS274GCodeService gcodeService, List<String> echoedCommands, GCodeContext context) throws GkException{
+		long start = System.nanoTime();
+		for (String echoedCommand : echoedCommands) {
+			gcodeService.parseCommand(echoedCommand, context);
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println(String.format(Locale.US, "Former parsing of the echoed command    %10.0f acks/s (parsing alone)", echoedCommands.size() / seconds));
+	}
+
+	/**
+	 * Generates a program of short linear segments
+	 * @param commandCount the number of commands
+	 * @return the program
+	 */
+	private static String generateProgram(int commandCount){
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < commandCount; i++) {
+			builder.append("G1X").append(i % 100).append('.').append(i % 7)
+				   .append("Y").append(i % 50).append(".25F1200").append('\n');
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Execution monitor ignoring all the notifications
+	 */
+	private static class NullExecutionMonitor implements IGCodeExecutionMonitorService{
+		@Override
+		public void addExecutionListener(IGCodeExecutionListener listener) throws GkException {}
+		@Override
+		public void removeExecutionListener(IGCodeExecutionListener listener) throws GkException {}
+		@Override
+		public void notifyExecutionStart(IGCodeExecutionToken token) throws GkException {}
+		@Override
+		public void notifyCommandStateChanged(IGCodeExecutionToken token, Integer idCommand) throws GkException {}
+		@Override
+		public void notifyExecutionCanceled(IGCodeExecutionToken token) throws GkException {}
+		@Override
+		public void notifyExecutionPause(IGCodeExecutionToken token) throws GkException {}
+		@Override
+		public void notifyExecutionComplete(IGCodeExecutionToken token) throws GkException {}
+	}
+
+	/**
+	 * Emulates TinyG by answering every gc request with its gc response
+	 */
+	private static class Responder implements IConnectionDataListener, Runnable{
+		/** The emulated serial connection */
+		private SerialConnectionEmulator serialEmulator;
+		/** The commands waiting for their response */
+		private BlockingQueue<String> pendingCommands;
+		/** The echoed commands */
+		private List<String> echoedCommands;
+		/** The error which stopped the responder, if any */
+		private volatile GkException error;
+
+		Responder(SerialConnectionEmulator serialEmulator) {
+			this.serialEmulator  = serialEmulator;
+			this.pendingCommands = new LinkedBlockingQueue<String>();
+			this.echoedCommands  = new ArrayList<String>();
+		}
+
+		/** (inheritDoc)
+		 * @see org.goko.core.connection.IConnectionDataListener#onDataSent(java.nio.ByteBuffer)
+		 */
+		@Override
+		public void onDataSent(ByteBuffer data) throws GkException {
+			String gcode = StringUtils.substringBetween(GkUtils.toString(data), "{\"gc\":\"", "\"}");
+			if(gcode != null){
+				pendingCommands.add(gcode);
+			}
+		}
+
+		/** (inheritDoc)
+		 * @see org.goko.core.connection.IConnectionDataListener#onDataReceived(java.nio.ByteBuffer)
+		 */
+		@Override
+		public void onDataReceived(ByteBuffer data) throws GkException {}
+
+		/** (inheritDoc)
+		 * @see java.lang.Runnable#run()
+		 */
+		@Override
+		public void run() {
+			try {
+				while(true){
+					String gcode = pendingCommands.take();
+					echoedCommands.add(gcode);
+					serialEmulator.receiveDataWithEndChar("{\"r\":{\"gc\":\""+gcode+"\"},\"f\":[1,0,"+gcode.length()+",1234]}");
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (GkException e) {
+				// Reported by the benchmark thread
+				error = e;
+			}
+		}
+
+		/**
+		 * @return the echoed commands
+		 */
+		List<String> getEchoedCommands() {
+			return new ArrayList<String>(echoedCommands);
+		}
+
+		/**
+		 * @return the error which stopped the responder, <code>null</code> if it is running
+		 */
+		GkException getError() {
+			return error;
+		}
+	}
+}
@@ -8,7 +8,10 @@ import java.math.BigDecimal;
 import junit.framework.TestCase;
 
 import org.goko.core.common.exception.GkFunctionalException;
+import org.goko.core.common.measure.quantity.type.NumberQuantity;
+import org.goko.core.controller.bean.MotionPlannerSettings;
 import org.goko.core.gcode.bean.IGCodeProvider;
+import org.goko.core.gcode.bean.Tuple6b;
 import org.goko.gcode.rs274ngcv3.RS274GCodeService;
 import org.goko.junit.tools.assertion.AssertGkFunctionalException;
 import org.goko.junit.tools.connection.AssertSerialEmulator;
@@ -149,6 +152,48 @@ public class TinyGControllerServiceTestCase extends TestCase {
 		}
 	}
 	
+	/**
+	 * Conversion of the TinyG axis settings into planner settings : velocities in mm/min, jerk in millions of mm/min^3, junction acceleration in mm/min^2
+	 * @throws Exception Exception
+	 */
+	public void testMotionPlannerSettings() throws Exception{
+		serialEmulator.receiveData("{\"r\":{\"x\":{\"am\":1,\"vm\":16000,\"fr\":1500,\"tn\":0.000,\"tm\":300.000,\"jm\":5000,\"jh\":30000,\"jd\":0.0100,\"sn\":0,\"sx\":1,\"sv\":1000,\"lv\":100,\"lb\":20.000,\"zb\":3.000}},\"f\":[1,0,9,1167]}"+'\n');
+		serialEmulator.receiveData("{\"r\":{\"z\":{\"am\":1,\"vm\":1000,\"fr\":1000,\"tn\":0.000,\"tm\":100.000,\"jm\":50,\"jh\":1000,\"jd\":0.0500,\"sn\":1,\"sx\":0,\"sv\":800,\"lv\":100,\"lb\":20.000,\"zb\":10.000}},\"f\":[1,0,9,6257]}"+'\n');
+		serialEmulator.receiveData("{\"r\":{\"ja\":2000000},\"f\":[1,0,11,346]}"+'\n');
+
+		MotionPlannerSettings settings = tinyg.getMotionPlannerSettings();
+		assertEquals(28, settings.getBlockCount());
+		// 16000 mm/min
+		assertEquals(16000.0 / 60, settings.getMaximumVelocity(0), 1e-9);
+		assertEquals(1500.0 / 60, settings.getMaximumFeedrate(0), 1e-9);
+		// 5000 * 10^6 mm/min^3 is 23148 mm/s^3 : about 1240 mm/s^2 for a ramp to 16000 mm/min
+		assertEquals(Math.sqrt(16000.0 / 60 * 5000e6 / 216000) / 2, settings.getAcceleration(0), 1e-9);
+		assertEquals(1242.26, settings.getAcceleration(0), 0.01);
+		assertEquals(Math.sqrt(1000.0 / 60 * 50e6 / 216000) / 2, settings.getAcceleration(2), 1e-9);
+		// Smallest junction deviation of the axis
+		assertEquals(0.01, settings.getJunctionDeviation(), 1e-9);
+		// 2000000 mm/min^2
+		assertEquals(2000000.0 / 3600, settings.getJunctionAcceleration(), 1e-9);
+	}
+
+	/**
+	 * Status reports update the work position axis by axis, and the returned positions are copies
+	 * @throws Exception Exception
+	 */
+	public void testStatusReportPosition() throws Exception{
+		serialEmulator.receiveDataWithEndChar("{\"sr\":{\"posx\":12.500,\"posy\":-3.250,\"posz\":1.000,\"posa\":0.000,\"unit\":1,\"stat\":1}}");
+		serialEmulator.receiveDataWithEndChar("{\"sr\":{\"posy\":4.000}}");
+
+		Tuple6b position = tinyg.getPosition();
+		assertEquals(12.5, position.getX().doubleValue(), 1e-9);
+		assertEquals(4.0, position.getY().doubleValue(), 1e-9);
+		assertEquals(1.0, position.getZ().doubleValue(), 1e-9);
+		assertEquals(4.0, tinyg.getCurrentGCodeContext().getPosition().getY().doubleValue(), 1e-9);
+
+		position.setX(NumberQuantity.of(BigDecimal.ZERO, position.getX().getUnit()));
+		assertEquals(12.5, tinyg.getPosition().getX().doubleValue(), 1e-9);
+	}
+
 	/** (inheritDoc)
 	 * @see junit.framework.TestCase#tearDown()
 	 */
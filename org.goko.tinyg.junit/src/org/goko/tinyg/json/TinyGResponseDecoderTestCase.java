@@ -0,0 +1,122 @@
+package org.goko.tinyg.json;
+
+import junit.framework.TestCase;
+
+import org.goko.core.common.exception.GkException;
+import org.goko.tinyg.controller.TinyGStatusSnapshot;
+
+public class TinyGResponseDecoderTestCase extends TestCase {
+	private TinyGStatusSnapshot snapshot;
+	private TinyGResponseDecoder decoder;
+
+	/** {@inheritDoc}
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		snapshot = new TinyGStatusSnapshot();
+		decoder  = new TinyGResponseDecoder(snapshot);
+	}
+
+	/**
+	 * Status report in a response envelope, with footer
+	 * @throws Exception Exception
+	 */
+	public void testStatusReportInEnvelope() throws Exception{
+		assertTrue(decoder.decode("{\"r\":{\"sr\":{\"line\":0,\"posx\":12.345,\"posy\":-0.500,\"posz\":3.000,\"posa\":90.000,\"feed\":1500.00,\"vel\":42.10,\"unit\":1,\"coor\":2,\"dist\":0,\"frmo\":1,\"momo\":4,\"stat\":5}},\"f\":[1,0,10,8936]}"));
+		assertTrue(decoder.hasStatusReport());
+		assertTrue(decoder.hasFooter());
+		assertEquals(0, decoder.getFooterStatusCode());
+		assertFalse(decoder.hasGCodeResponse());
+		assertFalse(decoder.hasQueueReport());
+		assertFalse(decoder.hasUnsupportedContent());
+
+		assertEquals(12.345, snapshot.getPositionX());
+		assertEquals(-0.5, snapshot.getPositionY());
+		assertEquals(3.0, snapshot.getPositionZ());
+		assertEquals(90.0, snapshot.getPositionA());
+		assertEquals(1500.0, snapshot.getFeedrate());
+		assertEquals(42.1, snapshot.getVelocity());
+		assertEquals(1, snapshot.getUnits());
+		assertEquals(2, snapshot.getCoordinates());
+		assertEquals(0, snapshot.getDistanceMode());
+		assertEquals(5, snapshot.getState());
+		assertTrue(snapshot.isChanged(TinyGStatusSnapshot.POSITION));
+		assertTrue(snapshot.isChanged(TinyGStatusSnapshot.STATE));
+	}
+
+	/**
+	 * Only the changed values of a status report are flagged
+	 * @throws Exception Exception
+	 */
+	public void testStatusReportChanges() throws Exception{
+		decoder.decode("{\"sr\":{\"posx\":1.000,\"posy\":2.000,\"vel\":0.00,\"stat\":1}}");
+		snapshot.clearChanges();
+		assertFalse(snapshot.hasChanges());
+
+		decoder.decode("{\"sr\":{\"posx\":1.000,\"posy\":2.500,\"vel\":0.00,\"stat\":5}}");
+		assertTrue(decoder.hasStatusReport());
+		assertFalse(snapshot.isChanged(TinyGStatusSnapshot.POSITION_X));
+		assertTrue(snapshot.isChanged(TinyGStatusSnapshot.POSITION_Y));
+		assertFalse(snapshot.isChanged(TinyGStatusSnapshot.VELOCITY));
+		assertTrue(snapshot.isChanged(TinyGStatusSnapshot.STATE));
+
+		snapshot.reset();
+		decoder.decode("{\"sr\":{\"posx\":1.000}}");
+		assertTrue(snapshot.isChanged(TinyGStatusSnapshot.POSITION_X));
+	}
+
+	/**
+	 * GCode response with escaped characters and queue report
+	 * @throws Exception Exception
+	 */
+	public void testGCodeResponse() throws Exception{
+		assertTrue(decoder.decode("{\"r\":{\"gc\":\"g1x10 (a \\\"comment\\\" \\u0041)\",\"n\":12},\"qr\":27,\"f\":[1,20,12,4321]}"));
+		assertTrue(decoder.hasGCodeResponse());
+		assertEquals("g1x10 (a \"comment\" A)", decoder.getGCodeResponse().toString());
+		assertTrue(decoder.hasQueueReport());
+		assertEquals(27, decoder.getQueueReport());
+		assertEquals(20, decoder.getFooterStatusCode());
+		assertFalse(decoder.hasStatusReport());
+		assertFalse(decoder.hasUnsupportedContent());
+	}
+
+	/**
+	 * Unknown keys are skipped, the unknown keys of the response envelope are reported
+	 * @throws Exception Exception
+	 */
+	public void testUnsupportedContent() throws Exception{
+		assertTrue(decoder.decode("{\"er\":{\"fb\":435.10,\"st\":[1,{\"a\":null}],\"msg\":\"bad, \\\"}\\\" value\"},\"qr\":3}"));
+		assertFalse(decoder.hasUnsupportedContent());
+		assertEquals(3, decoder.getQueueReport());
+
+		assertTrue(decoder.decode("{\"r\":{\"g55\":{\"x\":-164.127,\"y\":-208.999,\"z\":53.778,\"a\":0.000,\"b\":0.000,\"c\":0.000}},\"f\":[1,0,11,1231]}"));
+		assertTrue(decoder.hasUnsupportedContent());
+		assertTrue(decoder.hasFooter());
+
+		assertTrue(decoder.decode("  {\"r\":{\"sys\":{\"fv\":0.970,\"ct\":1e-2,\"id\":\"9H3583-PXN\"}},\"f\":[1,0,11,346]}\r"));
+		assertTrue(decoder.hasUnsupportedContent());
+	}
+
+	/**
+	 * Lines which are not JSON objects are ignored, malformed JSON is reported
+	 * @throws Exception Exception
+	 */
+	public void testInvalidLines() throws Exception{
+		assertFalse(decoder.decode("tinyg [mm] ok>"));
+		assertFalse(decoder.decode(""));
+		try{
+			decoder.decode("{\"sr\":{\"posx\":}}");
+			fail("Malformed JSON should be reported");
+		}catch(GkException e){
+			// Expected
+		}
+		try{
+			decoder.decode("{\"r\":{\"gc\":\"g0x1}");
+			fail("Malformed JSON should be reported");
+		}catch(GkException e){
+			// Expected
+		}
+	}
+}
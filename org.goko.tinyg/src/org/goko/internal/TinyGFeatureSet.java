@@ -5,6 +5,7 @@ import org.goko.core.controller.IContinuousJogService;
 import org.goko.core.controller.IControllerService;
 import org.goko.core.controller.ICoordinateSystemAdapter;
 import org.goko.core.controller.IFourAxisControllerAdapter;
+import org.goko.core.controller.IMotionPlannerAdapter;
 import org.goko.core.controller.IProbingService;
 import org.goko.core.feature.IFeatureSet;
 import org.goko.core.feature.TargetBoard;
@@ -36,13 +37,14 @@ public class TinyGFeatureSet implements IFeatureSet {
 	@Override
 	public void start(BundleContext context) throws GkException {
 		TinyGControllerService service = new TinyGControllerService();
-		// ITinygControllerService extends IControllerService, IProbingService, IFourAxisControllerAdapter, ICoordinateSystemAdapter, IContinuousJogService
+		// ITinygControllerService extends IControllerService, IProbingService, IFourAxisControllerAdapter, ICoordinateSystemAdapter, IContinuousJogService, IMotionPlannerAdapter
 		context.registerService(IControllerService.class, service, null);
 		context.registerService(ITinygControllerService.class, service, null);		
 		context.registerService(IProbingService.class, service, null);
 		context.registerService(IFourAxisControllerAdapter.class, service, null);
 		context.registerService(ICoordinateSystemAdapter.class, service, null);
 		context.registerService(IContinuousJogService.class, service, null);
+		context.registerService(IMotionPlannerAdapter.class, service, null);
 		
 		service.start();
 	}
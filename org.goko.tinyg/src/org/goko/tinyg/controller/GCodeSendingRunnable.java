@@ -106,7 +106,7 @@ public class GCodeSendingRunnable implements Runnable {
 				//token.setCommandState(currentCommand, GCodeCommandState.SENT);
 				token.markAsSent(currentCommand.getId());
 				GokoEventBus.getInstance().post(new GCodeCommandSelectionEvent(currentCommand));
-				tinyGControllerService.send(currentCommand);
+				tinyGControllerService.sendStreamed(currentCommand);
 				pendingCommands++;
 			}
 			waitLastCommandAcknowledgement();
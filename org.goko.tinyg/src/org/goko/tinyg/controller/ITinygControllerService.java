@@ -25,11 +25,12 @@ import org.goko.core.controller.IContinuousJogService;
 import org.goko.core.controller.IControllerService;
 import org.goko.core.controller.ICoordinateSystemAdapter;
 import org.goko.core.controller.IFourAxisControllerAdapter;
+import org.goko.core.controller.IMotionPlannerAdapter;
 import org.goko.core.controller.IProbingService;
 import org.goko.core.controller.bean.MachineState;
 import org.goko.tinyg.controller.configuration.TinyGConfiguration;
 
-public interface ITinygControllerService extends IControllerService, IProbingService, IFourAxisControllerAdapter, ICoordinateSystemAdapter, IContinuousJogService {
+public interface ITinygControllerService extends IControllerService, IProbingService, IFourAxisControllerAdapter, ICoordinateSystemAdapter, IContinuousJogService, IMotionPlannerAdapter {
 
 	/**
 	 * Returns the TinyG configuration
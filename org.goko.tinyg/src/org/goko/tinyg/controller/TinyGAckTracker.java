@@ -0,0 +1,154 @@
+/*
+ *
+ *   Goko
+ *   Copyright (C) 2013  PsyKo
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.goko.tinyg.controller;
+
+import org.goko.core.log.GkLog;
+
+/**
+ * Tracks the GCode lines sent to TinyG until their <code>gc</code> response is received.
+ * <p>
+ * TinyG answers every GCode line, wrapped in JSON or not, with one <code>gc</code> response and in the order they were
+ * received. The tracker keeps a FIFO of the ids of the in flight commands, so a response is matched to its command without
+ * parsing it. The echoed text is only checked against a hash of the sent text, ignoring case and whitespaces.
+ * </p>
+ * @author PsyKo
+ *
+ */
+public class TinyGAckTracker {
+	/** LOG */
+	private static final GkLog LOG = GkLog.getLogger(TinyGAckTracker.class);
+	/** Id registered for the lines which are not part of a streamed file */
+	public static final int NO_COMMAND = -1;
+	/** Command ids of the in flight lines */
+	private int[] commandIds;
+	/** Hashes of the in flight lines */
+	private int[] hashes;
+	/** Index of the oldest in flight line */
+	private int head;
+	/** Number of in flight lines */
+	private int count;
+	/** Number of responses which did not match the oldest in flight line */
+	private int mismatchCount;
+
+	/**
+	 * Constructor
+	 */
+	public TinyGAckTracker() {
+		this.commandIds = new int[32];
+		this.hashes 	= new int[32];
+	}
+
+	/**
+	 * Register a GCode line sent to TinyG
+	 * @param commandId the id of the streamed command, or {@link #NO_COMMAND}
+	 * @param gcode the sent GCode text
+	 */
+	public synchronized void add(int commandId, CharSequence gcode){
+		if(count == commandIds.length){
+			grow();
+		}
+		int index = (head + count) % commandIds.length;
+		commandIds[index] = commandId;
+		hashes[index] 	  = hash(gcode);
+		count++;
+	}
+
+	/**
+	 * Unregister the last registered line, when it could not be sent
+	 */
+	public synchronized void removeLast(){
+		if(count > 0){
+			count--;
+		}
+	}
+
+	/**
+	 * Release the oldest in flight line after TinyG answered it
+	 * @param echoedGCode the GCode text echoed in the response
+	 * @return the id of the command held by the released line, {@link #NO_COMMAND} if it was not a streamed command or if nothing was in flight
+	 */
+	public synchronized int acknowledge(CharSequence echoedGCode){
+		if(count == 0){
+			return NO_COMMAND;
+		}
+		int commandId = commandIds[head];
+		if(hashes[head] != hash(echoedGCode)){
+			mismatchCount++;
+			LOG.warn("Received acknowledgement for '"+echoedGCode+"' does not match the oldest sent command "+commandId);
+		}
+		head = (head + 1) % commandIds.length;
+		count--;
+		return commandId;
+	}
+
+	/**
+	 * Forget all the in flight lines, after a queue flush or a new connection
+	 */
+	public synchronized void clear(){
+		head  = 0;
+		count = 0;
+	}
+
+	/**
+	 * @return the number of lines waiting for a response
+	 */
+	public synchronized int getPendingCount(){
+		return count;
+	}
+
+	/**
+	 * @return the number of responses which did not match the expected command
+	 */
+	public synchronized int getMismatchCount(){
+		return mismatchCount;
+	}
+
+	/**
+	 * Hash of the given GCode text, ignoring case and whitespaces
+	 * @param gcode the GCode text
+	 * @return the hash
+	 */
+	protected static int hash(CharSequence gcode){
+		int hash = 0;
+		for (int i = 0; i < gcode.length(); i++) {
+			char c = gcode.charAt(i);
+			if(!Character.isWhitespace(c)){
+				hash = 31 * hash + Character.toLowerCase(c);
+			}
+		}
+		return hash;
+	}
+
+	/**
+	 * Double the size of the in flight line storage
+	 */
+	private void grow(){
+		int[] newCommandIds = new int[commandIds.length * 2];
+		int[] newHashes 	= new int[commandIds.length * 2];
+		for (int i = 0; i < count; i++) {
+			int index = (head + i) % commandIds.length;
+			newCommandIds[i] = commandIds[index];
+			newHashes[i] 	 = hashes[index];
+		}
+		commandIds 	= newCommandIds;
+		hashes 		= newHashes;
+		head 		= 0;
+	}
+}
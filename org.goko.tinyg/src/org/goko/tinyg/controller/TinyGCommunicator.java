@@ -19,8 +19,7 @@
  */
 package org.goko.tinyg.controller;
 
-import java.math.BigDecimal;
-import java.util.List;
+import java.nio.ByteBuffer;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -28,7 +27,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.goko.core.common.GkUtils;
 import org.goko.core.common.applicative.logging.ApplicativeLogEvent;
 import org.goko.core.common.applicative.logging.IApplicativeLogService;
-import org.goko.core.common.buffer.ByteCommandBuffer;
+import org.goko.core.common.buffer.ByteLineFramer;
 import org.goko.core.common.exception.GkException;
 import org.goko.core.common.measure.SI;
 import org.goko.core.common.measure.quantity.type.NumberQuantity;
@@ -39,17 +38,14 @@ import org.goko.core.connection.IConnectionListener;
 import org.goko.core.connection.IConnectionService;
 import org.goko.core.controller.bean.MachineState;
 import org.goko.core.gcode.bean.GCodeCommand;
-import org.goko.core.gcode.bean.GCodeContext;
 import org.goko.core.gcode.bean.Tuple6b;
 import org.goko.core.gcode.bean.commands.EnumCoordinateSystem;
-import org.goko.core.gcode.bean.commands.EnumGCodeCommandDistanceMode;
-import org.goko.core.gcode.bean.commands.EnumGCodeCommandUnit;
 import org.goko.core.gcode.service.IGCodeService;
 import org.goko.core.log.GkLog;
 import org.goko.tinyg.controller.configuration.TinyGConfiguration;
 import org.goko.tinyg.json.TinyGJsonUtils;
+import org.goko.tinyg.json.TinyGResponseDecoder;
 
-import com.eclipsesource.json.JsonArray;
 import com.eclipsesource.json.JsonObject;
 import com.eclipsesource.json.JsonValue;
 
@@ -60,10 +56,20 @@ public class TinyGCommunicator implements IConnectionDataListener, IConnectionLi
 	private TinyGControllerService tinyg;
 	/** TinyG end line delimiter */
 	private char endLineCharDelimiter;
+	/** Size of the incoming data buffer, large enough for a complete configuration report */
+	private static final int INCOMING_BUFFER_SIZE = 4096;
 	/** Buffer for incoming data	 */
-	private ByteCommandBuffer incomingBuffer;
+	private ByteLineFramer incomingBuffer;
 	/** The connection service */
 	private IConnectionService connectionService;
+	/** Decoder of the JSON lines */
+	private TinyGResponseDecoder responseDecoder;
+	/** Values of the last status reports */
+	private TinyGStatusSnapshot statusSnapshot;
+	/** In flight GCode lines waiting for their response */
+	private TinyGAckTracker ackTracker;
+	/** Reused buffer for outgoing data */
+	private ByteBuffer outgoingBuffer;
 	/** The applicative log service */
 	private IApplicativeLogService applicativeLogService;
 	/** GCode service */
@@ -77,37 +83,35 @@ public class TinyGCommunicator implements IConnectionDataListener, IConnectionLi
 	public TinyGCommunicator(TinyGControllerService tinyg) {
 		this.tinyg = tinyg;
 		endLineCharDelimiter = '\n';
-		incomingBuffer 		 = new ByteCommandBuffer((byte) endLineCharDelimiter);
+		incomingBuffer 		 = new ByteLineFramer(INCOMING_BUFFER_SIZE, (byte) endLineCharDelimiter);
+		outgoingBuffer 		 = ByteBuffer.allocate(256);
+		ackTracker 			 = new TinyGAckTracker();
+		statusSnapshot 		 = new TinyGStatusSnapshot();
+		responseDecoder 	 = new TinyGResponseDecoder(statusSnapshot);
 		executor = Executors.newSingleThreadExecutor();
 	}
 
 	/** (inheritDoc)
-	 * @see org.goko.core.connection.IConnectionDataListener#onDataReceived(java.util.List)
+	 * @see org.goko.core.connection.IConnectionDataListener#onDataReceived(java.nio.ByteBuffer)
 	 */
 	@Override
-	public void onDataReceived(List<Byte> data) throws GkException {
-		incomingBuffer.addAll(data);
-		//Dpiler dans un thread ?
-//		if(incomingBuffer.hasNext()){
-//			executor.execute(new Runnable() {
-//				@Override
-//				public void run() {
-					while(incomingBuffer.hasNext()){
-						try {
-							handleIncomingData(GkUtils.toString(incomingBuffer.unstackNextCommand()));
-						} catch (GkException e) {
-							LOG.error(e);
-						}
-					}
-//				}
-//			});
-//		}
+	public void onDataReceived(ByteBuffer data) throws GkException {
+		while(data.hasRemaining()){
+			incomingBuffer.write(data);
+			while(incomingBuffer.hasNextLine()){
+				try {
+					handleIncomingData(incomingBuffer.nextLineAsCharSequence());
+				} catch (GkException e) {
+					LOG.error(e);
+				}
+			}
+		}
 	}
 	/** (inheritDoc)
-	 * @see org.goko.core.connection.IConnectionDataListener#onDataSent(java.util.List)
+	 * @see org.goko.core.connection.IConnectionDataListener#onDataSent(java.nio.ByteBuffer)
 	 */
 	@Override
-	public void onDataSent(List<Byte> data) throws GkException {
+	public void onDataSent(ByteBuffer data) throws GkException {
 		// TODO Auto-generated method stub
 
 	}
@@ -116,6 +120,8 @@ public class TinyGCommunicator implements IConnectionDataListener, IConnectionLi
 	public void onConnectionEvent(EnumConnectionEvent event) throws GkException {
 		if(event == EnumConnectionEvent.CONNECTED){
 			incomingBuffer.clear();
+			ackTracker.clear();
+			statusSnapshot.reset();
 			getConnectionService().addInputDataListener(this);
 			tinyg.refreshStatus();
 			tinyg.refreshConfiguration();
@@ -127,48 +133,63 @@ public class TinyGCommunicator implements IConnectionDataListener, IConnectionLi
 		}		
 	}
 
-	private void handleIncomingData(String data) throws GkException {
-		String trimmedData = StringUtils.trim(data);
-		if(StringUtils.isNotEmpty(trimmedData)){
-			if(TinyGJsonUtils.isJsonFormat(trimmedData)){
-				JsonObject response = null;
-				try{
-					response = JsonObject.readFrom(trimmedData);
-				}catch(Exception e){
-					LOG.error("Error while parsing JSon for string '"+trimmedData+"'"+System.lineSeparator()+e.getMessage());
-					return;
-				}
-
-				JsonValue footerBody = response.get(TinyGJsonUtils.FOOTER);
-				if(footerBody != null){
-					handleResponseFooter(footerBody);
-				}
-
-				JsonValue responseBody = response.get(TinyGJsonUtils.RESPONSE_ENVELOPE);
-				if(responseBody != null){
-					handleResponseEnvelope((JsonObject) responseBody);
-				}
-				JsonValue statusReport = response.get(TinyGJsonUtils.STATUS_REPORT);
-				if(statusReport != null){
-					handleStatusReport(statusReport);
-				}
-				JsonValue queueReport = response.get(TinyGJsonUtils.QUEUE_REPORT);
-				if(queueReport != null){
-					handleQueueReport(queueReport);
-				}
+	/**
+	 * Handle a line received from TinyG. The hot keys are read by the streaming decoder, the line is only parsed
+	 * as a JSON tree when the response envelope contains other keys.
+	 * @param data the received line
+	 * @throws GkException GkException
+	 */
+	private void handleIncomingData(CharSequence data) throws GkException {
+		try{
+			if(!responseDecoder.decode(data)){
+				return;
 			}
+		}catch(GkException e){
+			LOG.error("Error while parsing JSon for string '"+data+"'"+System.lineSeparator()+e.getMessage());
+			return;
+		}
+		if(responseDecoder.hasFooter()){
+			handleResponseFooter(responseDecoder.getFooterStatusCode());
+		}
+		if(responseDecoder.hasGCodeResponse()){
+			handleGCodeResponse(responseDecoder.getGCodeResponse());
+		}
+		if(responseDecoder.hasStatusReport()){
+			handleStatusReport();
+		}
+		if(responseDecoder.hasQueueReport()){
+			handleQueueReport(responseDecoder.getQueueReport());
+		}
+		if(responseDecoder.hasUnsupportedContent()){
+			handleUnsupportedContent(data.toString());
 		}
 	}
 
 	/**
-	 * Verify the response using the footer
-	 * @param jsonFooter the parsed response
+	 * Handle the keys of the response envelope which are not read by the decoder
+	 * @param data the received line
 	 * @throws GkException GkException
 	 */
-	private void handleResponseFooter(JsonValue jsonFooter) throws GkException {
+	private void handleUnsupportedContent(String data) throws GkException {
+		JsonObject response = null;
+		try{
+			response = JsonObject.readFrom(data);
+		}catch(Exception e){
+			LOG.error("Error while parsing JSon for string '"+data+"'"+System.lineSeparator()+e.getMessage());
+			return;
+		}
+		JsonValue responseBody = response.get(TinyGJsonUtils.RESPONSE_ENVELOPE);
+		if(responseBody != null && responseBody.isObject()){
+			handleResponseEnvelope((JsonObject) responseBody);
+		}
+	}
 
-		JsonArray footerArray = jsonFooter.asArray();
-		int statusCodeIntValue = footerArray.get(TinyGJsonUtils.FOOTER_STATUS_CODE_INDEX).asInt();
+	/**
+	 * Verify the response using the footer
+	 * @param statusCodeIntValue the status code of the footer
+	 * @throws GkException GkException
+	 */
+	private void handleResponseFooter(int statusCodeIntValue) throws GkException {
 		TinyGStatusCode status = TinyGStatusCode.findEnum(statusCodeIntValue);
 
 		if(status == TinyGStatusCode.TG_OK){
@@ -183,26 +204,18 @@ public class TinyGCommunicator implements IConnectionDataListener, IConnectionLi
 	}
 
 	/**
-	 * Handle a JSon response envelope
+	 * Handle a JSon response envelope. The gcode response, status report, queue report and footer are already handled by the decoder
 	 * @param jsonValue
 	 */
 	private void handleResponseEnvelope(JsonObject responseEnvelope) throws GkException {
 		for(String name : responseEnvelope.names()){
 
-			if(StringUtils.equals(name, TinyGJsonUtils.GCODE_COMMAND)){
-				handleGCodeResponse(responseEnvelope.get(TinyGJsonUtils.GCODE_COMMAND));
-
-			}else if(StringUtils.equals(name, TinyGJsonUtils.STATUS_REPORT)){
-				handleStatusReport(responseEnvelope.get(TinyGJsonUtils.STATUS_REPORT));
-
-			}else if(StringUtils.equals(name, TinyGJsonUtils.FOOTER)){
-				handleResponseFooter(responseEnvelope.get(TinyGJsonUtils.FOOTER));
-
-			}else if(StringUtils.equals(name, TinyGJsonUtils.QUEUE_REPORT)){
-				handleQueueReport(responseEnvelope.get(TinyGJsonUtils.QUEUE_REPORT));
-
-			}else if(StringUtils.equals(name, TinyGJsonUtils.LINE_REPORT)){
-		//		LOG.info("Skipping line report "+String.valueOf(responseEnvelope.get(name)));
+			if(StringUtils.equals(name, TinyGJsonUtils.GCODE_COMMAND)
+			|| StringUtils.equals(name, TinyGJsonUtils.STATUS_REPORT)
+			|| StringUtils.equals(name, TinyGJsonUtils.FOOTER)
+			|| StringUtils.equals(name, TinyGJsonUtils.QUEUE_REPORT)
+			|| StringUtils.equals(name, TinyGJsonUtils.LINE_REPORT)){
+				// Decoded by the response decoder
 
 			}else if(StringUtils.equals(name, TinyGJsonUtils.PROBE_REPORT)){
 				handleProbeReport(responseEnvelope.get(TinyGJsonUtils.PROBE_REPORT));
@@ -242,13 +255,13 @@ public class TinyGCommunicator implements IConnectionDataListener, IConnectionLi
 		tinyg.setConfiguration(cfg);
 	}
 
-	private void handleGCodeResponse(JsonValue jsonValue) throws GkException {
-		String 	receivedCommand = jsonValue.asString();
-		tinyg.handleGCodeResponse(receivedCommand);
+	private void handleGCodeResponse(CharSequence gcode) throws GkException {
+		int idCommand = ackTracker.acknowledge(gcode);
+		tinyg.handleGCodeResponse(idCommand);
 	}
 
-	private void handleQueueReport(JsonValue queueReport) throws GkException {
-		tinyg.setAvailableBuffer(queueReport.asInt());
+	private void handleQueueReport(int queueReport) throws GkException {
+		tinyg.setAvailableBuffer(queueReport);
 	}
 
 	private void handleProbeReport(JsonValue probeReport) throws GkException {
@@ -288,141 +301,26 @@ public class TinyGCommunicator implements IConnectionDataListener, IConnectionLi
 		}
 	}
 	/**
-	 * Handling status report from TinyG
-	 * @param jsonValue
-	 */
-	private void handleStatusReport(JsonValue statusReport) throws GkException {
-		if(statusReport.isObject()){
-			JsonObject 	statusReportObject = (JsonObject) statusReport;
-
-			Tuple6b 					 workPosition 	= findWorkPosition(statusReportObject);
-			MachineState 				 state 			= findState(statusReportObject);
-			EnumGCodeCommandDistanceMode distanceMode 	= findDistanceMode(statusReportObject);
-			EnumGCodeCommandUnit 		 units 			= findUnits(statusReportObject);
-			BigDecimal 					 velocity 		= findVelocity(statusReportObject);
-			BigDecimal 					 feedrate 		= findFeedrate(statusReportObject);
-			EnumCoordinateSystem 		 cs 			= findCoordinateSystem(statusReportObject);
-			GCodeContext gcodeContext = new GCodeContext(tinyg.getCurrentGCodeContext());
-
-			gcodeContext.setPosition(workPosition);
-			gcodeContext.setDistanceMode(distanceMode);
-			gcodeContext.setUnit(units);
-			gcodeContext.setCoordinateSystem(cs);
-			gcodeContext.setFeedrate(feedrate);
-
-			if(state != null){
-				tinyg.setState(state);
-			}
-			if(velocity != null){
-				tinyg.setVelocity(velocity);
-			}
-			tinyg.updateCurrentGCodeContext(gcodeContext);
-		}
-	}
-
-	private BigDecimal findVelocity(JsonObject statusReport){
-		JsonValue velocityReport = statusReport.get(TinyGJsonUtils.STATUS_REPORT_VELOCITY);
-		if(velocityReport != null){
-			return velocityReport.asBigDecimal().setScale(3, BigDecimal.ROUND_HALF_EVEN);
-		}
-		return null;
-	}
-
-	private BigDecimal findFeedrate(JsonObject feedrate){
-		JsonValue feedrateReport = feedrate.get(TinyGJsonUtils.STATUS_REPORT_FEEDRATE);
-		if(feedrateReport != null){
-			return feedrateReport.asBigDecimal().setScale(3, BigDecimal.ROUND_HALF_EVEN);
-		}
-		return null;
-	}
-
-	private Tuple6b findWorkPosition(JsonObject statusReport) throws GkException{
-		Tuple6b 	workPosition = tinyg.getCurrentGCodeContext().getPosition();
-		workPosition = TinyGControllerUtility.updatePosition(workPosition, statusReport);
-		return workPosition;
-	}
-	private EnumGCodeCommandDistanceMode findDistanceMode(JsonObject statusReport){
-		JsonValue distReport = statusReport.get(TinyGJsonUtils.STATUS_REPORT_DISTANCE_MODE);
-		if(distReport != null){
-			int dist = distReport.asInt();
-			if(dist == 0){
-				return EnumGCodeCommandDistanceMode.ABSOLUTE;
-			}else{
-				return EnumGCodeCommandDistanceMode.RELATIVE;
-			}
-		}
-		return null;
-	}
-
-	/**
-	 * Finds the units declaration in the status report
-	 * @param statusReport the status report
-	 * @return {@link EnumGCodeCommandUnit}
-	 */
-	private EnumGCodeCommandUnit findUnits(JsonObject statusReport){
-		JsonValue unitReport = statusReport.get(TinyGJsonUtils.STATUS_REPORT_UNITS);
-		if(unitReport != null){
-			int units = unitReport.asInt();
-			if(units == 1){
-				return EnumGCodeCommandUnit.MILLIMETERS;
-			}else{
-				return EnumGCodeCommandUnit.INCHES;
-			}
-		}
-		return null;
-	}
-
-	/**
-	 * Extract state from status report
-	 * @param statusReport
-	 * @return
-	 */
-	private MachineState findState(JsonObject statusReport){
-		JsonValue statReport = statusReport.get(TinyGJsonUtils.STATUS_REPORT_STATE);
-		if(statReport != null){
-			return TinyGControllerUtility.getState(statReport.asInt());
-		}
-		return null;
-	}
-	/**
-	 * Update coordinates
-	 * 0=g53, 1=g54, 2=g55, 3=g56, 4=g57, 5=g58, 6=g59
+	 * Apply the status report decoded into the snapshot
+	 * @throws GkException GkException
 	 */
-	private EnumCoordinateSystem findCoordinateSystem(JsonObject statusReport){
-		EnumCoordinateSystem coordinateSystem = null;
-		JsonValue coordReport = statusReport.get(TinyGJsonUtils.STATUS_REPORT_COORDINATES);
-		if(coordReport != null){
-			int units = coordReport.asInt();
-			switch(units){
-			case 0: coordinateSystem = EnumCoordinateSystem.G53;
-			break;
-			case 1: coordinateSystem = EnumCoordinateSystem.G54;
-			break;
-			case 2: coordinateSystem = EnumCoordinateSystem.G55;
-			break;
-			case 3: coordinateSystem = EnumCoordinateSystem.G56;
-			break;
-			case 4: coordinateSystem = EnumCoordinateSystem.G57;
-			break;
-			case 5: coordinateSystem = EnumCoordinateSystem.G58;
-			break;
-			case 6: coordinateSystem = EnumCoordinateSystem.G59;
-			break;
-			}
+	private void handleStatusReport() throws GkException {
+		if(statusSnapshot.hasChanges()){
+			tinyg.updateStatus(statusSnapshot);
+			statusSnapshot.clearChanges();
 		}
-		return coordinateSystem;
 	}
 
 	protected void updateCoordinateSystem() throws GkException{
-		send(GkUtils.toBytesList("{\"G55\":\"\"}"));
-		send(GkUtils.toBytesList("{\"G56\":\"\"}"));
-		send(GkUtils.toBytesList("{\"G57\":\"\"}"));
-		send(GkUtils.toBytesList("{\"G58\":\"\"}"));
-		send(GkUtils.toBytesList("{\"G59\":\"\"}"));
+		send(GkUtils.toBytes("{\"G55\":\"\"}"));
+		send(GkUtils.toBytes("{\"G56\":\"\"}"));
+		send(GkUtils.toBytes("{\"G57\":\"\"}"));
+		send(GkUtils.toBytes("{\"G58\":\"\"}"));
+		send(GkUtils.toBytes("{\"G59\":\"\"}"));
 	}
 	
 	protected void updateCoordinateSystem(EnumCoordinateSystem cs) throws GkException{
-		send(GkUtils.toBytesList("{\""+cs.name()+"\":\"\"}"));		
+		send(GkUtils.toBytes("{\""+cs.name()+"\":\"\"}"));		
 	}
 	
 	/**
@@ -459,31 +357,138 @@ public class TinyGCommunicator implements IConnectionDataListener, IConnectionLi
 		this.applicativeLogService = applicativeLogService;
 	}
 
+
 	/**
-	 * Add the end line character at the end of the given list
-	 * @param list the list
+	 * Send the given command, out of any streamed file
+	 * @param gCodeCommand the command
+	 * @throws GkException GkException
 	 */
-	private void addEndLineCharacter(List<Byte> list){
-		//command.add(new Byte((byte) endLineCharDelimiter));
-		list.add(new Byte((byte) endLineCharDelimiter));
+	protected void send(GCodeCommand gCodeCommand) throws GkException{
+		send(gCodeCommand, TinyGAckTracker.NO_COMMAND);
 	}
 
-	protected void send(GCodeCommand gCodeCommand) throws GkException{
-		JsonValue jsonStr = TinyGControllerUtility.toJson(new String(gcodeService.convert(gCodeCommand)));
-		send(GkUtils.toBytesList(jsonStr.toString()));
+	/**
+	 * Send the given command of a streamed file. Its id is given back when TinyG acknowledges it
+	 * @param gCodeCommand the command
+	 * @throws GkException GkException
+	 */
+	protected void sendStreamed(GCodeCommand gCodeCommand) throws GkException{
+		send(gCodeCommand, gCodeCommand.getId());
 	}
 
-	protected void send(List<Byte> lstByte) throws GkException{
-		addEndLineCharacter(lstByte);
-		getConnectionService().send(lstByte);
+	/**
+	 * Send the given command wrapped in JSON
+	 * @param gCodeCommand the command
+	 * @param idCommand the id registered in the acknowledgement tracker
+	 * @throws GkException GkException
+	 */
+	private void send(GCodeCommand gCodeCommand, int idCommand) throws GkException{
+		String gcode = new String(gcodeService.convert(gCodeCommand));
+		JsonValue jsonStr = TinyGControllerUtility.toJson(gcode);
+		sendTracked(GkUtils.toBytes(jsonStr.toString()), idCommand, gcode);
+	}
+
+	/**
+	 * Send the given bytes followed by the end line character.
+	 * Plain text GCode lines are registered in the acknowledgement tracker since TinyG answers them with a gc response.
+	 * @param data the bytes to send
+	 * @throws GkException GkException
+	 */
+	protected void send(byte[] data) throws GkException{
+		if(isPlainGCodeLine(data)){
+			sendTracked(data, TinyGAckTracker.NO_COMMAND, GkUtils.toString(data));
+		}else{
+			sendLine(data);
+		}
 	}
 
-	protected void sendWithoutEndLineCharacter(List<Byte> lstByte) throws GkException{
-		getConnectionService().send(lstByte);
+	/**
+	 * Register the given GCode in the acknowledgement tracker, then send the given bytes. Both happen under the lock
+	 * of the communicator so the registered lines are in the order of the sent lines.
+	 * @param data the bytes to send
+	 * @param idCommand the id of the command
+	 * @param gcode the GCode text expected in the response
+	 * @throws GkException GkException
+	 */
+	private synchronized void sendTracked(byte[] data, int idCommand, String gcode) throws GkException{
+		ackTracker.add(idCommand, gcode);
+		try{
+			sendLine(data);
+		}catch(GkException e){
+			ackTracker.removeLast();
+			throw e;
+		}
 	}
 
-	protected void sendImmediately(List<Byte> lstByte) throws GkException{
-		getConnectionService().send(lstByte, DataPriority.IMPORTANT);
+	/**
+	 * Send the given bytes followed by the end line character
+	 * @param data the bytes to send
+	 * @throws GkException GkException
+	 */
+	private synchronized void sendLine(byte[] data) throws GkException{
+		ByteBuffer buffer = getOutgoingBuffer(data.length + 1);
+		buffer.put(data);
+		buffer.put((byte) endLineCharDelimiter);
+		buffer.flip();
+		getConnectionService().send(buffer);
+	}
+
+	/**
+	 * Indicates if the given line is a GCode line in plain text, and not a JSON request or a single character command
+	 * @param data the line
+	 * @return <code>true</code> if the line is plain text GCode
+	 */
+	private boolean isPlainGCodeLine(byte[] data){
+		if(data.length == 0 || data[0] == '{'){
+			return false;
+		}
+		return !(data.length == 1 && (data[0] == TinyG.FEED_HOLD.charAt(0) || data[0] == TinyG.CYCLE_START.charAt(0) || data[0] == TinyG.QUEUE_FLUSH.charAt(0)));
+	}
+
+	/**
+	 * Send the given bytes as is
+	 * @param data the bytes to send
+	 * @throws GkException GkException
+	 */
+	protected synchronized void sendWithoutEndLineCharacter(byte[] data) throws GkException{
+		ByteBuffer buffer = getOutgoingBuffer(data.length);
+		buffer.put(data);
+		buffer.flip();
+		getConnectionService().send(buffer);
+	}
+
+	/**
+	 * Send the given bytes as is, with the important priority
+	 * @param data the bytes to send
+	 * @throws GkException GkException
+	 */
+	protected synchronized void sendImmediately(byte[] data) throws GkException{
+		ByteBuffer buffer = getOutgoingBuffer(data.length);
+		buffer.put(data);
+		buffer.flip();
+		getConnectionService().send(buffer, DataPriority.IMPORTANT);
+	}
+
+	/**
+	 * Forget the lines waiting for their acknowledgement, after a queue flush. The lines still in the output buffer are
+	 * never sent, and the responses received afterward are not matched to a streamed command
+	 */
+	protected void clearPendingAcknowledgements(){
+		ackTracker.clear();
+	}
+
+	/**
+	 * Returns the cleared outgoing buffer, able to hold at least the given number of bytes.
+	 * The connection service copies the sent data, so the same buffer is reused for every command.
+	 * @param capacity the required capacity
+	 * @return the outgoing buffer
+	 */
+	private ByteBuffer getOutgoingBuffer(int capacity){
+		if(outgoingBuffer.capacity() < capacity){
+			outgoingBuffer = ByteBuffer.allocate(Math.max(capacity, outgoingBuffer.capacity() * 2));
+		}
+		outgoingBuffer.clear();
+		return outgoingBuffer;
 	}
 
 	/**
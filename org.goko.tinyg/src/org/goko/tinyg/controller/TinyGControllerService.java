@@ -28,9 +28,12 @@ import org.goko.core.controller.bean.EnumControllerAxis;
 import org.goko.core.controller.bean.MachineState;
 import org.goko.core.controller.bean.MachineValue;
 import org.goko.core.controller.bean.MachineValueDefinition;
+import org.goko.core.controller.bean.MotionPlannerSettings;
 import org.goko.core.controller.bean.ProbeResult;
+import org.goko.core.controller.event.MachineValueBatchUpdateEvent;
 import org.goko.core.controller.event.MachineValueUpdateEvent;
 import org.goko.core.gcode.bean.GCodeCommand;
+import org.goko.core.gcode.bean.GCodeCommandState;
 import org.goko.core.gcode.bean.GCodeContext;
 import org.goko.core.gcode.bean.IGCodeProvider;
 import org.goko.core.gcode.bean.Tuple6b;
@@ -41,6 +44,7 @@ import org.goko.core.gcode.bean.provider.GCodeExecutionToken;
 import org.goko.core.gcode.service.IGCodeExecutionMonitorService;
 import org.goko.core.gcode.service.IGCodeService;
 import org.goko.core.log.GkLog;
+import org.goko.tinyg.controller.configuration.TinyGAxisSettings;
 import org.goko.tinyg.controller.configuration.TinyGConfiguration;
 import org.goko.tinyg.controller.configuration.TinyGConfigurationValue;
 import org.goko.tinyg.controller.configuration.TinyGGroupSettings;
@@ -64,6 +68,12 @@ public class TinyGControllerService extends EventDispatcher implements ITinyGCon
 	public static final String SERVICE_ID = "TinyG Controller";
 	private static final String JOG_SIMULATION_DISTANCE = "10000.0";
 	private static final double JOG_SIMULATION_DISTANCE_DOUBLE = 10000.0;
+	/** Number of blocks in the TinyG planner buffer */
+	private static final int PLANNER_BLOCK_COUNT = 28;
+	/** Multiplier of the jerk settings : TinyG reports the jerk in millions of mm/min^3 (xjm:5000 is 5 000 000 000 mm/min^3) */
+	private static final double JERK_MULTIPLIER = 1000000;
+	/** Axis settings used by the planner, in the order of the axis of a Tuple6d */
+	private static final String[] PLANNER_AXIS_GROUPS = new String[]{TinyGConfiguration.X_AXIS_SETTINGS, TinyGConfiguration.Y_AXIS_SETTINGS, TinyGConfiguration.Z_AXIS_SETTINGS, TinyGConfiguration.A_AXIS_SETTINGS};
 
 	/** Stored configuration */
 	private TinyGConfiguration configuration;
@@ -129,6 +139,9 @@ public class TinyGControllerService extends EventDispatcher implements ITinyGCon
 		if(currentSendingRunnable != null){
 			currentSendingRunnable.stop();
 		}
+		if(tinygState != null){
+			tinygState.dispose();
+		}
 	}
 
 	/** (inheritDoc)
@@ -175,6 +188,15 @@ public class TinyGControllerService extends EventDispatcher implements ITinyGCon
 		communicator.send(gCodeCommand);
 	}
 
+	/**
+	 * Send a command of the current execution token
+	 * @param gCodeCommand the command
+	 * @throws GkException GkException
+	 */
+	protected void sendStreamed(GCodeCommand gCodeCommand) throws GkException{
+		communicator.sendStreamed(gCodeCommand);
+	}
+
 	public void sendTogether(List<GCodeCommand> commands) throws GkException{
 		for (GCodeCommand gCodeCommand : commands) {
 			communicator.send(gCodeCommand);
@@ -198,56 +220,29 @@ public class TinyGControllerService extends EventDispatcher implements ITinyGCon
 		for(TinyGGroupSettings group : configuration.getGroups()){
 			JsonObject groupEmpty = new JsonObject();
 			groupEmpty.add(group.getGroupIdentifier(), StringUtils.EMPTY);
-			communicator.send(GkUtils.toBytesList(groupEmpty.toString()));
+			communicator.send(GkUtils.toBytes(groupEmpty.toString()));
 		}
 	}
 	public void refreshStatus() throws GkException{
 		JsonObject statusQuery = new JsonObject();
 		statusQuery.add("sr", StringUtils.EMPTY);
-		communicator.send(GkUtils.toBytesList(statusQuery.toString()));
+		communicator.send(GkUtils.toBytes(statusQuery.toString()));
 		updateQueueReport();
 	}
 
 	protected void updateQueueReport()throws GkException{
 		JsonObject queueQuery = new JsonObject();
 		queueQuery.add("qr", StringUtils.EMPTY);
-		communicator.send(GkUtils.toBytesList(queueQuery.toString()));
+		communicator.send(GkUtils.toBytes(queueQuery.toString()));
 	}
 
 	/**
-	 * Update the current GCodeContext with the given one
-	 * @param updatedGCodeContext the updated GCodeContext
+	 * Apply the changed values of the given status report
+	 * @param snapshot the status report
+	 * @throws GkException GkException
 	 */
-	protected void updateCurrentGCodeContext(GCodeContext updatedGCodeContext){
-		GCodeContext current = tinygState.getGCodeContext();
-		if(updatedGCodeContext.getPosition() != null){
-			current.setPosition(updatedGCodeContext.getPosition());
-		}
-		if(updatedGCodeContext.getCoordinateSystem() != null){
-			current.setCoordinateSystem(updatedGCodeContext.getCoordinateSystem());
-		}
-		if(updatedGCodeContext.getMotionMode() != null){
-			current.setMotionMode(updatedGCodeContext.getMotionMode());
-		}
-		if(updatedGCodeContext.getMotionType() != null){
-			current.setMotionType(updatedGCodeContext.getMotionType());
-		}
-		if(updatedGCodeContext.getFeedrate() != null){
-			current.setFeedrate(updatedGCodeContext.getFeedrate());
-		}
-		if(updatedGCodeContext.getUnit() != null){
-			current.setUnit(updatedGCodeContext.getUnit());
-		}
-		if(updatedGCodeContext.getDistanceMode() != null){
-			current.setDistanceMode(updatedGCodeContext.getDistanceMode());
-		}
-		if(updatedGCodeContext.getPlane() != null){
-			current.setPlane(updatedGCodeContext.getPlane());
-		}
-		if(updatedGCodeContext.getToolNumber() != null){
-			current.setToolNumber(updatedGCodeContext.getToolNumber());
-		}
-		tinygState.setGCodeContext(current);
+	protected void updateStatus(TinyGStatusSnapshot snapshot) throws GkException{
+		tinygState.updateStatus(snapshot);
 	}
 
 	/**
@@ -279,13 +274,16 @@ public class TinyGControllerService extends EventDispatcher implements ITinyGCon
 
 	/**
 	 * Handling GCode response from TinyG
-	 * @param jsonValue
-	 * @throws GkTechnicalException
+	 * @param idCommand the id of the acknowledged command, {@link TinyGAckTracker#NO_COMMAND} if it is not a streamed command
+	 * @throws GkException GkException
 	 */
-	protected void handleGCodeResponse(String receivedCommand) throws GkException {
-		if(executionQueue.getCurrentToken() != null){
-			GCodeCommand 	parsedCommand 	= getGcodeService().parseCommand(receivedCommand, getCurrentGCodeContext());
-			executionQueue.getCurrentToken().markAsConfirmed(parsedCommand);
+	protected void handleGCodeResponse(int idCommand) throws GkException {
+		TinyGExecutionToken token = executionQueue.getCurrentToken();
+		if(token != null && idCommand != TinyGAckTracker.NO_COMMAND){
+			// Responses of a cancelled token may still arrive, only accept commands sent by the current one
+			if(token.getCommandState(idCommand).isState(GCodeCommandState.SENT)){
+				token.markAsConfirmed(idCommand);
+			}
 			this.currentSendingRunnable.confirmCommand();
 		}
 	}
@@ -295,6 +293,11 @@ public class TinyGControllerService extends EventDispatcher implements ITinyGCon
 		notifyListeners(evt);
 	}
 
+	@EventListener(MachineValueBatchUpdateEvent.class)
+	public void onMachineValueBatchUpdate(MachineValueBatchUpdateEvent evt){
+		notifyListeners(evt);
+	}
+
 	/** (inheritDoc)
 	 * @see org.goko.tinyg.service.ITinyGControllerFirmwareService#setConfiguration(org.goko.tinyg.controller.configuration.TinyGConfiguration)
 	 */
@@ -317,13 +320,13 @@ public class TinyGControllerService extends EventDispatcher implements ITinyGCon
 				for(TinyGSetting<?> setting : group.getSettings()){
 					JsonObject jsonSetting = TinyGJsonUtils.toJson(setting);
 					if(jsonSetting != null){
-						getConnectionService().send( GkUtils.toBytesList(jsonSetting.toString() + "\r\n") );
+						communicator.sendWithoutEndLineCharacter( GkUtils.toBytes(jsonSetting.toString() + "\r\n") );
 					}
 				}
 			}else{
 				JsonObject jsonGroup = TinyGJsonUtils.toCompleteJson(group);
 				if(jsonGroup != null){
-					getConnectionService().send( GkUtils.toBytesList(jsonGroup.toString() + "\r\n") );
+					communicator.sendWithoutEndLineCharacter( GkUtils.toBytes(jsonGroup.toString() + "\r\n") );
 				}
 			}
 		}
@@ -380,7 +383,7 @@ public class TinyGControllerService extends EventDispatcher implements ITinyGCon
 		if(TinyGPreferences.getInstance().isHomingEnabledAxisA()){
 			homingCommand += " A0";
 		}		
-		communicator.send(GkUtils.toBytesList(homingCommand));
+		communicator.send(GkUtils.toBytes(homingCommand));
 	}
 
 	/** (inheritDoc)
@@ -438,19 +441,19 @@ public class TinyGControllerService extends EventDispatcher implements ITinyGCon
 
 
 	public void pauseMotion() throws GkException{
-		communicator.send(GkUtils.toBytesList(TinyG.FEED_HOLD));
+		communicator.send(GkUtils.toBytes(TinyG.FEED_HOLD));
 		if(executionQueue != null){
 			executionQueue.setPaused(true);
 		}
 	}
 
 	public void resumeMotion() throws GkException{
-		communicator.send(GkUtils.toBytesList(TinyG.CYCLE_START));
+		communicator.send(GkUtils.toBytes(TinyG.CYCLE_START));
 	}
 
 	public void stopMotion() throws GkException{
 		getConnectionService().clearOutputBuffer();
-		communicator.sendImmediately(GkUtils.toBytesList(TinyG.FEED_HOLD, TinyG.QUEUE_FLUSH));
+		communicator.sendImmediately(GkUtils.toBytes(TinyG.FEED_HOLD, TinyG.QUEUE_FLUSH));
 
 
 		if(executionQueue != null){
@@ -459,21 +462,22 @@ public class TinyGControllerService extends EventDispatcher implements ITinyGCon
 		if(currentSendingRunnable != null){
 			currentSendingRunnable.stop();
 		}
+		communicator.clearPendingAcknowledgements();
 		// Force a queue report update
 		//	updateQueueReport();
 		//	this.resetAvailableBuffer();
 	}
 
 	public void resetZero(List<String> axes) throws GkException{
-		List<Byte> lstBytes = GkUtils.toBytesList("G28.3");
+		StringBuilder command = new StringBuilder("G28.3");
 		if(CollectionUtils.isNotEmpty(axes)){
 			for (String axe : axes) {
-				lstBytes.addAll(GkUtils.toBytesList(axe+"0"));
+				command.append(axe).append("0");
 			}
 		}else{
-			lstBytes.addAll( GkUtils.toBytesList("X0Y0Z0"));
+			command.append("X0Y0Z0");
 		}
-		communicator.send(lstBytes);
+		communicator.send(GkUtils.toBytes(command.toString()));
 	}
 
 	public void startJog(EnumTinyGAxis axis, BigDecimal feed) throws GkException{
@@ -486,7 +490,7 @@ public class TinyGControllerService extends EventDispatcher implements ITinyGCon
 		if(feed != null){
 			command += "F"+feed;
 		}
-		communicator.send(GkUtils.toBytesList(command));
+		communicator.send(GkUtils.toBytes(command));
 	}
 
 	public String startG91Jog(EnumTinyGAxis axis, BigDecimal feed) throws GkException{
@@ -525,10 +529,10 @@ public class TinyGControllerService extends EventDispatcher implements ITinyGCon
 		return command;
 	}
 	public void turnSpindleOn() throws GkException{
-		communicator.send(GkUtils.toBytesList("M3"));
+		communicator.send(GkUtils.toBytes("M3"));
 	}
 	public void turnSpindleOff() throws GkException{
-		communicator.send(GkUtils.toBytesList("M5"));
+		communicator.send(GkUtils.toBytes("M5"));
 	}
 
 	/**
@@ -706,7 +710,7 @@ public class TinyGControllerService extends EventDispatcher implements ITinyGCon
 	 */
 	@Override
 	public void setCurrentCoordinateSystem(EnumCoordinateSystem cs) throws GkException {
-		communicator.send( GkUtils.toBytesList( String.valueOf(cs)) );
+		communicator.send( GkUtils.toBytes( String.valueOf(cs)) );
 	}
 
 	/** (inheritDoc)
@@ -723,7 +727,7 @@ public class TinyGControllerService extends EventDispatcher implements ITinyGCon
 		cmd += "\"x\":"+ getPositionAsString(mPos.getX()) +", ";		
 		cmd += "\"y\":"+ getPositionAsString(mPos.getY())+", ";
 		cmd += "\"z\":"+ getPositionAsString(mPos.getZ())+"}} ";
-		communicator.send( GkUtils.toBytesList( cmd ) );
+		communicator.send( GkUtils.toBytes( cmd ) );
 		communicator.updateCoordinateSystem(current);		
 	}
 
@@ -758,4 +762,54 @@ public class TinyGControllerService extends EventDispatcher implements ITinyGCon
 	public Unit<Length> getCurrentUnit(){
 		return tinygState.getCurrentUnit();
 	}
+
+	/** (inheritDoc)
+	 * @see org.goko.core.controller.IMotionPlannerAdapter#getMotionPlannerSettings()
+	 */
+	@Override
+	public MotionPlannerSettings getMotionPlannerSettings() throws GkException {
+		MotionPlannerSettings settings = new MotionPlannerSettings();
+		settings.setBlockCount(PLANNER_BLOCK_COUNT);
+		if(configuration == null){
+			return settings;
+		}
+		double junctionDeviation = 0;
+		for (int axis = 0; axis < PLANNER_AXIS_GROUPS.length; axis++) {
+			// Velocities are in mm/min and jerk in millions of mm/min^3
+			double velocity = getAxisSettingValue(PLANNER_AXIS_GROUPS[axis], TinyGAxisSettings.VELOCITY_MAXIMUM) / 60;
+			double feedrate = getAxisSettingValue(PLANNER_AXIS_GROUPS[axis], TinyGAxisSettings.FEEDRATE_MAXIMUM) / 60;
+			double jerk 	= getAxisSettingValue(PLANNER_AXIS_GROUPS[axis], TinyGAxisSettings.JERK_MAXIMUM) * JERK_MULTIPLIER / (60 * 60 * 60);
+			if(velocity > 0){
+				settings.setMaximumVelocity(axis, velocity);
+			}
+			if(feedrate > 0){
+				settings.setMaximumFeedrate(axis, feedrate);
+			}
+			if(velocity > 0 && jerk > 0){
+				// Jerk limited ramp from 0 to velocity lasts 2*sqrt(velocity/jerk) : use the acceleration giving the same duration
+				settings.setAcceleration(axis, Math.sqrt(velocity * jerk) / 2);
+			}
+			double axisJunctionDeviation = getAxisSettingValue(PLANNER_AXIS_GROUPS[axis], TinyGAxisSettings.JUNCTION_DEVIATION);
+			if(axisJunctionDeviation > 0 && (junctionDeviation == 0 || axisJunctionDeviation < junctionDeviation)){
+				junctionDeviation = axisJunctionDeviation;
+			}
+		}
+		if(junctionDeviation > 0){
+			settings.setJunctionDeviation(junctionDeviation);
+		}
+		// Junction acceleration is in mm/min^2
+		BigDecimal junctionAcceleration = configuration.getSetting(TinyGConfiguration.JUNCTION_ACCELERATION, BigDecimal.class);
+		if(junctionAcceleration != null && junctionAcceleration.signum() > 0){
+			settings.setJunctionAcceleration(junctionAcceleration.doubleValue() / (60 * 60));
+		}
+		return settings;
+	}
+
+	private double getAxisSettingValue(String group, String identifier) throws GkException{
+		BigDecimal value = configuration.getSetting(group, identifier, BigDecimal.class);
+		if(value == null){
+			return 0;
+		}
+		return value.doubleValue();
+	}
 }
@@ -24,9 +24,10 @@ import java.util.List;
 import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.goko.core.common.exception.GkException;
-import org.goko.core.common.measure.quantity.type.NumberQuantity;
 import org.goko.core.controller.bean.MachineState;
-import org.goko.core.gcode.bean.Tuple6b;
+import org.goko.core.gcode.bean.commands.EnumCoordinateSystem;
+import org.goko.core.gcode.bean.commands.EnumGCodeCommandDistanceMode;
+import org.goko.core.gcode.bean.commands.EnumGCodeCommandUnit;
 import org.goko.core.log.GkLog;
 import org.goko.tinyg.controller.configuration.TinyGConfiguration;
 import org.goko.tinyg.controller.configuration.TinyGGroupSettings;
@@ -74,26 +75,6 @@ public class TinyGControllerUtility {
 	}
 
 
-	protected static Tuple6b updatePosition(Tuple6b lastKnownPosition, JsonObject statusReport){
-		Tuple6b newPosition = new Tuple6b(lastKnownPosition);
-		JsonValue newPositionX = statusReport.get(TinyGJsonUtils.STATUS_REPORT_POSITION_X);
-		JsonValue newPositionY = statusReport.get(TinyGJsonUtils.STATUS_REPORT_POSITION_Y);
-		JsonValue newPositionZ = statusReport.get(TinyGJsonUtils.STATUS_REPORT_POSITION_Z);
-		JsonValue newPositionA = statusReport.get(TinyGJsonUtils.STATUS_REPORT_POSITION_A);
-		if(newPositionX != null){
-			newPosition.setX( NumberQuantity.of(newPositionX.asBigDecimal(), lastKnownPosition.getX().getUnit()));
-		}
-		if(newPositionY != null){
-			newPosition.setY(NumberQuantity.of(newPositionY.asBigDecimal() , lastKnownPosition.getY().getUnit()));
-		}
-		if(newPositionZ != null){
-			newPosition.setZ(NumberQuantity.of(newPositionZ.asBigDecimal() , lastKnownPosition.getZ().getUnit()));
-		}
-		if(newPositionA != null){
-			newPosition.setA(NumberQuantity.of(newPositionA.asBigDecimal() , lastKnownPosition.getA().getUnit()));
-		}
-		return newPosition;
-	}
 	/**
 	 * Convert Integer value to Machine State
 	 * @param stateCode the int value
@@ -115,6 +96,49 @@ public class TinyGControllerUtility {
 		}
 	}
 
+	/**
+	 * Convert the units code of a status report
+	 * @param unitsCode the int value
+	 * @return {@link EnumGCodeCommandUnit} object
+	 */
+	protected static EnumGCodeCommandUnit getUnit(int unitsCode){
+		if(unitsCode == 1){
+			return EnumGCodeCommandUnit.MILLIMETERS;
+		}
+		return EnumGCodeCommandUnit.INCHES;
+	}
+
+	/**
+	 * Convert the distance mode code of a status report
+	 * @param distanceModeCode the int value
+	 * @return {@link EnumGCodeCommandDistanceMode} object
+	 */
+	protected static EnumGCodeCommandDistanceMode getDistanceMode(int distanceModeCode){
+		if(distanceModeCode == 0){
+			return EnumGCodeCommandDistanceMode.ABSOLUTE;
+		}
+		return EnumGCodeCommandDistanceMode.RELATIVE;
+	}
+
+	/**
+	 * Convert the coordinate system code of a status report
+	 * 0=g53, 1=g54, 2=g55, 3=g56, 4=g57, 5=g58, 6=g59
+	 * @param coordinateSystemCode the int value
+	 * @return {@link EnumCoordinateSystem} object, or <code>null</code> if the code is unknown
+	 */
+	protected static EnumCoordinateSystem getCoordinateSystem(int coordinateSystemCode){
+		switch(coordinateSystemCode){
+		case 0: return EnumCoordinateSystem.G53;
+		case 1: return EnumCoordinateSystem.G54;
+		case 2: return EnumCoordinateSystem.G55;
+		case 3: return EnumCoordinateSystem.G56;
+		case 4: return EnumCoordinateSystem.G57;
+		case 5: return EnumCoordinateSystem.G58;
+		case 6: return EnumCoordinateSystem.G59;
+		default: return null;
+		}
+	}
+
 	/**
 	 * Returns a configuration containing only the values that differ from the base configuration. Other values are null
 	 * @param baseConfig the base configuration
@@ -20,9 +20,7 @@
 package org.goko.tinyg.controller;
 
 import org.apache.commons.collections.CollectionUtils;
-import org.apache.commons.collections.MapUtils;
 import org.goko.core.common.exception.GkException;
-import org.goko.core.gcode.bean.GCodeCommand;
 import org.goko.core.gcode.bean.IGCodeProvider;
 import org.goko.core.gcode.bean.provider.GCodeStreamedExecutionToken;
 
@@ -38,16 +36,13 @@ public class TinyGExecutionToken extends GCodeStreamedExecutionToken{
 		lock = new Object();
 	}
 
-	public void markAsConfirmed(GCodeCommand command) throws GkException{
-		synchronized (lock) {
-			if(MapUtils.isNotEmpty(mapSentCommandById)){
-				GCodeCommand nextCommand = mapSentCommandById.get(mapSentCommandById.keySet().toArray()[0]);
-				//if(ObjectUtils.equals(command, nextCommand)){
-					markAsExecuted(nextCommand.getId());
-					updateCompleteState();
-				//}
-			}
-		}
+	/** (inheritDoc)
+	 * TinyG acknowledges a command once it is queued in its planner, it is then considered as executed
+	 * @see org.goko.core.gcode.bean.provider.GCodeStreamedExecutionToken#markAsConfirmed(java.lang.Integer)
+	 */
+	@Override
+	public void markAsConfirmed(Integer idCommand) throws GkException {
+		markAsExecuted(idCommand);
 	}
 
 	@Override
@@ -41,6 +41,8 @@ import org.goko.core.controller.bean.MachineValueStore;
 import org.goko.core.gcode.bean.GCodeContext;
 import org.goko.core.gcode.bean.Tuple6b;
 import org.goko.core.gcode.bean.commands.EnumCoordinateSystem;
+import org.goko.core.gcode.bean.commands.EnumGCodeCommandDistanceMode;
+import org.goko.core.gcode.bean.commands.EnumGCodeCommandUnit;
 import org.goko.core.log.GkLog;
 
 public class TinyGState extends MachineValueStore{
@@ -139,10 +141,12 @@ public class TinyGState extends MachineValueStore{
 	}
 
 	/**
-	 * @return the gcodeContext
+	 * @return a copy of the gcodeContext, at the current work position
 	 */
 	public GCodeContext getGCodeContext() {
-		return new GCodeContext(gcodeContext);
+		GCodeContext context = new GCodeContext(gcodeContext);
+		context.setPosition(position);
+		return context;
 	}
 
 	/**
@@ -218,6 +222,14 @@ public class TinyGState extends MachineValueStore{
 	 */
 	public void setWorkPosition(Tuple6b position) throws GkException {
 		this.position = new Tuple6b(position);
+		updatePositionValues();
+	}
+
+	/**
+	 * Update the displayed position values from the stored position
+	 * @throws GkException GkException
+	 */
+	private void updatePositionValues() throws GkException {
 		String x = GokoPreference.getInstance().format(NumberQuantity.of(new BigDecimal(position.getX().doubleValue()), currentUnit), true);
 		String y = GokoPreference.getInstance().format(NumberQuantity.of(new BigDecimal(position.getY().doubleValue()), currentUnit), true);
 		String z = GokoPreference.getInstance().format(NumberQuantity.of(new BigDecimal(position.getZ().doubleValue()), currentUnit), true);
@@ -227,6 +239,67 @@ public class TinyGState extends MachineValueStore{
 		updateValue(TinyG.POSITION_A, new BigDecimal(position.getA().doubleValue()).setScale(3, RoundingMode.HALF_DOWN));
 	}
 
+	/**
+	 * Apply the values of the given status report which changed since it was last applied.
+	 * The GCode context and the work position are updated in place, and only the changed values are converted.
+	 * The position is only copied into the returned context by {@link #getGCodeContext()}.
+	 * @param snapshot the status report
+	 * @throws GkException GkException
+	 */
+	public void updateStatus(TinyGStatusSnapshot snapshot) throws GkException {
+		if(snapshot.isChanged(TinyGStatusSnapshot.STATE)){
+			setState(TinyGControllerUtility.getState(snapshot.getState()));
+		}
+		if(snapshot.isChanged(TinyGStatusSnapshot.VELOCITY)){
+			setVelocity(BigDecimal.valueOf(snapshot.getVelocity()).setScale(3, RoundingMode.HALF_EVEN));
+		}
+		if(snapshot.isChanged(TinyGStatusSnapshot.UNITS)){
+			EnumGCodeCommandUnit unit = TinyGControllerUtility.getUnit(snapshot.getUnits());
+			gcodeContext.setUnit(unit);
+			updateValue(TinyG.CONTEXT_UNIT, String.valueOf(unit));
+			if(unit == EnumGCodeCommandUnit.INCHES){
+				setCurrentUnit(US.INCH);
+			}else{
+				setCurrentUnit(SIPrefix.MILLI(SI.METRE));
+			}
+		}
+		if(snapshot.isChanged(TinyGStatusSnapshot.COORDINATES)){
+			EnumCoordinateSystem coordinateSystem = TinyGControllerUtility.getCoordinateSystem(snapshot.getCoordinates());
+			if(coordinateSystem != null){
+				gcodeContext.setCoordinateSystem(coordinateSystem);
+				updateValue(TinyG.CONTEXT_COORD_SYSTEM, String.valueOf(coordinateSystem));
+			}
+		}
+		if(snapshot.isChanged(TinyGStatusSnapshot.DISTANCE_MODE)){
+			EnumGCodeCommandDistanceMode distanceMode = TinyGControllerUtility.getDistanceMode(snapshot.getDistanceMode());
+			gcodeContext.setDistanceMode(distanceMode);
+			updateValue(TinyG.CONTEXT_DISTANCE_MODE, String.valueOf(distanceMode));
+		}
+		if(snapshot.isChanged(TinyGStatusSnapshot.FEEDRATE)){
+			BigDecimal feedrate = BigDecimal.valueOf(snapshot.getFeedrate()).setScale(3, RoundingMode.HALF_EVEN);
+			gcodeContext.setFeedrate(feedrate);
+			updateValue(TinyG.CONTEXT_FEEDRATE, feedrate);
+		}
+		if(snapshot.isChanged(TinyGStatusSnapshot.POSITION)){
+			// TinyG reports the linear positions in the current unit
+			if(snapshot.isChanged(TinyGStatusSnapshot.POSITION_X)){
+				position.setX(NumberQuantity.of(BigDecimal.valueOf(snapshot.getPositionX()), currentUnit));
+			}
+			if(snapshot.isChanged(TinyGStatusSnapshot.POSITION_Y)){
+				position.setY(NumberQuantity.of(BigDecimal.valueOf(snapshot.getPositionY()), currentUnit));
+			}
+			if(snapshot.isChanged(TinyGStatusSnapshot.POSITION_Z)){
+				position.setZ(NumberQuantity.of(BigDecimal.valueOf(snapshot.getPositionZ()), currentUnit));
+			}
+			if(snapshot.isChanged(TinyGStatusSnapshot.POSITION_A)){
+				position.setA(NumberQuantity.of(BigDecimal.valueOf(snapshot.getPositionA()), position.getA().getUnit()));
+			}
+			updatePositionValues();
+		}else if(snapshot.isChanged(TinyGStatusSnapshot.UNITS)){
+			updatePositionValues();
+		}
+	}
+
 	public Tuple6b getCoordinateSystemOffset(EnumCoordinateSystem cs) throws GkException {
 		return offsets.get(cs);
 	}
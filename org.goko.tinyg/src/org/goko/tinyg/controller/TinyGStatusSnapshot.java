@@ -0,0 +1,272 @@
+/*
+ *
+ *   Goko
+ *   Copyright (C) 2013  PsyKo
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.goko.tinyg.controller;
+
+/**
+ * Mutable snapshot of the values reported by TinyG in its status reports.
+ * <p>
+ * The snapshot is updated in place by the response decoder and keeps track of the values which changed since the last
+ * time it was applied to the TinyG state, so the unchanged values don't produce any update.
+ * </p>
+ * @author PsyKo
+ *
+ */
+public class TinyGStatusSnapshot {
+	/** Flag of the X position */
+	public static final int POSITION_X 		= 1;
+	/** Flag of the Y position */
+	public static final int POSITION_Y 		= 1 << 1;
+	/** Flag of the Z position */
+	public static final int POSITION_Z 		= 1 << 2;
+	/** Flag of the A position */
+	public static final int POSITION_A 		= 1 << 3;
+	/** Flag of any of the positions */
+	public static final int POSITION 		= POSITION_X | POSITION_Y | POSITION_Z | POSITION_A;
+	/** Flag of the machine state */
+	public static final int STATE 			= 1 << 4;
+	/** Flag of the units */
+	public static final int UNITS 			= 1 << 5;
+	/** Flag of the coordinate system */
+	public static final int COORDINATES 	= 1 << 6;
+	/** Flag of the distance mode */
+	public static final int DISTANCE_MODE 	= 1 << 7;
+	/** Flag of the velocity */
+	public static final int VELOCITY 		= 1 << 8;
+	/** Flag of the feedrate */
+	public static final int FEEDRATE 		= 1 << 9;
+	/** Reported X position */
+	private double positionX;
+	/** Reported Y position */
+	private double positionY;
+	/** Reported Z position */
+	private double positionZ;
+	/** Reported A position */
+	private double positionA;
+	/** Reported state code */
+	private int state;
+	/** Reported units code */
+	private int units;
+	/** Reported coordinate system code */
+	private int coordinates;
+	/** Reported distance mode code */
+	private int distanceMode;
+	/** Reported velocity */
+	private double velocity;
+	/** Reported feedrate */
+	private double feedrate;
+	/** Flags of the values received at least once */
+	private int knownValues;
+	/** Flags of the values changed since the last call to clearChanges */
+	private int changedValues;
+
+	/**
+	 * Forget all the values, the next reported values are all considered as changed
+	 */
+	public void reset(){
+		knownValues 	= 0;
+		changedValues 	= 0;
+	}
+
+	/**
+	 * Indicates if the value identified by the given flag changed since the last call to clearChanges
+	 * @param flag the flag of the value, or a combination of flags
+	 * @return <code>true</code> if at least one of the values changed
+	 */
+	public boolean isChanged(int flag){
+		return (changedValues & flag) != 0;
+	}
+
+	/**
+	 * Indicates if any value changed since the last call to clearChanges
+	 * @return <code>true</code> if at least one value changed
+	 */
+	public boolean hasChanges(){
+		return changedValues != 0;
+	}
+
+	/**
+	 * Mark all the values as applied
+	 */
+	public void clearChanges(){
+		changedValues = 0;
+	}
+
+	/**
+	 * Register the reception of the value identified by the given flag
+	 * @param flag the flag of the value
+	 * @param changed <code>true</code> if the value differs from the previous one
+	 */
+	private void received(int flag, boolean changed){
+		if(changed || (knownValues & flag) == 0){
+			knownValues 	|= flag;
+			changedValues 	|= flag;
+		}
+	}
+
+	/**
+	 * @return the positionX
+	 */
+	public double getPositionX() {
+		return positionX;
+	}
+
+	/**
+	 * @param positionX the positionX to set
+	 */
+	public void setPositionX(double positionX) {
+		received(POSITION_X, this.positionX != positionX);
+		this.positionX = positionX;
+	}
+
+	/**
+	 * @return the positionY
+	 */
+	public double getPositionY() {
+		return positionY;
+	}
+
+	/**
+	 * @param positionY the positionY to set
+	 */
+	public void setPositionY(double positionY) {
+		received(POSITION_Y, this.positionY != positionY);
+		this.positionY = positionY;
+	}
+
+	/**
+	 * @return the positionZ
+	 */
+	public double getPositionZ() {
+		return positionZ;
+	}
+
+	/**
+	 * @param positionZ the positionZ to set
+	 */
+	public void setPositionZ(double positionZ) {
+		received(POSITION_Z, this.positionZ != positionZ);
+		this.positionZ = positionZ;
+	}
+
+	/**
+	 * @return the positionA
+	 */
+	public double getPositionA() {
+		return positionA;
+	}
+
+	/**
+	 * @param positionA the positionA to set
+	 */
+	public void setPositionA(double positionA) {
+		received(POSITION_A, this.positionA != positionA);
+		this.positionA = positionA;
+	}
+
+	/**
+	 * @return the state code
+	 */
+	public int getState() {
+		return state;
+	}
+
+	/**
+	 * @param state the state code to set
+	 */
+	public void setState(int state) {
+		received(STATE, this.state != state);
+		this.state = state;
+	}
+
+	/**
+	 * @return the units code
+	 */
+	public int getUnits() {
+		return units;
+	}
+
+	/**
+	 * @param units the units code to set
+	 */
+	public void setUnits(int units) {
+		received(UNITS, this.units != units);
+		this.units = units;
+	}
+
+	/**
+	 * @return the coordinate system code
+	 */
+	public int getCoordinates() {
+		return coordinates;
+	}
+
+	/**
+	 * @param coordinates the coordinate system code to set
+	 */
+	public void setCoordinates(int coordinates) {
+		received(COORDINATES, this.coordinates != coordinates);
+		this.coordinates = coordinates;
+	}
+
+	/**
+	 * @return the distance mode code
+	 */
+	public int getDistanceMode() {
+		return distanceMode;
+	}
+
+	/**
+	 * @param distanceMode the distance mode code to set
+	 */
+	public void setDistanceMode(int distanceMode) {
+		received(DISTANCE_MODE, this.distanceMode != distanceMode);
+		this.distanceMode = distanceMode;
+	}
+
+	/**
+	 * @return the velocity
+	 */
+	public double getVelocity() {
+		return velocity;
+	}
+
+	/**
+	 * @param velocity the velocity to set
+	 */
+	public void setVelocity(double velocity) {
+		received(VELOCITY, this.velocity != velocity);
+		this.velocity = velocity;
+	}
+
+	/**
+	 * @return the feedrate
+	 */
+	public double getFeedrate() {
+		return feedrate;
+	}
+
+	/**
+	 * @param feedrate the feedrate to set
+	 */
+	public void setFeedrate(double feedrate) {
+		received(FEEDRATE, this.feedrate != feedrate);
+		this.feedrate = feedrate;
+	}
+}
@@ -0,0 +1,562 @@
+/*
+ *
+ *   Goko
+ *   Copyright (C) 2013  PsyKo
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.goko.tinyg.json;
+
+import org.goko.core.common.exception.GkException;
+import org.goko.core.common.exception.GkTechnicalException;
+import org.goko.tinyg.controller.TinyGStatusSnapshot;
+
+/**
+ * Streaming decoder for the JSON lines sent by TinyG.
+ * <p>
+ * The decoder reads the line in a single pass, without building any JSON tree. It only knows the keys received for every
+ * command or status report : the gcode response, the status report, the queue report and the footer. The status report
+ * is written directly into a {@link TinyGStatusSnapshot}, and every other key is skipped.
+ * When the response envelope contains keys the decoder doesn't handle (configuration, offsets, probe report...),
+ * {@link #hasUnsupportedContent()} returns <code>true</code> and the line has to go through the generic JSON parser for those keys.
+ * </p>
+ * <p>
+ * The decoder is not thread safe, and the decoded values are only valid until the next call to {@link #decode(CharSequence)}.
+ * </p>
+ * @author PsyKo
+ *
+ */
+public class TinyGResponseDecoder {
+	/** Powers of ten exactly represented as double */
+	private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+												   1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+	/** Greatest mantissa exactly represented as double */
+	private static final long MAX_EXACT_MANTISSA = 1L << 53;
+	/** The snapshot receiving the status reports */
+	private TinyGStatusSnapshot statusSnapshot;
+	/** The line being decoded */
+	private CharSequence input;
+	/** Index of the next character to read */
+	private int position;
+	/** Index of the end of the line */
+	private int end;
+	/** Start index of the last read key */
+	private int keyStart;
+	/** End index of the last read key */
+	private int keyEnd;
+	/** The decoded gcode response */
+	private StringBuilder gcodeResponse;
+	/** Indicates that the line contains a gcode response */
+	private boolean gcodeResponseReceived;
+	/** Indicates that the line contains a status report */
+	private boolean statusReportReceived;
+	/** Indicates that the line contains a queue report */
+	private boolean queueReportReceived;
+	/** The decoded queue report */
+	private int queueReport;
+	/** Indicates that the line contains a footer */
+	private boolean footerReceived;
+	/** The status code of the footer */
+	private int footerStatusCode;
+	/** Indicates that the response envelope contains keys not handled by the decoder */
+	private boolean unsupportedContent;
+
+	/**
+	 * Constructor
+	 * @param statusSnapshot the snapshot receiving the status reports
+	 */
+	public TinyGResponseDecoder(TinyGStatusSnapshot statusSnapshot) {
+		this.statusSnapshot = statusSnapshot;
+		this.gcodeResponse 	= new StringBuilder(64);
+	}
+
+	/**
+	 * Decode the given line
+	 * @param line the line
+	 * @return <code>true</code> if the line is a JSON object, <code>false</code> if it has to be ignored
+	 * @throws GkException if the line is not valid JSON
+	 */
+	public boolean decode(CharSequence line) throws GkException{
+		input 	 = line;
+		position = 0;
+		end 	 = line.length();
+		gcodeResponseReceived 	= false;
+		statusReportReceived 	= false;
+		queueReportReceived 	= false;
+		footerReceived 			= false;
+		unsupportedContent 		= false;
+		try{
+			while(end > 0 && isWhitespace(input.charAt(end - 1))){
+				end--;
+			}
+			skipWhitespaces();
+			if(position == end || input.charAt(position) != '{' || input.charAt(end - 1) != '}'){
+				return false;
+			}
+			decodeTopLevel();
+			skipWhitespaces();
+			if(position != end){
+				throw error("Unexpected content after the end of the object");
+			}
+			return true;
+		}finally{
+			input = null;
+		}
+	}
+
+	/**
+	 * Decode the top level object
+	 * @throws GkException GkException
+	 */
+	private void decodeTopLevel() throws GkException{
+		expect('{');
+		if(!consume('}')){
+			do{
+				readKey();
+				if(keyEquals(TinyGJsonUtils.RESPONSE_ENVELOPE)){
+					decodeResponseEnvelope();
+				}else if(!decodeCommonKey()){
+					skipValue();
+				}
+			}while(consume(','));
+			expect('}');
+		}
+	}
+
+	/**
+	 * Decode the response envelope
+	 * @throws GkException GkException
+	 */
+	private void decodeResponseEnvelope() throws GkException{
+		if(peek() != '{'){
+			skipValue();
+			return;
+		}
+		expect('{');
+		if(!consume('}')){
+			do{
+				readKey();
+				if(keyEquals(TinyGJsonUtils.GCODE_COMMAND)){
+					readString(gcodeResponse);
+					gcodeResponseReceived = true;
+				}else if(keyEquals(TinyGJsonUtils.LINE_REPORT)){
+					skipValue();
+				}else if(!decodeCommonKey()){
+					unsupportedContent = true;
+					skipValue();
+				}
+			}while(consume(','));
+			expect('}');
+		}
+	}
+
+	/**
+	 * Decode the value of the last read key if it can appear both in the top level object and in the response envelope
+	 * @return <code>true</code> if the value was decoded, <code>false</code> if the key is not one of the common keys
+	 * @throws GkException GkException
+	 */
+	private boolean decodeCommonKey() throws GkException{
+		if(keyEquals(TinyGJsonUtils.STATUS_REPORT)){
+			decodeStatusReport();
+		}else if(keyEquals(TinyGJsonUtils.QUEUE_REPORT)){
+			queueReport = (int) readNumber();
+			queueReportReceived = true;
+		}else if(keyEquals(TinyGJsonUtils.FOOTER)){
+			decodeFooter();
+		}else{
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Decode a status report into the snapshot
+	 * @throws GkException GkException
+	 */
+	private void decodeStatusReport() throws GkException{
+		if(peek() != '{'){
+			skipValue();
+			return;
+		}
+		statusReportReceived = true;
+		expect('{');
+		if(!consume('}')){
+			do{
+				readKey();
+				if(keyEquals(TinyGJsonUtils.STATUS_REPORT_POSITION_X)){
+					statusSnapshot.setPositionX(readNumber());
+				}else if(keyEquals(TinyGJsonUtils.STATUS_REPORT_POSITION_Y)){
+					statusSnapshot.setPositionY(readNumber());
+				}else if(keyEquals(TinyGJsonUtils.STATUS_REPORT_POSITION_Z)){
+					statusSnapshot.setPositionZ(readNumber());
+				}else if(keyEquals(TinyGJsonUtils.STATUS_REPORT_POSITION_A)){
+					statusSnapshot.setPositionA(readNumber());
+				}else if(keyEquals(TinyGJsonUtils.STATUS_REPORT_STATE)){
+					statusSnapshot.setState((int) readNumber());
+				}else if(keyEquals(TinyGJsonUtils.STATUS_REPORT_UNITS)){
+					statusSnapshot.setUnits((int) readNumber());
+				}else if(keyEquals(TinyGJsonUtils.STATUS_REPORT_COORDINATES)){
+					statusSnapshot.setCoordinates((int) readNumber());
+				}else if(keyEquals(TinyGJsonUtils.STATUS_REPORT_DISTANCE_MODE)){
+					statusSnapshot.setDistanceMode((int) readNumber());
+				}else if(keyEquals(TinyGJsonUtils.STATUS_REPORT_VELOCITY)){
+					statusSnapshot.setVelocity(readNumber());
+				}else if(keyEquals(TinyGJsonUtils.STATUS_REPORT_FEEDRATE)){
+					statusSnapshot.setFeedrate(readNumber());
+				}else{
+					skipValue();
+				}
+			}while(consume(','));
+			expect('}');
+		}
+	}
+
+	/**
+	 * Decode the footer array, keeping only the status code
+	 * @throws GkException GkException
+	 */
+	private void decodeFooter() throws GkException{
+		if(peek() != '['){
+			skipValue();
+			return;
+		}
+		expect('[');
+		if(!consume(']')){
+			int index = 0;
+			do{
+				if(index == TinyGJsonUtils.FOOTER_STATUS_CODE_INDEX){
+					footerStatusCode = (int) readNumber();
+					footerReceived = true;
+				}else{
+					skipValue();
+				}
+				index++;
+			}while(consume(','));
+			expect(']');
+		}
+	}
+
+	/**
+	 * Read a key and the following colon. The key is not copied, its bounds are stored in keyStart and keyEnd
+	 * @throws GkException GkException
+	 */
+	private void readKey() throws GkException{
+		expect('"');
+		keyStart = position;
+		while(position < end && input.charAt(position) != '"'){
+			if(input.charAt(position) == '\\'){
+				position++;
+			}
+			position++;
+		}
+		if(position >= end){
+			throw error("Unterminated key");
+		}
+		keyEnd = position;
+		position++;
+		expect(':');
+	}
+
+	/**
+	 * Compare the last read key to the given key
+	 * @param key the key
+	 * @return <code>true</code> if the keys are equals
+	 */
+	private boolean keyEquals(String key){
+		int length = key.length();
+		if(keyEnd - keyStart != length){
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if(input.charAt(keyStart + i) != key.charAt(i)){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Read a string value into the given builder, handling the escaped characters
+	 * @param target the target builder, cleared before reading
+	 * @throws GkException GkException
+	 */
+	private void readString(StringBuilder target) throws GkException{
+		target.setLength(0);
+		expect('"');
+		while(position < end){
+			char c = input.charAt(position++);
+			if(c == '"'){
+				return;
+			}
+			if(c == '\\'){
+				if(position >= end){
+					break;
+				}
+				c = input.charAt(position++);
+				switch(c){
+				case 'b': target.append('\b');
+				break;
+				case 'f': target.append('\f');
+				break;
+				case 'n': target.append('\n');
+				break;
+				case 'r': target.append('\r');
+				break;
+				case 't': target.append('\t');
+				break;
+				case 'u':
+					if(position + 4 > end){
+						throw error("Invalid unicode escape sequence");
+					}
+					int code = 0;
+					for (int i = 0; i < 4; i++) {
+						int digit = Character.digit(input.charAt(position++), 16);
+						if(digit < 0){
+							throw error("Invalid unicode escape sequence");
+						}
+						code = (code << 4) | digit;
+					}
+					target.append((char) code);
+				break;
+				default: target.append(c);
+				break;
+				}
+			}else{
+				target.append(c);
+			}
+		}
+		throw error("Unterminated string");
+	}
+
+	/**
+	 * Read a number value. Numbers are decoded without creating any String, except the ones exceeding the precision of a double
+	 * @return the number
+	 * @throws GkException GkException
+	 */
+	private double readNumber() throws GkException{
+		skipWhitespaces();
+		int start = position;
+		boolean negative = consumeChar('-');
+		long mantissa = 0;
+		int digits = 0;
+		int scale = 0;
+		boolean exact = true;
+		while(position < end && isDigit(input.charAt(position))){
+			mantissa = mantissa * 10 + (input.charAt(position++) - '0');
+			digits++;
+		}
+		if(consumeChar('.')){
+			while(position < end && isDigit(input.charAt(position))){
+				mantissa = mantissa * 10 + (input.charAt(position++) - '0');
+				digits++;
+				scale++;
+			}
+		}
+		if(digits == 0){
+			throw error("Number expected");
+		}
+		if(position < end && (input.charAt(position) == 'e' || input.charAt(position) == 'E')){
+			position++;
+			if(!consumeChar('+')){
+				consumeChar('-');
+			}
+			while(position < end && isDigit(input.charAt(position))){
+				position++;
+			}
+			exact = false;
+		}
+		if(!exact || digits > 18 || mantissa > MAX_EXACT_MANTISSA || scale >= POWERS_OF_TEN.length){
+			try{
+				return Double.parseDouble(input.subSequence(start, position).toString());
+			}catch(NumberFormatException e){
+				throw error("Invalid number");
+			}
+		}
+		double value = mantissa / POWERS_OF_TEN[scale];
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Skip the next value, whatever its type
+	 * @throws GkException GkException
+	 */
+	private void skipValue() throws GkException{
+		char c = peek();
+		if(c == '{'){
+			position++;
+			if(!consume('}')){
+				do{
+					readKey();
+					skipValue();
+				}while(consume(','));
+				expect('}');
+			}
+		}else if(c == '['){
+			position++;
+			if(!consume(']')){
+				do{
+					skipValue();
+				}while(consume(','));
+				expect(']');
+			}
+		}else if(c == '"'){
+			position++;
+			while(position < end && input.charAt(position) != '"'){
+				if(input.charAt(position) == '\\'){
+					position++;
+				}
+				position++;
+			}
+			if(position >= end){
+				throw error("Unterminated string");
+			}
+			position++;
+		}else{
+			// Number or literal
+			int start = position;
+			while(position < end && !isDelimiter(input.charAt(position))){
+				position++;
+			}
+			if(position == start){
+				throw error("Value expected");
+			}
+		}
+	}
+
+	/**
+	 * Returns the next significant character without consuming it
+	 * @return the character
+	 * @throws GkException if the end of the line is reached
+	 */
+	private char peek() throws GkException{
+		skipWhitespaces();
+		if(position >= end){
+			throw error("Unexpected end of line");
+		}
+		return input.charAt(position);
+	}
+
+	/**
+	 * Consume the next significant character if it's the given one
+	 * @param c the expected character
+	 * @return <code>true</code> if the character was consumed
+	 */
+	private boolean consume(char c){
+		skipWhitespaces();
+		return consumeChar(c);
+	}
+
+	/**
+	 * Consume the next character if it's the given one
+	 * @param c the expected character
+	 * @return <code>true</code> if the character was consumed
+	 */
+	private boolean consumeChar(char c){
+		if(position < end && input.charAt(position) == c){
+			position++;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Consume the given character
+	 * @param c the expected character
+	 * @throws GkException if the next significant character is not the expected one
+	 */
+	private void expect(char c) throws GkException{
+		if(!consume(c)){
+			throw error("'"+c+"' expected");
+		}
+	}
+
+	private void skipWhitespaces(){
+		while(position < end && isWhitespace(input.charAt(position))){
+			position++;
+		}
+	}
+
+	private static boolean isWhitespace(char c){
+		return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+	}
+
+	private static boolean isDigit(char c){
+		return c >= '0' && c <= '9';
+	}
+
+	private static boolean isDelimiter(char c){
+		return c == ',' || c == '}' || c == ']' || isWhitespace(c);
+	}
+
+	private GkException error(String message){
+		return new GkTechnicalException(message+" at index "+position);
+	}
+
+	/**
+	 * @return <code>true</code> if the last decoded line contains a gcode response
+	 */
+	public boolean hasGCodeResponse() {
+		return gcodeResponseReceived;
+	}
+
+	/**
+	 * @return the gcode response of the last decoded line
+	 */
+	public CharSequence getGCodeResponse() {
+		return gcodeResponse;
+	}
+
+	/**
+	 * @return <code>true</code> if the last decoded line contains a status report
+	 */
+	public boolean hasStatusReport() {
+		return statusReportReceived;
+	}
+
+	/**
+	 * @return <code>true</code> if the last decoded line contains a queue report
+	 */
+	public boolean hasQueueReport() {
+		return queueReportReceived;
+	}
+
+	/**
+	 * @return the queue report of the last decoded line
+	 */
+	public int getQueueReport() {
+		return queueReport;
+	}
+
+	/**
+	 * @return <code>true</code> if the last decoded line contains a footer
+	 */
+	public boolean hasFooter() {
+		return footerReceived;
+	}
+
+	/**
+	 * @return the status code of the footer of the last decoded line
+	 */
+	public int getFooterStatusCode() {
+		return footerStatusCode;
+	}
+
+	/**
+	 * @return <code>true</code> if the response envelope of the last decoded line contains keys not handled by the decoder
+	 */
+	public boolean hasUnsupportedContent() {
+		return unsupportedContent;
+	}
+}
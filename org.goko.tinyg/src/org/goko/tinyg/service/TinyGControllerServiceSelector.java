@@ -37,6 +37,7 @@ import org.goko.core.controller.bean.EnumControllerAxis;
 import org.goko.core.controller.bean.MachineState;
 import org.goko.core.controller.bean.MachineValue;
 import org.goko.core.controller.bean.MachineValueDefinition;
+import org.goko.core.controller.bean.MotionPlannerSettings;
 import org.goko.core.controller.bean.ProbeResult;
 import org.goko.core.gcode.bean.GCodeContext;
 import org.goko.core.gcode.bean.IGCodeProvider;
@@ -400,4 +401,12 @@ public class TinyGControllerServiceSelector implements ITinyGControllerServiceSe
 		return getCurrentService().isPlannerBufferSpaceCheck();
 	}
 
+	/** (inheritDoc)
+	 * @see org.goko.core.controller.IMotionPlannerAdapter#getMotionPlannerSettings()
+	 */
+	@Override
+	public MotionPlannerSettings getMotionPlannerSettings() throws GkException {
+		return getCurrentService().getMotionPlannerSettings();
+	}
+
 }